@@ -0,0 +1,33 @@
+package org.peterpan.rpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端响应缓存
+ *
+ * 标注在接口方法上，客户端按服务键、方法和参数缓存调用结果，有效期内相同的调用直接返回缓存的结果，
+ * 不经过注册中心、序列化和网络，也不执行拦截器，适合配置查询这类读多写少的方法。
+ * 命中时交给调用方的是缓存的同一个实例，被多个调用方共享，所以返回类型必须不可变(String、包装类型、
+ * 字段都是 final 的值对象等)，不要返回数组或者可变的集合、JavaBean：调用方的修改会被之后所有命中的调用看到。null 结果不缓存。
+ * 缓存键引用调用时的参数并按 equals/hashCode 比较，参数同样必须不可变，调用之后修改参数会让缓存的条目再也查不到或者错配；
+ * 参数中有数组的调用不缓存，照常发起远程调用
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * 有效期，配置文件中的 cache.服务键#方法名 优先
+     */
+    long ttl();
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+}
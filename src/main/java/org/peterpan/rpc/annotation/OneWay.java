@@ -0,0 +1,21 @@
+package org.peterpan.rpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 单向调用
+ *
+ * 标注在接口方法上，客户端写出请求帧就返回，服务端执行方法但不回复，适合日志、指标上报这类不关心结果的调用。
+ * 方法必须返回 void；没有超时和重试，服务端过载或者执行失败时调用方也不会知道
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OneWay {
+}
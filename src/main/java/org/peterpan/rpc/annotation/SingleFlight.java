@@ -0,0 +1,22 @@
+package org.peterpan.rpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 合并相同的并发调用
+ *
+ * 标注在服务接口或者实现类的方法上，服务端对同一方法、参数相等(equals)的调用，同一时刻只执行一次，
+ * 执行期间到达的相同调用不再执行，等待并共享这次的结果，适合缓存未命中时回源这类幂等的读操作。
+ * 只合并同时在执行的调用，结果不做缓存；参数需要正确实现 equals/hashCode
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SingleFlight {
+}
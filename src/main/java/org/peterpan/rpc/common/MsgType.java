@@ -10,9 +10,26 @@ package org.peterpan.rpc.common;
 public enum MsgType {
    REQUEST,
    RESPONSE,
-   HEARTBEAT;
+   HEARTBEAT,
+   // 流式调用：同一个流的各帧使用打开流时的 requestId，只能追加在末尾(按序号编码)
+   STREAM_DATA, // 双向，流中的一个元素
+   STREAM_HALF_CLOSE, // 双向，发送方不再发送元素；服务端发出即整个调用结束，status 为 EXCEPTION 时消息体是错误信息
+   STREAM_WINDOW_UPDATE, // 双向，允许对端再发送的元素个数
+   STREAM_OPEN, // 客户端 -> 服务端，打开流，消息体与 REQUEST 相同
+   STREAM_CANCEL, // 客户端 -> 服务端，放弃整个流
+   STREAM_BLOB, // 双向，Blob 的一段原始字节，不经过序列化，和 STREAM_DATA 一样占用流控窗口
+   CANCEL, // 客户端 -> 服务端，放弃普通调用(REQUEST)：还没开始执行的直接跳过，正在执行的中断，没有消息体
+   ONE_WAY, // 客户端 -> 服务端，单向调用，消息体与 REQUEST 相同，服务端执行后不回复
+   BATCH, // 客户端 -> 服务端，批量调用，一帧携带同一个服务的多个调用，可以像 REQUEST 一样取消
+   BATCH_RESPONSE, // 服务端 -> 客户端，批量调用的结果，按顺序对应每个调用的返回值或者错误信息
+   SHM_UPGRADE; // 双向，把连接升级为共享内存传输：客户端发出时消息体是映射文件名，服务端回复同一个 requestId，status 为 NORMAL 表示已经切换
 
+   private static final MsgType[] VALUES = values();
+
+   /**
+    * 未知的类型(例如更新版本的对端新增的类型)返回 null
+    */
    public static MsgType findByType(int type) {
-      return MsgType.values()[type];
+      return type >= 0 && type < VALUES.length ? VALUES[type] : null;
    }
 }
@@ -7,12 +7,13 @@ package org.peterpan.rpc.common;
  */
 public class ProtocolConstants {
 
-   //HEADER_TOTAL_LEN：这个常量表示协议头的总长度。在该协议中，协议头的长度为 18 字节
-   public static final int HEADER_TOTAL_LEN = 18;
+   //HEADER_TOTAL_LEN：这个常量表示协议头的总长度。在该协议中，协议头的长度为 23 字节
+   //magic(2) + version(1) + serialization(1) + msgType(1) + status(1) + compression(1) + requestId(8) + timeout(4) + bodyLength(4)，具体编码见 RpcFrameEncoder
+   public static final int HEADER_TOTAL_LEN = 23;
 
    //MAGIC：这个常量表示协议的魔数。魔数通常是一个固定的标识符，用于识别和验证协议的有效性。在这个协议中，魔数的值为 0x10
    public static final short MAGIC = 0x10;
 
-   //VERSION：这个常量表示协议的版本号。协议版本号用于区分不同版本的协议，在升级或兼容性方面起到重要作用。在这个协议中，版本号的值为 0x1
-   public static final byte VERSION = 0x1;
+   //VERSION：这个常量表示协议的版本号。协议版本号用于区分不同版本的协议，在升级或兼容性方面起到重要作用。在这个协议中，版本号的值为 0x3(协议头加入了 compression、timeout 字段)
+   public static final byte VERSION = 0x3;
 }
@@ -21,6 +21,16 @@ public class ServiceMeta implements Serializable {
 
    private int servicePort;
 
+   /**
+    * 服务端监听的 Unix domain socket 路径，与服务端同机的调用方优先使用，为空表示不支持
+    */
+   private String unixSocketPath;
+
+   /**
+    * 服务端接受共享内存传输时映射文件所在的目录，与服务端同机的调用方连接后升级为共享内存，为空表示不支持
+    */
+   private String sharedMemoryDir;
+
    /**
     * 关于redis注册中心的属性
     */
@@ -11,4 +11,6 @@ public class StatusConstants {
 
    public static final short EXCEPTION = 0x2; // 状态2为异常
 
+   public static final short OVERLOADED = 0x3; // 状态3为服务端过载，请求没有被处理，可以立即换节点重试
+
 }
@@ -2,12 +2,18 @@ package org.peterpan.rpc.config;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
 import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.core.codec.compress.CompressTypeEnum;
 import org.peterpan.rpc.core.codec.serialization.SerializationTypeEnum;
+import org.peterpan.rpc.core.server.executor.ExecutionMode;
+import org.peterpan.rpc.core.transfer.shm.WaitStrategy;
 
 /**
  * @author PeterPan
@@ -82,11 +88,300 @@ public class RpcConfig {
         return properties.getProperty("port");
     }
 
+    /**
+     * 服务端IO线程(事件循环)数量，默认为CPU核数
+     */
+    public int getIoThreads() {
+        String ioThreads = properties.getProperty("ioThreads");
+        return ioThreads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(ioThreads);
+    }
+
+    /**
+     * 流式调用每个方向的接收窗口(元素个数)，发送方最多领先接收方消费这么多个元素
+     */
+    public int getStreamWindow() {
+        return Integer.parseInt(properties.getProperty("streamWindow", "32"));
+    }
+
+    /**
+     * 流式调用服务端等待客户端放开接收窗口的最长时间(秒)，超时后结束流
+     */
+    public long getStreamCreditTimeout() {
+        return Long.parseLong(properties.getProperty("streamCreditTimeout", "60"));
+    }
+
+    /**
+     * Blob 传输时每帧携带的字节数，每帧占用一个流控窗口
+     */
+    public int getBlobChunkSize() {
+        return Integer.parseInt(properties.getProperty("blobChunkSize", "262144"));
+    }
+
+    /**
+     * 接收到的 Blob 落盘的临时目录，默认为 java.io.tmpdir
+     */
+    public String getBlobTempDir() {
+        return properties.getProperty("blobTempDir", System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * 消息体压缩算法(NONE/DEFLATE/SNAPPY)，默认不压缩
+     */
+    public CompressTypeEnum getCompressType() {
+        String compressType = properties.getProperty("compressType", "NONE").trim();
+        try {
+            return CompressTypeEnum.valueOf(compressType.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("未知的压缩算法 {}, 不压缩", compressType);
+            return CompressTypeEnum.NONE;
+        }
+    }
+
+    /**
+     * 消息体达到多少字节才压缩，小消息压缩省下的带宽抵不上拷贝和计算的开销
+     */
+    public int getCompressThreshold() {
+        return Integer.parseInt(properties.getProperty("compressThreshold", "4096"));
+    }
+
+    /**
+     * 服务端连接空闲超时(秒)，超时没有收到数据的连接会被关闭，0 表示不关闭
+     */
+    public int getServerIdleTimeout() {
+        return Integer.parseInt(properties.getProperty("serverIdleTimeout", "180"));
+    }
+
+    /**
+     * 服务端业务请求执行方式：PLATFORM(平台线程池)、VIRTUAL(虚拟线程，需要JDK 21+)
+     */
+    public ExecutionMode getServerExecutionMode() {
+        return ExecutionMode.toExecutionMode(properties.getProperty("serverExecutionMode", "PLATFORM"));
+    }
+
+    /**
+     * 虚拟线程模式下同时执行的请求数上限，超过后触发拒绝策略
+     */
+    public int getVirtualThreadMaxConcurrency() {
+        return Integer.parseInt(properties.getProperty("virtualThreadMaxConcurrency", "10000"));
+    }
+
+    /**
+     * 准入控制：排队等待执行的请求达到这个数量时，新请求直接回复过载
+     */
+    public int getAdmissionMaxQueued() {
+        return Integer.parseInt(properties.getProperty("admissionMaxQueued", "150"));
+    }
+
+    /**
+     * 准入控制：请求在队列中的平均等待时间(毫秒)超过这个值时，新请求直接回复过载
+     */
+    public long getAdmissionMaxQueueDelay() {
+        return Long.parseLong(properties.getProperty("admissionMaxQueueDelay", "100"));
+    }
+
+    /**
+     * 过载时建议客户端间隔多久(毫秒)再把请求发到本节点的下限
+     */
+    public int getOverloadRetryAfter() {
+        return Integer.parseInt(properties.getProperty("overloadRetryAfter", "50"));
+    }
+
+    /**
+     * 服务隔离线程池：bulkhead.服务键[#方法名]=线程数[,队列长度]，返回去掉前缀的键 -> 值，
+     * 没有配置的服务仍然在共享线程池中执行
+     */
+    public Map<String, String> getBulkheads() {
+        Map<String, String> bulkheads = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("bulkhead.")) {
+                bulkheads.put(name.substring("bulkhead.".length()), properties.getProperty(name).trim());
+            }
+        }
+        return bulkheads;
+    }
+
+    /**
+     * 一个并行执行的批量调用最多同时占用的线程数(包括执行批量调用本身的线程)
+     */
+    public int getBatchParallelism() {
+        return Integer.parseInt(properties.getProperty("batchParallelism", "8"));
+    }
+
+    /**
+     * 是否启用 Unix domain socket：服务端额外监听 unixSocketPath，同机的客户端优先使用(需要JDK 16+)
+     */
+    public boolean isUnixSocketEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("unixSocketEnabled", "true"));
+    }
+
+    /**
+     * 服务端 Unix domain socket 路径，默认在临时目录下按端口区分
+     */
+    public String getUnixSocketPath() {
+        String path = properties.getProperty("unixSocketPath");
+        if (path == null || path.isEmpty()) {
+            path = Paths.get(System.getProperty("java.io.tmpdir"), "simple-rpc-" + getPort() + ".sock").toString();
+        }
+        return path;
+    }
+
+    /**
+     * 是否启用共享内存传输：服务端发布映射文件目录并接受升级，同机的客户端建立连接后升级为共享内存
+     */
+    public boolean isSharedMemoryEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("sharedMemoryEnabled", "false"));
+    }
+
+    /**
+     * 共享内存映射文件所在的目录，默认放在内存文件系统 /dev/shm 上，映射的页不会被回写到磁盘
+     */
+    public String getSharedMemoryDir() {
+        String dir = properties.getProperty("sharedMemoryDir");
+        if (dir == null || dir.isEmpty()) {
+            Path base = Files.isDirectory(Paths.get("/dev/shm")) ? Paths.get("/dev/shm") : Paths.get(System.getProperty("java.io.tmpdir"));
+            dir = base.resolve("simple-rpc-shm").toString();
+        }
+        return dir;
+    }
+
+    /**
+     * 共享内存中每个方向的环形缓冲区大小(字节)，由创建文件的客户端决定
+     */
+    public int getSharedMemoryRingSize() {
+        return Integer.parseInt(properties.getProperty("sharedMemoryRingSize", "1048576"));
+    }
+
+    /**
+     * 共享内存读线程没有数据时的等待方式(SPIN/PARK)
+     */
+    public WaitStrategy getSharedMemoryWaitStrategy() {
+        String waitStrategy = properties.getProperty("sharedMemoryWaitStrategy", "PARK").trim();
+        try {
+            return WaitStrategy.valueOf(waitStrategy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("未知的共享内存等待方式 {}, 使用 PARK", waitStrategy);
+            return WaitStrategy.PARK;
+        }
+    }
+
     /**
      * 故障转移
      */
     public String getRetryCount() {return properties.getProperty("retryCount");}
 
+    /**
+     * 客户端到每个服务提供方的长连接数量
+     */
+    public int getConnectionPoolSize() {
+        return Integer.parseInt(properties.getProperty("connectionPoolSize", "2"));
+    }
+
+    /**
+     * 客户端心跳间隔(秒)：连接空闲这么久就发一次心跳，0 表示不发
+     */
+    public int getHeartbeatInterval() {
+        return Integer.parseInt(properties.getProperty("heartbeatInterval", "30"));
+    }
+
+    /**
+     * 连续多少次心跳没有收到任何数据就认为对端已经失联，关闭连接
+     */
+    public int getHeartbeatMaxMissed() {
+        return Integer.parseInt(properties.getProperty("heartbeatMaxMissed", "3"));
+    }
+
+    /**
+     * 连接意外断开后后台重连的次数，间隔从1秒开始翻倍，0 表示只在下次调用时重建
+     */
+    public int getReconnectAttempts() {
+        return Integer.parseInt(properties.getProperty("reconnectAttempts", "3"));
+    }
+
+    /**
+     * 超时时间轮每格的时长(毫秒)，即超时的精度
+     */
+    public long getTimerTickMillis() {
+        return Long.parseLong(properties.getProperty("timerTickMillis", "10"));
+    }
+
+    /**
+     * 超时时间轮的槽数，会向上取到2的幂
+     */
+    public int getTimerWheelSize() {
+        return Integer.parseInt(properties.getProperty("timerWheelSize", "512"));
+    }
+
+    /**
+     * 客户端响应缓存最多保存的结果数，0 表示关闭缓存
+     */
+    public int getClientCacheMaxSize() {
+        return Integer.parseInt(properties.getProperty("clientCacheMaxSize", "10000"));
+    }
+
+    /**
+     * 客户端响应缓存的有效期：cache.服务键#方法名=毫秒，返回去掉前缀的键 -> 毫秒，优先于方法上的 @Cached，0 表示不缓存
+     */
+    public Map<String, Long> getCacheTtls() {
+        Map<String, Long> ttls = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("cache.")) {
+                ttls.put(name.substring("cache.".length()), Long.parseLong(properties.getProperty(name).trim()));
+            }
+        }
+        return ttls;
+    }
+
+    /**
+     * 是否启用同进程调用：调用的服务在本进程用 RpcServerTransfer.register 注册过时直接调用实现。
+     * 同进程调用没有超时、重试和服务端过滤器，默认关闭，需要时显式开启
+     */
+    public boolean isLocalInvocationEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("localInvocationEnabled", "false"));
+    }
+
+    /**
+     * 同进程调用是否拷贝参数和结果(经过配置的序列化方式)，保持与远程调用相同的传值语义
+     */
+    public boolean isLocalInvocationCopy() {
+        return Boolean.parseBoolean(properties.getProperty("localInvocationCopy", "false"));
+    }
+
+    /**
+     * 写合并最多等待的时间(微秒)，0 表示只合并同一个事件循环轮次内提交的帧
+     */
+    public long getWriteCoalesceMicros() {
+        return Long.parseLong(properties.getProperty("writeCoalesceMicros", "0"));
+    }
+
+    /**
+     * 一帧(协议头 + 消息体)允许的最大字节数，收到声明更大的帧时关闭连接；发送更大的帧时只让这一个调用失败
+     */
+    public int getMaxFrameLength() {
+        return Integer.parseInt(properties.getProperty("maxFrameLength", "16777216"));
+    }
+
+    /**
+     * 写合并积攒的字节数达到该值时立即写出
+     */
+    public int getWriteCoalesceMaxBytes() {
+        return Integer.parseInt(properties.getProperty("writeCoalesceMaxBytes", "65536"));
+    }
+
+    /**
+     * 池化缓冲区泄漏检测，会记录每次分配的调用栈，有性能开销，建议只在测试环境开启
+     */
+    public boolean isBufferLeakDetection() {
+        return Boolean.parseBoolean(properties.getProperty("bufferLeakDetection", "false"));
+    }
+
+    /**
+     * 客户端IO线程(事件循环)数量，默认为CPU核数
+     */
+    public int getClientIoThreads() {
+        String ioThreads = properties.getProperty("clientIoThreads");
+        return ioThreads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(ioThreads);
+    }
+
     /**
      * 服务端额外配置数据
      */
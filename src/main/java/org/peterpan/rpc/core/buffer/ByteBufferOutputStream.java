@@ -0,0 +1,93 @@
+package org.peterpan.rpc.core.buffer;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 写入池化缓冲区的输出流
+ *
+ * 序列化直接写进池化的直接内存，空间不够时换更大规格的缓冲区。
+ * 构造时可以预留 headroom 字节，留给后面填写协议头，这样发送时不需要再拷贝一次消息体
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final PooledByteBufferAllocator allocator;
+    private final int headroom;
+    private PooledByteBuffer buffer;
+
+    public ByteBufferOutputStream(int headroom) {
+        this(PooledByteBufferAllocator.getInstance(), headroom);
+    }
+
+    public ByteBufferOutputStream(PooledByteBufferAllocator allocator, int headroom) {
+        this.allocator = allocator;
+        this.headroom = headroom;
+        this.buffer = allocator.allocate(Math.max(INITIAL_CAPACITY, headroom));
+        this.buffer.buffer().position(headroom);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureWritable(1);
+        buffer.buffer().put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureWritable(len);
+        buffer.buffer().put(b, off, len);
+    }
+
+    /**
+     * 结束写入，返回的缓冲区 position 指向数据起点(headroom 之后)，limit 为数据终点，所有权交给调用方
+     */
+    public PooledByteBuffer finish() {
+        PooledByteBuffer result = buffer;
+        buffer = null;
+        ByteBuffer buf = result.buffer();
+        buf.limit(buf.position());
+        buf.position(headroom);
+        return result;
+    }
+
+    /**
+     * 出错时释放已经申请的缓冲区
+     */
+    public void release() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    /**
+     * 序列化框架可能会关闭输出流，这里不做任何事情，由 finish/release 管理缓冲区
+     */
+    @Override
+    public void close() {
+    }
+
+    private void ensureWritable(int length) {
+        ByteBuffer buf = buffer.buffer();
+        if (buf.remaining() >= length) {
+            return;
+        }
+        int required = buf.position() + length;
+        int newCapacity = buf.capacity();
+        while (newCapacity < required) {
+            newCapacity <<= 1;
+            if (newCapacity <= 0) {
+                throw new OutOfMemoryError("buffer too large: " + required);
+            }
+        }
+        PooledByteBuffer expanded = allocator.allocate(newCapacity);
+        buf.flip();
+        expanded.buffer().put(buf);
+        buffer.release();
+        buffer = expanded;
+    }
+}
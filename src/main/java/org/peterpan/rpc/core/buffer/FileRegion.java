@@ -0,0 +1,58 @@
+package org.peterpan.rpc.core.buffer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 文件中的一段，作为消息体时不读进内存，由传输层用 FileChannel.transferTo 直接写到 socket
+ *
+ * 文件由创建方打开，release 时回调 onRelease，多个区域共享一个 FileChannel 时由创建方自己计数
+ */
+public final class FileRegion {
+
+    private final FileChannel file;
+    private final long position;
+    private final long count;
+    private final Runnable onRelease;
+    private long transferred;
+
+    public FileRegion(FileChannel file, long position, long count, Runnable onRelease) {
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("一帧最多携带 " + Integer.MAX_VALUE + " 字节: " + count);
+        }
+        this.file = file;
+        this.position = position;
+        this.count = count;
+        this.onRelease = onRelease;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isDone() {
+        return transferred >= count;
+    }
+
+    /**
+     * 把剩余部分尽量写到 target，返回本次写出的字节数，目标写满时返回 0
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long offset = position + transferred;
+        long n = file.transferTo(offset, count - transferred, target);
+        if (n == 0 && offset >= file.size()) {
+            throw new IOException("文件在发送过程中被截断, position=" + offset + ", size=" + file.size());
+        }
+        transferred += n;
+        return n;
+    }
+
+    public void release() {
+        if (onRelease != null) {
+            onRelease.run();
+        }
+    }
+}
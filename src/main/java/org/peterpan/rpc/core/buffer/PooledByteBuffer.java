@@ -0,0 +1,111 @@
+package org.peterpan.rpc.core.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 池化的 ByteBuffer
+ *
+ * 采用引用计数管理：allocate 得到的引用计数为 1，retain 加一，release 减一，减到 0 时底层内存归还给分配器。
+ * 多个句柄可以共享同一块内存(retainedDuplicate)，各自有独立的 position/limit。
+ * 释放之后不能再访问 buffer()
+ */
+public final class PooledByteBuffer {
+
+    private final Memory memory;
+    private final ByteBuffer buffer;
+
+    PooledByteBuffer(Memory memory, ByteBuffer buffer) {
+        this.memory = memory;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 当前句柄的视图，position 到 limit 之间是有效数据
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int readableBytes() {
+        return buffer.remaining();
+    }
+
+    public int refCnt() {
+        return memory.refCnt.get();
+    }
+
+    public PooledByteBuffer retain() {
+        memory.retain();
+        return this;
+    }
+
+    /**
+     * 共享同一块内存的新句柄，引用计数加一，调用方负责释放
+     */
+    public PooledByteBuffer retainedDuplicate() {
+        memory.retain();
+        return new PooledByteBuffer(memory, buffer.duplicate());
+    }
+
+    /**
+     * 共享同一块内存、从当前 position 开始的新句柄，引用计数加一，调用方负责释放。
+     * 前面预留的协议头空间不在视图内，编码帧时会另外分配协议头，同一份消息体可以同时发给多个请求
+     */
+    public PooledByteBuffer retainedSlice() {
+        memory.retain();
+        return new PooledByteBuffer(memory, buffer.slice());
+    }
+
+    /**
+     * 引用计数减一，返回 true 表示内存已经归还
+     */
+    public boolean release() {
+        return memory.release();
+    }
+
+    /**
+     * 一块从分配器取出的内存，所有共享它的句柄共用一个引用计数
+     */
+    static final class Memory {
+        final PooledByteBufferAllocator allocator;
+        final ByteBuffer raw;
+        // 规格下标，-1 表示超过最大规格、不池化
+        final int sizeClass;
+        final AtomicInteger refCnt = new AtomicInteger(1);
+        // 泄漏检测，未开启时为 null
+        PooledByteBufferAllocator.LeakTracker leakTracker;
+
+        Memory(PooledByteBufferAllocator allocator, ByteBuffer raw, int sizeClass) {
+            this.allocator = allocator;
+            this.raw = raw;
+            this.sizeClass = sizeClass;
+        }
+
+        void retain() {
+            for (; ; ) {
+                int cnt = refCnt.get();
+                if (cnt <= 0) {
+                    throw new IllegalStateException("buffer already released");
+                }
+                if (refCnt.compareAndSet(cnt, cnt + 1)) {
+                    return;
+                }
+            }
+        }
+
+        boolean release() {
+            int cnt = refCnt.decrementAndGet();
+            if (cnt == 0) {
+                allocator.recycle(this);
+                return true;
+            }
+            if (cnt < 0) {
+                throw new IllegalStateException("buffer released more than once");
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.peterpan.rpc.core.buffer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.config.RpcConfig;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 池化的直接内存分配器
+ *
+ * 编解码和传输层共用，避免每条消息都分配与消息大小成正比的 byte[]。
+ * 1、按2的幂分规格(256B ~ 4MB)，申请的大小向上取到所在规格，超过最大规格的不池化
+ * 2、开启了线程缓存的线程(事件循环)先从自己的缓存里取/还，缓存满了或者空了再访问全局池，全局池每个规格有容量上限；
+ *    其他线程(业务线程池、虚拟线程)随时可能结束，内存缓存在它们身上就再也用不到了，只使用全局池
+ * 3、开启 bufferLeakDetection 后，记录每次分配的调用栈，没有 release 就被 GC 的内存会打印泄漏日志，
+ *    测试环境建议开启，getLeakCount 可以用来断言没有泄漏
+ */
+@Slf4j
+public class PooledByteBufferAllocator {
+
+    private static final int MIN_SHIFT = 8;
+    private static final int MAX_SHIFT = 22;
+    private static final int SIZE_CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+    public static final int MAX_POOLED_SIZE = 1 << MAX_SHIFT;
+    // 全局池每个规格最多缓存的字节数
+    private static final int GLOBAL_POOL_BYTES_PER_CLASS = 16 * 1024 * 1024;
+
+    private static final PooledByteBufferAllocator INSTANCE = new PooledByteBufferAllocator(RpcConfig.getInstance().isBufferLeakDetection());
+
+    @SuppressWarnings("unchecked")
+    private final Queue<ByteBuffer>[] globalPools = (Queue<ByteBuffer>[]) new Queue<?>[SIZE_CLASSES];
+    private final AtomicInteger[] globalPoolSizes = new AtomicInteger[SIZE_CLASSES];
+    // 只有调用过 enableThreadCache 的线程才有值
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<>();
+
+    private final boolean leakDetection;
+    private final ReferenceQueue<PooledByteBuffer.Memory> leakQueue = new ReferenceQueue<>();
+    // 持有 LeakTracker 本身，保证它在被 GC 检测到之前不会被回收
+    private final Map<LeakTracker, Boolean> leakTrackers = new ConcurrentHashMap<>();
+    private final AtomicLong leakCount = new AtomicLong(0);
+
+    public PooledByteBufferAllocator(boolean leakDetection) {
+        this.leakDetection = leakDetection;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            globalPools[i] = new ConcurrentLinkedQueue<>();
+            globalPoolSizes[i] = new AtomicInteger(0);
+        }
+    }
+
+    public static PooledByteBufferAllocator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 为当前线程开启线程缓存，只应该由长期存活、频繁分配和释放的线程(事件循环)调用
+     */
+    public void enableThreadCache() {
+        if (threadCache.get() == null) {
+            threadCache.set(new ThreadCache());
+        }
+    }
+
+    /**
+     * 关闭当前线程的线程缓存，缓存中的内存还给全局池，线程退出前调用
+     */
+    public void disableThreadCache() {
+        ThreadCache cache = threadCache.get();
+        if (cache == null) {
+            return;
+        }
+        threadCache.remove();
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            ByteBuffer raw;
+            while ((raw = cache.poll(sizeClass)) != null) {
+                offerGlobal(sizeClass, raw);
+            }
+        }
+    }
+
+    /**
+     * 分配至少 capacity 字节的缓冲区，返回的 buffer() 处于写模式(position=0, limit=capacity)
+     */
+    public PooledByteBuffer allocate(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (leakDetection) {
+            reportLeaks();
+        }
+        int sizeClass = sizeClass(capacity);
+        ByteBuffer raw = null;
+        if (sizeClass >= 0) {
+            ThreadCache cache = threadCache.get();
+            if (cache != null) {
+                raw = cache.poll(sizeClass);
+            }
+            if (raw == null) {
+                raw = globalPools[sizeClass].poll();
+                if (raw != null) {
+                    globalPoolSizes[sizeClass].decrementAndGet();
+                }
+            }
+            if (raw == null) {
+                raw = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+            }
+            raw.clear();
+            raw.limit(capacity);
+        } else {
+            // 超大消息不池化，使用堆内存，交给GC回收，避免占住大块直接内存
+            raw = ByteBuffer.allocate(capacity);
+        }
+        PooledByteBuffer.Memory memory = new PooledByteBuffer.Memory(this, raw, sizeClass);
+        if (leakDetection) {
+            memory.leakTracker = new LeakTracker(memory, leakQueue);
+            leakTrackers.put(memory.leakTracker, Boolean.TRUE);
+        }
+        return new PooledByteBuffer(memory, raw.duplicate());
+    }
+
+    /**
+     * 引用计数归零时调用，内存放回当前线程的缓存(开启了的话)或者全局池
+     */
+    void recycle(PooledByteBuffer.Memory memory) {
+        LeakTracker leakTracker = memory.leakTracker;
+        if (leakTracker != null) {
+            leakTrackers.remove(leakTracker);
+            leakTracker.clear();
+        }
+        int sizeClass = memory.sizeClass;
+        if (sizeClass < 0) {
+            return;
+        }
+        ThreadCache cache = threadCache.get();
+        if (cache != null && cache.offer(sizeClass, memory.raw)) {
+            return;
+        }
+        offerGlobal(sizeClass, memory.raw);
+    }
+
+    private void offerGlobal(int sizeClass, ByteBuffer raw) {
+        int limit = Math.max(2, GLOBAL_POOL_BYTES_PER_CLASS >> (sizeClass + MIN_SHIFT));
+        if (globalPoolSizes[sizeClass].incrementAndGet() <= limit) {
+            globalPools[sizeClass].offer(raw);
+        } else {
+            // 池满了，丢弃，直接内存由GC回收
+            globalPoolSizes[sizeClass].decrementAndGet();
+        }
+    }
+
+    /**
+     * 检测到的泄漏次数(没有 release 就被GC的缓冲区)
+     */
+    public long getLeakCount() {
+        reportLeaks();
+        return leakCount.get();
+    }
+
+    private void reportLeaks() {
+        LeakTracker leakTracker;
+        while ((leakTracker = (LeakTracker) leakQueue.poll()) != null) {
+            if (leakTrackers.remove(leakTracker) != null) {
+                leakCount.incrementAndGet();
+                log.error("PooledByteBuffer 没有 release 就被回收了(内存泄漏), 分配位置:", leakTracker.allocation);
+            }
+        }
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity > MAX_POOLED_SIZE) {
+            return -1;
+        }
+        if (capacity <= (1 << MIN_SHIFT)) {
+            return 0;
+        }
+        // 向上取整到2的幂
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    /**
+     * 记录分配位置，Memory 对象不可达时由GC放入 leakQueue
+     */
+    static final class LeakTracker extends PhantomReference<PooledByteBuffer.Memory> {
+        final Throwable allocation = new Throwable("allocated at");
+
+        LeakTracker(PooledByteBuffer.Memory referent, ReferenceQueue<? super PooledByteBuffer.Memory> q) {
+            super(referent, q);
+        }
+    }
+
+    /**
+     * 线程缓存，小规格缓存得多、大规格缓存得少
+     */
+    private static final class ThreadCache {
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<ByteBuffer>[] caches = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[SIZE_CLASSES];
+
+        ThreadCache() {
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                caches[i] = new ArrayDeque<>();
+            }
+        }
+
+        ByteBuffer poll(int sizeClass) {
+            return caches[sizeClass].pollFirst();
+        }
+
+        boolean offer(int sizeClass, ByteBuffer buffer) {
+            ArrayDeque<ByteBuffer> cache = caches[sizeClass];
+            if (cache.size() >= capacity(sizeClass)) {
+                return false;
+            }
+            cache.addFirst(buffer);
+            return true;
+        }
+
+        private static int capacity(int sizeClass) {
+            int size = 1 << (sizeClass + MIN_SHIFT);
+            if (size <= 16 * 1024) {
+                return 32;
+            }
+            if (size <= 256 * 1024) {
+                return 8;
+            }
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.peterpan.rpc.core.client;
+
+import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
+import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
+import org.peterpan.rpc.core.codec.serialization.SerializationTypeEnum;
+import org.peterpan.rpc.core.server.LocalServiceRegistry;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 同进程调用
+ *
+ * 服务实现在本进程注册过时直接反射调用，不经过注册中心、序列化和网络。
+ * 默认按引用传递参数和结果(与本地方法调用一样)；开启拷贝时参数和结果都经过配置的序列化方式复制一份，
+ * 双方修改对象互不影响，行为与远程调用一致。String、基本类型的包装类和枚举不可变，不拷贝
+ */
+class LocalInvoker {
+
+    private final boolean enabled;
+    private final boolean copy;
+    private final byte serializationType;
+
+    LocalInvoker(boolean enabled, boolean copy, byte serializationType) {
+        this.enabled = enabled;
+        this.copy = copy;
+        this.serializationType = serializationType;
+    }
+
+    /**
+     * 本进程注册的服务实现，没有注册或者关闭了同进程调用时返回 null
+     */
+    Object find(Method method, String serviceVersion) {
+        if (!enabled || LocalServiceRegistry.isEmpty()) {
+            return null;
+        }
+        return LocalServiceRegistry.find(RpcServiceNameBuilder.buildServiceKey(method.getDeclaringClass().getName(), serviceVersion));
+    }
+
+    /**
+     * 在调用线程上执行，服务实现返回 CompletableFuture 时直接沿用它；服务实现抛出的异常原样作为 future 的失败原因
+     */
+    CompletableFuture<Object> invoke(Object serviceBean, Method method, Object[] args) {
+        return invoke(serviceBean, method, args, Runnable::run);
+    }
+
+    /**
+     * 在 executor 上执行，调用线程不等待。参数在调用线程上拷贝，之后调用方再修改参数也不影响这次调用
+     */
+    CompletableFuture<Object> invoke(Object serviceBean, Method method, Object[] args, Executor executor) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Object[] callArgs;
+        try {
+            callArgs = copyArgs(args);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        executor.execute(() -> call(serviceBean, method, callArgs, future));
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void call(Object serviceBean, Method method, Object[] args, CompletableFuture<Object> future) {
+        try {
+            Object result = method.invoke(serviceBean, args);
+            if (result instanceof CompletableFuture) {
+                ((CompletableFuture<Object>) result).whenComplete((value, e) -> {
+                    if (e != null) {
+                        future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    } else {
+                        complete(future, value);
+                    }
+                });
+            } else {
+                complete(future, result);
+            }
+        } catch (InvocationTargetException e) {
+            future.completeExceptionally(e.getTargetException());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void complete(CompletableFuture<Object> future, Object value) {
+        try {
+            future.complete(copy(value));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private Object[] copyArgs(Object[] args) throws Exception {
+        if (args == null) {
+            return new Object[0];
+        }
+        if (!copy) {
+            return args;
+        }
+        Object[] copied = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            copied[i] = copy(args[i]);
+        }
+        return copied;
+    }
+
+    private Object copy(Object value) throws Exception {
+        if (!copy || value == null || isImmutable(value)) {
+            return value;
+        }
+        IRpcSerialization serialization = SerializationFactory.get(SerializationTypeEnum.findByType(serializationType).name());
+        return serialization.deserialize(serialization.serialize(value), value.getClass());
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Number && value.getClass().getName().startsWith("java.lang.")
+                || value instanceof Boolean || value instanceof Character || value instanceof Enum;
+    }
+}
@@ -0,0 +1,82 @@
+package org.peterpan.rpc.core.client;
+
+import org.peterpan.rpc.common.ServiceMeta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 回复过载的服务节点
+ *
+ * 节点回复 OVERLOADED 后，在它建议的重试间隔内选节点时跳过它，请求分给其他节点，而不是继续往忙的节点上堆
+ */
+final class OverloadedProviders {
+
+    // addr:port -> 可以再次使用的时间(System.nanoTime)
+    private static final Map<String, Long> COOLING_DOWN = new ConcurrentHashMap<>();
+
+    private OverloadedProviders() {
+    }
+
+    /**
+     * retryAfterMillis 不大于 0 表示只是某个服务的独立线程池满了，节点本身不需要避开
+     */
+    static void markOverloaded(ServiceMeta serviceMeta, int retryAfterMillis) {
+        if (retryAfterMillis > 0) {
+            COOLING_DOWN.put(address(serviceMeta), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        }
+    }
+
+    static boolean isOverloaded(ServiceMeta serviceMeta) {
+        String address = address(serviceMeta);
+        Long until = COOLING_DOWN.get(address);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until >= 0) {
+            COOLING_DOWN.remove(address, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 优先使用 preferred，它正在过载时从 candidates 中选一个没有过载的节点，都过载时返回 null
+     */
+    static ServiceMeta select(ServiceMeta preferred, List<ServiceMeta> candidates) {
+        if (preferred != null && !isOverloaded(preferred)) {
+            return preferred;
+        }
+        if (candidates != null) {
+            for (ServiceMeta candidate : candidates) {
+                if (!isOverloaded(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 换一个节点：从 candidates 中选一个不是 current、也没有过载的节点，没有时返回 null
+     */
+    static ServiceMeta selectOther(ServiceMeta current, List<ServiceMeta> candidates) {
+        if (candidates != null) {
+            String currentAddress = address(current);
+            for (ServiceMeta candidate : candidates) {
+                if (!address(candidate).equals(currentAddress) && !isOverloaded(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String address(ServiceMeta serviceMeta) {
+        return serviceMeta.getServiceAddr() + ":" + serviceMeta.getServicePort();
+    }
+}
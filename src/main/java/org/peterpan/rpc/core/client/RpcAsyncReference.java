@@ -0,0 +1,52 @@
+package org.peterpan.rpc.core.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 异步引用
+ *
+ * 让同步风格的接口也能异步调用，不需要为每个接口再写一份返回 CompletableFuture 的版本：
+ * <pre>
+ * RpcAsyncReference&lt;HelloService&gt; ref = RpcServiceUtil.getAsyncReference(HelloService.class, ...);
+ * CompletableFuture&lt;HelloResponse&gt; future = ref.call(service -&gt; service.hello(request));
+ * </pre>
+ * call 期间代理只发出请求并登记 future，方法本身立即返回默认值
+ */
+public class RpcAsyncReference<T> {
+
+    private static final ThreadLocal<CompletableFuture<?>> CAPTURED_FUTURE = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> CAPTURING = ThreadLocal.withInitial(() -> false);
+
+    private final T service;
+
+    public RpcAsyncReference(T service) {
+        this.service = service;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> CompletableFuture<R> call(Function<T, R> invocation) {
+        CAPTURING.set(true);
+        try {
+            invocation.apply(service);
+            CompletableFuture<R> future = (CompletableFuture<R>) CAPTURED_FUTURE.get();
+            if (future == null) {
+                throw new IllegalStateException("call 中没有发起任何远程调用");
+            }
+            return future;
+        } finally {
+            CAPTURING.set(false);
+            CAPTURED_FUTURE.remove();
+        }
+    }
+
+    static boolean isCapturing() {
+        return CAPTURING.get();
+    }
+
+    static void capture(CompletableFuture<?> future) {
+        CAPTURED_FUTURE.set(future);
+    }
+}
@@ -0,0 +1,132 @@
+package org.peterpan.rpc.core.client;
+
+import org.peterpan.rpc.annotation.OneWay;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.core.stream.StreamObserver;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 批量调用
+ *
+ * 把同一个服务的多个调用(可以是不同的方法)装进一个请求帧，一次往返拿回全部结果：
+ * <pre>
+ * RpcBatch&lt;UserService&gt; batch = RpcServiceUtil.newBatch(UserService.class, ...);
+ * CompletableFuture&lt;User&gt; a = batch.add(service -&gt; service.getUser(1));
+ * CompletableFuture&lt;User&gt; b = batch.add(service -&gt; service.getUser(2));
+ * batch.execute().join();
+ * </pre>
+ * add 期间代理只记录调用，方法本身立即返回默认值；execute 后服务端并行执行(executeInOrder 按添加顺序执行)，
+ * 每个调用的结果或者错误分别完成各自的 future，某个调用失败不影响其他调用。
+ * 整个批量调用共用一个超时和重试，只支持普通的同步方法；一个 RpcBatch 只能执行一次，不是线程安全的
+ */
+public class RpcBatch<T> {
+
+    private static final ThreadLocal<RpcBatch<?>> COLLECTING = new ThreadLocal<>();
+
+    private final T service;
+    private final RpcClientProxy client;
+    private final List<Entry> entries = new ArrayList<>();
+    // add 中登记的调用，用来检查一次 add 恰好发起一个调用
+    private Entry collected;
+    private boolean executed;
+
+    public RpcBatch(T service, RpcClientProxy client) {
+        this.service = service;
+        this.client = client;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> CompletableFuture<R> add(Function<T, R> invocation) {
+        if (executed) {
+            throw new IllegalStateException("批量调用已经执行");
+        }
+        COLLECTING.set(this);
+        try {
+            invocation.apply(service);
+            if (collected == null) {
+                throw new IllegalStateException("add 中没有发起任何远程调用");
+            }
+            entries.add(collected);
+            return (CompletableFuture<R>) collected.future;
+        } finally {
+            COLLECTING.remove();
+            collected = null;
+        }
+    }
+
+    /**
+     * 服务端并行执行所有调用。返回的 future 在全部结果分发完后完成，单个调用的失败只体现在它自己的 future 上；
+     * 整个请求失败(超时、重试耗尽等)时所有调用都以同一个错误结束
+     */
+    public CompletableFuture<Void> execute() {
+        return execute(true);
+    }
+
+    /**
+     * 服务端按添加的顺序逐个执行，适合后面的调用依赖前面调用的副作用的场景
+     */
+    public CompletableFuture<Void> executeInOrder() {
+        return execute(false);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private CompletableFuture<Void> execute(boolean parallel) {
+        if (executed) {
+            throw new IllegalStateException("批量调用已经执行");
+        }
+        executed = true;
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return client.invokeBatch(entries, parallel);
+    }
+
+    static RpcBatch<?> collecting() {
+        return COLLECTING.get();
+    }
+
+    /**
+     * 由代理在 add 期间调用，记录调用而不发送
+     */
+    void collect(Method method, Object[] args) {
+        if (collected != null) {
+            throw new IllegalStateException("一次 add 只能发起一个远程调用");
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == Iterator.class || returnType == StreamObserver.class || returnType == Blob.class
+                || Arrays.asList(method.getParameterTypes()).contains(Blob.class)
+                || CompletableFuture.class.isAssignableFrom(returnType) || method.isAnnotationPresent(OneWay.class)) {
+            throw new IllegalArgumentException("批量调用只支持普通的同步方法: " + method);
+        }
+        if (!entries.isEmpty() && entries.get(0).method.getDeclaringClass() != method.getDeclaringClass()) {
+            throw new IllegalArgumentException("批量调用中的调用必须属于同一个服务接口: " + method);
+        }
+        collected = new Entry(method, args == null ? new Object[0] : args);
+    }
+
+    /**
+     * 批量调用中的一个调用
+     */
+    static final class Entry {
+        final Method method;
+        final Object[] args;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Entry(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+    }
+}
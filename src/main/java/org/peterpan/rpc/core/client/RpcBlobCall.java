@@ -0,0 +1,220 @@
+package org.peterpan.rpc.core.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.core.stream.BlobSink;
+import org.peterpan.rpc.core.stream.SerialExecutor;
+import org.peterpan.rpc.core.stream.StreamCredit;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.transfer.connection.RpcConnection;
+import org.peterpan.rpc.core.transfer.connection.StreamListener;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 参数或者返回值含有 Blob 的调用
+ *
+ * 走流式调用的通道：有 Blob 参数时等服务端放开窗口后按块上传再半关闭；
+ * 返回 Blob 时把收到的 STREAM_BLOB 在回调线程上写进临时文件，服务端半关闭时调用完成。
+ * 调用超时按"没有进展的时间"计算，大文件传输只要一直有数据在走就不会超时
+ */
+@Slf4j
+public class RpcBlobCall implements StreamListener {
+
+    private final long requestId;
+    private final byte serializationType;
+    private final int window;
+    private final long timeoutMillis;
+    // 方法返回 Blob
+    private final boolean blobResult;
+    // 上传方向的发送窗口
+    private final StreamCredit credit = new StreamCredit();
+    private final SerialExecutor callbacks = new SerialExecutor(RpcClientStream.CALLBACK_EXECUTOR);
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private volatile RpcConnection connection;
+    private volatile long lastProgressTime = System.currentTimeMillis();
+
+    // 以下字段只在回调线程上访问
+    private BlobSink sink;
+    private Object value;
+    private int consumedSinceUpdate;
+
+    public RpcBlobCall(long requestId, byte serializationType, int window, long timeoutMillis, boolean blobResult) {
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.window = Math.max(window, 1);
+        this.timeoutMillis = timeoutMillis;
+        this.blobResult = blobResult;
+    }
+
+    /**
+     * 流打开之后绑定连接，并授予服务端初始窗口
+     */
+    void start(RpcConnection connection) throws Exception {
+        this.connection = connection;
+        sendFrame(MsgType.STREAM_WINDOW_UPDATE, window);
+    }
+
+    /**
+     * 上传 Blob，服务端每放开一个窗口发送一块，最后半关闭
+     */
+    void upload(Blob blob) throws Exception {
+        try {
+            StreamFrames.sendBlob(connection::sendStreamFrame, requestId, serializationType, blob, () -> {
+                boolean acquired = credit.acquire(timeoutMillis);
+                lastProgressTime = System.currentTimeMillis();
+                return acquired;
+            });
+            sendFrame(MsgType.STREAM_HALF_CLOSE, null);
+        } catch (Exception e) {
+            // 服务端提前结束了调用(比如拒绝请求)，以服务端给出的结果为准
+            if (!result.isDone()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 等待调用完成，连续 timeout 没有任何进展时取消
+     */
+    Object await() throws Throwable {
+        while (true) {
+            try {
+                return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                if (System.currentTimeMillis() - lastProgressTime >= timeoutMillis) {
+                    cancel();
+                    throw new TimeoutException("requestID=" + requestId + ", 超过" + timeoutMillis + "ms没有收到数据");
+                }
+            }
+        }
+    }
+
+    /**
+     * 放弃调用：通知服务端取消，删除已经收到的部分
+     */
+    void cancel() {
+        if (result.isDone()) {
+            return;
+        }
+        credit.cancel();
+        RpcConnection conn = connection;
+        if (conn != null) {
+            try {
+                sendFrame(MsgType.STREAM_CANCEL, null);
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送取消失败", requestId, e);
+            }
+            conn.closeStream(requestId);
+        }
+        callbacks.execute(() -> fail(new IOException("requestID=" + requestId + ", 调用已取消")));
+    }
+
+    @Override
+    public boolean onFrame(RpcProtocol frame) {
+        lastProgressTime = System.currentTimeMillis();
+        byte msgType = frame.getHeader().getMsgType();
+        if (msgType == MsgType.STREAM_WINDOW_UPDATE.ordinal()) {
+            try {
+                Integer credits = (Integer) StreamFrames.decode(frame);
+                if (credits != null) {
+                    credit.grant(credits);
+                }
+            } catch (Exception e) {
+                log.warn("requestID={}, 解析流控窗口失败", requestId, e);
+            }
+            return false;
+        }
+        if (msgType == MsgType.STREAM_BLOB.ordinal() || msgType == MsgType.STREAM_DATA.ordinal()) {
+            callbacks.execute(() -> deliver(frame));
+            return false;
+        }
+        // 服务端半关闭或者请求被拒绝，调用结束
+        credit.cancel();
+        callbacks.execute(() -> complete(frame));
+        return true;
+    }
+
+    @Override
+    public void onConnectionClosed(Throwable cause) {
+        credit.cancel();
+        callbacks.execute(() -> fail(cause));
+    }
+
+    private void deliver(RpcProtocol frame) {
+        if (result.isDone()) {
+            StreamFrames.discard(frame);
+            return;
+        }
+        try {
+            if (frame.getHeader().getMsgType() == MsgType.STREAM_BLOB.ordinal()) {
+                if (sink == null) {
+                    sink = new BlobSink();
+                }
+                sink.write(frame);
+            } else {
+                value = StreamFrames.decode(frame);
+            }
+        } catch (Exception e) {
+            StreamFrames.discard(frame);
+            cancel();
+            fail(e);
+            return;
+        }
+        // 消费过半窗口时补发，避免每块都发送一帧流控
+        if (++consumedSinceUpdate >= Math.max(window / 2, 1)) {
+            try {
+                sendFrame(MsgType.STREAM_WINDOW_UPDATE, consumedSinceUpdate);
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送流控窗口失败", requestId, e);
+            }
+            consumedSinceUpdate = 0;
+        }
+    }
+
+    private void complete(RpcProtocol frame) {
+        Object payload;
+        try {
+            payload = StreamFrames.decode(frame);
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        if (frame.getHeader().getStatus() != StatusConstants.NORMAL) {
+            String message = StreamFrames.errorMessage(frame.getHeader().getStatus(), payload);
+            fail(new RuntimeException("requestID=" + requestId + ", 调用失败: " + message));
+            return;
+        }
+        try {
+            // 返回 Blob 时结果是临时文件，否则是 STREAM_DATA 携带的返回值；空 Blob 不会有任何 STREAM_BLOB 帧
+            if (sink != null) {
+                result.complete(sink.finish());
+            } else {
+                result.complete(blobResult ? Blob.ofBytes(new byte[0]) : value);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (result.completeExceptionally(cause) && sink != null) {
+            sink.discard();
+        }
+    }
+
+    private void sendFrame(MsgType msgType, Object payload) throws Exception {
+        StreamFrames.send(connection::sendStreamFrame, msgType, requestId, serializationType, StatusConstants.NORMAL, payload);
+    }
+}
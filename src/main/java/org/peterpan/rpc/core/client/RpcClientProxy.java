@@ -1,20 +1,35 @@
 package org.peterpan.rpc.core.client;
 
 import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.annotation.OneWay;
 import org.peterpan.rpc.common.MsgType;
 import org.peterpan.rpc.common.ProtocolConstants;
 import org.peterpan.rpc.common.ServiceMeta;
 import org.peterpan.rpc.common.StatusConstants;
 import org.peterpan.rpc.config.FilterConfig;
 import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.client.cache.CacheStats;
+import org.peterpan.rpc.core.client.cache.ResponseCache;
+import org.peterpan.rpc.core.codec.FrameTooLongException;
 import org.peterpan.rpc.core.codec.RpcDecoder;
 import org.peterpan.rpc.core.codec.RpcEncoder;
+import org.peterpan.rpc.core.codec.compress.CompressorFactory;
 import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
+import org.peterpan.rpc.core.context.RpcContext;
 import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcBatchRequestBody;
+import org.peterpan.rpc.core.protocol.body.RpcBatchResponseBody;
 import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
 import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
 import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.core.stream.StreamObserver;
 import org.peterpan.rpc.core.transfer.RpcClientTransfer;
+import org.peterpan.rpc.core.transfer.ServerException;
+import org.peterpan.rpc.core.transfer.ServerOverloadedException;
+import org.peterpan.rpc.core.transfer.connection.RpcConnection;
+import org.peterpan.rpc.core.transfer.connection.StreamListener;
 import org.peterpan.rpc.filter.FilterChain;
 import org.peterpan.rpc.filter.FilterData;
 import org.peterpan.rpc.registry.IRegistryService;
@@ -25,10 +40,17 @@ import org.peterpan.rpc.router.tolerant.FaultTolerantType;
 import org.peterpan.rpc.router.tolerant.IFaultTolerantHandler;
 import org.peterpan.rpc.util.RequestIdGenerator;
 import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+import org.peterpan.rpc.util.timer.HashedWheelTimer;
+import org.peterpan.rpc.util.timer.Timeout;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -47,11 +69,25 @@ public class RpcClientProxy implements InvocationHandler {
     private FaultTolerantType faultTolerantType; // 容错类型
     private int retryCount; // 重试次数
     private long timeout; // 超时控制
+    private final RpcClientTransfer rpcClient = new RpcClientTransfer(); // 传输层(共享连接池)
+
+    // 所有调用共用的超时时间轮，登记/取消都是O(1)，不为每个调用占用线程
+    private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer("rpc-timeout",
+            RpcConfig.getInstance().getTimerTickMillis(), TimeUnit.MILLISECONDS, RpcConfig.getInstance().getTimerWheelSize());
+
+    // 所有引用共用的响应缓存，只缓存标注了 @Cached 或者在配置文件中开启了缓存的方法
+    private static final ResponseCache RESPONSE_CACHE = new ResponseCache(
+            RpcConfig.getInstance().getClientCacheMaxSize(), RpcConfig.getInstance().getCacheTtls());
+
+    // 本进程注册了的服务直接调用，不经过注册中心、序列化和网络
+    private static final LocalInvoker LOCAL_INVOKER = new LocalInvoker(RpcConfig.getInstance().isLocalInvocationEnabled(),
+            RpcConfig.getInstance().isLocalInvocationCopy(), RpcConfig.getInstance().getSerializationByte());
 
     public RpcClientProxy(RpcConfig rpcConfig) throws Exception {
         // 加载组件
         RegistryFactory.init();
         SerializationFactory.init();
+        CompressorFactory.init();
         FilterConfig.initClientFilter();
 
         this.rpcConfig = rpcConfig;
@@ -72,47 +108,381 @@ public class RpcClientProxy implements InvocationHandler {
         );
     }
 
+    /**
+     * 异步引用，接口方法保持同步签名，通过 RpcAsyncReference.call 拿到 CompletableFuture
+     */
+    public <T> RpcAsyncReference<T> getAsyncReference(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+        return new RpcAsyncReference<>(getService(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout));
+    }
+
+    /**
+     * 单向引用，通过 RpcOneWayReference.send 发起的调用不等待回复
+     */
+    public <T> RpcOneWayReference<T> getOneWayReference(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+        return new RpcOneWayReference<>(getService(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout));
+    }
+
+    /**
+     * 批量调用，通过 RpcBatch.add 记录的调用在 execute 时装进一个请求帧发出
+     */
+    public <T> RpcBatch<T> newBatch(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+        return new RpcBatch<>(getService(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout), this);
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // 通过 RpcBatch.add 发起的调用：只记录，execute 时一起发送
+        RpcBatch<?> batch = RpcBatch.collecting();
+        if (batch != null) {
+            batch.collect(method, args);
+            return defaultValue(method.getReturnType());
+        }
+        // 接口方法返回 Iterator：服务端流；返回 StreamObserver：客户端流/双向流
+        if (method.getReturnType() == Iterator.class || method.getReturnType() == StreamObserver.class) {
+            return invokeStream(method, args);
+        }
+        // 参数或者返回值是 Blob：按块传输原始字节
+        if (method.getReturnType() == Blob.class || Arrays.asList(method.getParameterTypes()).contains(Blob.class)) {
+            return invokeBlob(method, args);
+        }
+        // 标注了 @OneWay 的方法，或者通过 RpcOneWayReference 发起的调用：写出请求就返回
+        if (method.isAnnotationPresent(OneWay.class) || RpcOneWayReference.isSending()) {
+            return invokeOneWay(method, args);
+        }
+        CompletableFuture<Object> future = invokeCached(method, args);
+
+        // 接口方法本身返回 CompletableFuture：直接把 future 交给调用方
+        if (CompletableFuture.class.isAssignableFrom(method.getReturnType())) {
+            return future;
+        }
+        // 通过 RpcAsyncReference 发起的异步调用：登记 future，方法本身返回默认值
+        if (RpcAsyncReference.isCapturing()) {
+            RpcAsyncReference.capture(future);
+            return defaultValue(method.getReturnType());
+        }
+        // 同步调用
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            // 调用线程被中断：放弃这次调用，由传输层发送 CANCEL，服务端不再继续执行
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * 响应缓存的命中、未命中和淘汰统计
+     */
+    public CacheStats getCacheStats() {
+        return RESPONSE_CACHE.stats();
+    }
+
+    public void invalidateCache() {
+        RESPONSE_CACHE.invalidateAll();
+    }
+
+    /**
+     * 开启了响应缓存的方法先查缓存，命中时不经过注册中心和网络；没有命中时发起调用，成功后写入缓存，
+     * 调用期间缓存被清空过时结果可能已经过时，不写入
+     */
+    private CompletableFuture<Object> invokeCached(Method method, Object[] args) throws Throwable {
+        String serviceKey = RpcServiceNameBuilder.buildServiceKey(method.getDeclaringClass().getName(), serviceVersion);
+        ResponseCache.Key key = RESPONSE_CACHE.keyOf(serviceKey, method, args);
+        if (key == null) {
+            return invokeAsync(method, args);
+        }
+        Object cached = RESPONSE_CACHE.get(key);
+        if (cached != ResponseCache.MISS) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Object> future = invokeAsync(method, args);
+        // 容错策略忽略失败时结果为 null，null 不会写入缓存
+        future.thenAccept(value -> RESPONSE_CACHE.put(key, value));
+        return future;
+    }
+
+    /**
+     * 发起一次远程调用，返回的 future 在响应到达(或者重试耗尽)时完成，全程不占用等待线程
+     */
+    private CompletableFuture<Object> invokeAsync(Method method, Object[] args) throws Throwable {
+        Object localService = LOCAL_INVOKER.find(method, serviceVersion);
+        if (localService != null) {
+            // 通过 RpcAsyncReference 发起的调用不能占用调用线程
+            return invokeLocal(localService, method, args, RpcAsyncReference.isCapturing());
+        }
+        RpcInvocation invocation = prepareInvocation(method, args, MsgType.REQUEST);
+        PooledByteBuffer bytes = invocation.rpcRequest.getBody();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        // 调用结束(成功、失败或者重试耗尽)后归还请求体的缓冲区
+        result.whenComplete((r, e) -> bytes.release());
+        RpcContext context = RpcContext.current();
+        if (context != null) {
+            // 在服务实现中发起的调用：上游调用被取消时一起取消
+            context.addCancelListener(() -> result.cancel(false));
+        }
+        sendWithRetry(invocation, invocation.serviceMeta, 1, result);
+        return result;
+    }
+
+    /**
+     * 服务实现就在本进程：执行客户端的前置、后置拦截器，中间直接调用实现。
+     * 没有超时、重试和容错，服务实现抛出的异常原样交给调用方；async 为 true 时在回调线程池上执行，调用线程不等待
+     */
+    private CompletableFuture<Object> invokeLocal(Object serviceBean, Method method, Object[] args, boolean async) {
+        FilterData filterData = new FilterData(newRequestBody(method, args));
+        FilterConfig.getClientBeforeFilterChain().doFilter(filterData);
+        CompletableFuture<Object> future = async
+                ? LOCAL_INVOKER.invoke(serviceBean, method, args, RpcClientStream.CALLBACK_EXECUTOR)
+                : LOCAL_INVOKER.invoke(serviceBean, method, args);
+        return future.thenApply(value -> {
+            FilterConfig.getClientAfterFilterChain().doFilter(filterData);
+            return value;
+        });
+    }
+
+    /**
+     * 发起流式调用。元素可能已经被部分消费，中途失败无法透明重试，所以只在建立连接时尝试一次。
+     * 参数中的 StreamObserver 是调用方接收响应的 observer，只留在本地，发送时置空
+     */
+    private Object invokeStream(Method method, Object[] args) throws Throwable {
+        StreamObserver<?> responseObserver = null;
+        Object[] params = args == null ? new Object[0] : args.clone();
+        Class<?>[] paramTypes = method.getParameterTypes();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramTypes[i] == StreamObserver.class) {
+                responseObserver = (StreamObserver<?>) params[i];
+                params[i] = null;
+            }
+        }
+        RpcInvocation invocation = prepareInvocation(method, params, MsgType.STREAM_OPEN);
+        MsgHeader reqHeader = invocation.rpcRequest.getHeader();
+        StreamListener listener;
+        if (method.getReturnType() == Iterator.class) {
+            listener = new RpcStreamIterator<>(reqHeader.getRequestId(), reqHeader.getSerialization(),
+                    rpcConfig.getStreamWindow(), invocation.timeout);
+        } else if (responseObserver != null) {
+            listener = new RpcClientStream(reqHeader.getRequestId(), reqHeader.getSerialization(),
+                    rpcConfig.getStreamWindow(), invocation.timeout, responseObserver);
+        } else {
+            invocation.rpcRequest.getBody().release();
+            throw new IllegalArgumentException("返回 StreamObserver 的方法需要一个接收响应的 StreamObserver 参数: " + method.getName());
+        }
+        try {
+            RpcConnection connection = rpcClient.openStream(invocation.rpcRequest, invocation.serviceMeta, listener);
+            if (listener instanceof RpcStreamIterator) {
+                ((RpcStreamIterator<?>) listener).start(connection);
+            } else {
+                ((RpcClientStream) listener).start(connection);
+            }
+        } catch (Throwable e) {
+            throw new RuntimeException("requestID=" + reqHeader.getRequestId() + ", 流式调用失败, serviceKey=" + invocation.serviceKey + ", interface=" + invocation.rpcRequestBody.getMethodName(), e);
+        } finally {
+            // 写出的帧自己持有一份引用
+            invocation.rpcRequest.getBody().release();
+        }
+        FilterConfig.getClientAfterFilterChain().doFilter(invocation.filterData);
+        return listener;
+    }
+
+    /**
+     * 发起 Blob 调用。Blob 参数不参与序列化，打开流之后按块上传；返回 Blob 时服务端按块回传到本地临时文件，
+     * 调用方用完后应当 delete。与流式调用一样只在建立连接时尝试一次，超时按没有进展的时间计算
+     */
+    private Object invokeBlob(Method method, Object[] args) throws Throwable {
+        Blob upload = null;
+        Object[] params = args == null ? new Object[0] : args.clone();
+        Class<?>[] paramTypes = method.getParameterTypes();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramTypes[i] == Blob.class) {
+                if (upload != null) {
+                    throw new IllegalArgumentException("一次调用只能上传一个 Blob: " + method.getName());
+                }
+                upload = (Blob) params[i];
+                if (upload == null) {
+                    throw new IllegalArgumentException("Blob 参数不能为 null: " + method.getName());
+                }
+                params[i] = null;
+            }
+        }
+        RpcInvocation invocation = prepareInvocation(method, params, MsgType.STREAM_OPEN);
+        MsgHeader reqHeader = invocation.rpcRequest.getHeader();
+        RpcBlobCall call = new RpcBlobCall(reqHeader.getRequestId(), reqHeader.getSerialization(),
+                rpcConfig.getStreamWindow(), invocation.timeout, method.getReturnType() == Blob.class);
+        try {
+            RpcConnection connection = rpcClient.openStream(invocation.rpcRequest, invocation.serviceMeta, call);
+            call.start(connection);
+            if (upload != null) {
+                call.upload(upload);
+            }
+        } catch (Throwable e) {
+            call.cancel();
+            throw new RuntimeException("requestID=" + reqHeader.getRequestId() + ", Blob 调用失败, serviceKey=" + invocation.serviceKey + ", interface=" + invocation.rpcRequestBody.getMethodName(), e);
+        } finally {
+            // 写出的帧自己持有一份引用
+            invocation.rpcRequest.getBody().release();
+        }
+        Object retObject = call.await();
+        log.info("requestID={}, rpc 调用成功, serviceKey={}, interface={}", reqHeader.getRequestId(), invocation.serviceKey, invocation.rpcRequestBody.getMethodName());
+        FilterConfig.getClientAfterFilterChain().doFilter(invocation.filterData);
+        return retObject;
+    }
+
+    /**
+     * 单向调用：写出请求帧就返回，服务端执行方法但不回复，没有超时和重试
+     */
+    private Object invokeOneWay(Method method, Object[] args) throws Throwable {
+        if (method.isAnnotationPresent(OneWay.class) && method.getReturnType() != void.class) {
+            throw new IllegalStateException("@OneWay 方法必须返回 void: " + method);
+        }
+        Object localService = LOCAL_INVOKER.find(method, serviceVersion);
+        if (localService != null) {
+            invokeLocal(localService, method, args, true).whenComplete((r, e) -> {
+                if (e != null) {
+                    log.warn("同进程的单向调用失败, interface={}", method.getName(), e);
+                }
+            });
+            return defaultValue(method.getReturnType());
+        }
+        RpcInvocation invocation = prepareInvocation(method, args, MsgType.ONE_WAY);
+        MsgHeader reqHeader = invocation.rpcRequest.getHeader();
+        try {
+            rpcClient.sendOneWay(invocation.rpcRequest, invocation.serviceMeta);
+        } catch (IOException e) {
+            throw new RuntimeException("requestID=" + reqHeader.getRequestId() + ", 单向调用发送失败, serviceKey=" + invocation.serviceKey + ", interface=" + invocation.rpcRequestBody.getMethodName(), e);
+        } finally {
+            // 写出的帧自己持有一份引用
+            invocation.rpcRequest.getBody().release();
+        }
+        FilterConfig.getClientAfterFilterChain().doFilter(invocation.filterData);
+        return defaultValue(method.getReturnType());
+    }
+
+    /**
+     * 发起批量调用：所有调用编码进一个 BATCH 帧，整体按普通调用的方式超时、重试，
+     * 响应到达后按下标把结果或者错误分发给各个调用的 future
+     */
+    CompletableFuture<Void> invokeBatch(List<RpcBatch.Entry> entries, boolean parallel) {
+        RpcInvocation invocation;
+        List<FilterData> filterDatas = new ArrayList<>(entries.size());
+        try {
+            invocation = prepareBatchInvocation(entries, parallel, filterDatas);
+        } catch (Throwable e) {
+            for (RpcBatch.Entry entry : entries) {
+                entry.future.completeExceptionally(e);
+            }
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        PooledByteBuffer bytes = invocation.rpcRequest.getBody();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        result.whenComplete((r, e) -> bytes.release());
+        RpcContext context = RpcContext.current();
+        if (context != null) {
+            context.addCancelListener(() -> result.cancel(false));
+        }
+        sendWithRetry(invocation, invocation.serviceMeta, 1, result);
+        long requestId = invocation.rpcRequest.getHeader().getRequestId();
+        return result.handle((response, e) -> {
+            for (int i = 0; i < entries.size(); i++) {
+                RpcBatch.Entry entry = entries.get(i);
+                if (e != null) {
+                    entry.future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                } else if (response == null) {
+                    // 容错策略忽略了失败
+                    entry.future.complete(null);
+                } else {
+                    RpcBatchResponseBody batchResponse = (RpcBatchResponseBody) response;
+                    String error = batchResponse.getErrors()[i];
+                    if (error != null) {
+                        entry.future.completeExceptionally(new RuntimeException("requestID=" + requestId + ", 批量调用中的第" + i
+                                + "个调用失败, interface=" + entry.method.getName() + ": " + error));
+                        continue;
+                    }
+                    try {
+                        FilterConfig.getClientAfterFilterChain().doFilter(filterDatas.get(i));
+                        entry.future.complete(batchResponse.getResults()[i]);
+                    } catch (Throwable ex) {
+                        entry.future.completeExceptionally(ex);
+                    }
+                }
+            }
+            if (e != null) {
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 编码批量请求，每个调用分别执行前置拦截器，filterDatas 按顺序收集各个调用的拦截器上下文
+     */
+    private RpcInvocation prepareBatchInvocation(List<RpcBatch.Entry> entries, boolean parallel, List<FilterData> filterDatas) throws Throwable {
+        byte serializationType = rpcConfig.getSerializationByte();
+        MsgHeader reqHeader = newRequestHeader(serializationType, MsgType.BATCH);
+
+        List<RpcRequestBody> requests = new ArrayList<>(entries.size());
+        for (RpcBatch.Entry entry : entries) {
+            RpcRequestBody rpcRequestBody = newRequestBody(entry.method, entry.args);
+            FilterData filterData = new FilterData(rpcRequestBody);
+            FilterConfig.getClientBeforeFilterChain().doFilter(filterData);
+            requests.add(rpcRequestBody);
+            filterDatas.add(filterData);
+        }
+        RpcBatchRequestBody batchBody = RpcBatchRequestBody.builder()
+                .requests(requests)
+                .parallel(parallel)
+                .build();
+        PooledByteBuffer bytes = RpcEncoder.encode(batchBody, serializationType);
+
+        RpcProtocol rpcRequest = new RpcProtocol();
+        rpcRequest.setHeader(reqHeader);
+        rpcRequest.setBody(bytes);
+        // 日志和容错只需要服务和调用的概况，节点按服务键的哈希选择
+        RpcRequestBody first = requests.get(0);
+        RpcRequestBody summary = RpcRequestBody.builder()
+                .serviceVersion(first.getServiceVersion())
+                .interfaceName(first.getInterfaceName())
+                .methodName("batch[" + requests.size() + "]")
+                .parameters(new Object[0])
+                .build();
+        return newInvocation(rpcRequest, summary, null);
+    }
+
+    /**
+     * 编码请求、执行前置拦截器并选出服务节点。返回的请求体由调用方负责释放
+     */
+    private RpcInvocation prepareInvocation(Method method, Object[] args, MsgType requestType) throws Throwable {
 
         // 1、将调用所需信息编码成bytes[]，即有了调用编码【codec层】
         long startTime = System.nanoTime();
 
         byte serializationType = rpcConfig.getSerializationByte();
-        byte msgType = (byte) MsgType.REQUEST.ordinal();
 
         // 构建消息头
-        MsgHeader reqHeader = new MsgHeader();
-        reqHeader.setMagic(ProtocolConstants.MAGIC);
-        reqHeader.setVersion(ProtocolConstants.VERSION);
-        reqHeader.setSerialization(serializationType); // 配置文件读取方
-        reqHeader.setMsgType(msgType); // 注意这里是请求REQUEST
-        reqHeader.setStatus((byte) StatusConstants.NORMAL);
-        reqHeader.setRequestId(RequestIdGenerator.generateRequestId());
+        MsgHeader reqHeader = newRequestHeader(serializationType, requestType);
 
         // 构建消息体
-        RpcRequestBody rpcRequestBody = RpcRequestBody.builder()
-                .serviceVersion(serviceVersion)
-                .interfaceName(method.getDeclaringClass().getName())
-                .methodName(method.getName())
-                .paramTypes(method.getParameterTypes())
-                .parameters(args)
-                .build();
+        RpcRequestBody rpcRequestBody = newRequestBody(method, args);
 
-        // 序列化
-        byte[] bytes = RpcEncoder.encode(rpcRequestBody, serializationType);
+        // 序列化，直接写入池化缓冲区，重试时复用，调用结束后释放
+        PooledByteBuffer bytes = RpcEncoder.encode(rpcRequestBody, serializationType);
 
         // 拦截器的上下文
         final FilterData filterData = new FilterData(rpcRequestBody);
         try {
             FilterConfig.getClientBeforeFilterChain().doFilter(filterData);
         }catch (Throwable e){
+            bytes.release();
             throw e;
         }
 
         long endTime = System.nanoTime();
         long executionTime = (endTime - startTime) / 1_000_000; // 计算执行时间(毫秒为单位)
-        int byteSize = bytes.length;
+        int byteSize = bytes.readableBytes();
 //        log.info("requestID={}, [执行{}序列化方式] - [{}_{}${}] - 序列化执行时间={}ms, 数据大小={}byte", reqHeader.getRequestId(), SerializationTypeEnum.findByType(serializationType), method.getDeclaringClass().getName(), serviceVersion, method.getName(), executionTime, byteSize);
 
         // 2、创建RPC协议，将Header、Body的内容设置好（Body中存放调用编码）【protocol层】
@@ -120,86 +490,229 @@ public class RpcClientProxy implements InvocationHandler {
         rpcRequest.setHeader(reqHeader);
         rpcRequest.setBody(bytes);
 
+        return newInvocation(rpcRequest, rpcRequestBody, filterData);
+    }
+
+    private MsgHeader newRequestHeader(byte serializationType, MsgType requestType) {
+        MsgHeader reqHeader = new MsgHeader();
+        reqHeader.setMagic(ProtocolConstants.MAGIC);
+        reqHeader.setVersion(ProtocolConstants.VERSION);
+        reqHeader.setSerialization(serializationType); // 配置文件读取方
+        reqHeader.setMsgType((byte) requestType.ordinal()); // 注意这里是请求REQUEST(流式调用为STREAM_OPEN)
+        reqHeader.setStatus((byte) StatusConstants.NORMAL);
+        reqHeader.setRequestId(RequestIdGenerator.generateRequestId());
+        return reqHeader;
+    }
+
+    private RpcRequestBody newRequestBody(Method method, Object[] args) {
+        return RpcRequestBody.builder()
+                .serviceVersion(serviceVersion)
+                .interfaceName(method.getDeclaringClass().getName())
+                .methodName(method.getName())
+                .paramTypes(method.getParameterTypes())
+                .parameters(args == null ? new Object[0] : args)
+                .build();
+    }
+
+    /**
+     * 选出服务节点。失败时释放请求体，成功时请求体由调用方负责释放
+     */
+    private RpcInvocation newInvocation(RpcProtocol rpcRequest, RpcRequestBody rpcRequestBody, FilterData filterData) throws Throwable {
+        PooledByteBuffer bytes = rpcRequest.getBody();
         // 3、发送RpcRequest，获得RpcResponse【transfer层】
         // 与注册中心交互
         String serviceKey = RpcServiceNameBuilder.buildServiceKey(rpcRequestBody.getInterfaceName(), rpcRequestBody.getServiceVersion());
         Object[] params = rpcRequestBody.getParameters();
         // 计算哈希
-        int invokerHashCode = params.length > 0 ? params[0].hashCode() : serviceKey.hashCode();
-        // 根据服务key以及哈希获取服务提供方节点
-        ServiceMeta curServiceMeta = registryCenter.
-                discovery(serviceKey, invokerHashCode, loadBalancerType);
-        // 供故障转移使用
-        List<ServiceMeta> serviceMetas = registryCenter.discoveries(serviceKey);
-        IFaultTolerantHandler faultTolerantHandler = FaultTolerantFactory.get(faultTolerantType);
-        int count = 1;
-        int retryCount = this.retryCount;
-        RpcClientTransfer rpcClient = new RpcClientTransfer();
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        while (count < retryCount) {
-            ServiceMeta finalCurServiceMeta = curServiceMeta;
-            Future<RpcProtocol> future = executorService.submit(() -> rpcClient.sendRequest(rpcRequest, finalCurServiceMeta));
-            try {
-                RpcProtocol rpcResponse = future.get(timeout, TimeUnit.MILLISECONDS);
-
-                // 4、解析RpcResponse，也就是在解析rpc协议【protocol层】
-                MsgHeader respHeader = rpcResponse.getHeader(); // 来自于响应的header
-                byte[] body = rpcResponse.getBody();
-                if (respHeader.getMagic() == ProtocolConstants.MAGIC) {
-                    // 将RpcResponse的body中的返回编码，解码成我们需要的对象Object并返回【codec层】
-                    RpcResponseBody rpcResponseBody = (RpcResponseBody) RpcDecoder.decode(body, respHeader.getSerialization(), respHeader.getMsgType());
-                    Object retObject = rpcResponseBody.getRetObject();
-                    log.info("requestID={}, rpc 调用成功, serviceKey={}, interface={}", respHeader.getRequestId(), serviceKey, rpcRequestBody.getMethodName());
-                    try {
-                        FilterConfig.getClientAfterFilterChain().doFilter(filterData);
-                    }catch (Throwable e){
-                        throw e;
-                    }
-                    return retObject;
-                }
-            } catch (TimeoutException e) {
-                // 超时处理逻辑
-                future.cancel(true); // 尝试取消任务
-                String errorMsg = "RPC调用超时"; // 自定义错误信息
-                FaultTolerantContext ftCtx = faultTolerantHandler.tolerant(
-                        FaultTolerantContext.builder()
-                                .serviceKey(serviceKey)
-                                .methodName(rpcRequestBody.getMethodName())
-                                .errorMsg(errorMsg)
-                                .serviceMeta(curServiceMeta)
-                                .serviceMetas(serviceMetas)
-                                .count(count)
-                                .retryCount(retryCount)
-                                .requestId(reqHeader.getRequestId())
-                                .build()
-                        );
-                if (ftCtx == null) {
-                    return null;
+        int invokerHashCode = params.length > 0 && params[0] != null ? params[0].hashCode() : serviceKey.hashCode();
+        ServiceMeta curServiceMeta;
+        List<ServiceMeta> serviceMetas;
+        try {
+            // 根据服务key以及哈希获取服务提供方节点
+            curServiceMeta = registryCenter.
+                    discovery(serviceKey, invokerHashCode, loadBalancerType);
+            // 供故障转移使用
+            serviceMetas = registryCenter.discoveries(serviceKey);
+        } catch (Throwable e) {
+            bytes.release();
+            throw e;
+        }
+        // 负载均衡选中的节点刚回复过过载时，换一个没有过载的节点；都过载时仍然按原节点发送
+        ServiceMeta available = OverloadedProviders.select(curServiceMeta, serviceMetas);
+        if (available != null) {
+            curServiceMeta = available;
+        }
+
+        return new RpcInvocation(rpcRequest, rpcRequestBody, serviceKey, curServiceMeta, serviceMetas,
+                FaultTolerantFactory.get(faultTolerantType), retryCount, timeout, RpcContext.getDeadlineNanos(), filterData);
+    }
+
+    /**
+     * 发送一次请求，失败时交给容错策略决定是否换节点重试，重试在响应回调中继续，不阻塞线程
+     */
+    private void sendWithRetry(RpcInvocation invocation, ServiceMeta curServiceMeta, int count, CompletableFuture<Object> result) {
+        MsgHeader reqHeader = invocation.rpcRequest.getHeader();
+        if (result.isDone()) {
+            // 调用方已经取消
+            return;
+        }
+        if (count >= invocation.retryCount) {
+            result.completeExceptionally(new RuntimeException("requestID=" + reqHeader.getRequestId() + ", RPC调用失败，超过最大重试次数=" + invocation.retryCount + ", serviceKey=" + invocation.serviceKey + ", interface=" + invocation.rpcRequestBody.getMethodName()));
+            return;
+        }
+        long timeout = invocation.timeout;
+        if (invocation.deadlineNanos != 0) {
+            // 不超过上游剩余的时间，上游已经放弃时不再发出请求
+            long remaining = TimeUnit.NANOSECONDS.toMillis(invocation.deadlineNanos - System.nanoTime());
+            if (remaining <= 0) {
+                result.completeExceptionally(new TimeoutException("requestID=" + reqHeader.getRequestId() + ", 上游调用的截止时间已过"));
+                return;
+            }
+            timeout = Math.min(timeout, remaining);
+        }
+        // 剩余的超时时间随请求发给服务端，服务端不再执行已经过期的请求
+        reqHeader.setTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+        CompletableFuture<RpcProtocol> future = rpcClient.sendRequest(invocation.rpcRequest, curServiceMeta);
+        // 超时控制：到期时让挂起的请求以超时失败，走下面的容错流程
+        long attemptTimeout = timeout;
+        Timeout timeoutTask = TIMEOUT_TIMER.newTimeout(t -> future.completeExceptionally(
+                new TimeoutException("requestID=" + reqHeader.getRequestId() + ", 超时时间=" + attemptTimeout + "ms")),
+                attemptTimeout, TimeUnit.MILLISECONDS);
+        // 调用方取消整个调用时，取消正在进行的这次尝试，由传输层通知服务端
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete((rpcResponse, e) -> {
+            timeoutTask.cancel();
+            if (e == null) {
+                try {
+                    result.complete(handleResponse(invocation, rpcResponse));
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
                 }
-                count = ftCtx.getCount();
-            } catch (ExecutionException e) {
-                // 处理Future内部的异常
-                String errorMsg = "RPC调用失败:" + e.getCause().getMessage(); // 自定义错误信息
-                FaultTolerantContext ftCtx = faultTolerantHandler.tolerant(
-                        FaultTolerantContext.builder()
-                                .serviceKey(serviceKey)
-                                .methodName(rpcRequestBody.getMethodName())
-                                .errorMsg(errorMsg)
-                                .serviceMeta(curServiceMeta)
-                                .serviceMetas(serviceMetas)
-                                .count(count)
-                                .retryCount(retryCount)
-                                .requestId(reqHeader.getRequestId())
-                                .build()
-                );
-                if (ftCtx == null) {
-                    return null;
+                return;
+            }
+            if (result.isDone()) {
+                // 调用方已经取消，不再重试
+                return;
+            }
+            if (e instanceof FrameTooLongException) {
+                // 请求超过 maxFrameLength，没有发出；发给哪个节点都一样，不重试
+                result.completeExceptionally(e);
+                return;
+            }
+            if (e instanceof ServerException) {
+                // 服务端执行后无法返回结果(例如响应超长)，重试只会再执行一次
+                result.completeExceptionally(new RuntimeException("requestID=" + reqHeader.getRequestId() + ", RPC调用失败:" + e.getMessage()
+                        + ", serviceKey=" + invocation.serviceKey + ", interface=" + invocation.rpcRequestBody.getMethodName(), e));
+                return;
+            }
+            if (e instanceof ServerOverloadedException) {
+                // 服务端过载：请求没有被处理，不等超时也不看容错策略，立即换一个没有过载的节点
+                OverloadedProviders.markOverloaded(curServiceMeta, ((ServerOverloadedException) e).getRetryAfterMillis());
+                ServiceMeta nextServiceMeta = OverloadedProviders.selectOther(curServiceMeta, invocation.serviceMetas);
+                if (nextServiceMeta != null) {
+                    log.warn("requestID={}, 服务节点 {}:{} 过载, 转到 {}:{}", reqHeader.getRequestId(), curServiceMeta.getServiceAddr(), curServiceMeta.getServicePort(),
+                            nextServiceMeta.getServiceAddr(), nextServiceMeta.getServicePort());
+                    // 回调可能在连接的IO线程上，新节点需要建连时不能在IO线程上等待注册完成
+                    RpcClientStream.CALLBACK_EXECUTOR.execute(() -> sendWithRetry(invocation, nextServiceMeta, count + 1, result));
+                    return;
                 }
-                count = ftCtx.getCount();
             }
+            String errorMsg = e instanceof TimeoutException
+                    ? "RPC调用超时" // 超时处理逻辑
+                    : "RPC调用失败:" + e.getMessage(); // 自定义错误信息
+            FaultTolerantContext ftCtx = invocation.faultTolerantHandler.tolerant(
+                    FaultTolerantContext.builder()
+                            .serviceKey(invocation.serviceKey)
+                            .methodName(invocation.rpcRequestBody.getMethodName())
+                            .errorMsg(errorMsg)
+                            .serviceMeta(curServiceMeta)
+                            .serviceMetas(invocation.serviceMetas)
+                            .count(count)
+                            .retryCount(invocation.retryCount)
+                            .requestId(reqHeader.getRequestId())
+                            .build()
+            );
+            if (ftCtx == null) {
+                result.complete(null);
+                return;
+            }
+            ServiceMeta nextServiceMeta = ftCtx.getServiceMeta() != null ? ftCtx.getServiceMeta() : curServiceMeta;
+            RpcClientStream.CALLBACK_EXECUTOR.execute(() -> sendWithRetry(invocation, nextServiceMeta, ftCtx.getCount(), result));
+        });
+    }
 
+    private Object handleResponse(RpcInvocation invocation, RpcProtocol rpcResponse) throws Exception {
+        // 4、解析RpcResponse，也就是在解析rpc协议【protocol层】
+        MsgHeader respHeader = rpcResponse.getHeader(); // 来自于响应的header
+        PooledByteBuffer body = rpcResponse.getBody();
+        Object responseBody;
+        try {
+            if (respHeader.getMagic() != ProtocolConstants.MAGIC) {
+                return null;
+            }
+            // 将RpcResponse的body中的返回编码，解码成我们需要的对象Object并返回【codec层】
+            responseBody = RpcDecoder.decode(body, respHeader.getSerialization(), respHeader.getMsgType(), respHeader.getCompression());
+        } finally {
+            body.release();
         }
-        throw new RuntimeException("requestID=" + reqHeader.getRequestId() + ", RPC调用失败，超过最大重试次数=" + retryCount + ", serviceKey=" + serviceKey + ", interface=" + rpcRequestBody.getMethodName());
+        if (responseBody instanceof RpcBatchResponseBody) {
+            // 批量调用的结果由 invokeBatch 按调用分发，后置拦截器也在那里分别执行
+            log.info("requestID={}, rpc 批量调用成功, serviceKey={}, interface={}", respHeader.getRequestId(), invocation.serviceKey, invocation.rpcRequestBody.getMethodName());
+            return responseBody;
+        }
+        RpcResponseBody rpcResponseBody = (RpcResponseBody) responseBody;
+        Object retObject = rpcResponseBody.getRetObject();
+        log.info("requestID={}, rpc 调用成功, serviceKey={}, interface={}", respHeader.getRequestId(), invocation.serviceKey, invocation.rpcRequestBody.getMethodName());
+        FilterConfig.getClientAfterFilterChain().doFilter(invocation.filterData);
+        return retObject;
     }
-}
 
+    private static Object defaultValue(Class<?> returnType) {
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == char.class) {
+            return '\0';
+        }
+        return Array.get(Array.newInstance(returnType, 1), 0);
+    }
+
+    /**
+     * 一次调用在重试过程中不变的信息
+     */
+    private static class RpcInvocation {
+        final RpcProtocol rpcRequest;
+        final RpcRequestBody rpcRequestBody;
+        final String serviceKey;
+        final ServiceMeta serviceMeta; // 负载均衡选出的首个节点
+        final List<ServiceMeta> serviceMetas;
+        final IFaultTolerantHandler faultTolerantHandler;
+        final int retryCount;
+        final long timeout;
+        // 在服务实现中发起的调用继承上游的截止时间(System.nanoTime)，0 表示没有
+        final long deadlineNanos;
+        // 批量调用时为 null，各个调用的拦截器上下文单独保存
+        final FilterData filterData;
+
+        RpcInvocation(RpcProtocol rpcRequest, RpcRequestBody rpcRequestBody, String serviceKey, ServiceMeta serviceMeta, List<ServiceMeta> serviceMetas,
+                      IFaultTolerantHandler faultTolerantHandler, int retryCount, long timeout, long deadlineNanos, FilterData filterData) {
+            this.rpcRequest = rpcRequest;
+            this.rpcRequestBody = rpcRequestBody;
+            this.serviceKey = serviceKey;
+            this.serviceMeta = serviceMeta;
+            this.serviceMetas = serviceMetas;
+            this.faultTolerantHandler = faultTolerantHandler;
+            this.retryCount = retryCount;
+            this.timeout = timeout;
+            this.deadlineNanos = deadlineNanos;
+            this.filterData = filterData;
+        }
+    }
+}
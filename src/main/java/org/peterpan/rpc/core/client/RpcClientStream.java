@@ -0,0 +1,236 @@
+package org.peterpan.rpc.core.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.stream.SerialExecutor;
+import org.peterpan.rpc.core.stream.StreamCredit;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.stream.StreamObserver;
+import org.peterpan.rpc.core.transfer.connection.RpcConnection;
+import org.peterpan.rpc.core.transfer.connection.StreamListener;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端流/双向流在客户端的一端
+ *
+ * 作为返回给调用方的请求 observer：onNext 发送 STREAM_DATA，服务端的接收窗口用完时阻塞，
+ * 最多等待调用超时；onCompleted 发送 STREAM_HALF_CLOSE；onError 取消整个流。
+ * 服务端发来的元素在回调线程上按顺序交给调用方的响应 observer，消费后再向服务端放开接收窗口；
+ * 服务端半关闭即整个调用结束
+ */
+@Slf4j
+public class RpcClientStream implements StreamObserver<Object>, StreamListener {
+
+    // 响应回调可能阻塞(例如在回调里继续发送请求元素)，不能占用连接的IO线程
+    static final ExecutorService CALLBACK_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "rpc-stream-callback-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final long requestId;
+    private final byte serializationType;
+    private final int window;
+    private final long timeoutMillis;
+    private final StreamObserver<Object> responseObserver;
+    // 向服务端发送的窗口，服务端登记好接收方之后才放开
+    private final StreamCredit credit = new StreamCredit();
+    private final SerialExecutor callbacks = new SerialExecutor(CALLBACK_EXECUTOR);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile RpcConnection connection;
+    private volatile boolean halfClosed;
+
+    // 以下字段只在回调线程上访问
+    private boolean responseClosed;
+    private int consumedSinceUpdate;
+
+    @SuppressWarnings("unchecked")
+    public RpcClientStream(long requestId, byte serializationType, int window, long timeoutMillis, StreamObserver<?> responseObserver) {
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.window = Math.max(window, 1);
+        this.timeoutMillis = timeoutMillis;
+        this.responseObserver = (StreamObserver<Object>) responseObserver;
+    }
+
+    /**
+     * 流打开之后绑定连接，并授予服务端初始窗口
+     */
+    void start(RpcConnection connection) throws Exception {
+        this.connection = connection;
+        sendFrame(MsgType.STREAM_WINDOW_UPDATE, StatusConstants.NORMAL, window);
+    }
+
+    @Override
+    public void onNext(Object value) {
+        if (finished.get() || halfClosed) {
+            throw new IllegalStateException("requestID=" + requestId + ", 流已经结束");
+        }
+        boolean acquired;
+        try {
+            acquired = credit.acquire(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("requestID=" + requestId + ", 等待服务端接收窗口被中断", e);
+        }
+        if (!acquired) {
+            if (finished.get()) {
+                throw new IllegalStateException("requestID=" + requestId + ", 流已经结束");
+            }
+            cancel(new RuntimeException("requestID=" + requestId + ", 等待服务端接收窗口超时, 超时时间=" + timeoutMillis + "ms"));
+            throw new IllegalStateException("requestID=" + requestId + ", 等待服务端接收窗口超时, 超时时间=" + timeoutMillis + "ms");
+        }
+        try {
+            sendFrame(MsgType.STREAM_DATA, StatusConstants.NORMAL, value);
+        } catch (Exception e) {
+            throw new IllegalStateException("requestID=" + requestId + ", 发送流元素失败", e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        cancel(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        if (finished.get() || halfClosed) {
+            return;
+        }
+        halfClosed = true;
+        try {
+            sendFrame(MsgType.STREAM_HALF_CLOSE, StatusConstants.NORMAL, null);
+        } catch (Exception e) {
+            log.warn("requestID={}, 发送半关闭失败", requestId, e);
+        }
+    }
+
+    /**
+     * 调用方放弃：通知服务端取消，响应 observer 以取消结束
+     */
+    private void cancel(Throwable cause) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        credit.cancel();
+        RpcConnection conn = connection;
+        if (conn != null) {
+            try {
+                sendFrame(MsgType.STREAM_CANCEL, StatusConstants.NORMAL, String.valueOf(cause.getMessage()));
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送取消失败", requestId, e);
+            }
+            conn.closeStream(requestId);
+        }
+        CancellationException cancelled = new CancellationException("requestID=" + requestId + ", 流已取消");
+        cancelled.initCause(cause);
+        callbacks.execute(() -> closeResponse(cancelled));
+    }
+
+    @Override
+    public boolean onFrame(RpcProtocol frame) {
+        byte msgType = frame.getHeader().getMsgType();
+        if (msgType == MsgType.STREAM_WINDOW_UPDATE.ordinal()) {
+            try {
+                Integer credits = (Integer) StreamFrames.decode(frame);
+                if (credits != null) {
+                    credit.grant(credits);
+                }
+            } catch (Exception e) {
+                log.warn("requestID={}, 解析流控窗口失败", requestId, e);
+            }
+            return false;
+        }
+        if (msgType == MsgType.STREAM_DATA.ordinal()) {
+            callbacks.execute(() -> deliver(frame));
+            return false;
+        }
+        // 服务端半关闭(正常或者异常)或者请求被拒绝，整个调用结束，已排队的元素仍按顺序先交给调用方
+        finished.set(true);
+        credit.cancel();
+        callbacks.execute(() -> deliverEnd(frame));
+        return true;
+    }
+
+    @Override
+    public void onConnectionClosed(Throwable e) {
+        if (finished.compareAndSet(false, true)) {
+            credit.cancel();
+        }
+        callbacks.execute(() -> closeResponse(e));
+    }
+
+    private void deliver(RpcProtocol frame) {
+        if (responseClosed) {
+            StreamFrames.discard(frame);
+            return;
+        }
+        try {
+            responseObserver.onNext(StreamFrames.decode(frame));
+        } catch (Throwable e) {
+            log.error("requestID={}, 处理服务端流元素失败", requestId, e);
+            cancel(e);
+            return;
+        }
+        // 消费过半窗口时补发，避免每个元素都发送一帧流控
+        if (++consumedSinceUpdate >= Math.max(window / 2, 1)) {
+            try {
+                sendFrame(MsgType.STREAM_WINDOW_UPDATE, StatusConstants.NORMAL, consumedSinceUpdate);
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送流控窗口失败", requestId, e);
+            }
+            consumedSinceUpdate = 0;
+        }
+    }
+
+    private void deliverEnd(RpcProtocol frame) {
+        Object payload;
+        try {
+            payload = StreamFrames.decode(frame);
+        } catch (Exception e) {
+            closeResponse(e);
+            return;
+        }
+        if (frame.getHeader().getStatus() != StatusConstants.NORMAL) {
+            String message = StreamFrames.errorMessage(frame.getHeader().getStatus(), payload);
+            closeResponse(new RuntimeException("requestID=" + requestId + ", 流式调用失败: " + message));
+        } else {
+            closeResponse(null);
+        }
+    }
+
+    private void closeResponse(Throwable error) {
+        if (responseClosed) {
+            return;
+        }
+        responseClosed = true;
+        try {
+            if (error == null) {
+                responseObserver.onCompleted();
+            } else {
+                responseObserver.onError(error);
+            }
+        } catch (Throwable e) {
+            log.error("requestID={}, 响应 observer 处理结束失败", requestId, e);
+        }
+    }
+
+    private void sendFrame(MsgType msgType, short status, Object payload) throws Exception {
+        StreamFrames.send(connection::sendStreamFrame, msgType, requestId, serializationType, status, payload);
+    }
+}
@@ -0,0 +1,39 @@
+package org.peterpan.rpc.core.client;
+
+import java.util.function.Consumer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 单向引用
+ *
+ * 不给接口方法加 @OneWay，也能按单向方式调用，由调用方决定这一处是否关心结果：
+ * <pre>
+ * RpcOneWayReference&lt;MetricService&gt; ref = RpcServiceUtil.getOneWayReference(MetricService.class, ...);
+ * ref.send(service -&gt; service.report(metric));
+ * </pre>
+ * send 期间代理只写出请求帧，服务端不回复，方法本身立即返回默认值
+ */
+public class RpcOneWayReference<T> {
+
+    private static final ThreadLocal<Boolean> SENDING = ThreadLocal.withInitial(() -> false);
+
+    private final T service;
+
+    public RpcOneWayReference(T service) {
+        this.service = service;
+    }
+
+    public void send(Consumer<T> invocation) {
+        SENDING.set(true);
+        try {
+            invocation.accept(service);
+        } finally {
+            SENDING.set(false);
+        }
+    }
+
+    static boolean isSending() {
+        return SENDING.get();
+    }
+}
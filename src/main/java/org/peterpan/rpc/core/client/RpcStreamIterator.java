@@ -0,0 +1,188 @@
+package org.peterpan.rpc.core.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.transfer.connection.RpcConnection;
+import org.peterpan.rpc.core.transfer.connection.StreamListener;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端流式调用在客户端的迭代器
+ *
+ * 接口方法返回 Iterator 时，代理返回该迭代器，元素在服务端产生后陆续到达。
+ * 基于窗口的流控：打开流时授予服务端 window 个元素的窗口，调用方每消费一半窗口再补发一次，
+ * 所以已到达未消费的元素最多 window 个，调用方消费得慢时服务端会停下来等待。
+ * 元素在 next() 时才反序列化，消息体在此之前一直留在池化缓冲区里。
+ * hasNext() 等待下一个元素的时间超过调用超时时抛出异常；提前放弃迭代时应调用 close()，服务端随即停止发送
+ */
+@Slf4j
+public class RpcStreamIterator<T> implements Iterator<T>, AutoCloseable, StreamListener {
+
+    private final BlockingQueue<Object> frames = new LinkedBlockingQueue<>();
+    private final long requestId;
+    private final byte serializationType;
+    private final int window;
+    private final long timeoutMillis;
+    private volatile RpcConnection connection;
+    // 服务端已经结束了流(收到半关闭、拒绝或者连接断开)
+    private volatile boolean remoteClosed;
+
+    // 以下字段只由迭代线程访问
+    private int consumedSinceUpdate;
+    private boolean finished;
+    private boolean hasCached;
+    private T cached;
+
+    public RpcStreamIterator(long requestId, byte serializationType, int window, long timeoutMillis) {
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.window = Math.max(window, 1);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 流打开之后绑定连接，并授予初始窗口
+     */
+    void start(RpcConnection connection) throws Exception {
+        this.connection = connection;
+        sendFrame(MsgType.STREAM_WINDOW_UPDATE, window);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasCached) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object frame;
+        try {
+            frame = frames.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("requestID=" + requestId + ", 等待流数据被中断", e);
+        }
+        if (frame == null) {
+            close();
+            throw new RuntimeException("requestID=" + requestId + ", 等待流数据超时, 超时时间=" + timeoutMillis + "ms");
+        }
+        if (frame instanceof Throwable) {
+            finished = true;
+            throw new RuntimeException("requestID=" + requestId + ", 流式调用失败", (Throwable) frame);
+        }
+        RpcProtocol rpcProtocol = (RpcProtocol) frame;
+        MsgHeader header = rpcProtocol.getHeader();
+        Object payload;
+        try {
+            payload = StreamFrames.decode(rpcProtocol);
+        } catch (Exception e) {
+            close();
+            throw new RuntimeException("requestID=" + requestId + ", 解码流数据失败", e);
+        }
+        if (header.getMsgType() == MsgType.STREAM_DATA.ordinal()) {
+            cached = cast(payload);
+            hasCached = true;
+            return true;
+        }
+        finished = true;
+        if (header.getStatus() != StatusConstants.NORMAL) {
+            String message = StreamFrames.errorMessage(header.getStatus(), payload);
+            throw new RuntimeException("requestID=" + requestId + ", 流式调用失败: " + message);
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element = cached;
+        cached = null;
+        hasCached = false;
+        // 消费过半窗口时补发，避免每个元素都发送一帧流控
+        if (++consumedSinceUpdate >= Math.max(window / 2, 1)) {
+            try {
+                sendFrame(MsgType.STREAM_WINDOW_UPDATE, consumedSinceUpdate);
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送流控窗口失败", requestId, e);
+            }
+            consumedSinceUpdate = 0;
+        }
+        return element;
+    }
+
+    /**
+     * 不再继续迭代：通知服务端取消，丢弃已经到达的元素
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        RpcConnection conn = connection;
+        if (conn != null) {
+            if (!remoteClosed) {
+                try {
+                    sendFrame(MsgType.STREAM_CANCEL, null);
+                } catch (Exception e) {
+                    log.warn("requestID={}, 发送取消失败", requestId, e);
+                }
+            }
+            conn.closeStream(requestId);
+        }
+        Object frame;
+        while ((frame = frames.poll()) != null) {
+            if (frame instanceof RpcProtocol) {
+                StreamFrames.discard((RpcProtocol) frame);
+            }
+        }
+    }
+
+    @Override
+    public boolean onFrame(RpcProtocol frame) {
+        byte msgType = frame.getHeader().getMsgType();
+        if (msgType == MsgType.STREAM_DATA.ordinal()) {
+            frames.offer(frame);
+            return false;
+        }
+        if (msgType == MsgType.STREAM_WINDOW_UPDATE.ordinal()) {
+            // 只接收不发送，用不到服务端的窗口
+            StreamFrames.discard(frame);
+            return false;
+        }
+        // 服务端半关闭、取消或者请求被拒绝，流到此结束
+        remoteClosed = true;
+        frames.offer(frame);
+        return true;
+    }
+
+    @Override
+    public void onConnectionClosed(Throwable e) {
+        remoteClosed = true;
+        frames.offer(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object payload) {
+        return (T) payload;
+    }
+
+    private void sendFrame(MsgType msgType, Object payload) throws Exception {
+        StreamFrames.send(connection::sendStreamFrame, msgType, requestId, serializationType, StatusConstants.NORMAL, payload);
+    }
+}
@@ -0,0 +1,26 @@
+package org.peterpan.rpc.core.client.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 响应缓存的统计快照
+ */
+@Data
+@AllArgsConstructor
+public class CacheStats {
+    private long hitCount;
+    private long missCount;
+    // 因为容量不足淘汰的条目数
+    private long evictionCount;
+    // 因为过期移除的条目数
+    private long expirationCount;
+    private long size;
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
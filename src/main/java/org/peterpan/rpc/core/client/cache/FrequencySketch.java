@@ -0,0 +1,78 @@
+package org.peterpan.rpc.core.client.cache;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 访问频率的近似统计(Count-Min Sketch)
+ *
+ * 每个键映射到 4 个 4 位计数器，频率取其中最小值，最大记到 15，内存只和缓存容量有关、与访问过的键的数量无关。
+ * 累计记录的次数达到容量的 10 倍时所有计数器减半，让过去的热点逐渐冷却。不是线程安全的，由调用方加锁
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    // 每个计数器右移一位后清掉从相邻计数器移进来的最高位
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    // 每个 long 存 16 个 4 位计数器
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int size = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+        this.table = new long[Math.max(size >>> 2, 8)];
+        this.tableMask = table.length - 1;
+        this.sampleSize = 10 * Math.max(maximumSize, 16);
+    }
+
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = indexHash(hash, i);
+            int index = (int) h & tableMask;
+            int offset = ((int) (h >>> 32) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = indexHash(hash, i);
+            int index = (int) h & tableMask;
+            int offset = ((int) (h >>> 32) & 15) << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private static long indexHash(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,381 @@
+package org.peterpan.rpc.core.client.cache;
+
+import org.peterpan.rpc.annotation.Cached;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端响应缓存(W-TinyLFU)
+ *
+ * 新条目先进入占容量 1% 的 LRU 窗口，被挤出窗口后和主区域(分段 LRU：试用区 20%、保护区 80%)中最该淘汰的条目比较
+ * 访问频率，频率更高的留下，所以偶尔访问一次的键冲不掉真正的热点，突发的新热点又能在窗口里先站住。
+ * 查询不加锁，命中时尽量(抢不到锁就跳过)记录访问；写入和淘汰在锁内进行。过期的条目在查询时移除。
+ * 缓存键记下创建时的失效代数，invalidateAll 之前发出、之后才返回的调用结果是旧数据，不再写入。
+ * 命中时返回的是缓存的同一个实例，返回类型必须不可变；缓存键引用调用时的参数，参数同样必须不可变(见 @Cached)
+ */
+public class ResponseCache {
+
+    // 查询没有命中
+    public static final Object MISS = new Object();
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    // 服务键#方法名 -> 配置文件中的有效期(毫秒)
+    private final Map<String, Long> configuredTtls;
+    // 方法 -> 服务键 -> 缓存设置，避免每次调用都拼接字符串
+    private final Map<Method, Map<String, CachedMethod>> methods = new ConcurrentHashMap<>();
+    private final Map<Key, Node> data = new ConcurrentHashMap<>();
+
+    // 以下字段由 lock 保护
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final NodeDeque window = new NodeDeque();
+    private final NodeDeque probation = new NodeDeque();
+    private final NodeDeque protectedDeque = new NodeDeque();
+    private int windowSize;
+    private int protectedSize;
+    // 失效代数，每次 invalidateAll 加一，只在锁内修改
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maximumSize    最多缓存的条目数，0 表示关闭缓存
+     * @param configuredTtls 服务键#方法名 -> 有效期(毫秒)，优先于 @Cached
+     */
+    public ResponseCache(int maximumSize, Map<String, Long> configuredTtls) {
+        this.maximumSize = Math.max(maximumSize, 0);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        int mainMaximum = Math.max(this.maximumSize - windowMaximum, 0);
+        this.protectedMaximum = (int) (mainMaximum * 0.8);
+        this.configuredTtls = configuredTtls;
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+
+    /**
+     * 调用对应的缓存键，方法没有开启缓存或者参数中有数组时返回 null。
+     * 键只浅拷贝参数数组，按参数的 equals/hashCode 比较，参数必须不可变(见 @Cached)：
+     * 调用方之后修改了参数，键的哈希值就和内容对不上了。数组没有按内容比较的 equals，又最容易被就地修改，这样的调用不缓存
+     */
+    public Key keyOf(String serviceKey, Method method, Object[] args) {
+        if (maximumSize == 0) {
+            return null;
+        }
+        CachedMethod cachedMethod = methods.computeIfAbsent(method, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(serviceKey, k -> new CachedMethod(ttlOf(serviceKey, method)));
+        if (cachedMethod.ttlNanos <= 0) {
+            return null;
+        }
+        if (args == null) {
+            return new Key(cachedMethod, new Object[0], generation);
+        }
+        for (Object arg : args) {
+            if (arg != null && arg.getClass().isArray()) {
+                return null;
+            }
+        }
+        return new Key(cachedMethod, args.clone(), generation);
+    }
+
+    private long ttlOf(String serviceKey, Method method) {
+        Long configured = configuredTtls.get(serviceKey + "#" + method.getName());
+        if (configured != null) {
+            return TimeUnit.MILLISECONDS.toNanos(configured);
+        }
+        Cached cached = method.getAnnotation(Cached.class);
+        return cached == null ? 0 : cached.unit().toNanos(cached.ttl());
+    }
+
+    /**
+     * 查询缓存，没有命中或者已经过期时返回 MISS
+     */
+    public Object get(Key key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return MISS;
+        }
+        if (System.nanoTime() - node.expireAt >= 0) {
+            misses.increment();
+            lock.lock();
+            try {
+                if (node.queue >= 0 && data.remove(key, node)) {
+                    unlink(node);
+                    expirations.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return MISS;
+        }
+        hits.increment();
+        // 访问记录允许丢失，不让热点键的查询排队等锁
+        if (lock.tryLock()) {
+            try {
+                if (node.queue >= 0) {
+                    onHit(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * 写入调用结果，null 不缓存；取得 key 之后缓存被清空过时结果可能已经过时，也不缓存
+     */
+    public void put(Key key, Object value) {
+        if (value == null) {
+            return;
+        }
+        long expireAt = System.nanoTime() + key.method.ttlNanos;
+        lock.lock();
+        try {
+            if (key.generation != generation) {
+                return;
+            }
+            Node existing = data.get(key);
+            if (existing != null) {
+                // 已经有了(并发的相同调用)，用新结果刷新有效期
+                existing.value = value;
+                existing.expireAt = expireAt;
+                onHit(existing);
+                return;
+            }
+            Node node = new Node(key, value, expireAt);
+            data.put(key, node);
+            sketch.increment(key.hashCode());
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowSize++;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            for (Node node : data.values()) {
+                unlink(node);
+            }
+            data.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), data.size());
+    }
+
+    private void onHit(Node node) {
+        sketch.increment(node.key.hashCode());
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                // 试用区中再次被访问，晋升到保护区，保护区满了把最久没访问的降回试用区
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                protectedSize++;
+                while (protectedSize > protectedMaximum) {
+                    Node demoted = protectedDeque.pollFirst();
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedDeque.moveToLast(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 窗口超出容量时把最久没访问的条目移到试用区，总数超出容量时让它和试用区最该淘汰的条目比较频率
+     */
+    private void evict() {
+        while (windowSize > windowMaximum) {
+            Node candidate = window.pollFirst();
+            windowSize--;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+            if (data.size() > maximumSize) {
+                Node victim = probation.peekFirst() != candidate ? probation.peekFirst() : protectedDeque.peekFirst();
+                // 候选者的访问频率更高时淘汰原来的条目，否则淘汰候选者
+                Node evicted = victim != null && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                        ? victim : candidate;
+                data.remove(evicted.key, evicted);
+                unlink(evicted);
+                evictions.increment();
+            }
+        }
+        // 兜底，保证条目数不超过容量
+        while (data.size() > maximumSize) {
+            Node victim = probation.peekFirst() != null ? probation.peekFirst() : protectedDeque.peekFirst();
+            if (victim == null) {
+                break;
+            }
+            data.remove(victim.key, victim);
+            unlink(victim);
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowSize--;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedDeque.remove(node);
+                protectedSize--;
+                break;
+            default:
+                return;
+        }
+        node.queue = -1;
+    }
+
+    /**
+     * 一个服务键下的一个方法的缓存设置，每个方法和服务键的组合只有一个实例
+     */
+    private static final class CachedMethod {
+        final long ttlNanos;
+
+        CachedMethod(long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    /**
+     * 缓存键：服务键和方法(同一个 CachedMethod 实例)加上参数(equals)；失效代数不参与比较
+     */
+    public static final class Key {
+        private final CachedMethod method;
+        private final Object[] args;
+        private final long generation;
+        private final int hash;
+
+        Key(CachedMethod method, Object[] args, long generation) {
+            this.method = method;
+            this.args = args;
+            this.generation = generation;
+            this.hash = System.identityHashCode(method) * 31 + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && method == other.method && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Node {
+        final Key key;
+        volatile Object value;
+        volatile long expireAt;
+        // 所在的区域，-1 表示已经移出缓存，由 lock 保护
+        int queue = -1;
+        Node prev;
+        Node next;
+
+        Node(Key key, Object value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 侵入式双向链表，头部是最久没访问的条目
+     */
+    private static final class NodeDeque {
+        private Node head;
+        private Node tail;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        Node peekFirst() {
+            return head;
+        }
+
+        Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+}
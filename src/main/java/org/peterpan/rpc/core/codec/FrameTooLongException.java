@@ -0,0 +1,18 @@
+package org.peterpan.rpc.core.codec;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 要发送的帧超过了 maxFrameLength
+ *
+ * 在编码时抛出，帧不会写到连接上，对端也就不会因为超长的帧关闭整条连接；
+ * 同样的消息发给哪个节点都会超长，调用直接失败，不重试
+ */
+public class FrameTooLongException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FrameTooLongException(String message) {
+        super(message);
+    }
+}
@@ -1,14 +1,18 @@
 package org.peterpan.rpc.core.codec;
 
+import org.peterpan.rpc.core.buffer.ByteBufferInputStream;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.compress.BodyCompression;
+import org.peterpan.rpc.core.codec.compress.CompressTypeEnum;
 import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
 import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
 import org.peterpan.rpc.common.MsgType;
 import org.peterpan.rpc.core.codec.serialization.SerializationTypeEnum;
+import org.peterpan.rpc.core.protocol.body.RpcBatchRequestBody;
+import org.peterpan.rpc.core.protocol.body.RpcBatchResponseBody;
 import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
 import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
 
-import java.io.IOException;
-
 /**
  * @author PeterPan
  * @date 2023/8/9
@@ -16,7 +20,23 @@ import java.io.IOException;
  */
 public class RpcDecoder {
 
-   public static Object decode(byte[] body, byte serializationType, byte msgType) throws Exception {
+   /**
+    * 直接从池化缓冲区反序列化，不改变 body 的 position，也不释放 body。
+    * 消息体被压缩过时先解压到新的缓冲区，反序列化后释放
+    */
+   public static Object decode(PooledByteBuffer body, byte serializationType, byte msgType, byte compressType) throws Exception {
+      if (compressType == CompressTypeEnum.NONE.getType()) {
+         return decode(body, serializationType, msgType);
+      }
+      PooledByteBuffer decompressed = BodyCompression.decompress(body, compressType);
+      try {
+         return decode(decompressed, serializationType, msgType);
+      } finally {
+         decompressed.release();
+      }
+   }
+
+   private static Object decode(PooledByteBuffer body, byte serializationType, byte msgType) throws Exception {
       // 处理消息的类型
       MsgType msgTypeEnum = MsgType.findByType(msgType);
       if (msgTypeEnum == null) {
@@ -27,20 +47,33 @@ public class RpcDecoder {
       IRpcSerialization IRpcSerialization = SerializationFactory.get(SerializationTypeEnum.findByType(serializationType).name());
       // 根据消息类型进行处理(如果消息类型过多可以使用策略+工厂模式进行管理)
       switch (msgTypeEnum) {
-         // 请求消息
+         // 请求消息，打开流、单向调用的消息体与请求相同
          case REQUEST:
-            RpcRequestBody request = IRpcSerialization.deserialize(body, RpcRequestBody.class);
+         case STREAM_OPEN:
+         case ONE_WAY:
+            RpcRequestBody request = IRpcSerialization.deserialize(new ByteBufferInputStream(body.buffer().duplicate()), RpcRequestBody.class);
             if (request != null) {
                return request;
             }
             break;
-         // 响应消息
+         // 响应消息，流中的元素、半关闭和取消也使用响应体承载
          case RESPONSE:
-            Object response = IRpcSerialization.deserialize(body, RpcResponseBody.class);
+         case STREAM_DATA:
+         case STREAM_HALF_CLOSE:
+         case STREAM_CANCEL:
+            Object response = IRpcSerialization.deserialize(new ByteBufferInputStream(body.buffer().duplicate()), RpcResponseBody.class);
             if (response != null) {
                return response;
             }
             break;
+         // 批量调用
+         case BATCH:
+            return IRpcSerialization.deserialize(new ByteBufferInputStream(body.buffer().duplicate()), RpcBatchRequestBody.class);
+         case BATCH_RESPONSE:
+            return IRpcSerialization.deserialize(new ByteBufferInputStream(body.buffer().duplicate()), RpcBatchResponseBody.class);
+         // 流控窗口
+         case STREAM_WINDOW_UPDATE:
+            return IRpcSerialization.deserialize(new ByteBufferInputStream(body.buffer().duplicate()), Integer.class);
       }
       return null;
    }
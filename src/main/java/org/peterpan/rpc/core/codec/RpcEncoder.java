@@ -1,11 +1,12 @@
 package org.peterpan.rpc.core.codec;
 
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.core.buffer.ByteBufferOutputStream;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
 import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
 import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
 import org.peterpan.rpc.core.codec.serialization.SerializationTypeEnum;
 
-import java.io.IOException;
-
 /**
  * @author PeterPan
  * @date 2023/8/9
@@ -13,9 +14,20 @@ import java.io.IOException;
  */
 public class RpcEncoder {
 
-    public static <T> byte[] encode(T body, byte serializationType) throws Exception {
+    /**
+     * 序列化到池化缓冲区，前面预留协议头的位置，发送时协议头直接填在消息体前面，不再拷贝消息体。
+     * 返回的缓冲区由调用方负责 release
+     */
+    public static <T> PooledByteBuffer encode(T body, byte serializationType) throws Exception {
         // 获取序列化工具
         IRpcSerialization IRpcSerialization = SerializationFactory.get(SerializationTypeEnum.findByType(serializationType).name());
-        return IRpcSerialization.serialize(body);
+        ByteBufferOutputStream out = new ByteBufferOutputStream(ProtocolConstants.HEADER_TOTAL_LEN);
+        try {
+            IRpcSerialization.serialize(body, out);
+            return out.finish();
+        } catch (Throwable e) {
+            out.release();
+            throw e;
+        }
     }
 }
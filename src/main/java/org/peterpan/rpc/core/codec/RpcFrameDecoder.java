@@ -0,0 +1,172 @@
+package org.peterpan.rpc.core.codec;
+
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 帧解码
+ *
+ * 有状态的流式解码器，每条连接一个实例。凑够一帧才解码，半包留到下一次读取，粘包则一次解出多帧。帧格式见 RpcFrameEncoder。
+ * 没有半包时直接从读缓冲区解码，只把末尾不完整的帧拷贝到累积缓冲区；累积缓冲区读空后释放，
+ * 连接不会一直占着收过的最大帧那么大的内存。协议头声明的长度超过 maxFrameLength 时抛出 IOException，由传输层关闭连接。
+ * 消息体拷贝到池化缓冲区，由消费方反序列化之后 release
+ */
+public class RpcFrameDecoder {
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    // 数组能分配的最大长度
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    // bodyLength 字段在协议头中的偏移: magic(2) + version(1) + serialization(1) + msgType(1) + status(1) + compression(1) + requestId(8) + timeout(4)
+    private static final int VERSION_OFFSET = 2;
+    private static final int MSG_TYPE_OFFSET = 4;
+    private static final int BODY_LENGTH_OFFSET = 19;
+
+    // 整帧(协议头 + 消息体)允许的最大字节数
+    private final int maxFrameLength;
+    // 累积的半包，两次decode之间保持写模式；没有半包时为 null
+    private ByteBuffer cumulation;
+
+    public RpcFrameDecoder() {
+        this(RpcConfig.getInstance().getMaxFrameLength());
+    }
+
+    public RpcFrameDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 解码 in 中的数据，返回完整的帧；in 中的数据全部被取走，不完整的部分由解码器保存
+     */
+    public List<RpcProtocol> decode(ByteBuffer in) throws IOException {
+        ByteBuffer source;
+        if (cumulation == null) {
+            source = in;
+        } else {
+            ensureWritable(in.remaining());
+            cumulation.put(in);
+            cumulation.flip();
+            source = cumulation;
+        }
+
+        List<RpcProtocol> frames = new ArrayList<>();
+        try {
+            int frameLength;
+            while ((frameLength = frameLength(source)) >= 0 && source.remaining() >= frameLength) {
+                frames.add(decodeFrame(source, frameLength - ProtocolConstants.HEADER_TOTAL_LEN));
+            }
+            keepRemaining(source, frameLength);
+        } catch (IOException e) {
+            // 连接会被关闭，已经解出来的帧不会再交给 handler
+            for (RpcProtocol frame : frames) {
+                frame.getBody().release();
+            }
+            cumulation = null;
+            in.position(in.limit());
+            throw e;
+        }
+        return frames;
+    }
+
+    /**
+     * 下一帧的总长度，协议头还没收全时返回 -1
+     */
+    private int frameLength(ByteBuffer source) throws IOException {
+        if (source.remaining() < ProtocolConstants.HEADER_TOTAL_LEN) {
+            return -1;
+        }
+        int start = source.position();
+        short magic = source.getShort(start);
+        if (magic != ProtocolConstants.MAGIC) {
+            throw new IOException("非法的魔数: " + magic);
+        }
+        // 不同版本的协议头布局不同，继续按当前版本解析只会读出错位的字段
+        byte version = source.get(start + VERSION_OFFSET);
+        if (version != ProtocolConstants.VERSION) {
+            throw new IOException("不支持的协议版本: " + version + ", 当前版本: " + ProtocolConstants.VERSION);
+        }
+        // 各处按 msgType 分发，不认识的类型在这里拒绝，不带进 IO 线程和业务线程
+        byte msgType = source.get(start + MSG_TYPE_OFFSET);
+        if (MsgType.findByType(msgType) == null) {
+            throw new IOException("未知的消息类型: " + msgType);
+        }
+        int bodyLength = source.getInt(start + BODY_LENGTH_OFFSET);
+        if (bodyLength < 0 || bodyLength > maxFrameLength - ProtocolConstants.HEADER_TOTAL_LEN) {
+            throw new IOException("非法的body长度: " + bodyLength + ", maxFrameLength=" + maxFrameLength);
+        }
+        return ProtocolConstants.HEADER_TOTAL_LEN + bodyLength;
+    }
+
+    /**
+     * 保存没有解码的半包。nextFrameLength 是半包所在帧的长度(协议头还没收全时为 -1)，新的累积缓冲区直接按整帧分配
+     */
+    private void keepRemaining(ByteBuffer source, int nextFrameLength) {
+        if (!source.hasRemaining()) {
+            // 读空后释放，下一次直接从读缓冲区解码
+            cumulation = null;
+            return;
+        }
+        if (source == cumulation) {
+            cumulation.compact();
+            return;
+        }
+        cumulation = ByteBuffer.allocate(Math.max(Math.max(INITIAL_CAPACITY, nextFrameLength), source.remaining()));
+        cumulation.put(source);
+    }
+
+    private RpcProtocol decodeFrame(ByteBuffer source, int bodyLength) {
+        MsgHeader header = new MsgHeader();
+        header.setMagic(source.getShort());
+        header.setVersion(source.get());
+        header.setSerialization(source.get());
+        header.setMsgType(source.get());
+        header.setStatus(source.get());
+        header.setCompression(source.get());
+        header.setRequestId(source.getLong());
+        header.setTimeout(source.getInt());
+        source.getInt(); // bodyLength
+        PooledByteBuffer body = PooledByteBufferAllocator.getInstance().allocate(bodyLength);
+        ByteBuffer src = source.duplicate();
+        src.limit(src.position() + bodyLength);
+        body.buffer().put(src);
+        body.buffer().flip();
+        source.position(source.position() + bodyLength);
+
+        RpcProtocol protocol = new RpcProtocol();
+        protocol.setHeader(header);
+        protocol.setBody(body);
+        return protocol;
+    }
+
+    /**
+     * 累积缓冲区至少还能写入 length 字节，按2的幂扩容，用 long 计算避免溢出
+     */
+    private void ensureWritable(int length) throws IOException {
+        if (cumulation.remaining() >= length) {
+            return;
+        }
+        long required = (long) cumulation.position() + length;
+        if (required > MAX_ARRAY_SIZE) {
+            throw new IOException("帧太大, 需要缓存 " + required + " 字节");
+        }
+        long newCapacity = Math.max(cumulation.capacity(), INITIAL_CAPACITY);
+        while (newCapacity < required) {
+            newCapacity <<= 1;
+        }
+        ByteBuffer expanded = ByteBuffer.allocate((int) Math.min(newCapacity, MAX_ARRAY_SIZE));
+        cumulation.flip();
+        expanded.put(cumulation);
+        cumulation = expanded;
+    }
+}
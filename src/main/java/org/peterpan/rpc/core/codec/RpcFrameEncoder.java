@@ -0,0 +1,130 @@
+package org.peterpan.rpc.core.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+import org.peterpan.rpc.core.codec.compress.BodyCompression;
+import org.peterpan.rpc.core.codec.compress.CompressTypeEnum;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 帧编码
+ *
+ * 帧格式(大端)：
+ * +-------+---------+---------------+---------+--------+-------------+-----------+---------+------------+--------------+
+ * | magic | version | serialization | msgType | status | compression | requestId | timeout | bodyLength |     body     |
+ * |  2B   |   1B    |      1B       |   1B    |   1B   |     1B      |    8B     |   4B    |     4B     | bodyLength B |
+ * +-------+---------+---------------+---------+--------+-------------+-----------+---------+------------+--------------+
+ * 前23字节是固定长度的协议头(ProtocolConstants.HEADER_TOTAL_LEN)，body 是codec层已经序列化好的字节。
+ * 配置了压缩算法时，超过阈值的消息体在这里压缩，compression 记录所用的算法，接收方在 RpcDecoder 中解压。
+ * 超过 maxFrameLength 的帧在这里拒绝(FrameTooLongException)，不会写到连接上让对端关闭整条连接
+ */
+@Slf4j
+public class RpcFrameEncoder {
+
+    private static final CompressTypeEnum COMPRESS_TYPE = RpcConfig.getInstance().getCompressType();
+    private static final int COMPRESS_THRESHOLD = RpcConfig.getInstance().getCompressThreshold();
+    private static final int MAX_FRAME_LENGTH = RpcConfig.getInstance().getMaxFrameLength();
+
+    /**
+     * 编码成一帧，返回的缓冲区 position 到 limit 是整帧数据，由调用方负责 release。
+     * 消息体前面预留了协议头的空间时(RpcEncoder 的输出)，协议头直接写在消息体前面，和消息体共享同一块内存。
+     * 整帧超过 maxFrameLength 时抛出 FrameTooLongException，不分配任何缓冲区
+     */
+    public static PooledByteBuffer encode(RpcProtocol protocol) {
+        MsgHeader header = protocol.getHeader();
+        PooledByteBuffer body = protocol.getBody();
+        int bodyLength = body == null ? 0 : body.readableBytes();
+        // 压缩前就检查：接收方按原始长度分配解压的缓冲区，原始长度同样不能超过 maxFrameLength
+        if (bodyLength > MAX_FRAME_LENGTH - ProtocolConstants.HEADER_TOTAL_LEN) {
+            throw tooLong(header, bodyLength);
+        }
+
+        if (shouldCompress(header, bodyLength)) {
+            PooledByteBuffer compressed = null;
+            try {
+                compressed = BodyCompression.compress(body, COMPRESS_TYPE);
+            } catch (IOException e) {
+                // 压缩失败不影响发送，按原样发出
+                log.warn("requestID={}, 压缩消息体失败, 不压缩发送", header.getRequestId(), e);
+            }
+            if (compressed != null) {
+                // 压缩结果是新分配的缓冲区，同样预留了协议头的位置，直接作为帧
+                ByteBuffer buffer = compressed.buffer();
+                int start = buffer.position() - ProtocolConstants.HEADER_TOTAL_LEN;
+                writeHeader(buffer, start, header, (byte) COMPRESS_TYPE.getType(), compressed.readableBytes());
+                buffer.position(start);
+                return compressed;
+            }
+        }
+
+        if (body != null && body.buffer().position() >= ProtocolConstants.HEADER_TOTAL_LEN) {
+            PooledByteBuffer frame = body.retainedDuplicate();
+            ByteBuffer buffer = frame.buffer();
+            int start = buffer.position() - ProtocolConstants.HEADER_TOTAL_LEN;
+            writeHeader(buffer, start, header, (byte) CompressTypeEnum.NONE.getType(), bodyLength);
+            buffer.position(start);
+            return frame;
+        }
+
+        PooledByteBuffer frame = PooledByteBufferAllocator.getInstance().allocate(ProtocolConstants.HEADER_TOTAL_LEN + bodyLength);
+        ByteBuffer buffer = frame.buffer();
+        writeHeader(buffer, 0, header, (byte) CompressTypeEnum.NONE.getType(), bodyLength);
+        buffer.position(ProtocolConstants.HEADER_TOTAL_LEN);
+        if (bodyLength > 0) {
+            buffer.put(body.buffer().duplicate());
+        }
+        buffer.flip();
+        return frame;
+    }
+
+    /**
+     * 只编码协议头，消息体由调用方另外写出(例如文件区域)，返回的缓冲区由调用方负责 release
+     */
+    public static PooledByteBuffer encodeHeader(MsgHeader header, int bodyLength) {
+        if (bodyLength > MAX_FRAME_LENGTH - ProtocolConstants.HEADER_TOTAL_LEN) {
+            throw tooLong(header, bodyLength);
+        }
+        PooledByteBuffer frame = PooledByteBufferAllocator.getInstance().allocate(ProtocolConstants.HEADER_TOTAL_LEN);
+        writeHeader(frame.buffer(), 0, header, (byte) CompressTypeEnum.NONE.getType(), bodyLength);
+        return frame;
+    }
+
+    private static FrameTooLongException tooLong(MsgHeader header, int bodyLength) {
+        return new FrameTooLongException("requestID=" + header.getRequestId() + ", 帧长度 " + (ProtocolConstants.HEADER_TOTAL_LEN + (long) bodyLength)
+                + " 超过 maxFrameLength=" + MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * Blob 的原始字节不压缩：文件区域要走 transferTo，内容本身也多半已经是压缩过的格式
+     */
+    private static boolean shouldCompress(MsgHeader header, int bodyLength) {
+        return COMPRESS_TYPE != CompressTypeEnum.NONE
+                && bodyLength >= COMPRESS_THRESHOLD
+                && header.getMsgType() != MsgType.STREAM_BLOB.ordinal();
+    }
+
+    /**
+     * 在 index 处写入23字节的协议头，不改变 buffer 的 position
+     */
+    private static void writeHeader(ByteBuffer buffer, int index, MsgHeader header, byte compression, int bodyLength) {
+        buffer.putShort(index, header.getMagic());
+        buffer.put(index + 2, header.getVersion());
+        buffer.put(index + 3, header.getSerialization());
+        buffer.put(index + 4, header.getMsgType());
+        buffer.put(index + 5, header.getStatus());
+        buffer.put(index + 6, compression);
+        buffer.putLong(index + 7, header.getRequestId());
+        buffer.putInt(index + 15, header.getTimeout());
+        buffer.putInt(index + 19, bodyLength);
+    }
+}
@@ -0,0 +1,78 @@
+package org.peterpan.rpc.core.codec.compress;
+
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 消息体的压缩与解压
+ *
+ * 压缩后的消息体格式：原始长度(4B) + 压缩数据。解压时据此一次分配好目标缓冲区，
+ * 原始长度来自对端，超过 maxFrameLength 时直接拒绝，几个字节的帧不能让接收方分配任意大的内存。
+ * 压缩算法只操作 byte[]，池化的直接内存需要先拷贝到堆上，只在消息体足够大时才值得
+ */
+public final class BodyCompression {
+
+    private static final int MAX_FRAME_LENGTH = RpcConfig.getInstance().getMaxFrameLength();
+
+    private BodyCompression() {
+    }
+
+    /**
+     * 压缩消息体，返回的缓冲区前面预留了协议头的位置，由调用方负责 release。
+     * 压缩后没有变小时返回 null，按原样发送
+     */
+    public static PooledByteBuffer compress(PooledByteBuffer body, CompressTypeEnum compressType) throws IOException {
+        ICompressor compressor = CompressorFactory.get(compressType.name());
+        int length = body.readableBytes();
+        byte[] src = new byte[length];
+        body.buffer().duplicate().get(src);
+        byte[] dst = new byte[compressor.maxCompressedLength(length)];
+        int compressedLength = compressor.compress(src, 0, length, dst);
+        if (compressedLength + 4 >= length) {
+            return null;
+        }
+        PooledByteBuffer compressed = PooledByteBufferAllocator.getInstance()
+                .allocate(ProtocolConstants.HEADER_TOTAL_LEN + 4 + compressedLength);
+        ByteBuffer buffer = compressed.buffer();
+        buffer.position(ProtocolConstants.HEADER_TOTAL_LEN);
+        buffer.putInt(length);
+        buffer.put(dst, 0, compressedLength);
+        buffer.flip();
+        buffer.position(ProtocolConstants.HEADER_TOTAL_LEN);
+        return compressed;
+    }
+
+    /**
+     * 解压消息体，不改变也不释放 body，返回的缓冲区由调用方负责 release
+     */
+    public static PooledByteBuffer decompress(PooledByteBuffer body, byte compressType) throws IOException {
+        CompressTypeEnum typeEnum = CompressTypeEnum.findByType(compressType);
+        if (typeEnum == null || typeEnum == CompressTypeEnum.NONE) {
+            throw new IOException("不支持的压缩算法: " + compressType);
+        }
+        ByteBuffer src = body.buffer().duplicate();
+        if (src.remaining() < 4) {
+            throw new IOException("压缩的消息体长度不足: " + src.remaining());
+        }
+        int length = src.getInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            // 发送方不会压缩超过 maxFrameLength 的消息体
+            throw new IOException("非法的原始长度: " + length + ", maxFrameLength=" + MAX_FRAME_LENGTH);
+        }
+        byte[] compressed = new byte[src.remaining()];
+        src.get(compressed);
+        byte[] dst = new byte[length];
+        CompressorFactory.get(typeEnum.name()).decompress(compressed, 0, compressed.length, dst);
+        PooledByteBuffer decompressed = PooledByteBufferAllocator.getInstance().allocate(length);
+        decompressed.buffer().put(dst);
+        decompressed.buffer().flip();
+        return decompressed;
+    }
+}
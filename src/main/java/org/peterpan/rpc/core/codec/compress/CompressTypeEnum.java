@@ -0,0 +1,32 @@
+package org.peterpan.rpc.core.codec.compress;
+
+import lombok.Getter;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 压缩算法，type 写在协议头的 compression 字段
+ */
+public enum CompressTypeEnum {
+   NONE(0x0), // 不压缩
+
+   DEFLATE(0x1), // JDK 自带的 Deflate，压缩率高
+
+   SNAPPY(0x2); // LZ77 系的 Snappy，压缩率低一些但速度快得多
+
+   @Getter
+   private final int type;
+
+   CompressTypeEnum(int type) {
+      this.type = type;
+   }
+
+   public static CompressTypeEnum findByType(byte compressType) {
+      for (CompressTypeEnum typeEnum : CompressTypeEnum.values()) {
+         if (typeEnum.getType() == compressType) {
+            return typeEnum;
+         }
+      }
+      return null;
+   }
+}
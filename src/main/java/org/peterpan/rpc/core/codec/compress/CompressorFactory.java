@@ -0,0 +1,20 @@
+package org.peterpan.rpc.core.codec.compress;
+
+import org.peterpan.rpc.spi.ExtensionLoader;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 压缩算法工厂
+ */
+public class CompressorFactory {
+    public static ICompressor get(String compressType) {
+
+        return ExtensionLoader.getInstance().get(compressType);
+
+    }
+
+    public static void init() throws Exception {
+        ExtensionLoader.getInstance().loadExtension(ICompressor.class);
+    }
+}
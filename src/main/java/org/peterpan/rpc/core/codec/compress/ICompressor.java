@@ -0,0 +1,28 @@
+package org.peterpan.rpc.core.codec.compress;
+
+import java.io.IOException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 消息体压缩接口
+ *
+ * 压缩发生在 codec 与 transport 之间，对序列化好的消息体整体压缩，具体算法记录在协议头的 compression 字段
+ */
+public interface ICompressor {
+
+    /**
+     * length 字节压缩后最多占用的字节数
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * 压缩 src[srcOffset, srcOffset + length) 到 dst，返回压缩后的字节数
+     */
+    int compress(byte[] src, int srcOffset, int length, byte[] dst) throws IOException;
+
+    /**
+     * 解压 src[srcOffset, srcOffset + length) 到 dst，dst 的长度就是压缩前的长度
+     */
+    void decompress(byte[] src, int srcOffset, int length, byte[] dst) throws IOException;
+}
@@ -0,0 +1,69 @@
+package org.peterpan.rpc.core.codec.compress.impl;
+
+import org.peterpan.rpc.core.codec.compress.ICompressor;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description Deflate 压缩(JDK 自带)
+ *
+ * Deflater/Inflater 持有 native 内存，每个线程复用一个实例
+ */
+public class DeflateCompressor implements ICompressor {
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // 不可压缩的数据按 stored block 存放，每 16KB 多出 5 字节，再留一些余量
+        return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 64;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dst) throws IOException {
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(src, srcOffset, length);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == dst.length) {
+                    throw new IOException("Deflate 压缩结果超出预留长度: " + length);
+                }
+                n += deflater.deflate(dst, n, dst.length - n);
+            }
+            return n;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dst) throws IOException {
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(src, srcOffset, length);
+            int n = 0;
+            while (n < dst.length) {
+                int inflated = inflater.inflate(dst, n, dst.length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != dst.length) {
+                throw new IOException("Deflate 解压长度不符, 期望" + dst.length + ", 实际" + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Deflate 数据损坏", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.peterpan.rpc.core.codec.compress.impl;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+import org.peterpan.rpc.core.codec.compress.ICompressor;
+
+import java.io.IOException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description Snappy 压缩(纯 Java 实现)
+ */
+public class SnappyCompressor implements ICompressor {
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dst) {
+        return Snappy.compress(src, srcOffset, length, dst, 0);
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dst) throws IOException {
+        try {
+            int n = Snappy.getUncompressedLength(src, srcOffset);
+            if (n != dst.length) {
+                throw new IOException("Snappy 解压长度不符, 期望" + dst.length + ", 实际" + n);
+            }
+            Snappy.uncompress(src, srcOffset, length, dst, 0);
+        } catch (CorruptionException e) {
+            throw new IOException("Snappy 数据损坏", e);
+        }
+    }
+}
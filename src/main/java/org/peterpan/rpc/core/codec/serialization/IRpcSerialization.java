@@ -1,6 +1,9 @@
 package org.peterpan.rpc.core.codec.serialization;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * @author PeterPan
@@ -13,4 +16,24 @@ public interface IRpcSerialization {
     <T> byte[] serialize(T obj) throws IOException;
 
     <T> T deserialize(byte[] data, Class<T> clz) throws IOException;
+
+    /**
+     * 直接序列化到输出流(池化缓冲区)，默认实现先得到 byte[] 再写出，内置实现都做了覆盖
+     */
+    default <T> void serialize(T obj, OutputStream out) throws IOException {
+        out.write(serialize(obj));
+    }
+
+    /**
+     * 直接从输入流(池化缓冲区)反序列化，默认实现先读出 byte[]
+     */
+    default <T> T deserialize(InputStream in, Class<T> clz) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(32, in.available()));
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            bos.write(chunk, 0, n);
+        }
+        return deserialize(bos.toByteArray(), clz);
+    }
 }
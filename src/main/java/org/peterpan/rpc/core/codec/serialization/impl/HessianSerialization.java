@@ -6,6 +6,8 @@ import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * @author PeterPan
@@ -53,4 +55,29 @@ public class HessianSerialization implements IRpcSerialization {
 
       return result; // 返回反序列化后的对象
    }
+
+   @Override
+   public <T> void serialize(T object, OutputStream out) {
+      if (object == null) {
+         throw new NullPointerException(); // 如果对象为空，则抛出空指针异常
+      }
+      try {
+         HessianSerializerOutput hessianOutput = new HessianSerializerOutput(out);
+         hessianOutput.writeObject(object); // 直接写入池化缓冲区
+         hessianOutput.flush();
+      } catch (Exception e) {
+         throw new RuntimeException("Serialization error", e);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   @Override
+   public <T> T deserialize(InputStream in, Class<T> clz) {
+      try {
+         HessianSerializerInput hessianInput = new HessianSerializerInput(in);
+         return (T) hessianInput.readObject(clz); // 直接从池化缓冲区读取
+      } catch (Exception e) {
+         throw new RuntimeException("Deserialization error", e);
+      }
+   }
 }
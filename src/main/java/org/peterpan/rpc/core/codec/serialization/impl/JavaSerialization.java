@@ -5,8 +5,10 @@ import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 /**
  * @author PeterPan
@@ -45,5 +47,29 @@ public class JavaSerialization implements IRpcSerialization {
          throw new RuntimeException("Deserialization error", e); // 抛出反序列化异常，并包装原始异常信息
       }
    }
-}
 
+   @Override
+   public <T> void serialize(T object, OutputStream out) throws IOException {
+      if (object == null) {
+         throw new NullPointerException(); // 如果对象为空，则抛出空指针异常
+      }
+      try {
+         ObjectOutputStream oos = new ObjectOutputStream(out);
+         oos.writeObject(object); // 直接写入池化缓冲区
+         oos.flush();
+      } catch (IOException e) {
+         throw new RuntimeException("Serialization error", e);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   @Override
+   public <T> T deserialize(InputStream in, Class<T> clz) throws IOException {
+      try {
+         ObjectInputStream ois = new ObjectInputStream(in);
+         return (T) ois.readObject(); // 直接从池化缓冲区读取
+      } catch (IOException | ClassNotFoundException e) {
+         throw new RuntimeException("Deserialization error", e);
+      }
+   }
+}
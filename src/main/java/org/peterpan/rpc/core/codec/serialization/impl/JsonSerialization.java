@@ -6,6 +6,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.peterpan.rpc.core.codec.serialization.IRpcSerialization;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 
@@ -54,4 +56,23 @@ public class JsonSerialization implements IRpcSerialization {
             return MAPPER.readValue(data, clz);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public <T> void serialize(T obj, OutputStream out) throws IOException {
+        if (obj instanceof String) {
+            out.write(((String) obj).getBytes());
+        } else {
+            // 直接写入池化缓冲区，不经过中间的 String
+            MAPPER.writeValue(out, obj);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clz) throws IOException {
+        if (clz.equals(String.class)) {
+            return IRpcSerialization.super.deserialize(in, clz);
+        } else {
+            return MAPPER.readValue(in, clz);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.peterpan.rpc.core.context;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 调用上下文
+ *
+ * 服务端执行请求期间，当前线程上保存这次调用的截止时间(由调用方剩余的超时时间换算)和取消状态，
+ * 服务实现可以据此放弃来不及完成、或者调用方已经不要的工作：轮询 isCancelled()，或者用 onCancel 注册回调；
+ * 执行线程在取消时也会被中断。
+ * 在服务实现中继续发起的远程调用会自动继承截止时间：每次尝试的超时取配置值和剩余时间中较小的一个，
+ * 截止时间已过就直接失败，不再把注定白做的请求发给下游；本次调用被取消时，这些下游调用也一起取消。
+ * 服务方法返回 CompletableFuture 时，静态方法只在方法本身执行期间有效，之后需要的话先用 current() 取出上下文
+ */
+@Slf4j
+public final class RpcContext {
+
+    private static final ThreadLocal<RpcContext> CURRENT = new ThreadLocal<>();
+
+    // 截止时间(System.nanoTime)，0 表示没有截止时间
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    // 取消回调，取消之后不再登记
+    private List<Runnable> cancelListeners;
+
+    public RpcContext(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 当前线程正在执行的调用的上下文，不在服务端执行请求时返回 null
+     */
+    public static RpcContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 由服务端在调用服务实现之前设置，结束后 detach
+     */
+    public static void attach(RpcContext context) {
+        CURRENT.set(context);
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    public static boolean hasDeadline() {
+        RpcContext context = CURRENT.get();
+        return context != null && context.deadlineNanos != 0;
+    }
+
+    /**
+     * 截止时间(System.nanoTime)，没有截止时间时返回 0
+     */
+    public static long getDeadlineNanos() {
+        RpcContext context = CURRENT.get();
+        return context == null ? 0 : context.deadlineNanos;
+    }
+
+    /**
+     * 距离截止时间的毫秒数，没有截止时间时返回 Long.MAX_VALUE，已经过期时返回值不大于 0
+     */
+    public static long remainingMillis() {
+        long deadline = getDeadlineNanos();
+        return deadline == 0 ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        long deadline = getDeadlineNanos();
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * 调用方是否已经取消了当前调用(超时放弃或者主动取消)
+     */
+    public static boolean isCancelled() {
+        RpcContext context = CURRENT.get();
+        return context != null && context.cancelled;
+    }
+
+    /**
+     * 当前调用被取消时执行 listener，已经取消时立即执行；不在服务端执行请求时忽略。
+     * 回调可能在IO线程上执行，不能阻塞
+     */
+    public static void onCancel(Runnable listener) {
+        RpcContext context = CURRENT.get();
+        if (context != null) {
+            context.addCancelListener(listener);
+        }
+    }
+
+    public boolean cancelled() {
+        return cancelled;
+    }
+
+    public void addCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                if (cancelListeners == null) {
+                    cancelListeners = new ArrayList<>();
+                }
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * 取消这次调用并执行已经登记的回调，只有第一次调用生效
+     */
+    public void cancel() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            listeners = cancelListeners;
+            cancelListeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (Throwable e) {
+                    log.warn("执行取消回调失败", e);
+                }
+            }
+        }
+    }
+}
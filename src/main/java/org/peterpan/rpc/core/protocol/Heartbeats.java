@@ -0,0 +1,31 @@
+package org.peterpan.rpc.core.protocol;
+
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 心跳帧
+ *
+ * 客户端在连接空闲时发出 HEARTBEAT(ping)，服务端原样回一个相同 requestId 的 HEARTBEAT(pong)，心跳没有消息体
+ */
+public final class Heartbeats {
+
+    private Heartbeats() {
+    }
+
+    public static RpcProtocol frame(long requestId) {
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setMsgType((byte) MsgType.HEARTBEAT.ordinal());
+        header.setStatus((byte) StatusConstants.NORMAL);
+        header.setRequestId(requestId);
+        RpcProtocol protocol = new RpcProtocol();
+        protocol.setHeader(header);
+        return protocol;
+    }
+}
@@ -1,6 +1,8 @@
 package org.peterpan.rpc.core.protocol;
 
 import lombok.Data;
+import org.peterpan.rpc.core.buffer.FileRegion;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
 import org.peterpan.rpc.core.protocol.header.MsgHeader;
 
 import java.io.Serializable;
@@ -13,5 +15,8 @@ import java.io.Serializable;
 @Data
 public class RpcProtocol implements Serializable {
    private MsgHeader header;
-   private byte[] body;
+   // 池化缓冲区，position 到 limit 是序列化好的消息体，用完需要 release
+   private PooledByteBuffer body;
+   // 不为空时消息体是文件中的一段，由传输层用 transferTo 直接写到 socket，写出后由传输层 release
+   private transient FileRegion fileRegion;
 }
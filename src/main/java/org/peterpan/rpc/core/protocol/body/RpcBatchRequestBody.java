@@ -0,0 +1,25 @@
+package org.peterpan.rpc.core.protocol.body;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 批量调用的body协议
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+// 同一个服务的多个调用编码
+public class RpcBatchRequestBody implements Serializable {
+   private List<RpcRequestBody> requests;
+   // true: 服务端并行执行；false: 按顺序逐个执行，前一个失败不影响后面的
+   private boolean parallel;
+}
@@ -0,0 +1,23 @@
+package org.peterpan.rpc.core.protocol.body;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 批量调用响应的body协议
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+// 与请求中的调用按下标一一对应，errors[i] 不为 null 表示第 i 个调用失败
+public class RpcBatchResponseBody implements Serializable {
+   private Object[] results;
+   private String[] errors;
+}
@@ -18,6 +18,8 @@ public class MsgHeader implements Serializable {
    private byte serialization; // 序列化算法
    private byte msgType; // 数据类型
    private byte status; // 状态
+   private byte compression; // 消息体压缩算法，见 CompressTypeEnum
    private long requestId; // 请求 ID
+   private int timeout; // 调用方剩余的超时时间(毫秒)，0 表示不限，服务端据此丢弃调用方已经放弃的请求
 }
 
@@ -0,0 +1,116 @@
+package org.peterpan.rpc.core.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.RpcEncoder;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 准入控制
+ *
+ * 在IO线程上决定请求能否进入业务线程池：排队等待执行的请求太多，或者最近的请求在队列里等得太久，
+ * 说明服务端已经处理不过来，继续收下只会让所有请求一起超时。这时立即回一个 OVERLOADED 帧并带上建议的重试间隔，
+ * 客户端马上换一个节点重试，不占用线程池，也不需要等到超时
+ */
+@Slf4j
+public class AdmissionController {
+
+    private final int maxQueued;
+    private final long maxQueueDelayNanos;
+    private final int minRetryAfterMillis;
+    // 已经放行、还没开始执行的请求数
+    private final AtomicInteger queued = new AtomicInteger();
+    // 请求在队列中等待时间的滑动平均，多个线程并发更新时丢掉个别样本也无妨
+    private volatile long queueDelayNanos;
+
+    public AdmissionController() {
+        RpcConfig rpcConfig = RpcConfig.getInstance();
+        this.maxQueued = rpcConfig.getAdmissionMaxQueued();
+        this.maxQueueDelayNanos = TimeUnit.MILLISECONDS.toNanos(rpcConfig.getAdmissionMaxQueueDelay());
+        this.minRetryAfterMillis = rpcConfig.getOverloadRetryAfter();
+    }
+
+    /**
+     * 是否放行一个新请求，放行后必须调用 started 或者 rejected。
+     * 队列已经排空时等待时间清零，否则上一波高峰留下的平均值没有新样本更新，会一直拒绝下去
+     */
+    public boolean tryAdmit() {
+        int current = queued.get();
+        if (current == 0) {
+            queueDelayNanos = 0;
+        } else if (current >= maxQueued || queueDelayNanos > maxQueueDelayNanos) {
+            return false;
+        }
+        queued.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 放行的请求开始执行，admittedNanos 为放行时的 System.nanoTime()
+     */
+    public void started(long admittedNanos) {
+        queued.decrementAndGet();
+        long delay = System.nanoTime() - admittedNanos;
+        long average = queueDelayNanos;
+        queueDelayNanos = average + ((delay - average) >> 3);
+    }
+
+    /**
+     * 放行的请求被线程池拒绝
+     */
+    public void rejected() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * 建议客户端隔多久再把请求发到本节点：至少为配置值，队列等待越久建议的间隔越长
+     */
+    public int retryAfterMillis() {
+        return (int) Math.max(minRetryAfterMillis, TimeUnit.NANOSECONDS.toMillis(queueDelayNanos));
+    }
+
+    /**
+     * 回复 OVERLOADED：请求没有被处理，消息体的 retObject 是建议的重试间隔(毫秒)
+     */
+    public static void reject(NioChannel channel, MsgHeader reqHeader, int retryAfterMillis) {
+        if (reqHeader.getMsgType() == MsgType.ONE_WAY.ordinal()) {
+            // 单向调用的调用方不等待回复
+            return;
+        }
+        MsgHeader header = new MsgHeader();
+        header.setMagic(reqHeader.getMagic());
+        header.setVersion(reqHeader.getVersion());
+        header.setSerialization(reqHeader.getSerialization());
+        header.setMsgType((byte) MsgType.RESPONSE.ordinal());
+        header.setStatus((byte) StatusConstants.OVERLOADED);
+        header.setRequestId(reqHeader.getRequestId());
+        RpcProtocol rpcProtocol = new RpcProtocol();
+        rpcProtocol.setHeader(header);
+        PooledByteBuffer body = null;
+        try {
+            body = RpcEncoder.encode(RpcResponseBody.builder().retObject(retryAfterMillis).build(), reqHeader.getSerialization());
+        } catch (Exception e) {
+            // 没有重试间隔，客户端按默认值处理
+            log.warn("requestID={}, 编码过载响应失败", reqHeader.getRequestId(), e);
+        }
+        rpcProtocol.setBody(body);
+        try {
+            channel.write(rpcProtocol);
+        } finally {
+            if (body != null) {
+                body.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.peterpan.rpc.core.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.core.server.executor.ExecutionMode;
+import org.peterpan.rpc.core.server.executor.VirtualThreadExecutor;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务隔离线程池(舱壁)
+ *
+ * 按服务键(也可以细到方法)配置独立的线程池和队列，一个服务变慢只会占满它自己的线程池，
+ * 其他服务照常执行。服务键在请求体里，所以由共享线程池解码请求体之后再转交，解码很快，不会长时间占住共享线程。
+ * 没有配置的服务仍然在共享线程池中执行；独立线程池满了直接拒绝，不会退回共享线程池
+ */
+@Slf4j
+public class Bulkheads {
+
+    // 服务键 或 服务键#方法名 -> 独立线程池，启动后只读
+    private final Map<String, ExecutorService> executors = new HashMap<>();
+
+    /**
+     * @param config 服务键[#方法名] -> 线程数[,队列长度]
+     */
+    public Bulkheads(Map<String, String> config, ExecutionMode executionMode) {
+        for (Map.Entry<String, String> entry : config.entrySet()) {
+            String key = entry.getKey();
+            String[] limits = entry.getValue().split(",");
+            int threads;
+            int queueSize;
+            try {
+                threads = Integer.parseInt(limits[0].trim());
+                queueSize = limits.length > 1 ? Integer.parseInt(limits[1].trim()) : 0;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("隔离线程池配置错误: bulkhead." + key + "=" + entry.getValue(), e);
+            }
+            if (threads <= 0 || queueSize < 0) {
+                throw new IllegalArgumentException("隔离线程池配置错误: bulkhead." + key + "=" + entry.getValue());
+            }
+            executors.put(key, create(key, threads, queueSize, executionMode));
+            log.info("服务 {} 使用独立线程池, threads={}, queue={}", key, threads, queueSize);
+        }
+    }
+
+    private static ExecutorService create(String key, int threads, int queueSize, ExecutionMode executionMode) {
+        String namePrefix = "rpc-bulkhead-" + key + "-";
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            // 虚拟线程不排队，线程数即同时执行的上限。拒绝时没有对应的 ThreadPoolExecutor，
+            // 不能用 AbortPolicy(它会拼接 executor 的描述)，直接抛出异常由 RpcServerWorker 回复过载
+            ExecutorService executor = VirtualThreadExecutor.create(namePrefix, threads, (r, pool) -> {
+                throw new RejectedExecutionException("服务 " + key + " 的独立线程池已满");
+            });
+            if (executor != null) {
+                return executor;
+            }
+        }
+        BlockingQueue<Runnable> workingQueue = queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, workingQueue,
+                new ThreadFactory() {
+                    private final AtomicInteger index = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, namePrefix + index.incrementAndGet());
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // 服务空闲时不常驻线程
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 请求应该使用的独立线程池：先找方法级别的配置，再找服务级别的，都没有时返回 null(使用共享线程池)
+     */
+    public ExecutorService find(RpcRequestBody request) {
+        if (executors.isEmpty()) {
+            return null;
+        }
+        String serviceKey = RpcServiceNameBuilder.buildServiceKey(request.getInterfaceName(), request.getServiceVersion());
+        ExecutorService executor = executors.get(serviceKey + "#" + request.getMethodName());
+        return executor != null ? executor : executors.get(serviceKey);
+    }
+}
@@ -0,0 +1,35 @@
+package org.peterpan.rpc.core.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 本进程注册的服务实现
+ *
+ * RpcServerTransfer.register 时登记，同一个进程里的调用方据此直接调用实现，不经过注册中心和网络
+ */
+public final class LocalServiceRegistry {
+
+    // 服务键 -> 服务实现
+    private static final Map<String, Object> SERVICES = new ConcurrentHashMap<>();
+
+    private LocalServiceRegistry() {
+    }
+
+    public static void register(String serviceKey, Object serviceBean) {
+        SERVICES.put(serviceKey, serviceBean);
+    }
+
+    /**
+     * 本进程没有注册该服务时返回 null
+     */
+    public static Object find(String serviceKey) {
+        return SERVICES.get(serviceKey);
+    }
+
+    public static boolean isEmpty() {
+        return SERVICES.isEmpty();
+    }
+}
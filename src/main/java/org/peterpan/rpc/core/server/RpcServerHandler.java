@@ -0,0 +1,117 @@
+package org.peterpan.rpc.core.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.core.protocol.Heartbeats;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.server.stream.ServerStream;
+import org.peterpan.rpc.core.server.stream.ServerStreamRegistry;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.transfer.nio.ChannelHandler;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+import org.peterpan.rpc.core.transfer.shm.SharedMemoryUpgrade;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端连接事件处理
+ *
+ * IO线程只负责收发帧，解码出的请求先经过准入控制，再交给业务线程池中的 RpcServerWorker 执行
+ * (配置了独立线程池的服务，解码请求体后再转到各自的线程池)，
+ * 流式调用后续的帧按 requestId 交给对应的 ServerStream，CANCEL 按 requestId 取消排队或者执行中的普通调用
+ */
+@Slf4j
+public class RpcServerHandler implements ChannelHandler {
+
+    private final ExecutorService threadPool;
+    private final HashMap<String, Object> registeredService;
+    private final ServerStreamRegistry streamRegistry;
+    private final AdmissionController admission = new AdmissionController();
+    private final Bulkheads bulkheads;
+    private final ServerCallRegistry callRegistry = new ServerCallRegistry();
+    private final SingleFlightGroup singleFlight = new SingleFlightGroup();
+
+    public RpcServerHandler(ExecutorService threadPool, HashMap<String, Object> registeredService, Bulkheads bulkheads) {
+        this.threadPool = threadPool;
+        this.registeredService = registeredService;
+        this.bulkheads = bulkheads;
+        this.streamRegistry = new ServerStreamRegistry(threadPool);
+    }
+
+    @Override
+    public void channelRead(NioChannel channel, RpcProtocol msg) {
+        MsgHeader header = msg.getHeader();
+        MsgType msgType = MsgType.findByType(header.getMsgType());
+        switch (msgType) {
+            case HEARTBEAT:
+                // 客户端的心跳直接在IO线程上回复，不占用业务线程
+                msg.getBody().release();
+                channel.write(Heartbeats.frame(header.getRequestId()));
+                return;
+            case STREAM_DATA:
+            case STREAM_BLOB:
+            case STREAM_HALF_CLOSE:
+            case STREAM_WINDOW_UPDATE:
+            case STREAM_CANCEL:
+                ServerStream stream = streamRegistry.find(channel, header.getRequestId());
+                if (stream == null) {
+                    // 流已经结束，迟到的帧直接丢弃
+                    StreamFrames.discard(msg);
+                } else {
+                    stream.onFrame(msg);
+                }
+                return;
+            case CANCEL:
+                // 调用方放弃了普通调用，在IO线程上登记取消，不必等业务线程
+                msg.getBody().release();
+                RpcServerWorker call = callRegistry.find(channel, header.getRequestId());
+                if (call != null) {
+                    call.cancel();
+                }
+                return;
+            case SHM_UPGRADE:
+                // 同机的客户端请求改走共享内存，映射文件很快，直接在IO线程上完成
+                SharedMemoryUpgrade.accept(channel, msg);
+                return;
+            default:
+                break;
+        }
+        if (!admission.tryAdmit()) {
+            // 不进线程池排队，立即让客户端换节点
+            msg.getBody().release();
+            AdmissionController.reject(channel, header, admission.retryAfterMillis());
+            log.warn("服务端过载, 拒绝 {} 的请求, requestID={}", channel.getRemoteAddress(), header.getRequestId());
+            return;
+        }
+        if (msgType == MsgType.STREAM_OPEN) {
+            // 先登记流，紧跟着到达的窗口等帧才能找到它；流结束时再算作请求完成
+            streamRegistry.open(channel, header);
+        }
+        channel.requestStarted();
+        RpcServerWorker worker = new RpcServerWorker(channel, msg, registeredService, streamRegistry, admission, threadPool, bulkheads, callRegistry, singleFlight);
+        if (msgType == MsgType.REQUEST || msgType == MsgType.BATCH) {
+            callRegistry.register(channel, header.getRequestId(), worker);
+        }
+        threadPool.execute(worker);
+    }
+
+    @Override
+    public void channelInactive(NioChannel channel) {
+        streamRegistry.channelClosed(channel);
+        callRegistry.channelClosed(channel);
+        log.info("Client Disconnected, ip={}", channel.getRemoteAddress());
+    }
+
+    @Override
+    public void channelIdle(NioChannel channel) {
+        // 空闲超时并且没有在处理的请求，回收连接；客户端下次调用时会重新建立
+        if (channel.getInFlightRequests() == 0) {
+            log.info("连接空闲超时, 关闭连接, ip={}", channel.getRemoteAddress());
+            channel.close();
+        }
+    }
+}
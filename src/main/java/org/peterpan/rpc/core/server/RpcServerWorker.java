@@ -1,26 +1,40 @@
 package org.peterpan.rpc.core.server;
 
 import lombok.Data;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.peterpan.rpc.common.MsgType;
 import org.peterpan.rpc.common.ProtocolConstants;
 import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.FrameTooLongException;
 import org.peterpan.rpc.core.codec.RpcDecoder;
 import org.peterpan.rpc.core.codec.RpcEncoder;
+import org.peterpan.rpc.core.context.RpcContext;
 import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcBatchRequestBody;
+import org.peterpan.rpc.core.protocol.body.RpcBatchResponseBody;
 import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
 import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
 import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.server.stream.ServerStream;
+import org.peterpan.rpc.core.server.stream.ServerStreamRegistry;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.core.stream.BlobSink;
+import org.peterpan.rpc.core.stream.StreamObserver;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
 import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
 import org.springframework.cglib.reflect.FastClass;
 
-import java.io.*;
 import java.lang.reflect.InvocationTargetException;
-import java.net.Socket;
 import java.util.HashMap;
-
-import static java.lang.Thread.sleep;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author PeterPan
@@ -31,81 +45,681 @@ import static java.lang.Thread.sleep;
 @Data
 public class RpcServerWorker implements Runnable {
 
-    private Socket socket;
+    private NioChannel channel;
+    private RpcProtocol rpcRequest;
     private HashMap<String, Object> registeredService;
+    private ServerStreamRegistry streamRegistry;
+    private AdmissionController admission;
+    // 共享线程池，并行执行批量调用时使用
+    private ExecutorService threadPool;
+    private Bulkheads bulkheads;
+    private ServerCallRegistry callRegistry;
+    private SingleFlightGroup singleFlight;
+    // 作为跟随者加入合并执行时的请求体，执行者被取消、轮到自己执行时使用
+    private RpcRequestBody flightRequestBody;
+    // 通过准入控制的时间，用来统计排队时长
+    private long admittedNanos;
+    // 调用方的截止时间(System.nanoTime)，由请求头中剩余的超时时间换算，0 表示不限
+    private long deadlineNanos;
+    // 截止时间和取消状态，执行服务实现期间挂在执行线程上
+    private RpcContext context;
+    // 正在执行服务实现的线程，取消时中断它，由 this 保护
+    private Thread runner;
 
-    public RpcServerWorker(Socket socket, HashMap<String, Object> registeredService) {
-        this.socket = socket;
+    public RpcServerWorker(NioChannel channel, RpcProtocol rpcRequest, HashMap<String, Object> registeredService,
+                           ServerStreamRegistry streamRegistry, AdmissionController admission, ExecutorService threadPool,
+                           Bulkheads bulkheads, ServerCallRegistry callRegistry, SingleFlightGroup singleFlight) {
+        this.channel = channel;
+        this.rpcRequest = rpcRequest;
         this.registeredService = registeredService;
+        this.streamRegistry = streamRegistry;
+        this.admission = admission;
+        this.threadPool = threadPool;
+        this.bulkheads = bulkheads;
+        this.callRegistry = callRegistry;
+        this.singleFlight = singleFlight;
+        this.admittedNanos = System.nanoTime();
+        int timeout = rpcRequest.getHeader().getTimeout();
+        this.deadlineNanos = timeout > 0 ? admittedNanos + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        this.context = new RpcContext(deadlineNanos);
+    }
+
+    /**
+     * 调用方取消了请求(CANCEL 帧或者连接关闭)：还在排队的轮到时直接跳过，正在执行的中断执行线程，
+     * 服务实现通过 RpcContext 注册的回调也在这里执行
+     */
+    public void cancel() {
+        context.cancel();
+        synchronized (this) {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
     }
 
-    @SneakyThrows
     @Override
     public void run() {
-        ObjectOutputStream objectOutputStream = null;
-        ObjectInputStream objectInputStream = null;
+        admission.started(admittedNanos);
+        if (context.cancelled()) {
+            drop("调用方已取消");
+            return;
+        }
+        if (isExpired()) {
+            // 排队期间调用方已经超时放弃，不必再解码和执行
+            drop("调用方已超时");
+            return;
+        }
+        Object requestBody;
         try {
-            objectInputStream = new ObjectInputStream(socket.getInputStream());
-            objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-
-            // 1、Transfer层获取到RpcRequest消息【transfer层】
-            RpcProtocol rpcRequest = (RpcProtocol) objectInputStream.readObject();
+            requestBody = decodeRequest(rpcRequest);
+        } catch (Throwable e) {
+            decodeFailed(e);
+            return;
+        }
+        // 批量调用中的调用属于同一个服务，按第一个调用选择独立线程池
+        RpcBatchRequestBody batch = requestBody instanceof RpcBatchRequestBody ? (RpcBatchRequestBody) requestBody : null;
+        RpcRequestBody rpcRequestBody = batch != null ? batch.getRequests().get(0) : (RpcRequestBody) requestBody;
+        ExecutorService bulkhead = bulkheads.find(rpcRequestBody);
+        Runnable task = batch != null ? () -> invokeBatch(batch, bulkhead) : () -> invoke(rpcRequestBody);
+        if (bulkhead == null) {
+            task.run();
+            return;
+        }
+        try {
+            bulkhead.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 该服务的独立线程池已满，请求没有被执行，让客户端换节点重试；
+            // 本节点的其他服务不受影响，所以不建议客户端暂时避开本节点
             MsgHeader reqHeader = rpcRequest.getHeader();
+            AdmissionController.reject(channel, reqHeader, 0);
+            if (reqHeader.getMsgType() == MsgType.STREAM_OPEN.ordinal()) {
+                streamRegistry.remove(channel, reqHeader.getRequestId());
+            }
+            completed();
+            log.warn("服务 {}_{} 的独立线程池已满, 拒绝请求, requestID={}", rpcRequestBody.getInterfaceName(),
+                    rpcRequestBody.getServiceVersion(), reqHeader.getRequestId());
+        }
+    }
+
+    private boolean isExpired() {
+        return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * 调用方已经放弃(超时或者取消)的请求直接丢弃，不调用服务也不回复
+     */
+    private void drop(String reason) {
+        log.warn("requestID={}, {}, 丢弃请求, 排队{}ms", rpcRequest.getHeader().getRequestId(), reason,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - admittedNanos));
+        if (rpcRequest.getBody() != null) {
+            rpcRequest.getBody().release();
+            rpcRequest.setBody(null);
+        }
+        completed();
+    }
+
+    /**
+     * 普通调用结束(完成、失败或者丢弃)
+     */
+    void completed() {
+        callRegistry.remove(channel, rpcRequest.getHeader().getRequestId(), this);
+        channel.requestCompleted();
+    }
+
+    /**
+     * 请求体无法解码：流式调用以错误结束流，普通调用只记录日志
+     */
+    private void decodeFailed(Throwable e) {
+        MsgHeader reqHeader = rpcRequest.getHeader();
+        log.error("requestID={}, 解码请求失败", reqHeader.getRequestId(), e);
+        // 正常情况下解码后已经释放，这里兜底处理解码之前就失败的情况
+        if (rpcRequest.getBody() != null) {
+            rpcRequest.getBody().release();
+            rpcRequest.setBody(null);
+        }
+        if (reqHeader.getMsgType() == MsgType.STREAM_OPEN.ordinal()) {
+            ServerStream stream = streamRegistry.find(channel, reqHeader.getRequestId());
+            if (stream != null) {
+                stream.getResponseObserver().onError(e);
+            }
+        } else {
+            completed();
+        }
+    }
+
+    /**
+     * 调用服务并写回结果，在共享线程池或者服务的独立线程池中执行
+     */
+    private void invoke(RpcRequestBody rpcRequestBody) {
+        if (rpcRequest.getHeader().getMsgType() == MsgType.STREAM_OPEN.ordinal()) {
+            // 流式调用由流自己在结束时算作请求完成
+            openStream(rpcRequestBody);
+            return;
+        }
+        // 在服务的独立线程池中排队期间取消或者过期
+        if (context.cancelled()) {
+            drop("调用方已取消");
+            return;
+        }
+        if (isExpired()) {
+            drop("调用方已超时");
+            return;
+        }
+        SingleFlightGroup.Key flightKey = singleFlight.keyOf(rpcRequest.getHeader(), rpcRequestBody, registeredService);
+        if (flightKey != null && singleFlight.join(flightKey, this)) {
+            // 相同的调用正在执行，结果由执行者写回，不占用线程等待
+            flightRequestBody = rpcRequestBody;
+            return;
+        }
+        execute(rpcRequestBody, flightKey);
+    }
+
+    /**
+     * 执行服务实现并写回结果；flightKey 不为 null 时作为合并执行的执行者，结果同时写给跟随者
+     */
+    private void execute(RpcRequestBody rpcRequestBody, SingleFlightGroup.Key flightKey) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        boolean async = false;
+        // 执行者被取消后接着执行的跟随者
+        RpcServerWorker next = null;
+        try {
+            Object returnObject;
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            // 服务实现可以通过 RpcContext 取得截止时间、感知取消，继续发起的远程调用也会带上
+            RpcContext.attach(context);
+            try {
+                if (context.cancelled()) {
+                    // 登记执行线程之前刚好被取消，补上中断
+                    Thread.currentThread().interrupt();
+                }
+                returnObject = handle(rpcRequestBody);
+            } finally {
+                RpcContext.detach();
+                synchronized (this) {
+                    runner = null;
+                }
+                // 取消造成的中断只针对这次调用，不能带到线程池的下一个任务
+                Thread.interrupted();
+            }
+            if (rpcRequest.getHeader().getMsgType() == MsgType.ONE_WAY.ordinal()) {
+                // 单向调用不回复
+                return;
+            }
+            if (flightKey != null && !(returnObject instanceof CompletableFuture)) {
+                // 自己被取消也要把结果交给跟随者
+                singleFlight.succeed(flightKey, this, returnObject);
+            } else if (returnObject instanceof CompletableFuture) {
+                // 服务实现返回 CompletableFuture：结果完成时再写响应，不占用业务线程等待。
+                // 要先于下面的取消检查：方法返回之前就已经取消时，登记回调会立即取消 future，由 whenComplete 收尾；
+                // 合并执行的执行者也由 flightCompleted 结束这一轮或者交给跟随者，否则跟随者会一直等下去
+                async = true;
+                CompletableFuture<?> future = (CompletableFuture<?>) returnObject;
+                context.addCancelListener(() -> future.cancel(true));
+                future.whenComplete((result, e) -> {
+                    if (flightKey != null) {
+                        flightCompleted(flightKey, result, e);
+                        return;
+                    }
+                    try {
+                        if (context.cancelled()) {
+                            log.info("requestID={}, 调用已取消, 不再写回结果", requestId);
+                        } else if (e != null) {
+                            log.error("requestID={}, 处理请求失败", requestId, e);
+                        } else {
+                            writeResponse(result);
+                        }
+                    } catch (Throwable ex) {
+                        log.error("requestID={}, 写响应失败", requestId, ex);
+                    } finally {
+                        completed();
+                    }
+                });
+            } else if (context.cancelled()) {
+                log.info("requestID={}, 调用已取消, 不再写回结果", requestId);
+            } else {
+                writeResponse(returnObject);
+            }
+        } catch (Throwable e) {
+            if (context.cancelled()) {
+                log.info("requestID={}, 调用已取消, 执行中止: {}", requestId, e.toString());
+            } else {
+                // 单个请求失败不影响连接上的其他请求
+                log.error("requestID={}, 处理请求失败", requestId, e);
+            }
+            if (flightKey != null) {
+                next = singleFlight.fail(flightKey, this);
+            }
+        } finally {
+            if (!async) {
+                completed();
+            }
+        }
+        if (next != null) {
+            log.info("requestID={}, 合并执行的调用已取消, 由 requestID={} 接着执行", requestId, next.rpcRequest.getHeader().getRequestId());
+            next.execute(next.flightRequestBody, flightKey);
+        }
+    }
+
+    /**
+     * 合并执行的服务实现返回的 CompletableFuture 完成。回调可能在取消它的IO线程上，
+     * 接着执行的跟随者提交到共享线程池，线程池已满时跟随者不回复
+     */
+    private void flightCompleted(SingleFlightGroup.Key flightKey, Object result, Throwable e) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        try {
+            if (e == null) {
+                singleFlight.succeed(flightKey, this, result);
+                return;
+            }
+            if (context.cancelled()) {
+                log.info("requestID={}, 调用已取消, 执行中止: {}", requestId, e.toString());
+            } else {
+                log.error("requestID={}, 处理请求失败", requestId, e);
+            }
+            RpcServerWorker next = singleFlight.fail(flightKey, this);
+            if (next != null) {
+                try {
+                    threadPool.execute(() -> next.execute(next.flightRequestBody, flightKey));
+                } catch (RejectedExecutionException ex) {
+                    log.warn("requestID={}, 线程池已满, 合并执行的调用不再继续", requestId);
+                    singleFlight.fail(flightKey, next);
+                    next.completed();
+                }
+            }
+        } catch (Throwable ex) {
+            log.error("requestID={}, 写响应失败", requestId, ex);
+        } finally {
+            completed();
+        }
+    }
+
+    /**
+     * 批量调用：每个调用的结果或者错误分别记录，全部结束后一次写回，单个调用失败不影响其他调用。
+     * 并行执行时当前线程和最多 batchParallelism - 1 个辅助线程一起领取调用，辅助线程提交到服务的独立线程池
+     * 或者共享线程池，线程池已满时由当前线程独自完成；按顺序执行时在当前线程逐个执行。
+     * 取消或者超时后还没开始的调用不再执行，取消时只中断当前线程，辅助线程上的调用可以通过 RpcContext 感知
+     */
+    private void invokeBatch(RpcBatchRequestBody batch, ExecutorService bulkhead) {
+        if (context.cancelled()) {
+            drop("调用方已取消");
+            return;
+        }
+        if (isExpired()) {
+            drop("调用方已超时");
+            return;
+        }
+        BatchProgress progress = new BatchProgress(batch.getRequests());
+        if (batch.isParallel()) {
+            int helpers = Math.min(RpcConfig.getInstance().getBatchParallelism(), progress.requests.size()) - 1;
+            ExecutorService executor = bulkhead != null ? bulkhead : threadPool;
+            for (int i = 0; i < helpers; i++) {
+                try {
+                    executor.execute(() -> runBatch(progress));
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            runner = Thread.currentThread();
+        }
+        try {
+            runBatch(progress);
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 领取并执行批量调用中还没开始的调用，直到领完
+     */
+    private void runBatch(BatchProgress progress) {
+        int index;
+        while ((index = progress.next.getAndIncrement()) < progress.requests.size()) {
+            if (context.cancelled()) {
+                progress.fail(index, "调用方已取消");
+                continue;
+            }
+            if (isExpired()) {
+                progress.fail(index, "调用方已超时");
+                continue;
+            }
+            RpcContext.attach(context);
+            try {
+                Object returnObject = handle(progress.requests.get(index));
+                if (returnObject instanceof CompletableFuture) {
+                    // 异步结果完成时再计入，不占用线程等待
+                    int asyncIndex = index;
+                    ((CompletableFuture<?>) returnObject).whenComplete((result, e) -> {
+                        if (e != null) {
+                            progress.fail(asyncIndex, e.toString());
+                        } else {
+                            progress.succeed(asyncIndex, result);
+                        }
+                    });
+                } else {
+                    progress.succeed(index, returnObject);
+                }
+            } catch (Throwable e) {
+                log.warn("requestID={}, 批量调用中的第{}个调用失败", rpcRequest.getHeader().getRequestId(), index, e);
+                progress.fail(index, e.toString());
+            } finally {
+                RpcContext.detach();
+            }
+        }
+    }
+
+    /**
+     * 批量调用中的调用全部结束，写回结果
+     */
+    private void batchCompleted(BatchProgress progress) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        try {
+            if (context.cancelled()) {
+                log.info("requestID={}, 调用已取消, 不再写回结果", requestId);
+            } else {
+                writeResponse(MsgType.BATCH_RESPONSE, RpcBatchResponseBody.builder()
+                        .results(progress.results)
+                        .errors(progress.errors)
+                        .build());
+            }
+        } catch (Throwable e) {
+            log.error("requestID={}, 写批量调用的响应失败", requestId, e);
+        } finally {
+            completed();
+        }
+    }
 
-            // 2、解析版本号，并判断【protocol层】
-            if (reqHeader.getMagic() == ProtocolConstants.MAGIC) {
+    /**
+     * 批量调用的执行进度，最后一个结束的调用负责写回响应
+     */
+    private class BatchProgress {
+        final List<RpcRequestBody> requests;
+        final Object[] results;
+        final String[] errors;
+        // 下一个待领取的调用
+        final AtomicInteger next = new AtomicInteger();
+        // 还没结束的调用数，计数的原子操作保证写回时能看到各线程记录的结果
+        final AtomicInteger remaining;
 
-                // 3、将rpcRequest中的body部分解码出来变成RpcRequestBody【codec层】
-                long startTime = System.nanoTime();
+        BatchProgress(List<RpcRequestBody> requests) {
+            this.requests = requests;
+            this.results = new Object[requests.size()];
+            this.errors = new String[requests.size()];
+            this.remaining = new AtomicInteger(requests.size());
+        }
 
-                byte[] body = rpcRequest.getBody();
-                RpcRequestBody rpcRequestBody = (RpcRequestBody) RpcDecoder.decode(body, reqHeader.getSerialization(), reqHeader.getMsgType());
+        void succeed(int index, Object result) {
+            results[index] = result;
+            finish();
+        }
 
-                long endTime = System.nanoTime();
-                long executionTime = (endTime - startTime) / 1_000_000; // 计算执行时间(毫秒为单位)
-                int byteSize = body.length;
-//                log.info("[{}_{}${}] - 反序列化执行时间={}ms, 数据大小={}byte", rpcRequestBody.getInterfaceName(), rpcRequestBody.getServiceVersion(), rpcRequestBody.getMethodName(), executionTime, byteSize);
+        void fail(int index, String error) {
+            errors[index] = error;
+            finish();
+        }
 
-                // 调用服务
-                Object returnObject = handle(rpcRequestBody);
+        private void finish() {
+            if (remaining.decrementAndGet() == 0) {
+                batchCompleted(this);
+            }
+        }
+    }
 
-                // 1、将returnObject编码成bytes[]即变成了返回编码【codec层】
-                byte serializationType = reqHeader.getSerialization();
-                byte msgType = (byte) MsgType.RESPONSE.ordinal(); // 注意这里是响应类型
+    /**
+     * 校验并解码请求体(RpcRequestBody，批量调用时为 RpcBatchRequestBody)，解码后立即释放
+     */
+    private Object decodeRequest(RpcProtocol rpcRequest) throws Exception {
+        MsgHeader reqHeader = rpcRequest.getHeader();
 
-                // 响应消息头
-                MsgHeader respHeader = rpcRequest.getHeader();
-                respHeader.setMagic(ProtocolConstants.MAGIC);
-                respHeader.setVersion(ProtocolConstants.VERSION);
-                respHeader.setSerialization(serializationType); // 配置文件读取方式，暂时使用hessian
-                respHeader.setMsgType(msgType);
-                reqHeader.setStatus((byte) StatusConstants.NORMAL);
+        // 2、解析版本号，并判断【protocol层】
+        if (reqHeader.getMagic() != ProtocolConstants.MAGIC) {
+            throw new IllegalArgumentException("非法的魔数: " + reqHeader.getMagic());
+        }
 
-                // 响应消息体
-                RpcResponseBody rpcResponseBody = RpcResponseBody.builder()
-                        .retObject(returnObject)
-                        .build();
+        // 3、将rpcRequest中的body部分解码出来变成RpcRequestBody【codec层】
+        long startTime = System.nanoTime();
+
+        PooledByteBuffer body = rpcRequest.getBody();
+        Object rpcRequestBody;
+        int byteSize = body.readableBytes();
+        try {
+            rpcRequestBody = RpcDecoder.decode(body, reqHeader.getSerialization(), reqHeader.getMsgType(), reqHeader.getCompression());
+        } finally {
+            // 反序列化完请求体就不再需要了，尽早归还给缓冲池
+            body.release();
+            rpcRequest.setBody(null);
+        }
+        if (rpcRequestBody instanceof RpcBatchRequestBody && ((RpcBatchRequestBody) rpcRequestBody).getRequests().isEmpty()) {
+            throw new IllegalArgumentException("批量调用中没有任何调用");
+        }
 
-                // 序列化
-                byte[] bytes = RpcEncoder.encode(rpcResponseBody, serializationType);
+        long endTime = System.nanoTime();
+        long executionTime = (endTime - startTime) / 1_000_000; // 计算执行时间(毫秒为单位)
+//        log.info("[{}_{}${}] - 反序列化执行时间={}ms, 数据大小={}byte", rpcRequestBody.getInterfaceName(), rpcRequestBody.getServiceVersion(), rpcRequestBody.getMethodName(), executionTime, byteSize);
+        return rpcRequestBody;
+    }
+
+    /**
+     * 编码返回值并写回响应
+     */
+    private void writeResponse(Object returnObject) throws Exception {
+        // 响应消息体
+        RpcResponseBody rpcResponseBody = RpcResponseBody.builder()
+                .retObject(returnObject)
+                .build();
+        writeResponse(MsgType.RESPONSE, rpcResponseBody);
+    }
+
+    /**
+     * 编码响应体(普通调用为 RpcResponseBody，批量调用为 RpcBatchResponseBody)并写回
+     */
+    private void writeResponse(MsgType responseType, Object responseBody) throws Exception {
+        // 1、将returnObject编码成bytes[]即变成了返回编码【codec层】，直接写入池化缓冲区
+        PooledByteBuffer bytes = RpcEncoder.encode(responseBody, rpcRequest.getHeader().getSerialization());
+        try {
+            write(responseType, bytes);
+        } finally {
+            bytes.release();
+        }
+    }
+
+    /**
+     * 写回合并执行的结果：消息体已经由执行者序列化好，各个请求共享同一份，只各自写协议头
+     */
+    void writeShared(PooledByteBuffer bytes) {
+        PooledByteBuffer body = bytes.retainedSlice();
+        try {
+            write(MsgType.RESPONSE, body);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * 给编码好的消息体加上响应的协议头并写出，消息体仍由调用方释放
+     */
+    private void write(MsgType responseType, PooledByteBuffer bytes) {
+        MsgHeader reqHeader = rpcRequest.getHeader();
 
-                // 2、将返回编码作为body，加上header，生成RpcResponse协议【protocol层】
-                RpcProtocol rpcResponse = new RpcProtocol();
-                rpcResponse.setHeader(respHeader);
-                rpcResponse.setBody(bytes);
+        byte serializationType = reqHeader.getSerialization();
+        byte msgType = (byte) responseType.ordinal(); // 注意这里是响应类型
 
-                // 3、发送【transfer层】
-                objectOutputStream.writeObject(rpcResponse);
-                objectOutputStream.flush();
+        // 响应消息头
+        MsgHeader respHeader = rpcRequest.getHeader();
+        respHeader.setMagic(ProtocolConstants.MAGIC);
+        respHeader.setVersion(ProtocolConstants.VERSION);
+        respHeader.setSerialization(serializationType); // 配置文件读取方式，暂时使用hessian
+        respHeader.setMsgType(msgType);
+        respHeader.setTimeout(0);
+        reqHeader.setStatus((byte) StatusConstants.NORMAL);
+
+        // 2、将返回编码作为body，加上header，生成RpcResponse协议【protocol层】
+        RpcProtocol rpcResponse = new RpcProtocol();
+        rpcResponse.setHeader(respHeader);
+        rpcResponse.setBody(bytes);
+
+        // 3、发送【transfer层】，由连接所属的IO线程写出，写出的帧自己持有一份引用
+        try {
+            channel.write(rpcResponse);
+        } catch (FrameTooLongException e) {
+            // 响应没有发出，回复这个 requestId 失败，不能让客户端的解码器因为超长的帧关闭整条连接
+            log.error("requestID={}, 响应超过 maxFrameLength", respHeader.getRequestId(), e);
+            writeException(e.getMessage());
+        }
+    }
+
+    /**
+     * 回复 EXCEPTION：调用已经执行但无法返回结果，消息体的 retObject 是错误信息
+     */
+    private void writeException(String message) {
+        MsgHeader header = rpcRequest.getHeader();
+        header.setMsgType((byte) MsgType.RESPONSE.ordinal());
+        header.setStatus((byte) StatusConstants.EXCEPTION);
+        RpcProtocol rpcResponse = new RpcProtocol();
+        rpcResponse.setHeader(header);
+        PooledByteBuffer body = null;
+        try {
+            body = RpcEncoder.encode(RpcResponseBody.builder().retObject(message).build(), header.getSerialization());
+        } catch (Exception e) {
+            // 没有错误信息，客户端按默认信息处理
+            log.warn("requestID={}, 编码异常响应失败", header.getRequestId(), e);
+        }
+        rpcResponse.setBody(body);
+        try {
+            channel.write(rpcResponse);
+        } finally {
+            if (body != null) {
+                body.release();
+            }
+        }
+    }
+
+    /**
+     * 流式调用：参数中的 StreamObserver 换成发送响应元素的 observer 后调用服务。
+     * 服务返回 Iterator 时在当前线程按客户端的接收窗口逐个发送元素，不在内存中攒出完整结果；
+     * 返回 StreamObserver 时由它接收客户端发来的元素；返回 Blob 时按块发送原始字节。
+     * 有 Blob 参数时先把客户端上传的内容接收到临时文件，客户端半关闭后再调用服务
+     */
+    @SuppressWarnings("unchecked")
+    private void openStream(RpcRequestBody rpcRequestBody) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        ServerStream stream = streamRegistry.find(channel, requestId);
+        if (stream == null) {
+            // 打开之前连接已经关闭
+            return;
+        }
+        StreamObserver<Object> responseObserver = stream.getResponseObserver();
+        try {
+            Class<?>[] paramTypes = rpcRequestBody.getParamTypes();
+            Object[] parameters = rpcRequestBody.getParameters();
+            int blobIndex = -1;
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (paramTypes[i] == StreamObserver.class) {
+                    parameters[i] = responseObserver;
+                } else if (paramTypes[i] == Blob.class) {
+                    blobIndex = i;
+                }
+            }
+            if (blobIndex >= 0) {
+                receiveBlob(stream, rpcRequestBody, blobIndex);
+                return;
+            }
+            Object returnObject = handle(rpcRequestBody);
+            if (returnObject instanceof StreamObserver) {
+                stream.bind((StreamObserver<Object>) returnObject);
+            } else {
+                writeStreamResult(returnObject, stream);
             }
+        } catch (Throwable e) {
+            log.error("requestID={}, 处理流式请求失败", requestId, e);
+            responseObserver.onError(e);
+        }
+    }
+
+    /**
+     * 接收客户端上传的 Blob，收完后在投递线程上调用服务，方法返回后删除临时文件
+     */
+    private void receiveBlob(ServerStream stream, RpcRequestBody rpcRequestBody, int blobIndex) throws Exception {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        BlobSink sink = new BlobSink();
+        stream.bind(new StreamObserver<Object>() {
+            @Override
+            public void onNext(Object value) {
+                throw new IllegalStateException("requestID=" + requestId + ", Blob 上传只接收 STREAM_BLOB");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                sink.discard();
+            }
+
+            @Override
+            public void onCompleted() {
+                Blob blob = null;
+                try {
+                    blob = sink.finish();
+                    rpcRequestBody.getParameters()[blobIndex] = blob;
+                    writeStreamResult(handle(rpcRequestBody), stream);
+                } catch (Throwable e) {
+                    log.error("requestID={}, 处理 Blob 上传失败", requestId, e);
+                    stream.getResponseObserver().onError(e);
+                } finally {
+                    if (blob != null) {
+                        blob.delete();
+                    } else {
+                        sink.discard();
+                    }
+                }
+            }
+        }, sink);
+    }
 
-        } catch (IOException | ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
-                 InvocationTargetException e) {
-            e.printStackTrace();
+    /**
+     * 流式调用的结果：Iterator 逐个发送，Blob 按块发送，其他返回值作为唯一的元素
+     */
+    private void writeStreamResult(Object returnObject, ServerStream stream) throws Exception {
+        if (returnObject instanceof Iterator) {
+            writeStream((Iterator<?>) returnObject, stream);
+        } else if (returnObject instanceof Blob) {
+            stream.sendBlob((Blob) returnObject);
+        } else {
+            stream.getResponseObserver().onNext(returnObject);
+            stream.getResponseObserver().onCompleted();
+        }
+    }
+
+    private void writeStream(Iterator<?> iterator, ServerStream stream) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        StreamObserver<Object> responseObserver = stream.getResponseObserver();
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                responseObserver.onNext(iterator.next());
+                count++;
+            }
+            responseObserver.onCompleted();
+        } catch (Throwable e) {
+            if (stream.isFinished()) {
+                // 客户端取消或者连接已经关闭
+                log.info("requestID={}, 流已经结束, 停止发送, 已发送{}个元素", requestId, count);
+            } else {
+                log.error("requestID={}, 流式响应中断, 已发送{}个元素", requestId, count, e);
+            }
+            responseObserver.onError(e);
         } finally {
-            objectInputStream.close();
-            sleep(5000);
-            objectOutputStream.close(); // 这里的释放资源要间隔一段时间，因为这个输入不产生返回值我无法保证对方读取完整数据，延迟5s关闭
+            if (iterator instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) iterator).close();
+                } catch (Exception e) {
+                    log.warn("requestID={}, 关闭流失败", requestId, e);
+                }
+            }
         }
     }
 
@@ -129,7 +743,11 @@ public class RpcServerWorker implements Runnable {
 
         FastClass fastClass = FastClass.create(serviceClass);
         int methodIndex = fastClass.getIndex(methodName, parameterTypes);
-        // 调用方法并返回结果
-        return fastClass.invoke(methodIndex, serviceBean, parameters);
+        // 调用方法并返回结果，服务实现抛出的异常原样抛出
+        try {
+            return fastClass.invoke(methodIndex, serviceBean, parameters);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
     }
 }
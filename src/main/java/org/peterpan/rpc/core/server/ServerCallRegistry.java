@@ -0,0 +1,47 @@
+package org.peterpan.rpc.core.server;
+
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端正在排队或者执行的普通调用
+ *
+ * 收到 CANCEL 时按 requestId 找到对应的请求并取消；requestId 只在一个客户端内唯一，所以和流一样按连接分组。
+ * 连接关闭时这条连接上的调用全部取消，结果已经没有地方可写
+ */
+public class ServerCallRegistry {
+
+    private final Map<NioChannel, Map<Long, RpcServerWorker>> calls = new ConcurrentHashMap<>();
+
+    public void register(NioChannel channel, long requestId, RpcServerWorker worker) {
+        calls.computeIfAbsent(channel, c -> new ConcurrentHashMap<>()).put(requestId, worker);
+    }
+
+    public RpcServerWorker find(NioChannel channel, long requestId) {
+        Map<Long, RpcServerWorker> channelCalls = calls.get(channel);
+        return channelCalls == null ? null : channelCalls.get(requestId);
+    }
+
+    /**
+     * 只移除 worker 自己，同一个 requestId 的重试请求可能已经登记了新的 worker
+     */
+    public void remove(NioChannel channel, long requestId, RpcServerWorker worker) {
+        Map<Long, RpcServerWorker> channelCalls = calls.get(channel);
+        if (channelCalls != null) {
+            channelCalls.remove(requestId, worker);
+        }
+    }
+
+    public void channelClosed(NioChannel channel) {
+        Map<Long, RpcServerWorker> channelCalls = calls.remove(channel);
+        if (channelCalls != null) {
+            for (RpcServerWorker worker : channelCalls.values()) {
+                worker.cancel();
+            }
+        }
+    }
+}
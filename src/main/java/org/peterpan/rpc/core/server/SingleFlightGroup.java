@@ -0,0 +1,250 @@
+package org.peterpan.rpc.core.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.annotation.SingleFlight;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.RpcEncoder;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 合并相同的并发调用(single-flight)
+ *
+ * 标注了 @SingleFlight 的方法，服务键、方法、参数和序列化方式都相同的调用同一时刻只有一个在执行(执行者)，
+ * 执行期间到达的相同调用登记为跟随者后直接返回，不占用线程；执行者拿到结果后只序列化一次，
+ * 写给自己和所有跟随者。执行失败时和普通调用一样只记录日志。
+ * 执行者被调用方取消时，这一轮交给第一个还没取消的跟随者，由同一个线程接着执行
+ */
+@Slf4j
+public class SingleFlightGroup {
+
+    // 服务键#方法名(参数类型) -> 是否标注了 @SingleFlight
+    private final Map<String, Boolean> enabledMethods = new ConcurrentHashMap<>();
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 请求对应的合并键，方法没有开启合并(或者是单向调用)时返回 null
+     */
+    public Key keyOf(MsgHeader reqHeader, RpcRequestBody request, HashMap<String, Object> registeredService) {
+        if (reqHeader.getMsgType() != MsgType.REQUEST.ordinal()) {
+            return null;
+        }
+        String serviceKey = RpcServiceNameBuilder.buildServiceKey(request.getInterfaceName(), request.getServiceVersion());
+        Object serviceBean = registeredService.get(serviceKey);
+        if (serviceBean == null) {
+            return null;
+        }
+        String methodKey = serviceKey + "#" + request.getMethodName() + Arrays.toString(request.getParamTypes());
+        boolean enabled = enabledMethods.computeIfAbsent(methodKey,
+                k -> isAnnotated(serviceBean.getClass(), request.getMethodName(), request.getParamTypes()));
+        return enabled ? new Key(reqHeader.getSerialization(), methodKey, request.getParameters()) : null;
+    }
+
+    /**
+     * 实现类的方法或者它实现的接口中的方法标注了 @SingleFlight
+     */
+    private static boolean isAnnotated(Class<?> serviceClass, String methodName, Class<?>[] paramTypes) {
+        try {
+            if (serviceClass.getMethod(methodName, paramTypes).isAnnotationPresent(SingleFlight.class)) {
+                return true;
+            }
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+        for (Class<?> type = serviceClass; type != null; type = type.getSuperclass()) {
+            for (Class<?> serviceInterface : type.getInterfaces()) {
+                try {
+                    if (serviceInterface.getMethod(methodName, paramTypes).isAnnotationPresent(SingleFlight.class)) {
+                        return true;
+                    }
+                } catch (NoSuchMethodException ignored) {
+                    // 不是这个接口的方法
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 相同的调用正在执行时登记为跟随者并返回 true，结果由执行者写回；否则成为执行者，返回 false
+     */
+    public boolean join(Key key, RpcServerWorker worker) {
+        for (; ; ) {
+            Flight flight = flights.computeIfAbsent(key, k -> new Flight(worker));
+            if (flight.leader == worker) {
+                return false;
+            }
+            if (flight.follow(worker)) {
+                return true;
+            }
+            // 这一轮刚刚结束，重新开始一轮
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 执行成功：序列化一次结果，写给执行者和所有还没取消的跟随者
+     */
+    public void succeed(Key key, RpcServerWorker leader, Object returnObject) throws Exception {
+        List<RpcServerWorker> followers = finish(key, leader);
+        MsgHeader reqHeader = leader.getRpcRequest().getHeader();
+        PooledByteBuffer bytes = RpcEncoder.encode(RpcResponseBody.builder().retObject(returnObject).build(), reqHeader.getSerialization());
+        try {
+            for (RpcServerWorker follower : followers) {
+                try {
+                    if (follower.getContext().cancelled()) {
+                        log.info("requestID={}, 调用已取消, 不再写回结果", follower.getRpcRequest().getHeader().getRequestId());
+                    } else {
+                        follower.writeShared(bytes);
+                    }
+                } catch (Throwable e) {
+                    log.error("requestID={}, 写响应失败", follower.getRpcRequest().getHeader().getRequestId(), e);
+                } finally {
+                    follower.completed();
+                }
+            }
+            if (followers.size() > 0) {
+                log.debug("requestID={}, 合并了{}个相同的调用", reqHeader.getRequestId(), followers.size());
+            }
+            if (leader.getContext().cancelled()) {
+                log.info("requestID={}, 调用已取消, 不再写回结果", reqHeader.getRequestId());
+            } else {
+                leader.writeShared(bytes);
+            }
+        } finally {
+            bytes.release();
+        }
+    }
+
+    /**
+     * 执行失败。执行者是被取消的，把这一轮交给第一个还没取消的跟随者并返回它，由调用方接着执行；
+     * 否则跟随者和执行者一样不回复，返回 null
+     */
+    public RpcServerWorker fail(Key key, RpcServerWorker leader) {
+        if (leader.getContext().cancelled()) {
+            Flight flight = flights.get(key);
+            RpcServerWorker next = flight == null || flight.leader != leader ? null : flight.handOff();
+            if (next != null) {
+                return next;
+            }
+        }
+        for (RpcServerWorker follower : finish(key, leader)) {
+            log.warn("requestID={}, 合并执行的调用失败, 不回复", follower.getRpcRequest().getHeader().getRequestId());
+            follower.completed();
+        }
+        return null;
+    }
+
+    /**
+     * 结束这一轮，之后到达的相同调用开始新的一轮，返回这一轮的跟随者
+     */
+    private List<RpcServerWorker> finish(Key key, RpcServerWorker leader) {
+        Flight flight = flights.get(key);
+        if (flight == null || flight.leader != leader) {
+            return new ArrayList<>();
+        }
+        flights.remove(key, flight);
+        return flight.close();
+    }
+
+    /**
+     * 一轮合并执行
+     */
+    private static final class Flight {
+        volatile RpcServerWorker leader;
+        // 结束后为 null，不再接收跟随者
+        private List<RpcServerWorker> followers = new ArrayList<>();
+
+        Flight(RpcServerWorker leader) {
+            this.leader = leader;
+        }
+
+        synchronized boolean follow(RpcServerWorker worker) {
+            if (followers == null) {
+                return false;
+            }
+            followers.add(worker);
+            return true;
+        }
+
+        synchronized List<RpcServerWorker> close() {
+            List<RpcServerWorker> result = followers;
+            followers = null;
+            return result == null ? new ArrayList<>() : result;
+        }
+
+        /**
+         * 执行者被取消：已经取消的跟随者直接结束，第一个还没取消的跟随者成为新的执行者
+         */
+        RpcServerWorker handOff() {
+            List<RpcServerWorker> cancelled = new ArrayList<>();
+            RpcServerWorker next = null;
+            synchronized (this) {
+                if (followers == null) {
+                    return null;
+                }
+                while (!followers.isEmpty()) {
+                    RpcServerWorker follower = followers.remove(0);
+                    if (!follower.getContext().cancelled()) {
+                        next = follower;
+                        leader = follower;
+                        break;
+                    }
+                    cancelled.add(follower);
+                }
+            }
+            for (RpcServerWorker follower : cancelled) {
+                follower.completed();
+            }
+            return next;
+        }
+    }
+
+    /**
+     * 合并键：序列化方式不同的调用结果编码不同，不能共享
+     */
+    public static final class Key {
+        private final byte serialization;
+        private final String methodKey;
+        private final Object[] parameters;
+        private final int hash;
+
+        Key(byte serialization, String methodKey, Object[] parameters) {
+            this.serialization = serialization;
+            this.methodKey = methodKey;
+            this.parameters = parameters == null ? new Object[0] : parameters;
+            this.hash = Objects.hash(serialization, methodKey) * 31 + Arrays.deepHashCode(this.parameters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && serialization == other.serialization
+                    && methodKey.equals(other.methodKey) && Arrays.deepEquals(parameters, other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.peterpan.rpc.core.server.executor;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端业务请求的执行方式
+ */
+public enum ExecutionMode {
+    // 固定大小的平台线程池
+    PLATFORM,
+    // 每个请求一个虚拟线程(JDK 21+)
+    VIRTUAL;
+
+    public static ExecutionMode toExecutionMode(String mode) {
+        for (ExecutionMode value : values()) {
+            if (value.toString().equalsIgnoreCase(mode)) {
+                return value;
+            }
+        }
+        return PLATFORM;
+    }
+}
@@ -0,0 +1,123 @@
+package org.peterpan.rpc.core.server.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 虚拟线程执行器
+ *
+ * 每个请求在一个新的虚拟线程上执行，阻塞型的服务实现(数据库、下游调用)不再占满平台线程池。
+ * 用信号量限制同时执行的请求数，超过上限时不排队，直接交给拒绝策略通知客户端。
+ * 项目按 JDK 8 编译，虚拟线程的 API 通过反射获取，运行时 JDK 不支持时 create 返回 null
+ */
+@Slf4j
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final RejectedExecutionHandler rejectedExecutionHandler;
+    private volatile boolean shutdown = false;
+
+    private VirtualThreadExecutor(ThreadFactory threadFactory, int maxConcurrency, RejectedExecutionHandler rejectedExecutionHandler) {
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        this.rejectedExecutionHandler = rejectedExecutionHandler;
+    }
+
+    /**
+     * 创建虚拟线程执行器，当前 JDK 不支持虚拟线程时返回 null
+     */
+    public static VirtualThreadExecutor create(String namePrefix, int maxConcurrency, RejectedExecutionHandler rejectedExecutionHandler) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0: " + maxConcurrency);
+        }
+        ThreadFactory threadFactory = virtualThreadFactory(namePrefix);
+        if (threadFactory == null) {
+            return null;
+        }
+        return new VirtualThreadExecutor(threadFactory, maxConcurrency, rejectedExecutionHandler);
+    }
+
+    /**
+     * Thread.ofVirtual().name(namePrefix, 0).factory()
+     */
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // 通过公开的接口取方法，实现类本身不可访问
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Throwable e) {
+            // JDK 21 以下没有这个 API，JDK 19/20 未开启 preview 时会抛 UnsupportedOperationException
+            log.debug("当前JDK不支持虚拟线程: {}", e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown || !permits.tryAcquire()) {
+            // 拒绝策略只使用任务本身，没有对应的 ThreadPoolExecutor
+            rejectedExecutionHandler.rejectedExecution(command, null);
+            return;
+        }
+        try {
+            threadFactory.newThread(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            }).start();
+        } catch (Throwable e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        // 虚拟线程不排队，没有等待执行的任务
+        shutdown = true;
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == maxConcurrency;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        // 拿到全部许可说明所有请求都执行完了
+        if (permits.tryAcquire(maxConcurrency, timeout, unit)) {
+            permits.release(maxConcurrency);
+            return true;
+        }
+        return false;
+    }
+}
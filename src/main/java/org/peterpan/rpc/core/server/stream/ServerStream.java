@@ -0,0 +1,308 @@
+package org.peterpan.rpc.core.server.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.core.stream.BlobSink;
+import org.peterpan.rpc.core.stream.SerialExecutor;
+import org.peterpan.rpc.core.stream.StreamCredit;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.stream.StreamObserver;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端的一个流
+ *
+ * 收到 STREAM_OPEN 时创建，服务端发出 STREAM_HALF_CLOSE(正常或者异常)、客户端取消或者连接关闭时结束。
+ * 客户端发来的元素在业务线程池上按顺序交给服务实现返回的 observer，消费后向客户端放开接收窗口；
+ * 服务端发出的元素受客户端接收窗口限制
+ */
+@Slf4j
+public class ServerStream {
+
+    private final ServerStreamRegistry registry;
+    private final NioChannel channel;
+    private final long requestId;
+    private final byte serializationType;
+    private final int window;
+    private final long creditTimeoutMillis;
+    // 向客户端发送的窗口
+    private final StreamCredit credit = new StreamCredit();
+    // 客户端发来的元素按顺序在业务线程池上处理
+    private final SerialExecutor inbound;
+    private final StreamObserver<Object> responseObserver = new ResponseObserver();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile StreamObserver<Object> requestObserver;
+    // 客户端上传 Blob 时接收 STREAM_BLOB 的临时文件
+    private volatile BlobSink blobSink;
+    private volatile boolean inboundClosed;
+    // 以下字段只在 inbound 上访问
+    private int consumedSinceUpdate;
+    // 服务实现返回 observer 之前到达的帧(比如没有任何元素的上传紧跟着的半关闭)，绑定后按顺序补投
+    private final Queue<RpcProtocol> earlyFrames = new ArrayDeque<>();
+    private boolean bound;
+
+    ServerStream(ServerStreamRegistry registry, NioChannel channel, long requestId, byte serializationType, Executor executor) {
+        this.registry = registry;
+        this.channel = channel;
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.window = Math.max(RpcConfig.getInstance().getStreamWindow(), 1);
+        this.creditTimeoutMillis = TimeUnit.SECONDS.toMillis(RpcConfig.getInstance().getStreamCreditTimeout());
+        this.inbound = new SerialExecutor(executor);
+    }
+
+    /**
+     * 交给服务实现、用来发送响应元素的 observer
+     */
+    public StreamObserver<Object> getResponseObserver() {
+        return responseObserver;
+    }
+
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * 服务实现返回了接收请求元素的 observer，开始接收客户端的元素
+     */
+    public void bind(StreamObserver<Object> observer) throws Exception {
+        bind(observer, null);
+    }
+
+    /**
+     * 同时接收客户端上传的 Blob，STREAM_BLOB 写进 sink，客户端半关闭时 observer.onCompleted
+     */
+    public void bind(StreamObserver<Object> observer, BlobSink sink) throws Exception {
+        this.blobSink = sink;
+        this.requestObserver = observer;
+        inbound.execute(() -> {
+            bound = true;
+            RpcProtocol frame;
+            while ((frame = earlyFrames.poll()) != null) {
+                deliver(frame);
+            }
+        });
+        sendFrame(MsgType.STREAM_WINDOW_UPDATE, StatusConstants.NORMAL, window);
+    }
+
+    /**
+     * 把 Blob 切成 STREAM_BLOB 帧发给客户端，每帧消耗一个客户端窗口，发完后正常结束调用
+     */
+    public void sendBlob(Blob blob) throws Exception {
+        StreamFrames.sendBlob(channel::write, requestId, serializationType, blob, this::acquireCredit);
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * 属于该流的帧，在IO线程上调用
+     */
+    public void onFrame(RpcProtocol frame) {
+        MsgType msgType = MsgType.findByType(frame.getHeader().getMsgType());
+        try {
+            switch (msgType) {
+                case STREAM_WINDOW_UPDATE:
+                    Integer credits = (Integer) StreamFrames.decode(frame);
+                    if (credits != null) {
+                        credit.grant(credits);
+                    }
+                    break;
+                case STREAM_CANCEL:
+                    StreamFrames.discard(frame);
+                    cancel(new CancellationException("requestID=" + requestId + ", 客户端取消了流"));
+                    break;
+                case STREAM_DATA:
+                case STREAM_BLOB:
+                case STREAM_HALF_CLOSE:
+                    inbound.execute(() -> deliver(frame));
+                    break;
+                default:
+                    StreamFrames.discard(frame);
+            }
+        } catch (RejectedExecutionException e) {
+            StreamFrames.discard(frame);
+            responseObserver.onError(new RejectedExecutionException("服务线程池执行拒绝策略"));
+        } catch (Exception e) {
+            log.warn("requestID={}, 处理流帧失败", requestId, e);
+        }
+    }
+
+    private void deliver(RpcProtocol frame) {
+        if (finished.get() || inboundClosed) {
+            StreamFrames.discard(frame);
+            return;
+        }
+        if (!bound) {
+            earlyFrames.add(frame);
+            return;
+        }
+        StreamObserver<Object> observer = requestObserver;
+        try {
+            byte msgType = frame.getHeader().getMsgType();
+            if (msgType == MsgType.STREAM_DATA.ordinal() || msgType == MsgType.STREAM_BLOB.ordinal()) {
+                if (msgType == MsgType.STREAM_BLOB.ordinal()) {
+                    BlobSink sink = blobSink;
+                    if (sink == null) {
+                        StreamFrames.discard(frame);
+                        throw new IllegalStateException("requestID=" + requestId + ", 方法没有 Blob 参数");
+                    }
+                    sink.write(frame);
+                } else {
+                    observer.onNext(StreamFrames.decode(frame));
+                }
+                // 消费过半窗口时补发，避免每个元素都发送一帧流控
+                if (++consumedSinceUpdate >= Math.max(window / 2, 1)) {
+                    sendFrame(MsgType.STREAM_WINDOW_UPDATE, StatusConstants.NORMAL, consumedSinceUpdate);
+                    consumedSinceUpdate = 0;
+                }
+            } else {
+                Object payload = StreamFrames.decode(frame);
+                inboundClosed = true;
+                if (frame.getHeader().getStatus() == StatusConstants.EXCEPTION) {
+                    observer.onError(new RuntimeException(String.valueOf(payload)));
+                } else {
+                    observer.onCompleted();
+                }
+            }
+        } catch (Throwable e) {
+            // 服务实现处理元素失败，以错误结束整个调用
+            log.error("requestID={}, 处理客户端流元素失败", requestId, e);
+            responseObserver.onError(e);
+        }
+    }
+
+    /**
+     * 客户端取消或者连接关闭
+     */
+    void cancel(Throwable cause) {
+        if (!finish()) {
+            return;
+        }
+        StreamObserver<Object> observer = requestObserver;
+        if (observer != null && !inboundClosed) {
+            try {
+                inbound.execute(() -> {
+                    if (!inboundClosed) {
+                        inboundClosed = true;
+                        observer.onError(cause);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("requestID={}, 通知流取消被拒绝", requestId);
+            }
+        }
+    }
+
+    /**
+     * 结束流，只有第一次调用返回 true
+     */
+    boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        credit.cancel();
+        registry.remove(channel, requestId);
+        channel.requestCompleted();
+        try {
+            inbound.execute(() -> {
+                RpcProtocol frame;
+                while ((frame = earlyFrames.poll()) != null) {
+                    StreamFrames.discard(frame);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("requestID={}, 清理未投递的帧被拒绝", requestId);
+        }
+        return true;
+    }
+
+    private void sendFrame(MsgType msgType, short status, Object payload) throws Exception {
+        StreamFrames.send(channel::write, msgType, requestId, serializationType, status, payload);
+    }
+
+    /**
+     * 分段等待窗口，期间连接断开或者流结束时及时放弃
+     */
+    private boolean acquireCredit() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + creditTimeoutMillis;
+        while (channel.isActive() && !finished.get()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (credit.acquire(Math.min(remaining, 1000))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 服务端发送元素，每个元素消耗一个客户端窗口
+     */
+    private class ResponseObserver implements StreamObserver<Object> {
+
+        @Override
+        public void onNext(Object value) {
+            if (finished.get()) {
+                throw new IllegalStateException("requestID=" + requestId + ", 流已经结束");
+            }
+            try {
+                if (!acquireCredit()) {
+                    throw new IllegalStateException("requestID=" + requestId + ", 等待客户端接收窗口超时或者流已经结束");
+                }
+                sendFrame(MsgType.STREAM_DATA, StatusConstants.NORMAL, value);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("requestID=" + requestId + ", 等待客户端接收窗口被中断", e);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("requestID=" + requestId + ", 发送流元素失败", e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                if (channel.isActive()) {
+                    sendFrame(MsgType.STREAM_HALF_CLOSE, StatusConstants.EXCEPTION, String.valueOf(t.getMessage()));
+                }
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送流结束失败", requestId, e);
+            } finally {
+                finish();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                sendFrame(MsgType.STREAM_HALF_CLOSE, StatusConstants.NORMAL, null);
+            } catch (Exception e) {
+                log.warn("requestID={}, 发送流结束失败", requestId, e);
+            } finally {
+                finish();
+            }
+        }
+    }
+}
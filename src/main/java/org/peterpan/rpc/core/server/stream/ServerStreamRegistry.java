@@ -0,0 +1,58 @@
+package org.peterpan.rpc.core.server.stream;
+
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端正在进行的流
+ *
+ * requestId 只在一个客户端内唯一，所以按连接分组。
+ * 流在IO线程收到 STREAM_OPEN 时就登记，之后紧跟着到达的窗口等帧不会因为业务线程还没开始处理而丢失
+ */
+public class ServerStreamRegistry {
+
+    private final Map<NioChannel, Map<Long, ServerStream>> streams = new ConcurrentHashMap<>();
+    // 客户端发来的元素在这里交给服务实现
+    private final Executor executor;
+
+    public ServerStreamRegistry(Executor executor) {
+        this.executor = executor;
+    }
+
+    public ServerStream open(NioChannel channel, MsgHeader header) {
+        ServerStream stream = new ServerStream(this, channel, header.getRequestId(), header.getSerialization(), executor);
+        streams.computeIfAbsent(channel, c -> new ConcurrentHashMap<>()).put(header.getRequestId(), stream);
+        return stream;
+    }
+
+    public ServerStream find(NioChannel channel, long requestId) {
+        Map<Long, ServerStream> channelStreams = streams.get(channel);
+        return channelStreams == null ? null : channelStreams.get(requestId);
+    }
+
+    public void remove(NioChannel channel, long requestId) {
+        Map<Long, ServerStream> channelStreams = streams.get(channel);
+        if (channelStreams != null) {
+            channelStreams.remove(requestId);
+        }
+    }
+
+    /**
+     * 连接关闭，结束这条连接上所有的流
+     */
+    public void channelClosed(NioChannel channel) {
+        Map<Long, ServerStream> channelStreams = streams.remove(channel);
+        if (channelStreams != null) {
+            for (ServerStream stream : channelStreams.values()) {
+                stream.cancel(new CancellationException("连接已关闭"));
+            }
+        }
+    }
+}
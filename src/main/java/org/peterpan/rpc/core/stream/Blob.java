@@ -0,0 +1,158 @@
+package org.peterpan.rpc.core.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 大块二进制数据(文件或者字节数组)
+ *
+ * 作为接口方法的返回值或者参数时不经过序列化：发送方按 blobChunkSize 切成 STREAM_BLOB 帧，
+ * 文件用 FileChannel.transferTo 直接写到 socket，字节数组只拷贝一次到直接内存；
+ * 接收方把收到的字节直接写进临时文件，整个过程不在堆上攒出完整数据，每次最多在途一个流控窗口。
+ * 接收方拿到的是临时文件，用完后调用 delete()，需要保留时用 moveTo()；
+ * 服务端方法参数中的临时文件在方法返回后自动删除
+ */
+public final class Blob {
+
+    private final Path path;
+    private final long position;
+    private final long length;
+    private final byte[] bytes;
+    private final boolean temporary;
+
+    private Blob(Path path, long position, long length, byte[] bytes, boolean temporary) {
+        this.path = path;
+        this.position = position;
+        this.length = length;
+        this.bytes = bytes;
+        this.temporary = temporary;
+    }
+
+    public static Blob ofFile(Path path) throws IOException {
+        return new Blob(path, 0, Files.size(path), null, false);
+    }
+
+    /**
+     * 文件中从 position 开始的 length 字节
+     */
+    public static Blob ofFile(Path path, long position, long length) {
+        return new Blob(path, position, length, null, false);
+    }
+
+    public static Blob ofBytes(byte[] bytes) {
+        return new Blob(null, 0, bytes.length, bytes, false);
+    }
+
+    static Blob temporary(Path path, long length) {
+        return new Blob(path, 0, length, null, true);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * 文件路径，字节数组形式的 Blob 返回 null
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isFile() {
+        return path != null;
+    }
+
+    public InputStream openStream() throws IOException {
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        file.position(position);
+        return Channels.newInputStream(file);
+    }
+
+    /**
+     * 读进堆内存，只适合小数据
+     */
+    public byte[] toBytes() throws IOException {
+        if (bytes != null) {
+            return bytes;
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Blob 太大, 无法读入数组: " + length);
+        }
+        byte[] data = new byte[(int) length];
+        try (InputStream in = openStream()) {
+            int offset = 0;
+            while (offset < data.length) {
+                int n = in.read(data, offset, data.length - offset);
+                if (n < 0) {
+                    throw new IOException("文件长度小于 " + length);
+                }
+                offset += n;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 写到 target，文件使用 transferTo
+     */
+    public void transferTo(WritableByteChannel target) throws IOException {
+        if (bytes != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += file.transferTo(position + transferred, length - transferred, target);
+            }
+        }
+    }
+
+    /**
+     * 把接收到的临时文件移动到 target，之后不再是临时文件
+     */
+    public Blob moveTo(Path target) throws IOException {
+        if (!temporary) {
+            throw new IllegalStateException("只有接收到的临时 Blob 可以移动");
+        }
+        Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        return new Blob(target, 0, length, null, false);
+    }
+
+    /**
+     * 删除接收到的临时文件，对调用方自己创建的 Blob 没有作用
+     */
+    public void delete() {
+        if (temporary) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    long position() {
+        return position;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+}
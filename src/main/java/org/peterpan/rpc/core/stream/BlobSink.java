@@ -0,0 +1,68 @@
+package org.peterpan.rpc.core.stream;
+
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 把收到的 STREAM_BLOB 帧写进临时文件
+ *
+ * 消息体在池化的直接内存中，直接写文件，不经过堆
+ */
+public class BlobSink {
+
+    private final Path path;
+    private final FileChannel file;
+    private long length;
+
+    public BlobSink() throws IOException {
+        this.path = Files.createTempFile(Paths.get(RpcConfig.getInstance().getBlobTempDir()), "rpc-blob-", ".tmp");
+        this.file = FileChannel.open(path, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 追加一帧的内容，并释放消息体
+     */
+    public void write(RpcProtocol frame) throws IOException {
+        PooledByteBuffer body = frame.getBody();
+        try {
+            if (body != null) {
+                ByteBuffer buffer = body.buffer().duplicate();
+                while (buffer.hasRemaining()) {
+                    length += file.write(buffer);
+                }
+            }
+        } finally {
+            StreamFrames.discard(frame);
+        }
+    }
+
+    public Blob finish() throws IOException {
+        file.close();
+        return Blob.temporary(path, length);
+    }
+
+    /**
+     * 传输失败，删除临时文件
+     */
+    public void discard() {
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.peterpan.rpc.core.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 按提交顺序逐个执行任务
+ *
+ * 借用共享线程池的线程，同一时刻最多占用一个，保证同一个流的元素按到达顺序交给 observer
+ */
+@Slf4j
+public class SerialExecutor implements Executor {
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 线程池拒绝时抛出 RejectedExecutionException，任务留在队列里，下次调度时执行
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("流任务执行失败", e);
+                }
+            }
+        } finally {
+            running.set(false);
+            if (!tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    log.error("流任务调度被拒绝", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.peterpan.rpc.core.stream;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 流在一个方向上的发送窗口
+ *
+ * 接收方每消费一批元素就通过 STREAM_WINDOW_UPDATE 放开相应的窗口，发送方每发送一个元素消耗一个，
+ * 窗口用完时发送线程阻塞等待，两端缓存的元素个数都不会超过接收方的窗口。
+ * 窗口按流计算，一个发得很快的流最多占用连接上 window 个元素，不会把同一连接上的其他调用挤在后面
+ */
+public class StreamCredit {
+
+    private int credits;
+    private boolean cancelled;
+
+    /**
+     * 对端放开窗口，在IO线程上调用
+     */
+    public synchronized void grant(int n) {
+        if (n <= 0) {
+            return;
+        }
+        credits += n;
+        notifyAll();
+    }
+
+    /**
+     * 消耗一个窗口，窗口为空时最多等待 timeoutMillis；超时或者流被取消时返回 false
+     */
+    public synchronized boolean acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (credits == 0 && !cancelled) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        if (cancelled) {
+            return false;
+        }
+        credits--;
+        return true;
+    }
+
+    /**
+     * 流结束或者连接关闭时唤醒等待中的发送线程
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,179 @@
+package org.peterpan.rpc.core.stream;
+
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.FileRegion;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+import org.peterpan.rpc.core.codec.RpcDecoder;
+import org.peterpan.rpc.core.codec.RpcEncoder;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcResponseBody;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 流控制帧的编解码
+ *
+ * STREAM_WINDOW_UPDATE 的消息体是窗口大小(Integer)，STREAM_BLOB 的消息体是原始字节，
+ * 其余流帧的消息体是 RpcResponseBody，元素或者错误信息放在 retObject 中
+ */
+public final class StreamFrames {
+
+    private StreamFrames() {
+    }
+
+    /**
+     * 发送方获取一个流控窗口，超时或者流已经结束时返回 false
+     */
+    public interface CreditAcquirer {
+        boolean acquire() throws InterruptedException;
+    }
+
+    /**
+     * 编码一帧并交给 writer 写出，写出的帧自己持有一份引用，这里编码出的缓冲区写完即释放
+     */
+    public static void send(Consumer<RpcProtocol> writer, MsgType msgType, long requestId, byte serializationType,
+                            short status, Object payload) throws Exception {
+        MsgHeader header = header(msgType, requestId, serializationType, status);
+        Object body = msgType == MsgType.STREAM_WINDOW_UPDATE ? payload : RpcResponseBody.builder().retObject(payload).build();
+        PooledByteBuffer bytes = RpcEncoder.encode(body, serializationType);
+        RpcProtocol frame = new RpcProtocol();
+        frame.setHeader(header);
+        frame.setBody(bytes);
+        try {
+            writer.accept(frame);
+        } finally {
+            bytes.release();
+        }
+    }
+
+    /**
+     * 按 blobChunkSize 把 Blob 切成 STREAM_BLOB 帧发送，每帧先获取一个窗口。
+     * 文件以 FileRegion 交给传输层 transferTo，字节数组拷贝到池化缓冲区(预留协议头，编码帧时不再拷贝)
+     */
+    public static void sendBlob(Consumer<RpcProtocol> writer, long requestId, byte serializationType,
+                                Blob blob, CreditAcquirer credit) throws Exception {
+        int chunkSize = Math.max(RpcConfig.getInstance().getBlobChunkSize(), 1);
+        if (blob.isFile()) {
+            FileChannel file = FileChannel.open(blob.getPath(), StandardOpenOption.READ);
+            // 发送方自己持有一个引用，每个在途的区域各持有一个，全部释放后关闭文件
+            AtomicInteger refs = new AtomicInteger(1);
+            Runnable releaseFile = () -> {
+                if (refs.decrementAndGet() == 0) {
+                    try {
+                        file.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            };
+            try {
+                for (long offset = 0; offset < blob.length(); ) {
+                    int n = (int) Math.min(chunkSize, blob.length() - offset);
+                    acquire(credit, requestId);
+                    refs.incrementAndGet();
+                    RpcProtocol frame = new RpcProtocol();
+                    frame.setHeader(header(MsgType.STREAM_BLOB, requestId, serializationType, StatusConstants.NORMAL));
+                    frame.setFileRegion(new FileRegion(file, blob.position() + offset, n, releaseFile));
+                    writer.accept(frame);
+                    offset += n;
+                }
+            } finally {
+                releaseFile.run();
+            }
+            return;
+        }
+        byte[] bytes = blob.bytes();
+        for (int offset = 0; offset < bytes.length; ) {
+            int n = Math.min(chunkSize, bytes.length - offset);
+            acquire(credit, requestId);
+            PooledByteBuffer body = PooledByteBufferAllocator.getInstance().allocate(ProtocolConstants.HEADER_TOTAL_LEN + n);
+            ByteBuffer buffer = body.buffer();
+            buffer.position(ProtocolConstants.HEADER_TOTAL_LEN);
+            buffer.put(bytes, offset, n);
+            buffer.flip();
+            buffer.position(ProtocolConstants.HEADER_TOTAL_LEN);
+            RpcProtocol frame = new RpcProtocol();
+            frame.setHeader(header(MsgType.STREAM_BLOB, requestId, serializationType, StatusConstants.NORMAL));
+            frame.setBody(body);
+            try {
+                writer.accept(frame);
+            } finally {
+                body.release();
+            }
+            offset += n;
+        }
+    }
+
+    private static void acquire(CreditAcquirer credit, long requestId) throws Exception {
+        if (!credit.acquire()) {
+            throw new IOException("requestID=" + requestId + ", 等待对端接收窗口超时或者流已经结束");
+        }
+    }
+
+    private static MsgHeader header(MsgType msgType, long requestId, byte serializationType, short status) {
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setSerialization(serializationType);
+        header.setMsgType((byte) msgType.ordinal());
+        header.setStatus((byte) status);
+        header.setRequestId(requestId);
+        return header;
+    }
+
+    /**
+     * 解出流帧携带的对象(元素、错误信息或者窗口大小)，并释放消息体
+     */
+    public static Object decode(RpcProtocol frame) throws Exception {
+        PooledByteBuffer body = frame.getBody();
+        if (body == null) {
+            return null;
+        }
+        try {
+            if (body.readableBytes() == 0) {
+                return null;
+            }
+            MsgHeader header = frame.getHeader();
+            Object decoded = RpcDecoder.decode(body, header.getSerialization(), header.getMsgType(), header.getCompression());
+            return decoded instanceof RpcResponseBody ? ((RpcResponseBody) decoded).getRetObject() : decoded;
+        } finally {
+            body.release();
+            frame.setBody(null);
+        }
+    }
+
+    /**
+     * 以非正常状态结束调用的帧(服务端异常、过载)对应的错误信息，payload 为 decode 的结果
+     */
+    public static String errorMessage(byte status, Object payload) {
+        if (status == StatusConstants.OVERLOADED) {
+            return payload == null ? "服务端过载" : "服务端过载, 建议" + payload + "ms后重试";
+        }
+        return payload == null ? "服务线程池执行拒绝策略" : String.valueOf(payload);
+    }
+
+    /**
+     * 丢弃一帧，释放消息体(包括没有发出去的文件区域)
+     */
+    public static void discard(RpcProtocol frame) {
+        if (frame.getBody() != null) {
+            frame.getBody().release();
+            frame.setBody(null);
+        }
+        if (frame.getFileRegion() != null) {
+            frame.getFileRegion().release();
+            frame.setFileRegion(null);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.peterpan.rpc.core.stream;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 流式调用中一个方向上的元素接收方
+ *
+ * 客户端流/双向流的接口方法写成：
+ * <pre>
+ * StreamObserver&lt;UploadChunk&gt; upload(StreamObserver&lt;UploadResult&gt; responseObserver);
+ * </pre>
+ * 客户端调用时传入接收响应的 observer，拿到发送请求元素的 observer；
+ * 服务端实现收到发送响应的 observer，返回接收请求元素的 observer。
+ * 同一个 observer 的方法不能并发调用，onNext 在对端接收窗口用完时会阻塞
+ */
+public interface StreamObserver<T> {
+
+    void onNext(T value);
+
+    /**
+     * 异常结束。客户端调用表示取消整个流，服务端调用表示以错误结束整个调用
+     */
+    void onError(Throwable t);
+
+    /**
+     * 不再发送元素。服务端调用表示整个调用正常结束
+     */
+    void onCompleted();
+}
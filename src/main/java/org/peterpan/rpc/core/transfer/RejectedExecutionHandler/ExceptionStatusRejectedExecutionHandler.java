@@ -1,58 +1,55 @@
 package org.peterpan.rpc.core.transfer.RejectedExecutionHandler;
 
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.common.MsgType;
 import org.peterpan.rpc.core.protocol.RpcProtocol;
 import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.server.AdmissionController;
 import org.peterpan.rpc.core.server.RpcServerWorker;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
 
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 
-import static java.lang.Thread.sleep;
-
 /**
  * @author PeterPan
  * @date 2023/8/17
  * @description 自定义拒绝策略
  *
- * 发送异常状态2给客户端启动容错策略
+ * 发送过载状态3给客户端，客户端立即换节点重试
  *
  */
 @Slf4j
 public class ExceptionStatusRejectedExecutionHandler implements RejectedExecutionHandler {
-    @SneakyThrows
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
         if (r instanceof RpcServerWorker) {
             RpcServerWorker rpcServerWorker = (RpcServerWorker) r;
-            Socket clientSocket = rpcServerWorker.getSocket();
-
-            // 现在你可以使用 clientSocket 进行操作，比如发送一个带有异常状态的 RpcProtocol 对象
-            ObjectOutputStream objectOutputStream = null;
-            try {
-                objectOutputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-                RpcProtocol rpcProtocol = new RpcProtocol();
-
-                // 创建异常状态的消息头
-                MsgHeader header = new MsgHeader();
-                header.setStatus((byte) StatusConstants.EXCEPTION);
-                rpcProtocol.setHeader(header);
+            NioChannel channel = rpcServerWorker.getChannel();
+            RpcProtocol rpcRequest = rpcServerWorker.getRpcRequest();
+            MsgHeader reqHeader = rpcRequest.getHeader();
+            // 请求不会再被处理，归还请求体的缓冲区
+            if (rpcRequest.getBody() != null) {
+                rpcRequest.getBody().release();
+                rpcRequest.setBody(null);
+            }
 
-                // 将带有异常状态的 RpcProtocol 对象发送到客户端
-                objectOutputStream.writeObject(rpcProtocol);
-                objectOutputStream.flush();
-                log.warn("服务端向 {}:{} 发送了拒绝策略的信息", clientSocket.getInetAddress(), clientSocket.getPort());
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                sleep(5000);
-                objectOutputStream.close(); // 这里的释放资源要间隔一段时间，因为这个输入不产生返回值我无法保证对方读取完整数据，延迟5s关闭
+            // 已经通过准入控制却没能进入线程池，同样按过载回复，客户端立即换节点重试
+            AdmissionController admission = rpcServerWorker.getAdmission();
+            admission.rejected();
+            AdmissionController.reject(channel, reqHeader, admission.retryAfterMillis());
+            if (reqHeader.getMsgType() == MsgType.STREAM_OPEN.ordinal()) {
+                // 流不会开始，撤销登记
+                rpcServerWorker.getStreamRegistry().remove(channel, reqHeader.getRequestId());
+            } else {
+                rpcServerWorker.getCallRegistry().remove(channel, reqHeader.getRequestId(), rpcServerWorker);
             }
+            channel.requestCompleted();
+            log.warn("服务端向 {} 发送了拒绝策略的信息, requestID={}", channel.getRemoteAddress(), reqHeader.getRequestId());
+        } else {
+            // 流元素的投递任务等，由提交方处理
+            throw new RejectedExecutionException("服务线程池执行拒绝策略");
         }
     }
 }
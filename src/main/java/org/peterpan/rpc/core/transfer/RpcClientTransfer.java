@@ -3,11 +3,13 @@ package org.peterpan.rpc.core.transfer;
 import org.peterpan.rpc.common.ServiceMeta;
 import org.peterpan.rpc.common.StatusConstants;
 import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.stream.StreamFrames;
+import org.peterpan.rpc.core.transfer.connection.RpcConnection;
+import org.peterpan.rpc.core.transfer.connection.RpcConnectionPool;
+import org.peterpan.rpc.core.transfer.connection.StreamListener;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author PeterPan
@@ -16,33 +18,81 @@ import java.net.Socket;
  */
 // 传入protocol层的RpcRequest，输出protocol层的RpcResponse
 public class RpcClientTransfer {
-    public RpcProtocol sendRequest(RpcProtocol rpcRequest, ServiceMeta curServiceMeta) throws Exception {
-        ObjectOutputStream objectOutputStream = null;
-        ObjectInputStream objectInputStream = null;
-        try {
-            Socket socket = new Socket(curServiceMeta.getServiceAddr(), curServiceMeta.getServicePort());
-
-            // 发送【transfer层】
-            objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-            objectInputStream = new ObjectInputStream(socket.getInputStream());
-            objectOutputStream.writeObject(rpcRequest);
-            objectOutputStream.flush();
 
-            RpcProtocol rpcResponse = (RpcProtocol) objectInputStream.readObject();
+    private final RpcConnectionPool connectionPool = RpcConnectionPool.getInstance();
 
-            // 校验header和body，如果为null则表示服务端发来的拒绝策略
-            if (rpcResponse.getHeader().getStatus() == StatusConstants.EXCEPTION) {
-                throw new IOException("服务线程池执行拒绝策略");
+    /**
+     * 发送请求，不阻塞调用线程，响应到达连接时 future 完成
+     */
+    public CompletableFuture<RpcProtocol> sendRequest(RpcProtocol rpcRequest, ServiceMeta curServiceMeta) {
+        CompletableFuture<RpcProtocol> future = new CompletableFuture<>();
+        RpcConnection connection;
+        try {
+            // 从连接池获取长连接，多个请求共用同一条连接，由requestId关联响应
+            connection = connectionPool.acquire(curServiceMeta);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        CompletableFuture<RpcProtocol> responseFuture = connection.send(rpcRequest);
+        responseFuture.whenComplete((rpcResponse, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else if (rpcResponse.getHeader().getStatus() == StatusConstants.OVERLOADED) {
+                // 服务端过载，请求没有被处理
+                future.completeExceptionally(new ServerOverloadedException("服务端过载", retryAfterMillis(rpcResponse)));
+            } else if (rpcResponse.getHeader().getStatus() == StatusConstants.EXCEPTION) {
+                // 服务端无法返回结果(例如响应超过 maxFrameLength)，消息体是错误信息
+                future.completeExceptionally(new ServerException(errorMessage(rpcResponse)));
+            } else if (!future.complete(rpcResponse)) {
+                // 调用方已经超时放弃，响应体不会再被解码
+                rpcResponse.getBody().release();
             }
+        });
+        // 调用方超时或者取消时，连接上挂起的请求也一起取消；响应还没到说明服务端可能还在排队或者执行，通知它放弃
+        future.whenComplete((rpcResponse, e) -> {
+            if (e != null && responseFuture.cancel(false)) {
+                connection.cancel(rpcRequest.getHeader().getRequestId());
+            }
+        });
+        return future;
+    }
 
-            return rpcResponse;
-        } catch (IOException e) {
-            // Handle the exception, you can rethrow it or log it, depending on your use case
-            throw e;
-        } finally {
-            objectOutputStream.close();
-            objectInputStream.close();
+    /**
+     * 单向调用：写出请求就返回，服务端不回复
+     */
+    public void sendOneWay(RpcProtocol rpcRequest, ServiceMeta curServiceMeta) throws IOException {
+        connectionPool.acquire(curServiceMeta).sendOneWay(rpcRequest);
+    }
+
+    /**
+     * 过载响应中服务端建议的重试间隔，解析失败时为 0
+     */
+    private static int retryAfterMillis(RpcProtocol rpcResponse) {
+        try {
+            Object retryAfter = StreamFrames.decode(rpcResponse);
+            return retryAfter instanceof Integer ? (Integer) retryAfter : 0;
+        } catch (Exception e) {
+            return 0;
         }
     }
-}
 
+    private static String errorMessage(RpcProtocol rpcResponse) {
+        Object message;
+        try {
+            message = StreamFrames.decode(rpcResponse);
+        } catch (Exception e) {
+            message = null;
+        }
+        return StreamFrames.errorMessage(rpcResponse.getHeader().getStatus(), message);
+    }
+
+    /**
+     * 发起流式调用，返回承载该流的连接，用于后续发送流控窗口
+     */
+    public RpcConnection openStream(RpcProtocol rpcRequest, ServiceMeta curServiceMeta, StreamListener listener) throws IOException {
+        RpcConnection connection = connectionPool.acquire(curServiceMeta);
+        connection.openStream(rpcRequest, listener);
+        return connection;
+    }
+}
@@ -3,9 +3,17 @@ package org.peterpan.rpc.core.transfer;
 import lombok.extern.slf4j.Slf4j;
 import org.peterpan.rpc.common.ServiceMeta;
 import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.compress.CompressorFactory;
 import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
-import org.peterpan.rpc.core.server.RpcServerWorker;
+import org.peterpan.rpc.core.server.Bulkheads;
+import org.peterpan.rpc.core.server.LocalServiceRegistry;
+import org.peterpan.rpc.core.server.RpcServerHandler;
+import org.peterpan.rpc.core.server.executor.ExecutionMode;
+import org.peterpan.rpc.core.server.executor.VirtualThreadExecutor;
 import org.peterpan.rpc.core.transfer.RejectedExecutionHandler.ExceptionStatusRejectedExecutionHandler;
+import org.peterpan.rpc.core.transfer.nio.NioEventLoopGroup;
+import org.peterpan.rpc.core.transfer.nio.UnixDomainSockets;
+import org.peterpan.rpc.core.transfer.shm.SharedMemoryChannel;
 import org.peterpan.rpc.registry.IRegistryService;
 import org.peterpan.rpc.registry.RegistryFactory;
 import org.peterpan.rpc.registry.RegistryType;
@@ -13,9 +21,15 @@ import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.concurrent.*;
 
@@ -30,6 +44,8 @@ public class RpcServerTransfer {
     private static String serverAddress;
     // 线程池
     private final ExecutorService threadPool;
+    // 配置了独立线程池的服务
+    private final Bulkheads bulkheads;
     // interfaceName -> interfaceImplementation object
     private final HashMap<String, Object> registeredService;
     // 注册中心
@@ -49,15 +65,37 @@ public class RpcServerTransfer {
         // 加载组件
         RegistryFactory.init();
         SerializationFactory.init();
+        CompressorFactory.init();
+
+        this.rpcConfig = RpcConfig.getInstance();
+        this.threadPool = createThreadPool();
+        this.bulkheads = new Bulkheads(rpcConfig.getBulkheads(), rpcConfig.getServerExecutionMode());
+        this.registeredService = new HashMap<String, Object>();
+        this.registryCenter = RegistryFactory.get(RpcConfig.getInstance().getRegisterType());
+    }
+
+    /**
+     * 根据配置的执行方式创建业务线程池，虚拟线程不可用时退回平台线程池
+     */
+    private ExecutorService createThreadPool() {
+        // 创建自定义的拒绝策略实例
+        RejectedExecutionHandler rejectedExecutionHandler = new ExceptionStatusRejectedExecutionHandler();
+        if (rpcConfig.getServerExecutionMode() == ExecutionMode.VIRTUAL) {
+            int maxConcurrency = rpcConfig.getVirtualThreadMaxConcurrency();
+            ExecutorService executor = VirtualThreadExecutor.create("rpc-server-vt-", maxConcurrency, rejectedExecutionHandler);
+            if (executor != null) {
+                log.info("业务请求使用虚拟线程执行, maxConcurrency={}", maxConcurrency);
+                return executor;
+            }
+            log.warn("当前JDK不支持虚拟线程, 使用平台线程池执行业务请求");
+        }
 
         int corePoolSize = 10; // 5
         int maximumPoolSize = 50; // 50
         long keepAliveTime = 60;
         BlockingQueue<Runnable> workingQueue = new ArrayBlockingQueue<>(100); // 100
         ThreadFactory threadFactory = Executors.defaultThreadFactory();
-        // 创建自定义的拒绝策略实例
-        RejectedExecutionHandler rejectedExecutionHandler = new ExceptionStatusRejectedExecutionHandler();
-        this.threadPool = new ThreadPoolExecutor(
+        return new ThreadPoolExecutor(
                 corePoolSize,
                 maximumPoolSize,
                 keepAliveTime,
@@ -66,9 +104,6 @@ public class RpcServerTransfer {
                 threadFactory,
                 rejectedExecutionHandler // 设置自定义拒绝策略
         );
-        this.registeredService = new HashMap<String, Object>();
-        this.rpcConfig = RpcConfig.getInstance();
-        this.registryCenter = RegistryFactory.get(RpcConfig.getInstance().getRegisterType());
     }
 
     // 参数service就是interface的implementation object
@@ -79,22 +114,91 @@ public class RpcServerTransfer {
         serviceMeta.setServicePort(Integer.parseInt(rpcConfig.getPort())); // 设置服务端口号
         serviceMeta.setServiceVersion(serviceVersion); // 设置服务版本
         serviceMeta.setServiceName(interfaceName); // 设置服务名称
+        if (isUnixSocketEnabled()) {
+            serviceMeta.setUnixSocketPath(rpcConfig.getUnixSocketPath()); // 同机的调用方优先使用
+        }
+        serviceMeta.setSharedMemoryDir(sharedMemoryDir()); // 同机的调用方连接后升级为共享内存
         // 注册服务到注册中心（使用通用接口register，未来redis或者zk来实现具体内容）
         registryCenter.register(serviceMeta);
         // 缓存服务实例
         registeredService.put(RpcServiceNameBuilder.buildServiceKey(interfaceName, serviceVersion), service);
+        // 同一个进程里的调用方直接调用
+        LocalServiceRegistry.register(RpcServiceNameBuilder.buildServiceKey(interfaceName, serviceVersion), service);
     }
 
     public void serve() {
-        try (ServerSocket serverSocket = new ServerSocket(Integer.parseInt(rpcConfig.getPort()))) {
-            log.info("Server Starting... port={}", rpcConfig.getPort());
-            Socket handleSocket;
-            while ((handleSocket = serverSocket.accept()) != null) {
-                log.info("Client Connected, ip={}", handleSocket.getInetAddress());
-                threadPool.execute(new RpcServerWorker(handleSocket, registeredService));
+        // boss：单线程只负责accept；worker：N个事件循环负责连接的读写，请求交给业务线程池
+        try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+             Selector acceptSelector = Selector.open()) {
+            serverSocketChannel.bind(new InetSocketAddress(Integer.parseInt(rpcConfig.getPort())));
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            // 同机调用方使用的 Unix domain socket，与TCP共用accept线程和事件循环
+            ServerSocketChannel unixServerChannel = bindUnixSocket(acceptSelector);
+
+            NioEventLoopGroup workerGroup = new NioEventLoopGroup(rpcConfig.getIoThreads(), "rpc-server-io", rpcConfig.getServerIdleTimeout() * 1000L);
+            RpcServerHandler serverHandler = new RpcServerHandler(threadPool, registeredService, bulkheads);
+            log.info("Server Starting... port={}, ioThreads={}", rpcConfig.getPort(), rpcConfig.getIoThreads());
+            while (true) {
+                acceptSelector.select();
+                for (SelectionKey key : acceptSelector.selectedKeys()) {
+                    ServerSocketChannel acceptChannel = (ServerSocketChannel) key.channel();
+                    SocketChannel socketChannel;
+                    while ((socketChannel = acceptChannel.accept()) != null) {
+                        log.info("Client Connected, ip={}", socketChannel.getRemoteAddress());
+                        if (acceptChannel != unixServerChannel) {
+                            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                        }
+                        workerGroup.next().register(socketChannel, serverHandler);
+                    }
+                }
+                acceptSelector.selectedKeys().clear();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * 开启共享内存传输时准备好映射文件的目录，失败时只记录日志，调用方继续使用socket
+     */
+    private String sharedMemoryDir() {
+        if (!rpcConfig.isSharedMemoryEnabled() || !SharedMemoryChannel.isSupported()) {
+            return null;
+        }
+        String dir = rpcConfig.getSharedMemoryDir();
+        try {
+            Files.createDirectories(Paths.get(dir));
+            return dir;
+        } catch (IOException e) {
+            log.warn("创建共享内存目录 {} 失败", dir, e);
+            return null;
+        }
+    }
+
+    private boolean isUnixSocketEnabled() {
+        return rpcConfig.isUnixSocketEnabled() && UnixDomainSockets.isSupported();
+    }
+
+    /**
+     * 监听 Unix domain socket，失败时只记录日志，调用方会使用TCP
+     */
+    private ServerSocketChannel bindUnixSocket(Selector acceptSelector) {
+        if (!isUnixSocketEnabled()) {
+            return null;
+        }
+        String path = rpcConfig.getUnixSocketPath();
+        try {
+            ServerSocketChannel unixServerChannel = UnixDomainSockets.bind(path);
+            unixServerChannel.configureBlocking(false);
+            unixServerChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            // 进程退出时删除socket文件
+            Paths.get(path).toFile().deleteOnExit();
+            log.info("Server listening on unix domain socket {}", path);
+            return unixServerChannel;
+        } catch (IOException e) {
+            log.warn("监听Unix domain socket {} 失败", path, e);
+            return null;
+        }
+    }
 }
\ No newline at end of file
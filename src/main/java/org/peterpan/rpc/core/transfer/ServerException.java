@@ -0,0 +1,19 @@
+package org.peterpan.rpc.core.transfer;
+
+import java.io.IOException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端回复了异常(例如响应超过 maxFrameLength)，错误信息来自服务端
+ *
+ * 调用已经在服务端执行过，换节点重试只会再执行一次并得到同样的结果，调用直接失败
+ */
+public class ServerException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServerException(String message) {
+        super(message);
+    }
+}
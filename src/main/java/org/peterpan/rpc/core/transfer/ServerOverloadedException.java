@@ -0,0 +1,25 @@
+package org.peterpan.rpc.core.transfer;
+
+import java.io.IOException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端回复了过载，请求没有被处理，可以立即换一个节点重试
+ */
+public class ServerOverloadedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // 服务端建议隔多久(毫秒)再把请求发给它
+    private final int retryAfterMillis;
+
+    public ServerOverloadedException(String message, int retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
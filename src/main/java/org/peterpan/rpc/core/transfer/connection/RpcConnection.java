@@ -0,0 +1,360 @@
+package org.peterpan.rpc.core.transfer.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.FrameTooLongException;
+import org.peterpan.rpc.core.protocol.Heartbeats;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.transfer.nio.ChannelHandler;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+import org.peterpan.rpc.core.transfer.nio.NioEventLoop;
+import org.peterpan.rpc.core.transfer.nio.UnixDomainSockets;
+import org.peterpan.rpc.core.transfer.shm.SharedMemoryChannel;
+import org.peterpan.rpc.core.transfer.shm.SharedMemoryUpgrade;
+import org.peterpan.rpc.util.NetUtil;
+import org.peterpan.rpc.util.RequestIdGenerator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端长连接
+ *
+ * 一条连接上可以同时挂着多个未完成的请求(多路复用)，连接的读写由客户端的 NioEventLoop 完成，
+ * 收到响应后根据 MsgHeader.requestId 找回对应的调用方，流式调用的各帧同样按 requestId 交给对应的 StreamListener。
+ * 服务方与本机同机并且发布了 Unix domain socket 路径时，优先走 Unix domain socket；
+ * 发布了共享内存目录时，连接建立后再升级为共享内存传输。
+ * 连接空闲时由事件循环触发心跳，连续几个周期都没有收到任何数据(包括心跳回复)说明对端已经失联，主动关闭，
+ * 而不是等到下一次调用写进一条死连接、白白耗掉一次超时
+ */
+@Slf4j
+public class RpcConnection implements ChannelHandler {
+
+    // 等待服务端确认共享内存升级的时间
+    private static final long SHARED_MEMORY_UPGRADE_TIMEOUT_MILLIS = 3000;
+
+    private final ServiceMeta serviceMeta;
+    private final NioChannel channel;
+    // requestId -> 等待响应的调用方
+    private final Map<Long, CompletableFuture<RpcProtocol>> pendingRequests = new ConcurrentHashMap<>();
+    // requestId -> 进行中的流式调用
+    private final Map<Long, StreamListener> streams = new ConcurrentHashMap<>();
+    // 已经半关闭，只等待在途请求的响应
+    private volatile boolean draining = false;
+    // 连接意外断开时通知连接池
+    private final Consumer<RpcConnection> closeListener;
+    private final int heartbeatMaxMissed;
+    // 连续没有收到数据的心跳周期数，在IO线程(升级后还有共享内存的读线程)上访问
+    private volatile int missedHeartbeats;
+
+    public RpcConnection(ServiceMeta serviceMeta, NioEventLoop eventLoop, Consumer<RpcConnection> closeListener) throws IOException {
+        this.serviceMeta = serviceMeta;
+        this.closeListener = closeListener;
+        this.heartbeatMaxMissed = RpcConfig.getInstance().getHeartbeatMaxMissed();
+        SocketChannel socketChannel = open(serviceMeta);
+        try {
+            this.channel = eventLoop.register(socketChannel, this).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            socketChannel.close();
+            throw new IOException("注册连接被中断", e);
+        } catch (ExecutionException e) {
+            socketChannel.close();
+            throw new IOException("注册连接失败", e.getCause());
+        }
+        upgradeToSharedMemory();
+    }
+
+    /**
+     * 同机并且服务端发布了共享内存目录时，请求把连接升级为共享内存传输；服务端拒绝时继续使用socket。
+     * 等待回复超时说明不知道服务端有没有切换，这条连接不能再用
+     */
+    private void upgradeToSharedMemory() throws IOException {
+        RpcConfig rpcConfig = RpcConfig.getInstance();
+        String dir = serviceMeta.getSharedMemoryDir();
+        if (dir == null
+                || !rpcConfig.isSharedMemoryEnabled()
+                || !SharedMemoryChannel.isSupported()
+                || !NetUtil.isLocalAddress(serviceMeta.getServiceAddr())
+                || !Files.isDirectory(Paths.get(dir))) {
+            return;
+        }
+        Path sharedMemoryDir = Paths.get(dir);
+        SharedMemoryChannel sharedMemory;
+        try {
+            sharedMemory = SharedMemoryChannel.create(sharedMemoryDir, rpcConfig.getSharedMemoryRingSize(), rpcConfig.getSharedMemoryWaitStrategy());
+        } catch (IOException e) {
+            log.warn("在 {} 创建共享内存文件失败, 继续使用socket", dir, e);
+            return;
+        }
+        try {
+            RpcProtocol request = SharedMemoryUpgrade.request(RequestIdGenerator.generateRequestId(), sharedMemory.fileName());
+            CompletableFuture<RpcProtocol> future;
+            try {
+                future = send(request);
+            } finally {
+                request.getBody().release();
+            }
+            RpcProtocol reply = future.get(SHARED_MEMORY_UPGRADE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            reply.getBody().release();
+            if (reply.getHeader().getStatus() == StatusConstants.NORMAL) {
+                channel.upgrade(sharedMemory);
+                log.info("连接 {} 升级为共享内存传输", channel.getRemoteAddress());
+            } else {
+                log.info("服务端 {} 不接受共享内存传输, 继续使用socket", channel.getRemoteAddress());
+                sharedMemory.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sharedMemory.close();
+            channel.close();
+            throw new IOException("等待共享内存升级被中断", e);
+        } catch (ExecutionException | TimeoutException e) {
+            sharedMemory.close();
+            channel.close();
+            throw new IOException("共享内存升级失败", e);
+        } finally {
+            // 服务端已经映射(或者放弃)，文件不再需要
+            sharedMemory.deleteFile();
+        }
+    }
+
+    /**
+     * 同机并且服务端发布了 Unix domain socket 时优先使用，连接失败再退回 TCP
+     */
+    private static SocketChannel open(ServiceMeta serviceMeta) throws IOException {
+        String unixSocketPath = serviceMeta.getUnixSocketPath();
+        if (unixSocketPath != null
+                && RpcConfig.getInstance().isUnixSocketEnabled()
+                && UnixDomainSockets.isSupported()
+                && NetUtil.isLocalAddress(serviceMeta.getServiceAddr())
+                && Files.exists(Paths.get(unixSocketPath))) {
+            try {
+                SocketChannel socketChannel = UnixDomainSockets.connect(unixSocketPath);
+                log.info("使用Unix domain socket连接 {}", unixSocketPath);
+                return socketChannel;
+            } catch (IOException e) {
+                log.warn("Unix domain socket {} 连接失败, 改用TCP", unixSocketPath, e);
+            }
+        }
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socketChannel.connect(new InetSocketAddress(serviceMeta.getServiceAddr(), serviceMeta.getServicePort()));
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+        return socketChannel;
+    }
+
+    /**
+     * 发送请求，返回的 future 在对应 requestId 的响应到达时完成
+     */
+    public CompletableFuture<RpcProtocol> send(RpcProtocol rpcRequest) {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        CompletableFuture<RpcProtocol> future = new CompletableFuture<>();
+        if (!isActive()) {
+            future.completeExceptionally(new IOException("连接已关闭"));
+            return future;
+        }
+        pendingRequests.put(requestId, future);
+        // 调用方超时或取消时，future被提前完成，顺便清理挂起的请求
+        future.whenComplete((response, e) -> pendingRequests.remove(requestId, future));
+        // 登记之后再检查一次，避免与连接关闭时的清理错过
+        if (!channel.isActive()) {
+            future.completeExceptionally(new IOException("连接已关闭"));
+            return future;
+        }
+        try {
+            channel.write(rpcRequest);
+        } catch (FrameTooLongException e) {
+            // 请求没有发出，只有这一个调用失败，连接上的其他调用不受影响
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 单向调用：只写出请求，不登记等待响应
+     */
+    public void sendOneWay(RpcProtocol rpcRequest) throws IOException {
+        if (!isActive()) {
+            throw new IOException("连接已关闭");
+        }
+        channel.write(rpcRequest);
+    }
+
+    /**
+     * 发起流式调用，属于该 requestId 的帧交给 listener，直到 STREAM_END 或者连接断开
+     */
+    public void openStream(RpcProtocol rpcRequest, StreamListener listener) throws IOException {
+        long requestId = rpcRequest.getHeader().getRequestId();
+        if (!isActive()) {
+            throw new IOException("连接已关闭");
+        }
+        streams.put(requestId, listener);
+        // 登记之后再检查一次，避免与连接关闭时的清理错过
+        if (!channel.isActive()) {
+            streams.remove(requestId);
+            throw new IOException("连接已关闭");
+        }
+        try {
+            channel.write(rpcRequest);
+        } catch (FrameTooLongException e) {
+            streams.remove(requestId);
+            throw e;
+        }
+    }
+
+    /**
+     * 在已经打开的流上发送后续的帧(元素、半关闭、流控窗口、取消)，流结束后直接丢弃
+     */
+    public void sendStreamFrame(RpcProtocol frame) {
+        if (streams.containsKey(frame.getHeader().getRequestId())) {
+            channel.write(frame);
+        } else if (frame.getFileRegion() != null) {
+            // 文件区域由写出方负责释放
+            frame.getFileRegion().release();
+        }
+    }
+
+    /**
+     * 调用方放弃了普通调用(超时或者取消)：通知服务端不再执行，迟到的响应照常丢弃
+     */
+    public void cancel(long requestId) {
+        if (!channel.isActive()) {
+            return;
+        }
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setMsgType((byte) MsgType.CANCEL.ordinal());
+        header.setStatus((byte) StatusConstants.NORMAL);
+        header.setRequestId(requestId);
+        RpcProtocol frame = new RpcProtocol();
+        frame.setHeader(header);
+        channel.write(frame);
+    }
+
+    /**
+     * 调用方不再关心该流，之后到达的帧直接丢弃
+     */
+    public void closeStream(long requestId) {
+        streams.remove(requestId);
+        closeIfDrained();
+    }
+
+    private void closeIfDrained() {
+        if (draining && pendingRequests.isEmpty() && streams.isEmpty()) {
+            channel.close();
+        }
+    }
+
+    public boolean isActive() {
+        return channel.isActive() && !draining;
+    }
+
+    /**
+     * 优雅关闭：先关闭写方向(半关闭)，服务端读到EOF后把在途请求的响应写完，
+     * 收齐响应或者服务端关闭连接后再彻底关闭
+     */
+    public void shutdown() {
+        draining = true;
+        if (pendingRequests.isEmpty() && streams.isEmpty()) {
+            channel.close();
+        } else {
+            channel.shutdownOutput();
+        }
+    }
+
+    public ServiceMeta getServiceMeta() {
+        return serviceMeta;
+    }
+
+    @Override
+    public void channelRead(NioChannel channel, RpcProtocol rpcResponse) {
+        // 收到任何数据都说明对端还活着
+        missedHeartbeats = 0;
+        if (rpcResponse.getHeader().getMsgType() == MsgType.HEARTBEAT.ordinal()) {
+            rpcResponse.getBody().release();
+            return;
+        }
+        long requestId = rpcResponse.getHeader().getRequestId();
+        StreamListener listener = streams.get(requestId);
+        if (listener != null) {
+            if (listener.onFrame(rpcResponse)) {
+                streams.remove(requestId, listener);
+                closeIfDrained();
+            }
+            return;
+        }
+        CompletableFuture<RpcProtocol> future = pendingRequests.remove(requestId);
+        if (future == null) {
+            log.warn("requestID={}, 响应没有对应的请求(可能已超时), 丢弃", requestId);
+            rpcResponse.getBody().release();
+        } else if (!future.complete(rpcResponse)) {
+            // 调用方已经放弃(超时/取消)
+            rpcResponse.getBody().release();
+        }
+        closeIfDrained();
+    }
+
+    /**
+     * 连接关闭，让所有挂起的请求失败
+     */
+    @Override
+    public void channelInactive(NioChannel channel) {
+        IOException failure = new IOException(draining ? "连接已关闭" : "服务端关闭了连接");
+        for (Long requestId : pendingRequests.keySet()) {
+            CompletableFuture<RpcProtocol> future = pendingRequests.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(failure);
+            }
+        }
+        for (Long requestId : streams.keySet()) {
+            StreamListener listener = streams.remove(requestId);
+            if (listener != null) {
+                listener.onConnectionClosed(failure);
+            }
+        }
+        if (!draining && closeListener != null) {
+            closeListener.accept(this);
+        }
+    }
+
+    /**
+     * 一个心跳周期内没有读到数据：发送心跳，连续多个周期都没有回应时关闭连接
+     */
+    @Override
+    public void channelIdle(NioChannel channel) {
+        if (draining) {
+            return;
+        }
+        if (++missedHeartbeats > heartbeatMaxMissed) {
+            log.warn("连接 {} 连续{}个心跳周期没有收到数据, 关闭连接", channel.getRemoteAddress(), heartbeatMaxMissed);
+            channel.close();
+            return;
+        }
+        channel.write(Heartbeats.frame(0));
+    }
+}
@@ -0,0 +1,171 @@
+package org.peterpan.rpc.core.transfer.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.transfer.nio.NioEventLoopGroup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端连接池
+ *
+ * 每个服务提供方(addr:port)维护固定数量的长连接，调用方轮询选择其中一条复用。
+ * 空闲的连接靠心跳保活和探测失联(见 RpcConnection)，连接意外断开后立即从槽位中移除，
+ * 并在后台按退避间隔重连，空闲后的第一次调用不需要再现场建连；重连放弃后在下一次获取时惰性重建
+ */
+@Slf4j
+public class RpcConnectionPool {
+
+    private static volatile RpcConnectionPool instance;
+
+    // addr:port -> 该服务提供方的连接槽位
+    private final Map<String, RpcConnection[]> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger index = new AtomicInteger(0);
+    private final int poolSize;
+    // 所有客户端连接共用的事件循环，空闲检查的周期就是心跳间隔
+    private final NioEventLoopGroup eventLoopGroup;
+    private final int reconnectAttempts;
+    // 重连会阻塞在建连上，不能放在事件循环里做
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rpc-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean shutdown = false;
+
+    private RpcConnectionPool() throws IOException {
+        this.poolSize = RpcConfig.getInstance().getConnectionPoolSize();
+        this.reconnectAttempts = RpcConfig.getInstance().getReconnectAttempts();
+        this.eventLoopGroup = new NioEventLoopGroup(RpcConfig.getInstance().getClientIoThreads(), "rpc-client-io",
+                RpcConfig.getInstance().getHeartbeatInterval() * 1000L);
+        // 进程退出前半关闭所有连接，让在途请求的响应还能收回来
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "rpc-conn-pool-shutdown"));
+    }
+
+    public static RpcConnectionPool getInstance() {
+        if (instance == null) {
+            synchronized (RpcConnectionPool.class) {
+                if (instance == null) {
+                    try {
+                        instance = new RpcConnectionPool();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("创建客户端事件循环失败", e);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    public RpcConnection acquire(ServiceMeta serviceMeta) throws IOException {
+        String address = buildAddress(serviceMeta);
+        RpcConnection[] slots = connections.computeIfAbsent(address, k -> new RpcConnection[poolSize]);
+        int slot = (index.getAndIncrement() & Integer.MAX_VALUE) % poolSize;
+        RpcConnection connection = slots[slot];
+        if (connection != null && connection.isActive()) {
+            return connection;
+        }
+        synchronized (slots) {
+            connection = slots[slot];
+            if (connection == null || !connection.isActive()) {
+                connection = connect(serviceMeta, slots, slot);
+                log.info("建立连接 {}, slot={}", address, slot);
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * 建立连接并放进槽位，调用方持有 slots 的锁
+     */
+    private RpcConnection connect(ServiceMeta serviceMeta, RpcConnection[] slots, int slot) throws IOException {
+        RpcConnection connection = new RpcConnection(serviceMeta, eventLoopGroup.next(),
+                closed -> onConnectionClosed(serviceMeta, slots, slot, closed));
+        slots[slot] = connection;
+        return connection;
+    }
+
+    /**
+     * 连接意外断开(对端关闭、读写失败或者心跳超时)：移出槽位，后台重连。
+     * 在IO线程上回调，而 acquire 可能正持有 slots 的锁等待同一个事件循环注册新连接，所以转到重连线程上处理
+     */
+    private void onConnectionClosed(ServiceMeta serviceMeta, RpcConnection[] slots, int slot, RpcConnection closed) {
+        try {
+            reconnectExecutor.execute(() -> evict(serviceMeta, slots, slot, closed));
+        } catch (RejectedExecutionException e) {
+            // 进程退出中
+        }
+    }
+
+    private void evict(ServiceMeta serviceMeta, RpcConnection[] slots, int slot, RpcConnection closed) {
+        synchronized (slots) {
+            if (slots[slot] != closed) {
+                return;
+            }
+            slots[slot] = null;
+        }
+        if (!shutdown && reconnectAttempts > 0) {
+            scheduleReconnect(serviceMeta, slots, slot, 1);
+        }
+    }
+
+    private void scheduleReconnect(ServiceMeta serviceMeta, RpcConnection[] slots, int slot, int attempt) {
+        long delayMillis = 1000L << Math.min(attempt - 1, 10);
+        try {
+            reconnectExecutor.schedule(() -> reconnect(serviceMeta, slots, slot, attempt), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 进程退出中
+        }
+    }
+
+    private void reconnect(ServiceMeta serviceMeta, RpcConnection[] slots, int slot, int attempt) {
+        if (shutdown) {
+            return;
+        }
+        String address = buildAddress(serviceMeta);
+        synchronized (slots) {
+            if (slots[slot] != null) {
+                // 期间已经被调用方惰性重建
+                return;
+            }
+            try {
+                connect(serviceMeta, slots, slot);
+                log.info("重连成功 {}, slot={}, 第{}次尝试", address, slot, attempt);
+                return;
+            } catch (IOException e) {
+                log.warn("重连 {} 失败, slot={}, 第{}次尝试: {}", address, slot, attempt, e.getMessage());
+            }
+        }
+        if (attempt < reconnectAttempts) {
+            scheduleReconnect(serviceMeta, slots, slot, attempt + 1);
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        reconnectExecutor.shutdownNow();
+        for (RpcConnection[] slots : connections.values()) {
+            synchronized (slots) {
+                for (RpcConnection connection : slots) {
+                    if (connection != null) {
+                        connection.shutdown();
+                    }
+                }
+            }
+        }
+    }
+
+    private String buildAddress(ServiceMeta serviceMeta) {
+        return String.join(":", serviceMeta.getServiceAddr(), String.valueOf(serviceMeta.getServicePort()));
+    }
+}
@@ -0,0 +1,22 @@
+package org.peterpan.rpc.core.transfer.connection;
+
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 流式调用的接收方，回调运行在连接的IO线程上，不能阻塞
+ */
+public interface StreamListener {
+
+    /**
+     * 收到属于该流的一帧(STREAM_*，或者请求被拒绝时的 RESPONSE)，由接收方负责释放消息体。
+     * 返回 true 表示流已经结束，连接不再向它投递
+     */
+    boolean onFrame(RpcProtocol frame);
+
+    /**
+     * 流结束之前连接断开
+     */
+    void onConnectionClosed(Throwable cause);
+}
@@ -0,0 +1,27 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 连接事件回调，运行在连接所属的 NioEventLoop 线程上，不能阻塞
+ */
+public interface ChannelHandler {
+
+    /**
+     * 解码出一帧完整的消息
+     */
+    void channelRead(NioChannel channel, RpcProtocol msg);
+
+    /**
+     * 连接关闭
+     */
+    void channelInactive(NioChannel channel);
+
+    /**
+     * 连接在 idleTimeout 内没有读到任何数据，默认不处理
+     */
+    default void channelIdle(NioChannel channel) {
+    }
+}
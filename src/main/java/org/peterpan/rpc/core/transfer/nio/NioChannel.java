@@ -0,0 +1,474 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.FileRegion;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.FrameTooLongException;
+import org.peterpan.rpc.core.codec.RpcFrameDecoder;
+import org.peterpan.rpc.core.codec.RpcFrameEncoder;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.transfer.shm.SharedMemoryChannel;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 非阻塞连接
+ *
+ * 读写都只在所属的 NioEventLoop 线程上执行，其他线程调用 write 时会把数据投递到事件循环。
+ * 写合并：write 只把编码好的帧放进 pendingWrites，同一批次只投递一次 flush 任务，
+ * 事件循环执行 flush 时把积攒的帧用一次 gathering write 写出，减少系统调用和小包。
+ * 批次在当前事件循环轮次结束时写出，配置了 writeCoalesceMicros 时最多再等待这么久，积攒超过 writeCoalesceMaxBytes 立即写出。
+ * 内核发送缓冲区写满时数据暂存在 outboundBuffers，并关注 OP_WRITE 等待可写。
+ * 消息体是文件区域的帧先写协议头，再用 FileChannel.transferTo 把文件内容直接写到 socket，不经过用户态内存。
+ * 升级为共享内存传输后，帧的收发都改走 SharedMemoryChannel，socket 只用来感知对端关闭
+ */
+@Slf4j
+public class NioChannel {
+
+    // 每次读事件最多读取的次数，避免一条连接长时间占用事件循环
+    private static final int MAX_READS_PER_EVENT = 16;
+    // 一次 gathering write 最多携带的帧数
+    private static final int MAX_GATHER_BUFFERS = 256;
+    // 半关闭时等待对端读完共享内存中数据的检查间隔
+    private static final long SHARED_MEMORY_DRAIN_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // 写合并最多等待的时间(纳秒)，0 表示只在当前事件循环轮次内合并
+    private static final long COALESCE_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(RpcConfig.getInstance().getWriteCoalesceMicros());
+    // 积攒的待写字节数超过该值时不再等待
+    private static final int COALESCE_MAX_BYTES = RpcConfig.getInstance().getWriteCoalesceMaxBytes();
+
+    private final NioEventLoop eventLoop;
+    private final SocketChannel socketChannel;
+    private final SelectionKey selectionKey;
+    private final ChannelHandler handler;
+    private final RpcFrameDecoder frameDecoder = new RpcFrameDecoder();
+    // 任意线程写入、等待事件循环合并写出的帧(PooledByteBuffer 或者 FileRegionFrame)
+    private final Queue<Object> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingBytes = new AtomicInteger(0);
+    // 是否已经投递了 flush 任务
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // 已经从 pendingWrites 取出、还没写完的帧，只在事件循环线程访问
+    private final Deque<Object> outboundBuffers = new ArrayDeque<>();
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+    // 已经交给业务处理、还没有写回响应的请求数
+    private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+    // 共享内存的读线程也会更新
+    private volatile long lastReadTime = System.currentTimeMillis();
+    private long lastIdleEventTime = lastReadTime;
+    // 对端已经半关闭(不会再发数据)，等在途请求的响应写完后再关闭连接
+    private volatile boolean inputShutdown = false;
+    // 本端请求半关闭，待发送数据写完后关闭写方向
+    private boolean outputShutdownPending = false;
+    private volatile boolean active = true;
+    // 升级后的共享内存通道
+    private volatile SharedMemoryChannel sharedMemory;
+    // 已经投递了等待共享内存读完的检查，只在事件循环线程访问
+    private boolean drainCheckScheduled = false;
+
+    NioChannel(NioEventLoop eventLoop, SocketChannel socketChannel, SelectionKey selectionKey, ChannelHandler handler) {
+        this.eventLoop = eventLoop;
+        this.socketChannel = socketChannel;
+        this.selectionKey = selectionKey;
+        this.handler = handler;
+    }
+
+    /**
+     * 编码并发送一帧消息，可以在任意线程调用，帧会与同一批次的其他帧合并写出。
+     * 帧超过 maxFrameLength 时抛出 FrameTooLongException，连接不受影响，由调用方让这一个调用失败
+     */
+    public void write(RpcProtocol msg) {
+        FileRegion region = msg.getFileRegion();
+        PooledByteBuffer encoded;
+        if (region != null) {
+            // 文件区域交给连接，写完或者连接关闭时释放；只有协议头占用内存
+            try {
+                encoded = RpcFrameEncoder.encodeHeader(msg.getHeader(), (int) region.count());
+            } catch (FrameTooLongException e) {
+                region.release();
+                throw e;
+            }
+        } else {
+            // 帧引用了消息体的内存(引用计数加一)，写完后释放，调用方仍然需要释放自己持有的消息体
+            encoded = RpcFrameEncoder.encode(msg);
+        }
+        SharedMemoryChannel shm = sharedMemory;
+        if (shm != null) {
+            // 直接拷贝进共享内存，不经过事件循环
+            shm.write(encoded, region);
+            return;
+        }
+        Object frame = region != null ? new FileRegionFrame(encoded, region) : encoded;
+        int frameLength = encoded.readableBytes();
+        pendingWrites.offer(frame);
+        int bytes = pendingBytes.addAndGet(frameLength);
+        if (flushScheduled.compareAndSet(false, true)) {
+            if (COALESCE_DELAY_NANOS > 0 && bytes < COALESCE_MAX_BYTES) {
+                eventLoop.schedule(this::flushPendingWrites, COALESCE_DELAY_NANOS);
+            } else {
+                eventLoop.execute(this::flushPendingWrites);
+            }
+        } else if (COALESCE_DELAY_NANOS > 0 && bytes >= COALESCE_MAX_BYTES && bytes - frameLength < COALESCE_MAX_BYTES) {
+            // 延迟期间积攒得够多了，提前写出；多出来的那次 flush 发现没有数据会直接返回
+            eventLoop.execute(this::flushPendingWrites);
+        }
+    }
+
+    /**
+     * 把积攒的帧写出，在事件循环线程执行
+     */
+    private void flushPendingWrites() {
+        // 先清标记再取数据，之后写入的帧会投递新的 flush
+        flushScheduled.set(false);
+        drainPendingWrites();
+        if (!active || outboundBuffers.isEmpty()) {
+            return;
+        }
+        if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            // 内核缓冲区满，等 OP_WRITE 时一起写
+            return;
+        }
+        flush();
+    }
+
+    private void drainPendingWrites() {
+        Object frame;
+        while ((frame = pendingWrites.poll()) != null) {
+            pendingBytes.addAndGet(-pendingLength(frame));
+            if (active && !outputShutdownPending) {
+                outboundBuffers.addLast(frame);
+            } else {
+                release(frame);
+            }
+        }
+    }
+
+    /**
+     * 用 gathering write 把 outboundBuffers 尽量写出，遇到文件区域时单独 transferTo，写不完时关注 OP_WRITE
+     */
+    void flush() {
+        try {
+            while (!outboundBuffers.isEmpty()) {
+                Object first = outboundBuffers.peekFirst();
+                if (first instanceof FileRegionFrame) {
+                    if (!((FileRegionFrame) first).writeTo(socketChannel)) {
+                        selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    release(outboundBuffers.pollFirst());
+                    continue;
+                }
+                int count = 0;
+                for (Object frame : outboundBuffers) {
+                    if (!(frame instanceof PooledByteBuffer)) {
+                        break;
+                    }
+                    gatherBuffers[count++] = ((PooledByteBuffer) frame).buffer();
+                    if (count == MAX_GATHER_BUFFERS) {
+                        break;
+                    }
+                }
+                socketChannel.write(gatherBuffers, 0, count);
+                // 本次携带的最后一帧没写完，说明内核缓冲区满了
+                boolean incomplete = gatherBuffers[count - 1].hasRemaining();
+                Arrays.fill(gatherBuffers, 0, count, null);
+                while (!outboundBuffers.isEmpty() && outboundBuffers.peekFirst() instanceof PooledByteBuffer
+                        && ((PooledByteBuffer) outboundBuffers.peekFirst()).readableBytes() == 0) {
+                    release(outboundBuffers.pollFirst());
+                }
+                if (incomplete) {
+                    // 内核缓冲区满了，等待 OP_WRITE
+                    selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            if (outputShutdownPending) {
+                shutdownSocketOutput();
+            }
+            closeIfDrained();
+        } catch (IOException e) {
+            log.warn("向 {} 写数据失败", getRemoteAddress(), e);
+            close();
+        }
+    }
+
+    /**
+     * 可读事件：读取数据并解码出完整的帧交给 handler
+     */
+    void read() {
+        // 读缓冲区属于事件循环，同一个循环上的连接共用，半包由各自的解码器保存
+        ByteBuffer readBuffer = eventLoop.readBuffer();
+        try {
+            for (int i = 0; i < MAX_READS_PER_EVENT && active; i++) {
+                List<RpcProtocol> frames;
+                try {
+                    int n = socketChannel.read(readBuffer);
+                    if (n < 0) {
+                        // 对端关闭了写方向，不再读，但已经收到的请求仍然要把响应写回去
+                        inputShutdown = true;
+                        selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_READ);
+                        closeIfDrained();
+                        return;
+                    }
+                    if (n == 0) {
+                        return;
+                    }
+                    lastReadTime = System.currentTimeMillis();
+                    readBuffer.flip();
+                    frames = frameDecoder.decode(readBuffer);
+                } finally {
+                    // 解码失败也要清空，不能把残留数据留给下一条连接
+                    readBuffer.clear();
+                }
+                for (RpcProtocol frame : frames) {
+                    handler.channelRead(this, frame);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("从 {} 读数据失败", getRemoteAddress(), e);
+            close();
+        }
+    }
+
+    /**
+     * 升级为共享内存传输：之后写的帧都进共享内存，从共享内存读到的帧和从 socket 读到的一样交给 handler。
+     * 在握手完成、没有其他帧在途时调用
+     */
+    public void upgrade(SharedMemoryChannel shm) {
+        shm.start(new SharedMemoryChannel.FrameListener() {
+            @Override
+            public void frameRead(RpcProtocol frame) {
+                lastReadTime = System.currentTimeMillis();
+                handler.channelRead(NioChannel.this, frame);
+            }
+
+            @Override
+            public void failed(IOException e) {
+                close();
+            }
+        });
+        sharedMemory = shm;
+        if (!active) {
+            // 升级期间连接已经关闭
+            shm.close();
+        }
+    }
+
+    public boolean isSharedMemory() {
+        return sharedMemory != null;
+    }
+
+    /**
+     * 业务开始处理一个请求
+     */
+    public void requestStarted() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    /**
+     * 请求处理完毕(响应已经提交写出)，对端半关闭时由最后一个请求触发关闭
+     */
+    public void requestCompleted() {
+        if (inFlightRequests.decrementAndGet() == 0 && inputShutdown) {
+            eventLoop.execute(this::closeIfDrained);
+        }
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * 半关闭状态下，在途请求都处理完、待发送数据都写完后关闭连接
+     */
+    private void closeIfDrained() {
+        if (!inputShutdown || inFlightRequests.get() != 0 || !outboundBuffers.isEmpty() || !pendingWrites.isEmpty()) {
+            return;
+        }
+        SharedMemoryChannel shm = sharedMemory;
+        if (shm != null && !shm.isFlushed()) {
+            // 响应还在共享内存里没被对端读走，稍后再检查
+            if (!drainCheckScheduled) {
+                drainCheckScheduled = true;
+                eventLoop.schedule(() -> {
+                    drainCheckScheduled = false;
+                    closeIfDrained();
+                }, SHARED_MEMORY_DRAIN_CHECK_NANOS);
+            }
+            return;
+        }
+        close();
+    }
+
+    /**
+     * 半关闭：待发送的数据写完后关闭写方向，对端读到EOF，仍然可以继续读对端的数据，可以在任意线程调用
+     */
+    public void shutdownOutput() {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(this::shutdownOutput);
+            return;
+        }
+        if (!active || outputShutdownPending) {
+            return;
+        }
+        // 已经提交的帧先写出去
+        drainPendingWrites();
+        outputShutdownPending = true;
+        if (outboundBuffers.isEmpty()) {
+            try {
+                shutdownSocketOutput();
+            } catch (IOException e) {
+                log.warn("半关闭连接 {} 失败", getRemoteAddress(), e);
+                close();
+            }
+        }
+    }
+
+    /**
+     * 关闭 socket 的写方向。对端读到EOF时会认为请求都已经收到，所以共享内存中的帧要先被对端读完
+     */
+    private void shutdownSocketOutput() throws IOException {
+        SharedMemoryChannel shm = sharedMemory;
+        if (shm != null && !shm.isFlushed()) {
+            eventLoop.schedule(() -> {
+                try {
+                    if (active) {
+                        shutdownSocketOutput();
+                    }
+                } catch (IOException e) {
+                    log.warn("半关闭连接 {} 失败", getRemoteAddress(), e);
+                    close();
+                }
+            }, SHARED_MEMORY_DRAIN_CHECK_NANOS);
+            return;
+        }
+        socketChannel.shutdownOutput();
+    }
+
+    /**
+     * 由事件循环定期调用，超过 idleTimeout 没有读到数据时触发 channelIdle
+     */
+    void checkIdle(long now, long idleTimeoutMillis) {
+        if (active && now - Math.max(lastReadTime, lastIdleEventTime) >= idleTimeoutMillis) {
+            lastIdleEventTime = now;
+            handler.channelIdle(this);
+        }
+    }
+
+    /**
+     * 关闭连接，可以在任意线程调用
+     */
+    public void close() {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(this::close);
+            return;
+        }
+        if (!active) {
+            return;
+        }
+        active = false;
+        selectionKey.cancel();
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.warn("关闭连接 {} 失败", getRemoteAddress(), e);
+        }
+        releaseAll(outboundBuffers);
+        releaseAll(pendingWrites);
+        SharedMemoryChannel shm = sharedMemory;
+        if (shm != null) {
+            shm.close();
+        }
+        handler.channelInactive(this);
+    }
+
+    private static void releaseAll(Queue<Object> frames) {
+        Object frame;
+        while ((frame = frames.poll()) != null) {
+            release(frame);
+        }
+    }
+
+    private static void release(Object frame) {
+        if (frame instanceof PooledByteBuffer) {
+            ((PooledByteBuffer) frame).release();
+        } else {
+            ((FileRegionFrame) frame).release();
+        }
+    }
+
+    private static int pendingLength(Object frame) {
+        return frame instanceof PooledByteBuffer
+                ? ((PooledByteBuffer) frame).readableBytes()
+                : ((FileRegionFrame) frame).header.readableBytes();
+    }
+
+    /**
+     * 协议头 + 文件区域组成的一帧，两部分作为一个整体排队，不会被其他线程写入的帧插在中间
+     */
+    private static final class FileRegionFrame {
+        final PooledByteBuffer header;
+        final FileRegion region;
+
+        FileRegionFrame(PooledByteBuffer header, FileRegion region) {
+            this.header = header;
+            this.region = region;
+        }
+
+        /**
+         * 返回 true 表示整帧已经写完，false 表示内核缓冲区满了
+         */
+        boolean writeTo(SocketChannel socketChannel) throws IOException {
+            ByteBuffer headerBuffer = header.buffer();
+            while (headerBuffer.hasRemaining()) {
+                if (socketChannel.write(headerBuffer) == 0) {
+                    return false;
+                }
+            }
+            while (!region.isDone()) {
+                if (region.transferTo(socketChannel) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void release() {
+            header.release();
+            region.release();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public NioEventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        try {
+            return socketChannel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 单线程事件循环
+ *
+ * 一个线程绑定一个 Selector，负责若干连接的读写事件，以及其他线程投递过来的任务(注册连接、写数据等)。
+ * 连接上的所有 IO 操作都在这个线程里完成，所以 NioChannel 内部不需要加锁
+ */
+@Slf4j
+public class NioEventLoop implements Runnable {
+
+    private static final long SELECT_TIMEOUT = 1000;
+    private static final long IDLE_CHECK_INTERVAL = 1000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+    // 延迟任务，按到期时间排序，只在事件循环线程访问
+    private final PriorityQueue<ScheduledTask> scheduledTasks = new PriorityQueue<>();
+    private long scheduledTaskSeq = 0;
+    // 避免每次投递任务都调用 selector.wakeup()
+    private final AtomicBoolean wakenUp = new AtomicBoolean(false);
+    private final Thread thread;
+    // 连接空闲超时(毫秒)，0 表示不检测
+    private final long idleTimeoutMillis;
+    private long lastIdleCheckTime = System.currentTimeMillis();
+    private volatile boolean running = true;
+    // 所有连接共用的读缓冲区：读取只在事件循环线程上进行，解码器会取走或者拷贝其中的全部数据。
+    // 直接内存，避免 JDK 每次读都拷贝到临时的直接缓冲区
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    public NioEventLoop(String threadName, long idleTimeoutMillis) throws IOException {
+        this.selector = Selector.open();
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.thread = new Thread(this, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 事件循环共用的读缓冲区，只能在事件循环线程上使用，用完后 clear
+     */
+    ByteBuffer readBuffer() {
+        return readBuffer;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 投递任务到事件循环线程执行
+     */
+    public void execute(Runnable task) {
+        taskQueue.offer(task);
+        if (!inEventLoop() && wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 投递一个延迟任务，delayNanos 纳秒后在事件循环线程执行，精度受 select 影响
+     */
+    public void schedule(Runnable task, long delayNanos) {
+        long deadline = System.nanoTime() + delayNanos;
+        if (inEventLoop()) {
+            scheduledTasks.add(new ScheduledTask(task, deadline, scheduledTaskSeq++));
+        } else {
+            execute(() -> scheduledTasks.add(new ScheduledTask(task, deadline, scheduledTaskSeq++)));
+        }
+    }
+
+    /**
+     * 把连接注册到当前事件循环，注册在事件循环线程上完成
+     */
+    public CompletableFuture<NioChannel> register(SocketChannel socketChannel, ChannelHandler handler) {
+        CompletableFuture<NioChannel> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                socketChannel.configureBlocking(false);
+                SelectionKey selectionKey = socketChannel.register(selector, SelectionKey.OP_READ);
+                NioChannel channel = new NioChannel(this, socketChannel, selectionKey, handler);
+                selectionKey.attach(channel);
+                future.complete(channel);
+            } catch (IOException e) {
+                closeQuietly(socketChannel);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void run() {
+        // 解码和写完释放都在事件循环线程上，缓存在这里的内存会被反复使用
+        PooledByteBufferAllocator.getInstance().enableThreadCache();
+        while (running) {
+            try {
+                wakenUp.set(false);
+                long selectTimeout = selectTimeoutMillis();
+                if (selectTimeout > 0) {
+                    selector.select(selectTimeout);
+                } else {
+                    selector.selectNow();
+                }
+                processSelectedKeys();
+            } catch (Throwable e) {
+                log.error("事件循环处理IO事件异常", e);
+            }
+            runAllTasks();
+            runScheduledTasks();
+            checkIdleChannels();
+        }
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioChannel) {
+                ((NioChannel) attachment).close();
+            }
+        }
+        closeQuietly(selector);
+        PooledByteBufferAllocator.getInstance().disableThreadCache();
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            NioChannel channel = (NioChannel) key.attachment();
+            if (!key.isValid()) {
+                channel.close();
+                continue;
+            }
+            int readyOps = key.readyOps();
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                channel.flush();
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0) {
+                channel.read();
+            }
+        }
+    }
+
+    /**
+     * 有待执行的任务或者延迟任务已经到期时不阻塞；否则最多阻塞到最近一个延迟任务到期
+     */
+    long selectTimeoutMillis() {
+        if (!taskQueue.isEmpty()) {
+            return 0;
+        }
+        ScheduledTask next = scheduledTasks.peek();
+        if (next == null) {
+            return SELECT_TIMEOUT;
+        }
+        long delayNanos = next.deadline - System.nanoTime();
+        if (delayNanos <= 0) {
+            return 0;
+        }
+        // select 的超时只有毫秒精度，不足1毫秒的等待向上取整，否则在到期前会一直 selectNow 空转
+        long delayMillis = (delayNanos + 999999) / 1000000;
+        return Math.min(delayMillis, SELECT_TIMEOUT);
+    }
+
+    private void runScheduledTasks() {
+        long now = System.nanoTime();
+        ScheduledTask task;
+        while ((task = scheduledTasks.peek()) != null && task.deadline - now <= 0) {
+            scheduledTasks.poll();
+            try {
+                task.task.run();
+            } catch (Throwable e) {
+                log.error("事件循环执行延迟任务异常", e);
+            }
+        }
+    }
+
+    private void runAllTasks() {
+        Runnable task;
+        while ((task = taskQueue.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("事件循环执行任务异常", e);
+            }
+        }
+    }
+
+    /**
+     * 每秒检查一次，长时间没有读到数据的连接交给 handler 处理(关闭或者发心跳)
+     */
+    private void checkIdleChannels() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheckTime < IDLE_CHECK_INTERVAL) {
+            return;
+        }
+        lastIdleCheckTime = now;
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioChannel) {
+                ((NioChannel) attachment).checkIdle(now, idleTimeoutMillis);
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        final Runnable task;
+        final long deadline;
+        // 到期时间相同时按投递顺序执行
+        final long seq;
+
+        ScheduledTask(Runnable task, long deadline, long seq) {
+            this.task = task;
+            this.deadline = deadline;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask o) {
+            long diff = deadline - o.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
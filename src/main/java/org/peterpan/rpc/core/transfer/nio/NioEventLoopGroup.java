@@ -0,0 +1,32 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 事件循环组，新连接轮询分配到各个 NioEventLoop
+ */
+public class NioEventLoopGroup {
+
+    private final NioEventLoop[] eventLoops;
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    public NioEventLoopGroup(int nThreads, String threadNamePrefix, long idleTimeoutMillis) throws IOException {
+        this.eventLoops = new NioEventLoop[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            eventLoops[i] = new NioEventLoop(threadNamePrefix + "-" + i, idleTimeoutMillis);
+        }
+    }
+
+    public NioEventLoop next() {
+        return eventLoops[(index.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+    }
+
+    public void shutdown() {
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description Unix domain socket 支持
+ *
+ * 同一台机器上的调用方和服务方通过 Unix domain socket 通信，不经过 TCP/IP 协议栈。
+ * 项目按 JDK 8 编译，JDK 16 才提供的 API 通过反射获取，运行时不支持时 isSupported 返回 false
+ */
+@Slf4j
+public class UnixDomainSockets {
+
+    private static final ProtocolFamily UNIX;
+    private static final Method SOCKET_CHANNEL_OPEN;
+    private static final Method SERVER_SOCKET_CHANNEL_OPEN;
+    private static final Method ADDRESS_OF;
+
+    static {
+        ProtocolFamily unix = null;
+        Method socketChannelOpen = null;
+        Method serverSocketChannelOpen = null;
+        Method addressOf = null;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            socketChannelOpen = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            serverSocketChannelOpen = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+        } catch (Throwable e) {
+            log.debug("当前JDK不支持Unix domain socket: {}", e.toString());
+            unix = null;
+        }
+        UNIX = unix;
+        SOCKET_CHANNEL_OPEN = socketChannelOpen;
+        SERVER_SOCKET_CHANNEL_OPEN = serverSocketChannelOpen;
+        ADDRESS_OF = addressOf;
+    }
+
+    public static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    /**
+     * 在 path 上监听，残留的 socket 文件(上次进程没有正常退出)会先删除
+     */
+    public static ServerSocketChannel bind(String path) throws IOException {
+        checkSupported();
+        Files.deleteIfExists(Paths.get(path));
+        ServerSocketChannel serverSocketChannel = (ServerSocketChannel) invoke(SERVER_SOCKET_CHANNEL_OPEN, null, UNIX);
+        try {
+            serverSocketChannel.bind(address(path));
+        } catch (IOException e) {
+            serverSocketChannel.close();
+            throw e;
+        }
+        return serverSocketChannel;
+    }
+
+    /**
+     * 以阻塞方式连接 path 上的服务端
+     */
+    public static SocketChannel connect(String path) throws IOException {
+        checkSupported();
+        SocketChannel socketChannel = (SocketChannel) invoke(SOCKET_CHANNEL_OPEN, null, UNIX);
+        try {
+            socketChannel.connect(address(path));
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+        return socketChannel;
+    }
+
+    private static SocketAddress address(String path) throws IOException {
+        return (SocketAddress) invoke(ADDRESS_OF, null, path);
+    }
+
+    private static void checkSupported() throws IOException {
+        if (!isSupported()) {
+            throw new IOException("当前JDK不支持Unix domain socket");
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object arg) throws IOException {
+        try {
+            return method.invoke(target, arg);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.core.buffer.FileRegion;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.RpcFrameDecoder;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 共享内存通道
+ *
+ * 同机的客户端和服务端映射同一个文件，文件里每个方向一个 SharedMemoryRing，帧的字节直接拷贝进对端可见的内存，
+ * 不经过内核协议栈。通道依附在一条已经建立的连接上(见 SharedMemoryUpgrade)：
+ * 连接负责握手和生命周期(对端进程退出时连接断开)，升级后收发的帧都走共享内存。
+ * 写：任意线程调用 write，在写锁内把帧拷贝进环；环满时剩下的部分留在 pendingWrites，由读线程在空闲时继续写，
+ * 写方从不等待对端，两端互相写满也不会死锁。
+ * 读：每个通道一个读线程，按 WaitStrategy 轮询环，解码出的帧依次交给 FrameListener，相当于这条连接的读事件线程
+ */
+@Slf4j
+public class SharedMemoryChannel {
+
+    private static final int MAGIC = 0x52504353;
+    private static final int FORMAT_VERSION = 1;
+    // 文件头：魔数(4) + 格式版本(4) + 环容量(4)，对齐到缓存行
+    private static final int FILE_HEADER_SIZE = 128;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int MAX_RING_SIZE = 1 << 30;
+    private static final String FILE_SUFFIX = ".shm";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final AtomicInteger READER_SEQ = new AtomicInteger();
+
+    private final Path file;
+    // 保持映射的引用，映射被回收后环的地址就失效了
+    private final MappedByteBuffer mapped;
+    private final SharedMemoryRing inbound;
+    private final SharedMemoryRing outbound;
+    private final WaitStrategy waitStrategy;
+    private final RpcFrameDecoder frameDecoder = new RpcFrameDecoder();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    // 以下由 writeLock 保护
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Deque<Frame> pendingWrites = new ArrayDeque<>();
+    private final WritableByteChannel outboundChannel = new RingChannel();
+    // 环满时还有没写完的帧
+    private volatile boolean backlogged = false;
+    private volatile boolean active = true;
+    private FrameListener listener;
+
+    private SharedMemoryChannel(Path file, MappedByteBuffer mapped, int ringSize, boolean client, WaitStrategy waitStrategy) {
+        this.file = file;
+        this.mapped = mapped;
+        this.waitStrategy = waitStrategy;
+        // 第一个环是客户端 -> 服务端，第二个环是服务端 -> 客户端
+        SharedMemoryRing toServer = new SharedMemoryRing(mapped, FILE_HEADER_SIZE, ringSize);
+        SharedMemoryRing toClient = new SharedMemoryRing(mapped, FILE_HEADER_SIZE + SharedMemoryRing.HEADER_SIZE + ringSize, ringSize);
+        this.outbound = client ? toServer : toClient;
+        this.inbound = client ? toClient : toServer;
+    }
+
+    public static boolean isSupported() {
+        return SharedMemoryRing.isSupported();
+    }
+
+    /**
+     * 客户端：在服务端发布的目录下创建并映射一个新文件，ringSize 向上取整到2的幂
+     */
+    public static SharedMemoryChannel create(Path dir, int ringSize, WaitStrategy waitStrategy) throws IOException {
+        int capacity = ringSize <= 4096 ? 4096 : Math.min(Integer.highestOneBit(ringSize - 1) << 1, MAX_RING_SIZE);
+        Path file = dir.resolve(UUID.randomUUID() + FILE_SUFFIX);
+        MappedByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long size = fileSize(capacity);
+            raf.setLength(size);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        mapped.putInt(CAPACITY_OFFSET, capacity);
+        mapped.putInt(4, FORMAT_VERSION);
+        mapped.putInt(0, MAGIC);
+        return new SharedMemoryChannel(file, mapped, capacity, true, waitStrategy);
+    }
+
+    /**
+     * 服务端：映射客户端在 dir 下创建的文件，只接受本目录下由 create 生成的文件名
+     */
+    public static SharedMemoryChannel open(Path dir, String fileName, WaitStrategy waitStrategy) throws IOException {
+        if (!fileName.matches("[0-9a-f\\-]+\\" + FILE_SUFFIX)) {
+            throw new IOException("非法的共享内存文件名: " + fileName);
+        }
+        Path file = dir.resolve(fileName);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long size = raf.length();
+            if (size < FILE_HEADER_SIZE) {
+                throw new IOException("共享内存文件不完整: " + file);
+            }
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int capacity = mapped.getInt(CAPACITY_OFFSET);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION
+                    || Integer.bitCount(capacity) != 1 || capacity > MAX_RING_SIZE || fileSize(capacity) != size) {
+                throw new IOException("共享内存文件格式不对: " + file);
+            }
+            return new SharedMemoryChannel(file, mapped, capacity, false, waitStrategy);
+        }
+    }
+
+    private static long fileSize(int capacity) {
+        return FILE_HEADER_SIZE + 2L * (SharedMemoryRing.HEADER_SIZE + capacity);
+    }
+
+    public String fileName() {
+        return file.getFileName().toString();
+    }
+
+    /**
+     * 两端都映射之后文件就不需要了(映射在删除后仍然有效)，由客户端在握手结束时删除
+     */
+    public void deleteFile() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除共享内存文件 {} 失败", file, e);
+        }
+    }
+
+    /**
+     * 启动读线程，之后从环里读到的帧交给 listener
+     */
+    public void start(FrameListener listener) {
+        this.listener = listener;
+        Thread reader = new Thread(this::readLoop, "rpc-shm-reader-" + READER_SEQ.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * 发送一帧：bytes 是编码好的帧(或者文件区域帧的协议头)，region 不为空时紧跟着写文件内容，可以在任意线程调用。
+     * 帧由通道持有，写完或者通道关闭时释放
+     */
+    public void write(PooledByteBuffer bytes, FileRegion region) {
+        writeLock.lock();
+        try {
+            Frame frame = new Frame(bytes, region);
+            if (!active) {
+                frame.release();
+                return;
+            }
+            pendingWrites.addLast(frame);
+            flushPendingWrites();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 按顺序把 pendingWrites 写进环，环满时停下，调用方持有 writeLock
+     */
+    private void flushPendingWrites() {
+        try {
+            while (!pendingWrites.isEmpty()) {
+                if (!pendingWrites.peekFirst().writeTo(outbound, outboundChannel)) {
+                    backlogged = true;
+                    return;
+                }
+                pendingWrites.pollFirst().release();
+            }
+            backlogged = false;
+        } catch (IOException e) {
+            log.warn("向共享内存 {} 写文件区域失败", file, e);
+            listener.failed(e);
+        }
+    }
+
+    private void readLoop() {
+        int idleCount = 0;
+        while (active) {
+            if (backlogged && writeLock.tryLock()) {
+                try {
+                    flushPendingWrites();
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            int n = inbound.read(readBuffer);
+            if (n == 0) {
+                idleCount = waitStrategy.idle(idleCount);
+                continue;
+            }
+            idleCount = 0;
+            readBuffer.flip();
+            List<RpcProtocol> frames;
+            try {
+                frames = frameDecoder.decode(readBuffer);
+            } catch (IOException e) {
+                log.warn("从共享内存 {} 读数据失败", file, e);
+                listener.failed(e);
+                return;
+            } finally {
+                readBuffer.clear();
+            }
+            for (RpcProtocol frame : frames) {
+                try {
+                    listener.frameRead(frame);
+                } catch (Throwable e) {
+                    log.error("共享内存读线程处理帧异常", e);
+                }
+            }
+            // 帧都交给 handler 之后再释放空间，对端看到环已经读空时，这些请求一定已经登记过
+            inbound.release(n);
+        }
+    }
+
+    /**
+     * 写出的帧都已经被对端读走并交给了它的 handler
+     */
+    public boolean isFlushed() {
+        writeLock.lock();
+        try {
+            return pendingWrites.isEmpty() && outbound.isDrained();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 停止读线程并释放还没写出的帧，环里还没被读走的数据丢弃，可以在任意线程调用
+     */
+    public void close() {
+        writeLock.lock();
+        try {
+            if (!active) {
+                return;
+            }
+            active = false;
+            Frame frame;
+            while ((frame = pendingWrites.pollFirst()) != null) {
+                frame.release();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 读线程的回调
+     */
+    public interface FrameListener {
+
+        void frameRead(RpcProtocol frame);
+
+        /**
+         * 数据损坏或者文件区域读取失败，通道不能再用，应该关闭连接
+         */
+        void failed(IOException e);
+    }
+
+    /**
+     * 等待写进环的一帧
+     */
+    private static final class Frame {
+        final PooledByteBuffer bytes;
+        final FileRegion region;
+
+        Frame(PooledByteBuffer bytes, FileRegion region) {
+            this.bytes = bytes;
+            this.region = region;
+        }
+
+        /**
+         * 返回 true 表示整帧已经写完，false 表示环满了
+         */
+        boolean writeTo(SharedMemoryRing ring, WritableByteChannel ringChannel) throws IOException {
+            ByteBuffer buffer = bytes.buffer();
+            while (buffer.hasRemaining()) {
+                if (ring.write(buffer) == 0) {
+                    return false;
+                }
+            }
+            if (region != null) {
+                while (!region.isDone()) {
+                    if (region.transferTo(ringChannel) == 0) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void release() {
+            bytes.release();
+            if (region != null) {
+                region.release();
+            }
+        }
+    }
+
+    /**
+     * 把发送方向的环包装成 WritableByteChannel，文件区域用 FileChannel.transferTo 直接读进环
+     */
+    private final class RingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            return outbound.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return active;
+        }
+
+        @Override
+        public void close() {
+            // 由 SharedMemoryChannel 管理
+        }
+    }
+}
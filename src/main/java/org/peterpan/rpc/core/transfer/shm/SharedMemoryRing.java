@@ -0,0 +1,197 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 映射文件中的单生产者单消费者环形缓冲区
+ *
+ * 布局：写位置(8字节，独占一个缓存行) | 读位置(8字节，独占一个缓存行) | 数据区(容量为2的幂)。
+ * 读写位置单调递增，对容量取模得到下标，写位置 - 读位置就是未读的字节数。
+ * 两端在不同的进程里，位置的读写用 Unsafe 的 volatile 读和有序写保证可见性和顺序(通过反射取得，编译时不依赖 sun.misc)：
+ * 生产者先拷贝数据再发布写位置，消费者处理完数据后再发布读位置，生产者据此复用空间。
+ * 环里是连续的字节流，帧可以跨越环尾，也可以比环大(分多次写)，由消费方的 RpcFrameDecoder 切分。
+ * 一个实例只用作一端：生产者的方法由写锁串行调用，消费者的方法只在读线程调用
+ */
+@Slf4j
+final class SharedMemoryRing {
+
+    // 控制区大小：写位置和读位置各占 128 字节，避免相邻缓存行预取造成的伪共享
+    static final int HEADER_SIZE = 256;
+    private static final int WRITE_POSITION_OFFSET = 0;
+    private static final int READ_POSITION_OFFSET = 128;
+
+    // Unsafe 的 getLong、getLongVolatile、putOrderedLong，已经绑定到 Unsafe 实例
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    // java.nio.Buffer.address 字段的偏移，用来取得映射内存的地址
+    private static final long ADDRESS_FIELD_OFFSET;
+
+    static {
+        MethodHandle getLong = null;
+        MethodHandle getLongVolatile = null;
+        MethodHandle putOrderedLong = null;
+        long addressFieldOffset = -1;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            addressFieldOffset = (long) unsafeClass.getMethod("objectFieldOffset", Field.class)
+                    .invoke(unsafe, Buffer.class.getDeclaredField("address"));
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType getter = MethodType.methodType(long.class, Object.class, long.class);
+            getLong = lookup.findVirtual(unsafeClass, "getLong", getter).bindTo(unsafe);
+            getLongVolatile = lookup.findVirtual(unsafeClass, "getLongVolatile", getter).bindTo(unsafe);
+            putOrderedLong = lookup.findVirtual(unsafeClass, "putOrderedLong",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+        } catch (Throwable e) {
+            log.info("当前JDK不支持共享内存传输: {}", e.toString());
+            getLong = null;
+        }
+        GET_LONG = getLong;
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_ORDERED_LONG = putOrderedLong;
+        ADDRESS_FIELD_OFFSET = addressFieldOffset;
+    }
+
+    private final long writePositionAddress;
+    private final long readPositionAddress;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+    // 生产者本地的写位置和最近一次看到的读位置，空间够用时不读对端的缓存行
+    private long writePosition;
+    private long cachedReadPosition;
+    // 消费者本地的读位置
+    private long readPosition;
+
+    /**
+     * @param mapped   映射的整个文件
+     * @param offset   环(控制区)在文件中的偏移，必须按缓存行对齐
+     * @param capacity 数据区大小，2的幂
+     */
+    SharedMemoryRing(MappedByteBuffer mapped, int offset, int capacity) {
+        long address;
+        try {
+            address = (long) GET_LONG.invokeExact((Object) mapped, ADDRESS_FIELD_OFFSET) + offset;
+        } catch (Throwable e) {
+            throw new IllegalStateException("取得映射内存的地址失败", e);
+        }
+        this.writePositionAddress = address + WRITE_POSITION_OFFSET;
+        this.readPositionAddress = address + READ_POSITION_OFFSET;
+        ByteBuffer duplicate = mapped.duplicate();
+        duplicate.position(offset + HEADER_SIZE);
+        duplicate.limit(offset + HEADER_SIZE + capacity);
+        this.data = duplicate.slice();
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writePosition = getLongVolatile(writePositionAddress);
+        this.readPosition = getLongVolatile(readPositionAddress);
+        this.cachedReadPosition = readPosition;
+    }
+
+    static boolean isSupported() {
+        return GET_LONG != null;
+    }
+
+    /**
+     * 生产者：把 src 尽量写进环并发布，返回写入的字节数，环满时返回 0
+     */
+    int write(ByteBuffer src) {
+        int length = src.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        long free = capacity - (writePosition - cachedReadPosition);
+        if (free < length) {
+            cachedReadPosition = getLongVolatile(readPositionAddress);
+            free = capacity - (writePosition - cachedReadPosition);
+        }
+        int n = (int) Math.min(free, length);
+        if (n == 0) {
+            return 0;
+        }
+        int index = (int) (writePosition & mask);
+        int first = Math.min(n, capacity - index);
+        int limit = src.limit();
+        data.clear();
+        data.position(index);
+        src.limit(src.position() + first);
+        data.put(src);
+        if (first < n) {
+            // 绕回数据区开头
+            data.clear();
+            src.limit(src.position() + n - first);
+            data.put(src);
+        }
+        src.limit(limit);
+        writePosition += n;
+        putOrderedLong(writePositionAddress, writePosition);
+        return n;
+    }
+
+    /**
+     * 消费者：把未读的数据尽量拷贝到 dst，返回拷贝的字节数；读位置不变，处理完后调用 release
+     */
+    int read(ByteBuffer dst) {
+        long available = getLongVolatile(writePositionAddress) - readPosition;
+        int n = (int) Math.min(available, dst.remaining());
+        if (n == 0) {
+            return 0;
+        }
+        int index = (int) (readPosition & mask);
+        int first = Math.min(n, capacity - index);
+        data.clear();
+        data.position(index);
+        data.limit(index + first);
+        dst.put(data);
+        if (first < n) {
+            data.clear();
+            data.limit(n - first);
+            dst.put(data);
+        }
+        return n;
+    }
+
+    /**
+     * 消费者：前 n 个字节已经处理完，把空间还给生产者
+     */
+    void release(int n) {
+        readPosition += n;
+        putOrderedLong(readPositionAddress, readPosition);
+    }
+
+    /**
+     * 写入的数据都已经被对端处理完，可以在任意线程调用
+     */
+    boolean isDrained() {
+        return getLongVolatile(readPositionAddress) == getLongVolatile(writePositionAddress);
+    }
+
+    private static long getLongVolatile(long address) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void putOrderedLong(long address, long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object) null, address, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
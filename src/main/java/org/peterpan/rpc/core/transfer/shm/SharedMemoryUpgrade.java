@@ -0,0 +1,90 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.common.StatusConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 连接升级为共享内存传输的握手
+ *
+ * 客户端建立连接后，在服务端发布的目录下创建映射文件，发送 SHM_UPGRADE(消息体是文件名)并等待回复，期间不发送其他帧；
+ * 服务端映射成功后先通过 socket 回复 NORMAL，再切换到共享内存，客户端收到回复后切换。
+ * 服务端没有开启、文件不对等情况回复 EXCEPTION，连接继续走 socket
+ */
+@Slf4j
+public final class SharedMemoryUpgrade {
+
+    private SharedMemoryUpgrade() {
+    }
+
+    /**
+     * 客户端发出的升级请求，消息体由调用方在写出后释放
+     */
+    public static RpcProtocol request(long requestId, String fileName) {
+        byte[] bytes = fileName.getBytes(StandardCharsets.UTF_8);
+        PooledByteBuffer body = PooledByteBufferAllocator.getInstance().allocate(bytes.length);
+        body.buffer().put(bytes);
+        body.buffer().flip();
+        RpcProtocol protocol = frame(requestId, StatusConstants.NORMAL);
+        protocol.setBody(body);
+        return protocol;
+    }
+
+    /**
+     * 服务端在IO线程上处理升级请求
+     */
+    public static void accept(NioChannel channel, RpcProtocol msg) {
+        long requestId = msg.getHeader().getRequestId();
+        PooledByteBuffer body = msg.getBody();
+        String fileName;
+        try {
+            byte[] bytes = new byte[body.readableBytes()];
+            body.buffer().get(bytes);
+            fileName = new String(bytes, StandardCharsets.UTF_8);
+        } finally {
+            body.release();
+        }
+        RpcConfig rpcConfig = RpcConfig.getInstance();
+        if (!rpcConfig.isSharedMemoryEnabled() || !SharedMemoryChannel.isSupported() || channel.isSharedMemory()) {
+            channel.write(frame(requestId, StatusConstants.EXCEPTION));
+            return;
+        }
+        SharedMemoryChannel sharedMemory;
+        try {
+            sharedMemory = SharedMemoryChannel.open(Paths.get(rpcConfig.getSharedMemoryDir()), fileName, rpcConfig.getSharedMemoryWaitStrategy());
+        } catch (IOException e) {
+            log.warn("映射 {} 的共享内存文件 {} 失败, 继续使用socket", channel.getRemoteAddress(), fileName, e);
+            channel.write(frame(requestId, StatusConstants.EXCEPTION));
+            return;
+        }
+        // 回复仍然走 socket，之后写的帧都进共享内存
+        channel.write(frame(requestId, StatusConstants.NORMAL));
+        channel.upgrade(sharedMemory);
+        log.info("连接 {} 升级为共享内存传输, file={}", channel.getRemoteAddress(), fileName);
+    }
+
+    private static RpcProtocol frame(long requestId, short status) {
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setMsgType((byte) MsgType.SHM_UPGRADE.ordinal());
+        header.setStatus((byte) status);
+        header.setRequestId(requestId);
+        RpcProtocol protocol = new RpcProtocol();
+        protocol.setHeader(header);
+        return protocol;
+    }
+}
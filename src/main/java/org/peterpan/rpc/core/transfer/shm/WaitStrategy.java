@@ -0,0 +1,52 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 共享内存环形缓冲区没有数据时读线程的等待方式
+ *
+ * 对端在另一个进程里，没有办法唤醒本端的线程，只能轮询
+ */
+public enum WaitStrategy {
+
+    /**
+     * 一直自旋，延迟最低(几微秒)，每条连接的读线程占满一个CPU核
+     */
+    SPIN {
+        @Override
+        int idle(int idleCount) {
+            return idleCount + 1;
+        }
+    },
+
+    /**
+     * 先自旋，再让出CPU，仍然没有数据时每次睡眠 PARK_NANOS，空闲连接几乎不占CPU，数据到达后最多晚一个睡眠周期被读到
+     */
+    PARK {
+        @Override
+        int idle(int idleCount) {
+            if (idleCount < SPIN_TRIES) {
+                return idleCount + 1;
+            }
+            if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+                return idleCount + 1;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+            return idleCount;
+        }
+    };
+
+    // 只有一个CPU时自旋只会拖慢对端，直接让出CPU
+    private static final int SPIN_TRIES = Runtime.getRuntime().availableProcessors() > 1 ? 10000 : 0;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * 没有读到数据时调用一次，idleCount 是连续空转的次数，返回新的次数；读到数据后调用方清零
+     */
+    abstract int idle(int idleCount);
+}
@@ -0,0 +1,51 @@
+package org.peterpan.rpc.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 网络工具
+ */
+@Slf4j
+public class NetUtil {
+
+    // 本机所有网卡上的地址，启动时收集一次
+    private static final Set<String> LOCAL_ADDRESSES = collectLocalAddresses();
+
+    /**
+     * 地址是否属于本机
+     */
+    public static boolean isLocalAddress(String address) {
+        return address != null && LOCAL_ADDRESSES.contains(address);
+    }
+
+    private static Set<String> collectLocalAddresses() {
+        Set<String> addresses = new HashSet<>();
+        addresses.add("localhost");
+        addresses.add("127.0.0.1");
+        try {
+            InetAddress localHost = InetAddress.getLocalHost();
+            addresses.add(localHost.getHostAddress());
+            addresses.add(localHost.getHostName());
+        } catch (Exception e) {
+            log.warn("获取本机地址失败", e);
+        }
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                for (InetAddress inetAddress : Collections.list(networkInterface.getInetAddresses())) {
+                    addresses.add(inetAddress.getHostAddress());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("获取本机网卡地址失败", e);
+        }
+        return Collections.unmodifiableSet(addresses);
+    }
+}
@@ -1,6 +1,10 @@
 package org.peterpan.rpc.util;
 
+import org.peterpan.rpc.core.client.RpcAsyncReference;
+import org.peterpan.rpc.core.client.RpcBatch;
 import org.peterpan.rpc.core.client.RpcClientProxy;
+import org.peterpan.rpc.core.client.RpcOneWayReference;
+import org.peterpan.rpc.core.client.cache.CacheStats;
 import org.peterpan.rpc.config.RpcConfig;
 
 /**
@@ -23,4 +27,39 @@ public class RpcServiceUtil {
    public static <T> T getService(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
       return rpcClientProxy.getService(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout);
    }
+
+   /**
+    * 获取异步引用：ref.call(service -> service.method(args)) 返回 CompletableFuture，不阻塞调用线程
+    */
+   public static <T> RpcAsyncReference<T> getAsyncReference(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+      return rpcClientProxy.getAsyncReference(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout);
+   }
+
+   /**
+    * 获取单向引用：ref.send(service -> service.method(args)) 只写出请求，服务端不回复
+    */
+   public static <T> RpcOneWayReference<T> getOneWayReference(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+      return rpcClientProxy.getOneWayReference(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout);
+   }
+
+   /**
+    * 创建批量调用：batch.add(service -> service.method(args)) 记录调用，batch.execute() 一次往返发出全部调用
+    */
+   public static <T> RpcBatch<T> newBatch(Class<T> clazz, String serviceVersion, String loadBalancerType, String faultTolerantType, long timeout) throws Exception {
+      return rpcClientProxy.newBatch(clazz, serviceVersion, loadBalancerType, faultTolerantType, timeout);
+   }
+
+   /**
+    * 客户端响应缓存的统计：命中、未命中、淘汰、过期和当前条目数
+    */
+   public static CacheStats getCacheStats() {
+      return rpcClientProxy.getCacheStats();
+   }
+
+   /**
+    * 清空客户端响应缓存，例如收到配置变更通知时
+    */
+   public static void invalidateCache() {
+      rpcClientProxy.invalidateCache();
+   }
 }
@@ -0,0 +1,327 @@
+package org.peterpan.rpc.util.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 哈希时间轮
+ *
+ * 用于大量短周期、绝大多数会被提前取消的定时任务(例如调用超时)。
+ * 时间轮由 wheelSize 个槽组成，工作线程每 tickDuration 前进一格，执行当前槽中已到期的任务；
+ * 超过一圈的任务记录剩余圈数，转到时再执行。
+ * 登记和取消都只是往无锁队列里放一个节点，由工作线程统一挂到槽上或者摘掉，都是 O(1)，
+ * 定时精度为 tickDuration
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    // 每个 tick 最多从队列中转移的任务数，避免登记过快时工作线程一直转移而误了到期任务
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickDuration;
+    private final HashedWheelBucket[] wheel;
+    private final int mask;
+    private final Queue<HashedWheelTimeout> timeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<HashedWheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private final Thread workerThread;
+    private volatile long startTime;
+    private long tick;
+
+    public HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize must be in (0, 2^30]: " + wheelSize);
+        }
+        // 槽数取2的幂，用位运算代替取模
+        int normalizedSize = 1;
+        while (normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+        this.wheel = new HashedWheelBucket[normalizedSize];
+        for (int i = 0; i < normalizedSize; i++) {
+            wheel[i] = new HashedWheelBucket();
+        }
+        this.mask = normalizedSize - 1;
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.workerThread = new Thread(this::runWorker, threadName);
+        this.workerThread.setDaemon(true);
+    }
+
+    /**
+     * 登记一个定时任务，工作线程在第一次登记时启动
+     */
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // 防止溢出
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HashedWheelTimeout timeout = new HashedWheelTimeout(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 尚未执行也未取消的任务数
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    public void stop() {
+        if (workerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED) {
+            workerThread.interrupt();
+        }
+    }
+
+    private void start() {
+        if (workerState.get() == WORKER_INIT && workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // 0 用来表示还没启动
+                startTime = 1;
+            }
+            workerThread.start();
+        }
+        if (workerState.get() == WORKER_SHUTDOWN) {
+            throw new IllegalStateException("timer has been stopped");
+        }
+        // 等待启动线程设置好 startTime
+        while (startTime == 0) {
+            Thread.yield();
+        }
+    }
+
+    private void runWorker() {
+        while (workerState.get() == WORKER_STARTED) {
+            long deadline = waitForNextTick();
+            if (deadline <= 0) {
+                continue;
+            }
+            processCancelledTimeouts();
+            transferTimeoutsToBuckets();
+            wheel[(int) (tick & mask)].expireTimeouts(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * 睡到下一个 tick，返回相对 startTime 的当前时间
+     */
+    private long waitForNextTick() {
+        long deadline = tickDuration * (tick + 1);
+        for (; ; ) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+            if (sleepTimeMs <= 0) {
+                return currentTime;
+            }
+            try {
+                Thread.sleep(sleepTimeMs);
+            } catch (InterruptedException e) {
+                if (workerState.get() == WORKER_SHUTDOWN) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferTimeoutsToBuckets() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            HashedWheelTimeout timeout = timeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state() == HashedWheelTimeout.ST_CANCELLED) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放到当前槽，本 tick 就执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].addTimeout(timeout);
+        }
+    }
+
+    private void processCancelledTimeouts() {
+        HashedWheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            try {
+                timeout.remove();
+            } catch (Throwable e) {
+                log.warn("移除已取消的定时任务失败", e);
+            }
+        }
+    }
+
+    private static final class HashedWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final TimerTask task;
+        // 相对 timer.startTime 的到期时间(纳秒)
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // 以下字段只在工作线程中访问
+        long remainingRounds;
+        HashedWheelTimeout next;
+        HashedWheelTimeout prev;
+        HashedWheelBucket bucket;
+        // 是否已经从 pendingTimeouts 中扣除，保证只扣一次
+        boolean released;
+
+        HashedWheelTimeout(HashedWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // 只登记一下，真正从槽中摘掉由工作线程完成
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state() == ST_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state() == ST_CANCELLED;
+        }
+
+        int state() {
+            return state.get();
+        }
+
+        void remove() {
+            HashedWheelBucket bucket = this.bucket;
+            if (bucket != null) {
+                bucket.remove(this);
+            } else {
+                // 还在 timeouts 队列里没挂到槽上(转移时会被跳过)，或者已经从槽上摘掉
+                release();
+            }
+        }
+
+        void release() {
+            if (!released) {
+                released = true;
+                timer.pendingTimeouts.decrementAndGet();
+            }
+        }
+
+        void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run(this);
+            } catch (Throwable e) {
+                log.warn("定时任务执行异常", e);
+            }
+        }
+    }
+
+    /**
+     * 时间轮上的一个槽，双向链表，只在工作线程中访问
+     */
+    private static final class HashedWheelBucket {
+
+        private HashedWheelTimeout head;
+        private HashedWheelTimeout tail;
+
+        void addTimeout(HashedWheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(long deadline) {
+            HashedWheelTimeout timeout = head;
+            while (timeout != null) {
+                HashedWheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    next = remove(timeout);
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        // 不应该出现：任务被放进了错误的槽
+                        throw new IllegalStateException(String.format(
+                                "timeout.deadline (%d) > deadline (%d)", timeout.deadline, deadline));
+                    }
+                } else if (timeout.isCancelled()) {
+                    next = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        HashedWheelTimeout remove(HashedWheelTimeout timeout) {
+            HashedWheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            timeout.release();
+            return next;
+        }
+    }
+}
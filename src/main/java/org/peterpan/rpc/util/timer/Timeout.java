@@ -0,0 +1,20 @@
+package org.peterpan.rpc.util.timer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 时间轮中一个已登记的定时任务的句柄
+ */
+public interface Timeout {
+
+    TimerTask task();
+
+    boolean isExpired();
+
+    boolean isCancelled();
+
+    /**
+     * 取消任务，返回 false 表示任务已经执行或者已经被取消
+     */
+    boolean cancel();
+}
@@ -0,0 +1,12 @@
+package org.peterpan.rpc.util.timer;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 定时任务，到期时在时间轮的工作线程上执行，应当尽快返回
+ */
+@FunctionalInterface
+public interface TimerTask {
+
+    void run(Timeout timeout) throws Exception;
+}
@@ -0,0 +1,31 @@
+package org.peterpan.rpc.IDL.Blob;
+
+import org.peterpan.rpc.core.stream.Blob;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的大块数据服务接口
+ */
+public interface BlobService {
+
+    /**
+     * 返回服务端本地的文件
+     */
+    Blob download(String path);
+
+    /**
+     * 返回收到的数据的 CRC32
+     */
+    Long checksum(Blob data);
+
+    /**
+     * 原样返回收到的数据
+     */
+    Blob roundTrip(Blob data);
+
+    /**
+     * 总是抛出异常
+     */
+    Blob reject(Blob data);
+}
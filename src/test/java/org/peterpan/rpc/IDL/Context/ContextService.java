@@ -0,0 +1,74 @@
+package org.peterpan.rpc.IDL.Context;
+
+import org.peterpan.rpc.annotation.Cached;
+import org.peterpan.rpc.annotation.OneWay;
+import org.peterpan.rpc.annotation.SingleFlight;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的服务接口：读取服务端的调用上下文
+ */
+public interface ContextService {
+
+    /**
+     * 服务端看到的剩余时间，没有截止时间时为 Long.MAX_VALUE
+     */
+    long remainingMillis();
+
+    /**
+     * 记录一次执行，返回累计的执行次数
+     */
+    int touch();
+
+    /**
+     * 占用执行线程 millis 毫秒
+     */
+    String sleep(long millis);
+
+    /**
+     * 总是抛出 IllegalStateException(message)
+     */
+    String fail(String message);
+
+    /**
+     * 等待 millis 毫秒，期间记录收到的取消回调和中断，见 ContextServiceImpl.events
+     */
+    String awaitCancel(String id, long millis);
+
+    /**
+     * 返回一个不会自己完成的 future，记录它是否被取消
+     */
+    CompletableFuture<String> never(String id);
+
+    /**
+     * 单向调用：等待 millis 毫秒后记录 id:recorded
+     */
+    @OneWay
+    void record(String id, long millis);
+
+    /**
+     * 合并执行：等待 millis 毫秒后返回 key:第几次执行，执行线程被中断时抛出异常
+     */
+    @SingleFlight
+    String shared(String key, long millis);
+
+    /**
+     * 合并执行：先占用执行线程 blockMillis 毫秒(被中断也照常返回)，再返回 millis 毫秒后才完成的 future，结果为 key:第几次执行
+     */
+    @SingleFlight
+    CompletableFuture<String> sharedLater(String key, long blockMillis, long millis);
+
+    /**
+     * 客户端缓存一分钟：等待 millis 毫秒后返回 key:第几次执行
+     */
+    @Cached(ttl = 60)
+    String cachedLookup(String key, long millis);
+
+    /**
+     * 返回 length 个字符的字符串
+     */
+    String payload(int length);
+}
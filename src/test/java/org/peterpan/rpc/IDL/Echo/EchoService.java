@@ -0,0 +1,18 @@
+package org.peterpan.rpc.IDL.Echo;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的服务接口
+ */
+public interface EchoService {
+
+    String echo(String message);
+
+    /**
+     * 延迟 delayMillis 之后才完成，服务端不占用工作线程
+     */
+    CompletableFuture<String> echoLater(String message, long delayMillis);
+}
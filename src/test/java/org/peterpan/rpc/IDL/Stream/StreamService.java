@@ -0,0 +1,38 @@
+package org.peterpan.rpc.IDL.Stream;
+
+import org.peterpan.rpc.core.stream.StreamObserver;
+
+import java.util.Iterator;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的流式服务接口
+ */
+public interface StreamService {
+
+    /**
+     * 服务端流：依次返回 "0"、"1" ... "count-1"
+     */
+    Iterator<String> range(Integer count);
+
+    /**
+     * 服务端流：返回 failAt 个元素后抛出异常
+     */
+    Iterator<String> failAfter(Integer failAt);
+
+    /**
+     * 最近一次 range 已经产生的元素数
+     */
+    Integer produced();
+
+    /**
+     * 客户端流：收完后回复一次收到的总字符数
+     */
+    StreamObserver<String> upload(StreamObserver<Long> result);
+
+    /**
+     * 双向流：每收到一个元素回复 prefix + 元素，收到 "fail" 时以异常结束
+     */
+    StreamObserver<String> echo(String prefix, StreamObserver<String> out);
+}
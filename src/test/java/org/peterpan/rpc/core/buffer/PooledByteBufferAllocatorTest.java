@@ -0,0 +1,138 @@
+package org.peterpan.rpc.core.buffer;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 池化分配器：规格、引用计数、线程缓存只在事件循环线程上使用、泄漏检测
+ */
+public class PooledByteBufferAllocatorTest extends TestCase {
+
+    private PooledByteBufferAllocator allocator;
+
+    @Override
+    protected void setUp() throws Exception {
+        allocator = new PooledByteBufferAllocator(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        allocator.disableThreadCache();
+    }
+
+    public void testRoundsUpToSizeClassesAndDoesNotPoolHugeBuffers() {
+        PooledByteBuffer small = allocator.allocate(1);
+        assertEquals(256, small.buffer().capacity());
+        assertEquals(1, small.buffer().limit());
+        assertTrue(small.buffer().isDirect());
+        PooledByteBuffer medium = allocator.allocate(5000);
+        assertEquals(8192, medium.buffer().capacity());
+        PooledByteBuffer huge = allocator.allocate(PooledByteBufferAllocator.MAX_POOLED_SIZE + 1);
+        assertFalse("超过最大规格的用堆内存", huge.buffer().isDirect());
+        small.release();
+        medium.release();
+        huge.release();
+        assertEquals(0, allocator.getLeakCount());
+    }
+
+    public void testReferenceCounting() {
+        PooledByteBuffer buffer = allocator.allocate(100);
+        PooledByteBuffer duplicate = buffer.retainedDuplicate();
+        assertEquals(2, buffer.refCnt());
+        assertSame(raw(buffer), raw(duplicate));
+        assertFalse(buffer.release());
+        assertTrue(duplicate.release());
+        try {
+            buffer.retain();
+            fail("已经归还的内存不能再 retain");
+        } catch (IllegalStateException expected) {
+            // 引用计数已经归零
+        }
+        try {
+            buffer.release();
+            fail("重复 release 应该报错");
+        } catch (IllegalStateException expected) {
+            // 引用计数已经归零
+        }
+    }
+
+    public void testThreadsWithoutThreadCacheRecycleToTheGlobalPool() throws Exception {
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        try {
+            // 业务线程分配并释放，之后这个线程可能再也不会分配
+            ByteBuffer released = first.submit(() -> {
+                PooledByteBuffer buffer = allocator.allocate(1000);
+                ByteBuffer raw = raw(buffer);
+                buffer.release();
+                return raw;
+            }).get(5, TimeUnit.SECONDS);
+            // 其他线程能拿到这块内存，而不是困在第一个线程的缓存里
+            ByteBuffer reused = second.submit(allocateAndRelease(1000)).get(5, TimeUnit.SECONDS);
+            assertSame(released, reused);
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+        }
+        assertEquals(0, allocator.getLeakCount());
+    }
+
+    public void testThreadCacheIsPrivateUntilDisabled() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            allocator.enableThreadCache();
+            PooledByteBuffer buffer = allocator.allocate(1000);
+            ByteBuffer raw = raw(buffer);
+            buffer.release();
+            // 开启了线程缓存的线程自己复用
+            assertSame(raw, allocateAndRelease(1000).call());
+            PooledByteBuffer held = other.submit(() -> allocator.allocate(1000)).get(5, TimeUnit.SECONDS);
+            assertNotSame(raw, raw(held));
+            // 关闭时缓存还给全局池
+            allocator.disableThreadCache();
+            assertSame(raw, other.submit(allocateAndRelease(1000)).get(5, TimeUnit.SECONDS));
+            held.release();
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    public void testDetectsBuffersCollectedWithoutRelease() throws Exception {
+        allocator.allocate(300);
+        allocator.allocate(300).release();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (allocator.getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        // 只有没 release 的那一个算泄漏
+        assertEquals(1, allocator.getLeakCount());
+    }
+
+    private Callable<ByteBuffer> allocateAndRelease(int capacity) {
+        return () -> {
+            PooledByteBuffer buffer = allocator.allocate(capacity);
+            ByteBuffer raw = raw(buffer);
+            buffer.release();
+            return raw;
+        };
+    }
+
+    private static ByteBuffer raw(PooledByteBuffer buffer) {
+        try {
+            Field field = PooledByteBuffer.class.getDeclaredField("memory");
+            field.setAccessible(true);
+            return ((PooledByteBuffer.Memory) field.get(buffer)).raw;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
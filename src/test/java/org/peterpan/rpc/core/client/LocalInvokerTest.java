@@ -0,0 +1,147 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.serialization.SerializationFactory;
+import org.peterpan.rpc.core.server.LocalServiceRegistry;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 同进程调用：默认关闭；开启后直接调用本进程注册的实现，按引用或者拷贝传递参数和结果
+ */
+public class LocalInvokerTest extends TestCase {
+
+    private static final String VERSION = "local-test";
+
+    public interface ListService {
+
+        List<String> append(List<String> list, String value);
+
+        String fail(String message);
+
+        CompletableFuture<String> later(String value);
+    }
+
+    public static class ListServiceImpl implements ListService {
+
+        @Override
+        public List<String> append(List<String> list, String value) {
+            list.add(value);
+            return list;
+        }
+
+        @Override
+        public String fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        @Override
+        public CompletableFuture<String> later(String value) {
+            return CompletableFuture.supplyAsync(() -> value + "-done");
+        }
+    }
+
+    private final ListServiceImpl serviceBean = new ListServiceImpl();
+
+    @Override
+    protected void setUp() throws Exception {
+        SerializationFactory.init();
+        LocalServiceRegistry.register(RpcServiceNameBuilder.buildServiceKey(ListService.class.getName(), VERSION), serviceBean);
+    }
+
+    public void testDisabledByDefault() throws Exception {
+        Field field = RpcConfig.class.getDeclaredField("properties");
+        field.setAccessible(true);
+        Properties properties = (Properties) field.get(RpcConfig.getInstance());
+        Object configured = properties.remove("localInvocationEnabled");
+        try {
+            // 没有配置时走网络，要用同进程调用需要显式开启
+            assertFalse(RpcConfig.getInstance().isLocalInvocationEnabled());
+        } finally {
+            if (configured != null) {
+                properties.put("localInvocationEnabled", configured);
+            }
+        }
+    }
+
+    public void testDisabledInvokerIgnoresLocalServices() throws Exception {
+        assertNull(invoker(false, false).find(method("append"), VERSION));
+    }
+
+    public void testFindsServiceRegisteredInThisProcess() throws Exception {
+        LocalInvoker invoker = invoker(true, false);
+        assertSame(serviceBean, invoker.find(method("append"), VERSION));
+        assertNull("其他版本没有在本进程注册", invoker.find(method("append"), "other"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testPassesByReferenceWithoutCopy() throws Exception {
+        List<String> list = new ArrayList<>();
+        Object result = invoker(true, false).invoke(serviceBean, method("append"), new Object[]{list, "a"}).get(5, TimeUnit.SECONDS);
+        assertSame(list, result);
+        assertEquals(1, list.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCopyKeepsCallerAndServiceApart() throws Exception {
+        List<String> list = new ArrayList<>();
+        List<String> result = (List<String>) invoker(true, true).invoke(serviceBean, method("append"), new Object[]{list, "a"})
+                .get(5, TimeUnit.SECONDS);
+        // 与远程调用一样：服务端改的是参数的副本，返回的也是副本
+        assertTrue(list.isEmpty());
+        assertNotSame(list, result);
+        assertEquals(1, result.size());
+        assertEquals("a", result.get(0));
+    }
+
+    public void testServiceExceptionReachesCallerAsThrown() throws Exception {
+        try {
+            invoker(true, false).invoke(serviceBean, method("fail"), new Object[]{"boom"}).get(5, TimeUnit.SECONDS);
+            fail("服务实现抛出的异常应该交给调用方");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("boom", e.getCause().getMessage());
+        }
+    }
+
+    public void testFollowsFutureReturnedByService() throws Exception {
+        Object result = invoker(true, false).invoke(serviceBean, method("later"), new Object[]{"x"}).get(5, TimeUnit.SECONDS);
+        assertEquals("x-done", result);
+    }
+
+    public void testExecutorVariantDoesNotBlockTheCaller() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> list = new ArrayList<>();
+        CompletableFuture<Object> future = invoker(true, true).invoke(serviceBean, method("append"), new Object[]{list, "a"}, tasks::add);
+        // 参数在调用线程上已经拷贝，之后调用方再改也不影响这次调用
+        list.add("changed");
+        assertFalse(future.isDone());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals("[a]", String.valueOf(future.get(5, TimeUnit.SECONDS)));
+    }
+
+    private static LocalInvoker invoker(boolean enabled, boolean copy) {
+        return new LocalInvoker(enabled, copy, RpcConfig.getInstance().getSerializationByte());
+    }
+
+    private static Method method(String name) {
+        for (Method method : ListService.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -0,0 +1,54 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.common.ServiceMeta;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 回复过载的节点在建议的间隔内被跳过，间隔过后恢复
+ */
+public class OverloadedProvidersTest extends TestCase {
+
+    public void testOverloadedProviderIsSkippedUntilRetryAfter() throws Exception {
+        ServiceMeta busy = provider(7001);
+        ServiceMeta idle = provider(7002);
+        List<ServiceMeta> candidates = Arrays.asList(busy, idle);
+        assertSame(busy, OverloadedProviders.select(busy, candidates));
+
+        OverloadedProviders.markOverloaded(busy, 200);
+        assertTrue(OverloadedProviders.isOverloaded(busy));
+        assertSame(idle, OverloadedProviders.select(busy, candidates));
+        assertSame(idle, OverloadedProviders.selectOther(busy, candidates));
+
+        Thread.sleep(300);
+        assertFalse(OverloadedProviders.isOverloaded(busy));
+        assertSame(busy, OverloadedProviders.select(busy, candidates));
+    }
+
+    public void testAllProvidersOverloaded() {
+        ServiceMeta first = provider(7003);
+        ServiceMeta second = provider(7004);
+        OverloadedProviders.markOverloaded(first, 10000);
+        OverloadedProviders.markOverloaded(second, 10000);
+        assertNull(OverloadedProviders.select(first, Arrays.asList(first, second)));
+        assertNull(OverloadedProviders.selectOther(first, Arrays.asList(first, second)));
+    }
+
+    public void testBulkheadRejectionDoesNotMarkTheProvider() {
+        ServiceMeta provider = provider(7005);
+        // 只是某个服务的独立线程池满了，节点本身可以继续使用
+        OverloadedProviders.markOverloaded(provider, 0);
+        assertFalse(OverloadedProviders.isOverloaded(provider));
+    }
+
+    private static ServiceMeta provider(int port) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setServiceAddr("10.0.0.1");
+        serviceMeta.setServicePort(port);
+        return serviceMeta;
+    }
+}
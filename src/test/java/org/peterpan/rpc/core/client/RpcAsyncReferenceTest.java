@@ -0,0 +1,75 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Echo.EchoService;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 异步调用：由响应到达驱动 future 完成，发起调用的线程不等待
+ */
+public class RpcAsyncReferenceTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testCompletableFutureMethodReturnsBeforeResponseArrives() throws Exception {
+        EchoService echoService = RpcServiceUtil.getService(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        // 预热连接
+        assertEquals("warm", echoService.echoLater("warm", 0).get(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(echoService.echoLater("message-" + i, 500));
+        }
+        long issueMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("一个线程发出 50 个调用不应该等待响应: " + issueMillis + "ms", issueMillis < 500);
+        for (CompletableFuture<String> future : futures) {
+            assertFalse(future.isDone());
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 50 个调用同时在途，总耗时接近一次调用而不是 50 次
+        assertTrue("调用没有并发执行: " + totalMillis + "ms", totalMillis < 5000);
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("message-" + i, futures.get(i).get());
+        }
+    }
+
+    public void testAsyncReferenceCapturesTheFutureOfASyncMethod() throws Exception {
+        RpcAsyncReference<EchoService> reference = RpcServiceUtil.getAsyncReference(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String message = "async-" + i;
+            futures.add(reference.call(service -> service.echo(message)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("async-" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        // call 结束后不再处于登记状态，同一个代理上的同步调用照常返回结果
+        assertFalse(RpcAsyncReference.isCapturing());
+        EchoService echoService = RpcServiceUtil.getService(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        assertEquals("sync", echoService.echo("sync"));
+    }
+
+    public void testCallWithoutRemoteInvocationIsRejected() throws Exception {
+        RpcAsyncReference<EchoService> reference = RpcServiceUtil.getAsyncReference(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        try {
+            reference.call(service -> "not a remote call");
+            fail("call 中没有发起远程调用时应该报错");
+        } catch (IllegalStateException expected) {
+            assertFalse(RpcAsyncReference.isCapturing());
+        }
+    }
+}
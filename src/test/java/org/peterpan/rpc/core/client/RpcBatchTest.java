@@ -0,0 +1,103 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 批量调用：多个调用一次往返，结果和错误分别交给各自的 future
+ */
+public class RpcBatchTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testEachCallCompletesItsOwnFuture() throws Exception {
+        RpcBatch<ContextService> batch = newBatch();
+        CompletableFuture<String> slept = batch.add(service -> service.sleep(10));
+        CompletableFuture<String> failed = batch.add(service -> service.fail("boom"));
+        CompletableFuture<Long> remaining = batch.add(ContextService::remainingMillis);
+        assertEquals(3, batch.size());
+        assertFalse("execute 之前不会发出", slept.isDone());
+
+        batch.execute().get(5, TimeUnit.SECONDS);
+        assertEquals("slept", slept.get());
+        long remainingMillis = remaining.get();
+        // 批量调用中的每个调用都带着整个请求的截止时间
+        assertTrue(String.valueOf(remainingMillis), remainingMillis > 0 && remainingMillis <= 5000);
+        try {
+            failed.get();
+            fail("第二个调用应该失败");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("boom"));
+        }
+    }
+
+    public void testExecuteInOrderRunsCallsSequentially() throws Exception {
+        RpcBatch<ContextService> batch = newBatch();
+        List<CompletableFuture<Integer>> touches = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            touches.add(batch.add(ContextService::touch));
+        }
+        batch.executeInOrder().get(5, TimeUnit.SECONDS);
+        for (int i = 1; i < touches.size(); i++) {
+            assertEquals(touches.get(i - 1).get() + 1, (int) touches.get(i).get());
+        }
+    }
+
+    public void testExecuteRunsCallsInParallel() throws Exception {
+        RpcBatch<ContextService> batch = newBatch();
+        for (int i = 0; i < 8; i++) {
+            batch.add(service -> service.sleep(300));
+        }
+        long start = System.nanoTime();
+        batch.execute().get(10, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("8 个调用应该并行执行: " + elapsed + "ms", elapsed < 8 * 300 / 2);
+    }
+
+    public void testMisuseIsRejected() throws Exception {
+        RpcBatch<ContextService> batch = newBatch();
+        try {
+            batch.add(service -> "no remote call");
+            fail("add 中没有发起远程调用");
+        } catch (IllegalStateException expected) {
+            assertEquals(0, batch.size());
+        }
+        try {
+            batch.add(service -> service.never("batch"));
+            fail("返回 CompletableFuture 的方法不能批量调用");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(0, batch.size());
+        }
+        // 空的批量调用直接完成
+        assertTrue(batch.execute().isDone());
+        try {
+            batch.execute();
+            fail("一个 RpcBatch 只能执行一次");
+        } catch (IllegalStateException expected) {
+            // 已经执行
+        }
+        try {
+            batch.add(ContextService::touch);
+            fail("执行之后不能再添加");
+        } catch (IllegalStateException expected) {
+            // 已经执行
+        }
+    }
+
+    private static RpcBatch<ContextService> newBatch() throws Exception {
+        return RpcServiceUtil.newBatch(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+    }
+}
@@ -0,0 +1,122 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Blob.BlobService;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.stream.Blob;
+import org.peterpan.rpc.server.BlobServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 大块数据：文件和字节数组按块传输，接收方拿到临时文件
+ */
+public class RpcBlobCallTest extends TestCase {
+
+    private BlobService blobService;
+    private Path file;
+    private long fileChecksum;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+        blobService = RpcServiceUtil.getService(BlobService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        // 不是块大小整数倍的文件，最后一块不满
+        file = Files.createTempFile("blob-test", ".bin");
+        Random random = new Random(1);
+        byte[] chunk = new byte[RpcConfig.getInstance().getBlobChunkSize()];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < 20; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+            out.write(chunk, 0, 12345);
+        }
+        fileChecksum = checksum(Blob.ofFile(file));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    public void testDownloadFile() throws Exception {
+        Blob downloaded = blobService.download(file.toString());
+        try {
+            assertTrue(downloaded.isFile());
+            assertFalse("接收方拿到的是自己的临时文件", file.equals(downloaded.getPath()));
+            assertEquals(Files.size(file), downloaded.length());
+            assertEquals(fileChecksum, checksum(downloaded));
+        } finally {
+            downloaded.delete();
+        }
+        assertFalse(Files.exists(downloaded.getPath()));
+    }
+
+    public void testUploadFileAndDeleteTheProvidersTemporaryCopy() throws Exception {
+        assertEquals(Long.valueOf(fileChecksum), blobService.checksum(Blob.ofFile(file)));
+        Path received = BlobServiceImpl.lastReceived();
+        assertNotNull(received);
+        // 响应写出之后才删除，调用方可能先一步收到结果
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(received) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse("服务端方法返回后参数的临时文件应该被删除", Files.exists(received));
+        // 调用方自己的文件不受影响
+        assertEquals(fileChecksum, checksum(Blob.ofFile(file)));
+    }
+
+    public void testUploadFileRange() throws Exception {
+        byte[] whole = Files.readAllBytes(file);
+        Blob range = Blob.ofFile(file, 1000, 300000);
+        assertEquals(Long.valueOf(checksum(Blob.ofBytes(Arrays.copyOfRange(whole, 1000, 301000)))),
+                blobService.checksum(range));
+    }
+
+    public void testRoundTripBytes() throws Exception {
+        Blob echoed = blobService.roundTrip(Blob.ofBytes("hello blob".getBytes()));
+        try {
+            assertEquals("hello blob", new String(echoed.toBytes()));
+        } finally {
+            echoed.delete();
+        }
+    }
+
+    public void testEmptyBlobsDoNotHang() throws Exception {
+        // 空的上传只发半关闭，可能在服务端绑定接收方之前到达
+        for (int i = 0; i < 200; i++) {
+            Blob echoed = blobService.roundTrip(Blob.ofBytes(new byte[0]));
+            assertEquals(0, echoed.length());
+            echoed.delete();
+        }
+    }
+
+    public void testProviderErrorReachesTheCaller() throws Exception {
+        try {
+            blobService.reject(Blob.ofFile(file));
+            fail("服务端异常应该传给调用方");
+        } catch (Exception expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("rejected " + Files.size(file)));
+        }
+        // 连接还能继续使用
+        Blob echoed = blobService.roundTrip(Blob.ofBytes(new byte[]{1, 2, 3}));
+        assertEquals(3, echoed.length());
+        echoed.delete();
+    }
+
+    private static long checksum(Blob blob) throws Exception {
+        try (InputStream in = blob.openStream()) {
+            return BlobServiceImpl.crc32(in);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 标注了 @Cached 的方法命中时不发出请求；清空缓存之前发出的调用，结果不会写回缓存
+ */
+public class RpcCachedCallTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testRepeatedCallIsServedFromTheCache() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        assertEquals("cached:1", contextService.cachedLookup("cached", 0));
+        assertEquals("cached:1", contextService.cachedLookup("cached", 0));
+        assertEquals(1, ContextServiceImpl.executions("cached"));
+        RpcServiceUtil.invalidateCache();
+        assertEquals("cached:2", contextService.cachedLookup("cached", 0));
+    }
+
+    public void testResultArrivingAfterInvalidationIsNotCached() throws Exception {
+        RpcAsyncReference<ContextService> reference = RpcServiceUtil.getAsyncReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        CompletableFuture<String> inFlight = reference.call(service -> service.cachedLookup("invalidated", 500));
+        Thread.sleep(100);
+        // 例如收到了配置变更通知
+        RpcServiceUtil.invalidateCache();
+        assertEquals("invalidated:1", inFlight.get(5, TimeUnit.SECONDS));
+        // 写缓存的回调和这里的等待由同一次完成触发，先后不定
+        Thread.sleep(100);
+
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        assertEquals("清空之前的结果不应该被缓存", "invalidated:2", contextService.cachedLookup("invalidated", 500));
+        assertEquals("invalidated:2", contextService.cachedLookup("invalidated", 500));
+    }
+}
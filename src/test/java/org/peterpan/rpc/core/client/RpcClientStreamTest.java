@@ -0,0 +1,124 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Stream.StreamService;
+import org.peterpan.rpc.core.stream.StreamObserver;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.server.StreamServiceImpl;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端流和双向流：按顺序交付、服务端异常结束、客户端取消
+ */
+public class RpcClientStreamTest extends TestCase {
+
+    private StreamService streamService;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+        streamService = RpcServiceUtil.getService(StreamService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+    }
+
+    public void testClientStreamingUpload() throws Exception {
+        Collector<Long> result = new Collector<>();
+        StreamObserver<String> upload = streamService.upload(result);
+        char[] chunk = new char[1000];
+        Arrays.fill(chunk, 'u');
+        // 远超接收窗口，onNext 会按流控阻塞等待
+        for (int i = 0; i < 5000; i++) {
+            upload.onNext(new String(chunk));
+        }
+        upload.onCompleted();
+        assertNull(result.done.get(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(5000L * 1000), result.items);
+    }
+
+    public void testEmptyUploadStillGetsAReply() throws Exception {
+        Collector<Long> result = new Collector<>();
+        streamService.upload(result).onCompleted();
+        assertNull(result.done.get(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(0L), result.items);
+    }
+
+    public void testBidirectionalRepliesArriveInOrder() throws Exception {
+        Collector<String> replies = new Collector<>();
+        StreamObserver<String> requests = streamService.echo(">", replies);
+        for (int i = 0; i < 2000; i++) {
+            requests.onNext("m" + i);
+        }
+        requests.onCompleted();
+        assertNull(replies.done.get(10, TimeUnit.SECONDS));
+        assertEquals(2000, replies.items.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(">m" + i, replies.items.get(i));
+        }
+    }
+
+    public void testProviderErrorEndsTheCall() throws Exception {
+        Collector<String> replies = new Collector<>();
+        StreamObserver<String> requests = streamService.echo(">", replies);
+        requests.onNext("a");
+        requests.onNext("fail");
+        Throwable error = replies.done.get(10, TimeUnit.SECONDS);
+        assertNotNull(error);
+        assertTrue(error.getMessage(), error.getMessage().contains("bad input"));
+        assertEquals(Collections.singletonList(">a"), replies.items);
+        // 调用已经结束，继续发送会被拒绝
+        try {
+            for (int i = 0; i < 100; i++) {
+                requests.onNext("x");
+                Thread.sleep(1);
+            }
+            fail("调用结束后不能再发送元素");
+        } catch (IllegalStateException expected) {
+            // 流已结束
+        }
+    }
+
+    public void testClientCancelReachesTheProvider() throws Exception {
+        int cancelledBefore = StreamServiceImpl.cancelled();
+        Collector<String> replies = new Collector<>();
+        StreamObserver<String> requests = streamService.echo(">", replies);
+        requests.onNext("a");
+        requests.onError(new RuntimeException("user abort"));
+        assertNotNull("取消后响应 observer 以异常结束", replies.done.get(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (StreamServiceImpl.cancelled() == cancelledBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(cancelledBefore + 1, StreamServiceImpl.cancelled());
+    }
+
+    /**
+     * 收集响应元素，结束时 done 完成：正常结束为 null，异常结束为异常
+     */
+    static class Collector<T> implements StreamObserver<T> {
+        final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<Throwable> done = new CompletableFuture<>();
+
+        @Override
+        public void onNext(T value) {
+            items.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done.complete(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            done.complete(null);
+        }
+    }
+}
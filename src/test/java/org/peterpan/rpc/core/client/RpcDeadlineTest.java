@@ -0,0 +1,60 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.core.context.RpcContext;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 截止时间传递：调用方剩余的超时时间随请求发给服务端；在服务实现中发起的调用不超过上游剩余的时间
+ */
+public class RpcDeadlineTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        RpcContext.detach();
+    }
+
+    public void testProviderSeesTheCallersTimeout() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 3000);
+        long remaining = contextService.remainingMillis();
+        assertTrue(String.valueOf(remaining), remaining > 0 && remaining <= 3000);
+    }
+
+    public void testNestedCallInheritsTheUpstreamDeadline() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 60000);
+        // 相当于在服务实现中发起调用，上游只剩 500ms
+        RpcContext.attach(new RpcContext(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500)));
+        long remaining = contextService.remainingMillis();
+        assertTrue(String.valueOf(remaining), remaining > 0 && remaining <= 500);
+    }
+
+    public void testNestedCallFailsWithoutSendingOnceTheUpstreamExpired() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 60000);
+        int touched = contextService.touch();
+        RpcContext.attach(new RpcContext(System.nanoTime() - 1));
+        long start = System.nanoTime();
+        try {
+            contextService.touch();
+            fail("上游已经超时，调用应该直接失败");
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof TimeoutException);
+        }
+        assertTrue("不应该等待超时", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        RpcContext.detach();
+        // 请求没有发给服务端
+        assertEquals(touched + 1, contextService.touch());
+    }
+}
@@ -0,0 +1,85 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.IDL.Echo.EchoService;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.FrameTooLongException;
+import org.peterpan.rpc.core.transfer.ServerException;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 超过 maxFrameLength 的请求和响应只让这一个调用失败，同一条连接上的其他调用照常完成
+ */
+public class RpcFrameTooLongTest extends TestCase {
+
+    private static final int TOO_LONG = RpcConfig.getInstance().getMaxFrameLength() + 1;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testOversizedRequestFailsAloneWithoutRetry() throws Exception {
+        EchoService echoService = RpcServiceUtil.getService(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "Failover", 5000);
+        List<CompletableFuture<String>> inFlight = startCallsOnEveryConnection(echoService);
+
+        char[] chars = new char[TOO_LONG];
+        Arrays.fill(chars, 'x');
+        long start = System.currentTimeMillis();
+        try {
+            echoService.echo(new String(chars));
+            fail("超过 maxFrameLength 的请求应该失败");
+        } catch (FrameTooLongException expected) {
+            // 在编码时就失败，不等超时，也不换节点重试
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        }
+        assertCompleted(inFlight);
+        assertEquals("after", echoService.echo("after"));
+    }
+
+    public void testOversizedResponseIsAnsweredWithAnException() throws Exception {
+        EchoService echoService = RpcServiceUtil.getService(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "Failover", 5000);
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "Failover", 5000);
+        List<CompletableFuture<String>> inFlight = startCallsOnEveryConnection(echoService);
+
+        long start = System.currentTimeMillis();
+        try {
+            contextService.payload(TOO_LONG);
+            fail("超过 maxFrameLength 的响应应该让调用失败");
+        } catch (RuntimeException expected) {
+            // 服务端回复了这个 requestId 的异常，不用等到超时，也不重试
+            assertTrue(expected.getCause() instanceof ServerException);
+            assertTrue(expected.getMessage(), expected.getMessage().contains("maxFrameLength"));
+            assertTrue(System.currentTimeMillis() - start < 4000);
+        }
+        assertCompleted(inFlight);
+        assertEquals(10, contextService.payload(10).length());
+    }
+
+    /**
+     * 在每条连接上都留一个还没完成的调用，连接被关闭时它们会失败
+     */
+    private static List<CompletableFuture<String>> startCallsOnEveryConnection(EchoService echoService) {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < RpcConfig.getInstance().getConnectionPoolSize() * 2; i++) {
+            futures.add(echoService.echoLater("in-flight-" + i, 1000));
+        }
+        return futures;
+    }
+
+    private static void assertCompleted(List<CompletableFuture<String>> futures) throws Exception {
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("in-flight-" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.annotation.OneWay;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 单向调用：写出请求就返回，服务端照常执行但不回复
+ */
+public class RpcOneWayTest extends TestCase {
+
+    public interface BadOneWayService {
+        @OneWay
+        int count();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testOneWayMethodReturnsBeforeTheServiceRuns() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        // 预热连接
+        contextService.touch();
+        long start = System.nanoTime();
+        contextService.record("oneway", 1000);
+        assertTrue("单向调用不等待服务端执行", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        awaitEvent("oneway:recorded");
+    }
+
+    public void testOneWayReferenceSendsAnyMethod() throws Exception {
+        RpcOneWayReference<ContextService> reference = RpcServiceUtil.getOneWayReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        int touched = ContextServiceImpl.touched();
+        int[] returned = {-1};
+        reference.send(service -> returned[0] = service.touch());
+        // 方法本身返回默认值
+        assertEquals(0, returned[0]);
+        assertFalse(RpcOneWayReference.isSending());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ContextServiceImpl.touched() == touched && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(touched + 1, ContextServiceImpl.touched());
+    }
+
+    public void testProviderDoesNotReplyToOneWayFrames() throws Exception {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("127.0.0.1", Integer.parseInt(RpcConfig.getInstance().getPort())))) {
+            TestFrames.writeFully(socket, TestFrames.request(Long.MAX_VALUE - 1, MsgType.ONE_WAY, 0, request("touch")));
+            TestFrames.writeFully(socket, TestFrames.request(Long.MAX_VALUE, MsgType.REQUEST, 0, request("touch")));
+            List<RpcProtocol> responses = TestFrames.read(socket);
+            // 第一个收到的就是普通调用的响应
+            assertEquals(Long.MAX_VALUE, responses.get(0).getHeader().getRequestId());
+            for (RpcProtocol response : responses) {
+                response.getBody().release();
+            }
+        }
+    }
+
+    public void testOneWayMethodMustReturnVoid() throws Exception {
+        BadOneWayService service = RpcServiceUtil.getService(BadOneWayService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        try {
+            service.count();
+            fail("@OneWay 方法有返回值时应该报错");
+        } catch (IllegalStateException expected) {
+            // 拿不到返回值，声明了也没有意义
+        }
+    }
+
+    private static RpcRequestBody request(String methodName) {
+        return RpcRequestBody.builder().interfaceName(ContextService.class.getName())
+                .serviceVersion(EmbeddedServer.VERSION).methodName(methodName)
+                .parameters(new Object[0]).paramTypes(new Class<?>[0]).build();
+    }
+
+    private static void awaitEvent(String event) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String next;
+        do {
+            next = ContextServiceImpl.events().poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                fail("没有等到 " + event);
+            }
+        } while (!event.equals(next));
+    }
+}
@@ -0,0 +1,85 @@
+package org.peterpan.rpc.core.client;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Stream.StreamService;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.server.StreamServiceImpl;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务端流：按顺序到达，慢消费时服务端按窗口停下，提前关闭后服务端停止产生
+ */
+public class RpcStreamIteratorTest extends TestCase {
+
+    private StreamService streamService;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+        streamService = RpcServiceUtil.getService(StreamService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+    }
+
+    public void testElementsArriveInOrder() {
+        Iterator<String> iterator = streamService.range(5000);
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(String.valueOf(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("流结束后 next 应该抛出 NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+            // 已经结束
+        }
+    }
+
+    public void testEmptyStream() {
+        assertFalse(streamService.range(0).hasNext());
+    }
+
+    public void testSlowConsumerHoldsBackTheProducer() throws Exception {
+        int window = RpcConfig.getInstance().getStreamWindow();
+        Iterator<String> iterator = streamService.range(100000);
+        int maxLead = 0;
+        for (int consumed = 1; consumed <= 200; consumed++) {
+            assertEquals(String.valueOf(consumed - 1), iterator.next());
+            Thread.sleep(1);
+            maxLead = Math.max(maxLead, produced() - consumed);
+        }
+        // 服务端领先的元素数不超过窗口(加上正在补发的半个窗口)
+        assertTrue("服务端没有按窗口停下: 领先 " + maxLead, maxLead <= window * 2);
+
+        ((AutoCloseable) iterator).close();
+        Thread.sleep(300);
+        int afterClose = produced();
+        Thread.sleep(300);
+        assertEquals("关闭后服务端应该停止产生元素", afterClose, produced());
+        assertTrue(afterClose < 100000);
+    }
+
+    public void testProviderErrorEndsTheStream() {
+        Iterator<String> iterator = streamService.failAfter(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(String.valueOf(i), iterator.next());
+        }
+        try {
+            iterator.hasNext();
+            fail("服务端异常应该传给调用方");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("failed at 3"));
+        }
+        // 同一个代理上的普通调用不受影响
+        assertNotNull(streamService.produced());
+    }
+
+    private static int produced() {
+        return new StreamServiceImpl().produced();
+    }
+}
@@ -0,0 +1,58 @@
+package org.peterpan.rpc.core.client.cache;
+
+import junit.framework.TestCase;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 访问频率统计：计数最大到 15，累计次数达到容量的 10 倍时减半
+ */
+public class FrequencySketchTest extends TestCase {
+
+    public void testCountsAreCappedAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("a".hashCode()));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a".hashCode());
+        }
+        assertEquals(5, sketch.frequency("a".hashCode()));
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a".hashCode());
+        }
+        assertEquals(15, sketch.frequency("a".hashCode()));
+    }
+
+    public void testDistinctKeysRarelyCollide() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot".hashCode());
+        }
+        for (int i = 0; i < 500; i++) {
+            sketch.increment(("cold-" + i).hashCode());
+        }
+        assertEquals(10, sketch.frequency("hot".hashCode()));
+        int overestimated = 0;
+        for (int i = 0; i < 500; i++) {
+            if (sketch.frequency(("cold-" + i).hashCode()) > 1) {
+                overestimated++;
+            }
+        }
+        // 每个键取 4 个计数器中的最小值，高估的只是少数
+        assertTrue(String.valueOf(overestimated), overestimated < 50);
+    }
+
+    public void testCountsAreHalvedPeriodically() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment("old".hashCode());
+        }
+        assertEquals(12, sketch.frequency("old".hashCode()));
+        // 容量 16 时每 160 次记录减半一次
+        for (int i = 0; i < 160; i++) {
+            sketch.increment(("new-" + i).hashCode());
+        }
+        // 计数器很少，新键会撞上 old 的计数器；不减半的话计数只增不减，不会低于 12
+        int frequency = sketch.frequency("old".hashCode());
+        assertTrue("过去的热点应该冷却: " + frequency, frequency <= 8);
+    }
+}
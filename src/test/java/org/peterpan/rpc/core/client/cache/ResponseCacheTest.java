@@ -0,0 +1,139 @@
+package org.peterpan.rpc.core.client.cache;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.annotation.Cached;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端响应缓存：有效期、容量淘汰(热点不被一次性的键冲掉)和清空之后迟到的旧结果
+ */
+public class ResponseCacheTest extends TestCase {
+
+    private static final String SERVICE_KEY = "org.peterpan.rpc.IDL.Config.ConfigService_v1";
+
+    public interface ConfigService {
+        @Cached(ttl = 60)
+        String get(String name);
+
+        @Cached(ttl = 50, unit = TimeUnit.MILLISECONDS)
+        String shortLived(String name);
+
+        String uncached(String name);
+
+        @Cached(ttl = 60)
+        String find(Object filter);
+    }
+
+    public void testHitsMissesAndNullResults() throws Exception {
+        ResponseCache cache = new ResponseCache(100, Collections.emptyMap());
+        ResponseCache.Key key = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"a"});
+        assertSame(ResponseCache.MISS, cache.get(key));
+        cache.put(key, "value");
+        // 参数相等就是同一个键
+        assertEquals("value", cache.get(cache.keyOf(SERVICE_KEY, method("get"), new Object[]{new String("a")})));
+        assertSame(ResponseCache.MISS, cache.get(cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"b"})));
+        // 同一个方法在不同的服务键下分开缓存
+        assertSame(ResponseCache.MISS, cache.get(cache.keyOf(SERVICE_KEY + "2", method("get"), new Object[]{"a"})));
+
+        ResponseCache.Key nullKey = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"null"});
+        cache.put(nullKey, null);
+        assertSame("null 结果不缓存", ResponseCache.MISS, cache.get(nullKey));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    public void testOnlyEnabledMethodsHaveKeys() throws Exception {
+        assertNull(new ResponseCache(100, Collections.emptyMap()).keyOf(SERVICE_KEY, method("uncached"), new Object[]{"a"}));
+        // 容量为 0 时关闭缓存
+        assertNull(new ResponseCache(0, Collections.emptyMap()).keyOf(SERVICE_KEY, method("get"), new Object[]{"a"}));
+        Map<String, Long> configured = new HashMap<>();
+        configured.put(SERVICE_KEY + "#get", 0L);
+        configured.put(SERVICE_KEY + "#uncached", 1000L);
+        ResponseCache cache = new ResponseCache(100, configured);
+        // 配置文件优先于注解，0 表示关闭
+        assertNull(cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"a"}));
+        assertNotNull(cache.keyOf(SERVICE_KEY, method("uncached"), new Object[]{"a"}));
+    }
+
+    public void testCallsWithArrayArgumentsAreNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(100, Collections.emptyMap());
+        Method find = ConfigService.class.getMethod("find", Object.class);
+        // 数组可能在调用之后被就地修改，缓存键的哈希值会和内容对不上
+        assertNull(cache.keyOf(SERVICE_KEY, find, new Object[]{new String[]{"a"}}));
+        assertNull(cache.keyOf(SERVICE_KEY, find, new Object[]{new int[]{1}}));
+        assertNotNull(cache.keyOf(SERVICE_KEY, find, new Object[]{"a"}));
+        assertNotNull(cache.keyOf(SERVICE_KEY, find, new Object[]{null}));
+    }
+
+    public void testEntriesExpire() throws Exception {
+        ResponseCache cache = new ResponseCache(100, Collections.emptyMap());
+        ResponseCache.Key key = cache.keyOf(SERVICE_KEY, method("shortLived"), new Object[]{"a"});
+        cache.put(key, "value");
+        assertEquals("value", cache.get(key));
+        Thread.sleep(100);
+        assertSame(ResponseCache.MISS, cache.get(key));
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    public void testResultOfACallStartedBeforeInvalidateAllIsNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(100, Collections.emptyMap());
+        ResponseCache.Key cached = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"a"});
+        cache.put(cached, "old");
+        // 调用在清空之前发出，结果在清空之后才到
+        ResponseCache.Key inFlight = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"b"});
+        ResponseCache.Key refreshing = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"a"});
+        cache.invalidateAll();
+        assertSame(ResponseCache.MISS, cache.get(cached));
+        cache.put(inFlight, "stale");
+        cache.put(refreshing, "stale");
+        assertSame(ResponseCache.MISS, cache.get(inFlight));
+        assertSame(ResponseCache.MISS, cache.get(refreshing));
+        assertEquals(0, cache.stats().getSize());
+
+        // 清空之后发出的调用照常缓存
+        ResponseCache.Key fresh = cache.keyOf(SERVICE_KEY, method("get"), new Object[]{"b"});
+        cache.put(fresh, "fresh");
+        assertEquals("fresh", cache.get(inFlight));
+    }
+
+    public void testSizeIsBoundedAndHotEntriesSurviveAScan() throws Exception {
+        ResponseCache cache = new ResponseCache(100, Collections.emptyMap());
+        Method get = method("get");
+        for (int i = 0; i < 50; i++) {
+            cache.put(cache.keyOf(SERVICE_KEY, get, new Object[]{"hot-" + i}), "hot");
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("hot", cache.get(cache.keyOf(SERVICE_KEY, get, new Object[]{"hot-" + i})));
+            }
+        }
+        // 大量只访问一次的键
+        for (int i = 0; i < 1000; i++) {
+            cache.put(cache.keyOf(SERVICE_KEY, get, new Object[]{"scan-" + i}), "scan");
+        }
+        assertEquals(100, cache.stats().getSize());
+        assertTrue(cache.stats().getEvictionCount() >= 950);
+        int hotLeft = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(cache.keyOf(SERVICE_KEY, get, new Object[]{"hot-" + i})) != ResponseCache.MISS) {
+                hotLeft++;
+            }
+        }
+        assertTrue("热点不应该被一次性的键冲掉: " + hotLeft, hotLeft >= 45);
+    }
+
+    private static Method method(String name) throws NoSuchMethodException {
+        return ConfigService.class.getMethod(name, String.class);
+    }
+}
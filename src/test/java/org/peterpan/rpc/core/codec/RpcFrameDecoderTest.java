@@ -0,0 +1,166 @@
+package org.peterpan.rpc.core.codec;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 帧解码：半包、粘包、超长帧、协议版本和累积缓冲区的释放
+ */
+public class RpcFrameDecoderTest extends TestCase {
+
+    public void testDecodesFramesSplitAtEveryByte() throws Exception {
+        byte[] stream = concat(TestFrames.frame(1, "a".getBytes()), TestFrames.frame(2, new byte[0]),
+                TestFrames.frame(3, "hello world".getBytes()));
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024);
+        List<RpcProtocol> frames = new ArrayList<>();
+        for (byte b : stream) {
+            frames.addAll(decoder.decode(ByteBuffer.wrap(new byte[]{b})));
+        }
+        assertEquals(3, frames.size());
+        assertFrame(frames.get(0), 1, "a");
+        assertFrame(frames.get(1), 2, "");
+        assertFrame(frames.get(2), 3, "hello world");
+        assertNull(cumulation(decoder));
+    }
+
+    public void testDecodesSeveralFramesFromOneRead() throws Exception {
+        byte[] stream = concat(TestFrames.frame(1, "x".getBytes()), TestFrames.frame(2, "y".getBytes()),
+                TestFrames.frame(3, "z".getBytes()));
+        // 最后一帧只到了一半
+        ByteBuffer in = ByteBuffer.wrap(stream, 0, stream.length - 5);
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024);
+        List<RpcProtocol> frames = decoder.decode(in);
+        assertEquals(2, frames.size());
+        assertFalse("读缓冲区中的数据应该全部取走", in.hasRemaining());
+        assertFrame(frames.get(0), 1, "x");
+        assertFrame(frames.get(1), 2, "y");
+        frames = decoder.decode(ByteBuffer.wrap(stream, stream.length - 5, 5));
+        assertEquals(1, frames.size());
+        assertFrame(frames.get(0), 3, "z");
+    }
+
+    public void testLargeFrameInSmallChunksThenReleasesCumulation() throws Exception {
+        byte[] body = new byte[1024 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 31);
+        }
+        byte[] frame = TestFrames.frame(7, body);
+        RpcFrameDecoder decoder = new RpcFrameDecoder(2 * 1024 * 1024);
+        List<RpcProtocol> frames = new ArrayList<>();
+        for (int offset = 0; offset < frame.length; offset += 1000) {
+            frames.addAll(decoder.decode(ByteBuffer.wrap(frame, offset, Math.min(1000, frame.length - offset))));
+        }
+        assertEquals(1, frames.size());
+        assertEquals(7, frames.get(0).getHeader().getRequestId());
+        assertTrue(Arrays.equals(body, TestFrames.bodyOf(frames.get(0))));
+        // 收过的大帧不再占着内存
+        assertNull(cumulation(decoder));
+    }
+
+    public void testRejectsFrameLongerThanMaxFrameLength() throws Exception {
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024);
+        byte[] frame = TestFrames.frame(1, new byte[1024 - ProtocolConstants.HEADER_TOTAL_LEN]);
+        // 正好等于上限的帧可以通过
+        assertEquals(1, decoder.decode(ByteBuffer.wrap(frame)).size());
+        byte[] tooLong = TestFrames.frame(2, new byte[1024 - ProtocolConstants.HEADER_TOTAL_LEN + 1]);
+        try {
+            // 只有协议头就能判断，不会先缓存消息体
+            decoder.decode(ByteBuffer.wrap(tooLong, 0, ProtocolConstants.HEADER_TOTAL_LEN));
+            fail("超过 maxFrameLength 的帧应该被拒绝");
+        } catch (IOException expected) {
+            // 连接会被关闭
+        }
+    }
+
+    public void testRejectsHostileBodyLengthWithoutAllocating() throws Exception {
+        byte[] header = Arrays.copyOf(TestFrames.frame(1, new byte[0]), ProtocolConstants.HEADER_TOTAL_LEN);
+        ByteBuffer.wrap(header).putInt(ProtocolConstants.HEADER_TOTAL_LEN - 4, Integer.MAX_VALUE);
+        RpcFrameDecoder decoder = new RpcFrameDecoder(16 * 1024 * 1024);
+        try {
+            decoder.decode(ByteBuffer.wrap(header));
+            fail("声明了超长消息体的帧应该被拒绝");
+        } catch (IOException expected) {
+            assertNull(cumulation(decoder));
+        }
+        ByteBuffer.wrap(header).putInt(ProtocolConstants.HEADER_TOTAL_LEN - 4, -1);
+        try {
+            new RpcFrameDecoder(1024).decode(ByteBuffer.wrap(header));
+            fail("负数的消息体长度应该被拒绝");
+        } catch (IOException expected) {
+            // 连接会被关闭
+        }
+    }
+
+    public void testRejectsBadMagic() throws Exception {
+        byte[] frame = TestFrames.frame(1, "a".getBytes());
+        frame[0] = 0x7f;
+        try {
+            new RpcFrameDecoder(1024).decode(ByteBuffer.wrap(frame));
+            fail("魔数不对的帧应该被拒绝");
+        } catch (IOException expected) {
+            // 连接会被关闭
+        }
+    }
+
+    public void testRejectsOtherProtocolVersions() throws Exception {
+        byte[] frame = TestFrames.frame(1, "a".getBytes());
+        // 上一个版本的协议头没有 timeout 字段，按当前布局解析会读错长度
+        frame[2] = (byte) (ProtocolConstants.VERSION - 1);
+        try {
+            new RpcFrameDecoder(1024).decode(ByteBuffer.wrap(frame, 0, ProtocolConstants.HEADER_TOTAL_LEN));
+            fail("版本不一致的帧应该被拒绝");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(String.valueOf(ProtocolConstants.VERSION)));
+        }
+    }
+
+    public void testRejectsUnknownMsgTypes() throws Exception {
+        for (byte msgType : new byte[]{(byte) MsgType.values().length, 0x7f, -1}) {
+            assertNull(MsgType.findByType(msgType));
+            byte[] frame = TestFrames.frame(1, "a".getBytes());
+            frame[4] = msgType;
+            try {
+                new RpcFrameDecoder(1024).decode(ByteBuffer.wrap(frame, 0, ProtocolConstants.HEADER_TOTAL_LEN));
+                fail("未知的消息类型应该被拒绝: " + msgType);
+            } catch (IOException expected) {
+                // 连接会被关闭
+            }
+        }
+        // 最后一个类型仍然可以通过
+        byte[] frame = TestFrames.frame(1, "a".getBytes());
+        frame[4] = (byte) (MsgType.values().length - 1);
+        assertEquals(1, new RpcFrameDecoder(1024).decode(ByteBuffer.wrap(frame)).size());
+    }
+
+    private static void assertFrame(RpcProtocol frame, long requestId, String body) {
+        assertEquals(ProtocolConstants.MAGIC, frame.getHeader().getMagic());
+        assertEquals(requestId, frame.getHeader().getRequestId());
+        assertEquals(body, new String(TestFrames.bodyOf(frame)));
+    }
+
+    private static ByteBuffer cumulation(RpcFrameDecoder decoder) throws Exception {
+        Field field = RpcFrameDecoder.class.getDeclaredField("cumulation");
+        field.setAccessible(true);
+        return (ByteBuffer) field.get(decoder);
+    }
+
+    private static byte[] concat(byte[]... frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+}
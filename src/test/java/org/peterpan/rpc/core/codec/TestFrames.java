@@ -0,0 +1,121 @@
+package org.peterpan.rpc.core.codec;
+
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的帧：按 RpcFrameEncoder 的格式编码成字节
+ */
+public final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    public static RpcProtocol protocol(long requestId, byte[] body) {
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setMsgType((byte) MsgType.REQUEST.ordinal());
+        header.setRequestId(requestId);
+        PooledByteBuffer buffer = PooledByteBufferAllocator.getInstance().allocate(body.length);
+        buffer.buffer().put(body);
+        buffer.buffer().flip();
+        RpcProtocol protocol = new RpcProtocol();
+        protocol.setHeader(header);
+        protocol.setBody(buffer);
+        return protocol;
+    }
+
+    /**
+     * 一帧完整的字节：协议头 + 消息体
+     */
+    public static byte[] frame(long requestId, byte[] body) {
+        RpcProtocol protocol = protocol(requestId, body);
+        PooledByteBuffer encoded = RpcFrameEncoder.encode(protocol);
+        try {
+            byte[] bytes = new byte[encoded.readableBytes()];
+            encoded.buffer().duplicate().get(bytes);
+            return bytes;
+        } finally {
+            encoded.release();
+            protocol.getBody().release();
+        }
+    }
+
+    /**
+     * 一帧完整的调用请求，按配置的序列化方式编码请求体；timeout 为 0 表示没有截止时间
+     */
+    public static ByteBuffer request(long requestId, MsgType msgType, int timeout, RpcRequestBody body) throws Exception {
+        byte serialization = RpcConfig.getInstance().getSerializationByte();
+        MsgHeader header = new MsgHeader();
+        header.setMagic(ProtocolConstants.MAGIC);
+        header.setVersion(ProtocolConstants.VERSION);
+        header.setSerialization(serialization);
+        header.setMsgType((byte) msgType.ordinal());
+        header.setRequestId(requestId);
+        header.setTimeout(timeout);
+        RpcProtocol protocol = new RpcProtocol();
+        protocol.setHeader(header);
+        protocol.setBody(RpcEncoder.encode(body, serialization));
+        PooledByteBuffer encoded = RpcFrameEncoder.encode(protocol);
+        try {
+            ByteBuffer frame = ByteBuffer.allocate(encoded.readableBytes());
+            frame.put(encoded.buffer().duplicate());
+            frame.flip();
+            return frame;
+        } finally {
+            encoded.release();
+            protocol.getBody().release();
+        }
+    }
+
+    /**
+     * 阻塞读到下一批完整的帧，连接关闭时抛出 EOFException
+     */
+    public static List<RpcProtocol> read(SocketChannel socket) throws Exception {
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024 * 1024);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (socket.read(buffer) >= 0) {
+            buffer.flip();
+            List<RpcProtocol> frames = decoder.decode(buffer);
+            buffer.clear();
+            if (!frames.isEmpty()) {
+                return frames;
+            }
+        }
+        throw new EOFException("连接被关闭");
+    }
+
+    public static void writeFully(SocketChannel socket, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            socket.write(buffer);
+        }
+    }
+
+    /**
+     * 消息体的全部字节，读完后释放
+     */
+    public static byte[] bodyOf(RpcProtocol protocol) {
+        PooledByteBuffer body = protocol.getBody();
+        try {
+            byte[] bytes = new byte[body.readableBytes()];
+            body.buffer().get(bytes);
+            return bytes;
+        } finally {
+            body.release();
+        }
+    }
+}
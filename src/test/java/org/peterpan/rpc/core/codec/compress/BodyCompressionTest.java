@@ -0,0 +1,110 @@
+package org.peterpan.rpc.core.codec.compress;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.common.ProtocolConstants;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.buffer.PooledByteBufferAllocator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 消息体压缩：各算法往返一致，压不小的数据原样发送，损坏的数据解压失败
+ */
+public class BodyCompressionTest extends TestCase {
+
+    private static final CompressTypeEnum[] ALGORITHMS = {CompressTypeEnum.DEFLATE, CompressTypeEnum.SNAPPY};
+
+    @Override
+    protected void setUp() throws Exception {
+        CompressorFactory.init();
+    }
+
+    public void testRoundTrip() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i % 10).append("\"},");
+        }
+        byte[] original = text.toString().getBytes();
+        for (CompressTypeEnum algorithm : ALGORITHMS) {
+            PooledByteBuffer body = body(original);
+            PooledByteBuffer compressed = BodyCompression.compress(body, algorithm);
+            assertNotNull(algorithm + " 应该能压缩重复的文本", compressed);
+            assertEquals("消息体前面预留协议头", ProtocolConstants.HEADER_TOTAL_LEN, compressed.buffer().position());
+            assertTrue(algorithm + " 没有变小", compressed.readableBytes() < original.length / 2);
+
+            PooledByteBuffer decompressed = BodyCompression.decompress(compressed, (byte) algorithm.getType());
+            assertTrue(algorithm.name(), Arrays.equals(original, bytes(decompressed)));
+            // 压缩前的消息体不受影响
+            assertEquals(original.length, body.readableBytes());
+            decompressed.release();
+            compressed.release();
+            body.release();
+        }
+    }
+
+    public void testIncompressibleBodyIsSentAsIs() throws Exception {
+        byte[] random = new byte[8192];
+        new Random(1).nextBytes(random);
+        for (CompressTypeEnum algorithm : ALGORITHMS) {
+            PooledByteBuffer body = body(random);
+            assertNull(algorithm.name(), BodyCompression.compress(body, algorithm));
+            body.release();
+        }
+    }
+
+    public void testCorruptOrUnknownBodiesFail() throws Exception {
+        PooledByteBuffer truncated = body(new byte[]{0, 0});
+        assertDecompressFails(truncated, (byte) CompressTypeEnum.DEFLATE.getType());
+        PooledByteBuffer negativeLength = body(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1});
+        assertDecompressFails(negativeLength, (byte) CompressTypeEnum.DEFLATE.getType());
+        PooledByteBuffer garbage = body(new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5});
+        assertDecompressFails(garbage, (byte) CompressTypeEnum.DEFLATE.getType());
+        PooledByteBuffer unknown = body(new byte[]{0, 0, 0, 1, 1});
+        assertDecompressFails(unknown, (byte) 0x7f);
+        assertDecompressFails(unknown, (byte) CompressTypeEnum.NONE.getType());
+        truncated.release();
+        negativeLength.release();
+        garbage.release();
+        unknown.release();
+    }
+
+    public void testForgedOriginalLengthIsRejectedBeforeAllocating() throws Exception {
+        for (CompressTypeEnum algorithm : ALGORITHMS) {
+            // 几个字节的消息体声明了 2GB 的原始长度
+            PooledByteBuffer forged = body(new byte[]{0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3});
+            assertDecompressFails(forged, (byte) algorithm.getType());
+            forged.release();
+            int overLimit = RpcConfig.getInstance().getMaxFrameLength() + 1;
+            PooledByteBuffer justOver = body(new byte[]{(byte) (overLimit >>> 24), (byte) (overLimit >>> 16), (byte) (overLimit >>> 8), (byte) overLimit, 1});
+            assertDecompressFails(justOver, (byte) algorithm.getType());
+            justOver.release();
+        }
+    }
+
+    private static void assertDecompressFails(PooledByteBuffer body, byte compressType) {
+        try {
+            BodyCompression.decompress(body, compressType).release();
+            fail("应该解压失败");
+        } catch (IOException expected) {
+            // 由解码方关闭连接或者返回错误
+        }
+    }
+
+    private static PooledByteBuffer body(byte[] bytes) {
+        PooledByteBuffer buffer = PooledByteBufferAllocator.getInstance().allocate(bytes.length);
+        buffer.buffer().put(bytes);
+        buffer.buffer().flip();
+        return buffer;
+    }
+
+    private static byte[] bytes(PooledByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.buffer().duplicate().get(bytes);
+        return bytes;
+    }
+}
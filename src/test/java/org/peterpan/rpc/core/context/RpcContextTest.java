@@ -0,0 +1,77 @@
+package org.peterpan.rpc.core.context;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 调用上下文：截止时间只在挂到线程上期间可见；取消回调只执行一次，取消之后登记的立即执行
+ */
+public class RpcContextTest extends TestCase {
+
+    @Override
+    protected void tearDown() {
+        RpcContext.detach();
+    }
+
+    public void testNoContextMeansNoDeadline() {
+        assertNull(RpcContext.current());
+        assertFalse(RpcContext.hasDeadline());
+        assertEquals(0, RpcContext.getDeadlineNanos());
+        assertEquals(Long.MAX_VALUE, RpcContext.remainingMillis());
+        assertFalse(RpcContext.isExpired());
+        assertFalse(RpcContext.isCancelled());
+        // 不在服务端执行请求时忽略
+        RpcContext.onCancel(() -> fail("没有上下文时不会执行"));
+    }
+
+    public void testDeadlineVisibleWhileAttached() {
+        RpcContext context = new RpcContext(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+        RpcContext.attach(context);
+        assertSame(context, RpcContext.current());
+        assertTrue(RpcContext.hasDeadline());
+        long remaining = RpcContext.remainingMillis();
+        assertTrue(String.valueOf(remaining), remaining > 1000 && remaining <= 2000);
+        assertFalse(RpcContext.isExpired());
+        RpcContext.detach();
+        assertFalse(RpcContext.hasDeadline());
+
+        RpcContext.attach(new RpcContext(System.nanoTime() - 1));
+        assertTrue(RpcContext.isExpired());
+        assertTrue(RpcContext.remainingMillis() <= 0);
+
+        // 0 表示没有截止时间
+        RpcContext.attach(new RpcContext(0));
+        assertFalse(RpcContext.hasDeadline());
+        assertFalse(RpcContext.isExpired());
+        assertEquals(Long.MAX_VALUE, RpcContext.remainingMillis());
+    }
+
+    public void testCancelRunsListenersOnce() {
+        RpcContext context = new RpcContext(0);
+        RpcContext.attach(context);
+        List<String> calls = new CopyOnWriteArrayList<>();
+        RpcContext.onCancel(() -> calls.add("first"));
+        RpcContext.onCancel(() -> {
+            throw new IllegalStateException("回调失败不影响其他回调");
+        });
+        context.addCancelListener(() -> calls.add("second"));
+        assertTrue(calls.isEmpty());
+
+        context.cancel();
+        assertTrue(RpcContext.isCancelled());
+        assertTrue(context.cancelled());
+        assertEquals(2, calls.size());
+        assertEquals("first", calls.get(0));
+        assertEquals("second", calls.get(1));
+
+        context.cancel();
+        assertEquals("重复取消不会再次执行回调", 2, calls.size());
+        RpcContext.onCancel(() -> calls.add("late"));
+        assertEquals("取消之后登记的回调立即执行", "late", calls.get(2));
+    }
+}
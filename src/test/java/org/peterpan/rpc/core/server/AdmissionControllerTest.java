@@ -0,0 +1,59 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.config.RpcConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 准入控制：排队数或者排队时间超过上限时拒绝，队列排空后恢复
+ */
+public class AdmissionControllerTest extends TestCase {
+
+    private final RpcConfig rpcConfig = RpcConfig.getInstance();
+
+    public void testRejectsOnceTheQueueIsFull() {
+        AdmissionController admission = new AdmissionController();
+        int maxQueued = rpcConfig.getAdmissionMaxQueued();
+        for (int i = 0; i < maxQueued; i++) {
+            assertTrue(admission.tryAdmit());
+        }
+        assertFalse(admission.tryAdmit());
+        // 开始执行一个就能再放行一个
+        admission.started(System.nanoTime());
+        assertTrue(admission.tryAdmit());
+        // 被线程池拒绝的请求同样让出位置
+        admission.rejected();
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+    }
+
+    public void testRejectsWhenRequestsWaitTooLong() {
+        AdmissionController admission = new AdmissionController();
+        long maxQueueDelayNanos = TimeUnit.MILLISECONDS.toNanos(rpcConfig.getAdmissionMaxQueueDelay());
+        // 队列里还留一个请求，前面 20 个都排了 10 倍上限的时间
+        for (int i = 0; i < 21; i++) {
+            assertTrue(admission.tryAdmit());
+        }
+        for (int i = 0; i < 20; i++) {
+            admission.started(System.nanoTime() - maxQueueDelayNanos * 10);
+        }
+        assertFalse("排队时间超过上限应该拒绝", admission.tryAdmit());
+        assertTrue("建议的重试间隔随排队时间增长", admission.retryAfterMillis() > rpcConfig.getAdmissionMaxQueueDelay());
+
+        // 队列排空后不再沿用高峰期的平均值
+        admission.started(System.nanoTime());
+        assertTrue(admission.tryAdmit());
+        assertEquals(rpcConfig.getOverloadRetryAfter(), admission.retryAfterMillis());
+    }
+
+    public void testRetryAfterIsAtLeastTheConfiguredValue() {
+        AdmissionController admission = new AdmissionController();
+        assertEquals(rpcConfig.getOverloadRetryAfter(), admission.retryAfterMillis());
+        assertTrue(admission.tryAdmit());
+        admission.started(System.nanoTime());
+        assertEquals(rpcConfig.getOverloadRetryAfter(), admission.retryAfterMillis());
+    }
+}
@@ -0,0 +1,101 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.core.server.executor.ExecutionMode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 服务隔离线程池：按方法、服务查找，占满后抛出 RejectedExecutionException；虚拟线程模式在 JDK 21 以下回退到平台线程
+ */
+public class BulkheadsTest extends TestCase {
+
+    private static final String SERVICE_KEY = "org.peterpan.rpc.IDL.Slow.SlowService_v1";
+
+    public void testFindsMethodThenServiceLevelPool() {
+        Map<String, String> config = new HashMap<>();
+        config.put(SERVICE_KEY, "2");
+        config.put(SERVICE_KEY + "#slow", "1,1");
+        Bulkheads bulkheads = new Bulkheads(config, ExecutionMode.PLATFORM);
+        ExecutorService methodPool = bulkheads.find(request("slow"));
+        ExecutorService servicePool = bulkheads.find(request("fast"));
+        assertNotNull(methodPool);
+        assertNotNull(servicePool);
+        assertNotSame(methodPool, servicePool);
+        RpcRequestBody other = RpcRequestBody.builder().interfaceName("org.peterpan.rpc.IDL.Other").serviceVersion("v1").methodName("slow").build();
+        assertNull("没有配置的服务使用共享线程池", bulkheads.find(other));
+        methodPool.shutdownNow();
+        servicePool.shutdownNow();
+    }
+
+    public void testRejectsBadConfig() {
+        assertBadConfig("zero");
+        assertBadConfig("0");
+        assertBadConfig("2,-1");
+    }
+
+    public void testSaturatedPlatformBulkheadRejects() throws Exception {
+        assertSaturatedBulkheadRejects(ExecutionMode.PLATFORM);
+    }
+
+    public void testSaturatedVirtualBulkheadRejects() throws Exception {
+        // 虚拟线程执行器拒绝时没有 ThreadPoolExecutor，不能抛 NullPointerException
+        assertSaturatedBulkheadRejects(ExecutionMode.VIRTUAL);
+    }
+
+    private static void assertSaturatedBulkheadRejects(ExecutionMode executionMode) throws Exception {
+        Map<String, String> config = new HashMap<>();
+        config.put(SERVICE_KEY, "2");
+        ExecutorService bulkhead = new Bulkheads(config, executionMode).find(request("slow"));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                bulkhead.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            try {
+                bulkhead.execute(() -> fail("线程池已满，任务不应该执行"));
+                fail("线程池已满应该拒绝");
+            } catch (RejectedExecutionException expected) {
+                // RpcServerWorker 据此回复过载
+            }
+        } finally {
+            release.countDown();
+            bulkhead.shutdown();
+        }
+        // 占着线程池的请求执行完后正常结束
+        assertTrue(bulkhead.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static void assertBadConfig(String value) {
+        Map<String, String> config = new HashMap<>();
+        config.put(SERVICE_KEY, value);
+        try {
+            new Bulkheads(config, ExecutionMode.PLATFORM);
+            fail("配置错误应该在启动时报出: " + value);
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains(SERVICE_KEY));
+        }
+    }
+
+    private static RpcRequestBody request(String methodName) {
+        return RpcRequestBody.builder().interfaceName("org.peterpan.rpc.IDL.Slow.SlowService").serviceVersion("v1")
+                .methodName(methodName).build();
+    }
+}
@@ -0,0 +1,124 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.core.client.RpcAsyncReference;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 调用方放弃调用(超时或者取消 future)时发送 CANCEL：
+ * 执行中的服务收到取消回调、执行线程被中断，服务返回的 future 被取消，还在排队的调用不再执行；
+ * 同步调用的线程被中断时同样放弃调用
+ */
+public class CallCancellationTest extends TestCase {
+
+    private final List<String> seen = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testTimeoutCancelsTheRunningCall() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 300);
+        try {
+            contextService.awaitCancel("timeout", 10000);
+            fail("调用应该超时");
+        } catch (Exception expected) {
+            // 超时
+        }
+        awaitEvent("timeout:onCancel");
+        awaitEvent("timeout:interrupted");
+    }
+
+    public void testCancellingTheFutureCancelsTheRunningCall() throws Exception {
+        RpcAsyncReference<ContextService> reference = RpcServiceUtil.getAsyncReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        CompletableFuture<String> future = reference.call(service -> service.awaitCancel("cancel", 10000));
+        awaitEvent("cancel:started");
+        long start = System.nanoTime();
+        assertTrue(future.cancel(true));
+        awaitEvent("cancel:onCancel");
+        awaitEvent("cancel:interrupted");
+        assertTrue("服务端应该立即停止，而不是等到截止时间", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    public void testFutureReturnedByTheServiceIsCancelled() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        CompletableFuture<String> future = contextService.never("never");
+        awaitEvent("never:started");
+        future.cancel(true);
+        awaitEvent("never:futureCancelled");
+    }
+
+    public void testInterruptingTheCallerCancelsTheRunningCall() throws Exception {
+        ContextService contextService = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            try {
+                contextService.awaitCancel("interrupt", 10000);
+            } catch (Throwable e) {
+                failure.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        }, "test-caller");
+        caller.start();
+        awaitEvent("interrupt:started");
+        caller.interrupt();
+        awaitEvent("interrupt:onCancel");
+        awaitEvent("interrupt:interrupted");
+        caller.join(5000);
+        // 同步调用的方法没有声明 InterruptedException，由代理包装
+        assertTrue(String.valueOf(failure.get()), failure.get() instanceof UndeclaredThrowableException);
+        assertTrue(failure.get().getCause() instanceof InterruptedException);
+        assertTrue("中断标记应该保留", interrupted.get());
+    }
+
+    public void testQueuedCallIsSkippedAfterCancel() throws Exception {
+        RpcAsyncReference<ContextService> reference = RpcServiceUtil.getAsyncReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        int touched = ContextServiceImpl.touched();
+        // 占满共享线程池(最多 50 个线程)，后面的调用至少排队 300ms
+        List<CompletableFuture<String>> sleeping = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            sleeping.add(reference.call(service -> service.sleep(300)));
+        }
+        CompletableFuture<Integer> queued = reference.call(ContextService::touch);
+        Thread.sleep(50);
+        assertTrue(queued.cancel(true));
+        CompletableFuture.allOf(sleeping.toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
+        // 排在后面的调用执行完，说明被取消的调用已经轮到过
+        assertEquals(touched + 1, (int) reference.call(ContextService::touch).get(5, TimeUnit.SECONDS));
+        try {
+            queued.get();
+            fail("调用已经取消");
+        } catch (java.util.concurrent.CancellationException expected) {
+            // 调用方看到的是取消
+        } catch (ExecutionException e) {
+            fail(e.toString());
+        }
+    }
+
+    private void awaitEvent(String event) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!seen.contains(event)) {
+            String next = ContextServiceImpl.events().poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                fail("没有等到 " + event + ", 已收到 " + seen);
+            }
+            seen.add(next);
+        }
+    }
+}
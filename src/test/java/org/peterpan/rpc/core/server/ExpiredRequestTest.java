@@ -0,0 +1,63 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.client.RpcAsyncReference;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 在队列中等到调用方超时的请求直接丢弃，不执行服务也不回复
+ *
+ * 直接发送原始的帧，调用方不会发 CANCEL，丢弃只能来自截止时间的检查
+ */
+public class ExpiredRequestTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testRequestThatExpiredInTheQueueIsNotExecuted() throws Exception {
+        RpcAsyncReference<ContextService> reference = RpcServiceUtil.getAsyncReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 10000);
+        int touched = ContextServiceImpl.touched();
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("127.0.0.1", Integer.parseInt(RpcConfig.getInstance().getPort())))) {
+            // 占满共享线程池(最多 50 个线程)，后面的请求至少排队 300ms
+            List<CompletableFuture<String>> sleeping = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                sleeping.add(reference.call(service -> service.sleep(300)));
+            }
+            TestFrames.writeFully(socket, TestFrames.request(Long.MAX_VALUE - 1, MsgType.REQUEST, 100, touch()));
+            // 没有截止时间的请求排在后面，收到它的响应时前一个请求已经轮到过
+            TestFrames.writeFully(socket, TestFrames.request(Long.MAX_VALUE, MsgType.REQUEST, 0, touch()));
+
+            List<RpcProtocol> responses = TestFrames.read(socket);
+            assertEquals("过期的请求不应该回复", 1, responses.size());
+            assertEquals(Long.MAX_VALUE, responses.get(0).getHeader().getRequestId());
+            responses.get(0).getBody().release();
+            CompletableFuture.allOf(sleeping.toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
+            assertEquals("过期的请求不应该执行", touched + 1, ContextServiceImpl.touched());
+        }
+    }
+
+    private static RpcRequestBody touch() {
+        return RpcRequestBody.builder().interfaceName(ContextService.class.getName())
+                .serviceVersion(EmbeddedServer.VERSION).methodName("touch")
+                .parameters(new Object[0]).paramTypes(new Class<?>[0]).build();
+    }
+}
@@ -0,0 +1,76 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.core.protocol.body.RpcRequestBody;
+import org.peterpan.rpc.core.protocol.header.MsgHeader;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.util.HashMap;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 合并键：只有标注了 @SingleFlight 的普通调用才合并，方法、参数和序列化方式都相同才是同一个键
+ */
+public class SingleFlightGroupTest extends TestCase {
+
+    private final SingleFlightGroup group = new SingleFlightGroup();
+    private final HashMap<String, Object> registeredService = new HashMap<>();
+
+    @Override
+    protected void setUp() {
+        registeredService.put(RpcServiceNameBuilder.buildServiceKey(ContextService.class.getName(), EmbeddedServer.VERSION), new ContextServiceImpl());
+    }
+
+    public void testOnlyAnnotatedRequestsHaveAKey() {
+        assertNotNull(group.keyOf(header(MsgType.REQUEST, 1), shared("a", 10L), registeredService));
+        // 单向调用没有结果可以共享
+        assertNull(group.keyOf(header(MsgType.ONE_WAY, 1), shared("a", 10L), registeredService));
+        RpcRequestBody touch = request("touch", new Class<?>[0], new Object[0]);
+        assertNull(group.keyOf(header(MsgType.REQUEST, 1), touch, registeredService));
+        RpcRequestBody unknown = shared("a", 10L);
+        unknown.setServiceVersion("v2");
+        assertNull(group.keyOf(header(MsgType.REQUEST, 1), unknown, registeredService));
+    }
+
+    public void testKeysCompareMethodArgumentsAndSerialization() {
+        SingleFlightGroup.Key key = group.keyOf(header(MsgType.REQUEST, 1), shared("a", 10L), registeredService);
+        SingleFlightGroup.Key same = group.keyOf(header(MsgType.REQUEST, 1), shared(new String("a"), 10L), registeredService);
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+        assertFalse(key.equals(group.keyOf(header(MsgType.REQUEST, 1), shared("b", 10L), registeredService)));
+        assertFalse(key.equals(group.keyOf(header(MsgType.REQUEST, 1), shared("a", 20L), registeredService)));
+        // 结果按调用方的序列化方式编码，不能共享
+        assertFalse(key.equals(group.keyOf(header(MsgType.REQUEST, 2), shared("a", 10L), registeredService)));
+        RpcRequestBody later = request("sharedLater", new Class<?>[]{String.class, long.class, long.class}, new Object[]{"a", 10L, 0L});
+        assertFalse(key.equals(group.keyOf(header(MsgType.REQUEST, 1), later, registeredService)));
+    }
+
+    public void testArrayArgumentsCompareByContent() {
+        SingleFlightGroup.Key key = new SingleFlightGroup.Key((byte) 1, "m", new Object[]{new int[]{1, 2}, new String[]{"x"}});
+        SingleFlightGroup.Key same = new SingleFlightGroup.Key((byte) 1, "m", new Object[]{new int[]{1, 2}, new String[]{"x"}});
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+        assertEquals(new SingleFlightGroup.Key((byte) 1, "m", null), new SingleFlightGroup.Key((byte) 1, "m", new Object[0]));
+    }
+
+    private static RpcRequestBody shared(String key, long millis) {
+        return request("shared", new Class<?>[]{String.class, long.class}, new Object[]{key, millis});
+    }
+
+    private static RpcRequestBody request(String methodName, Class<?>[] paramTypes, Object[] parameters) {
+        return RpcRequestBody.builder().interfaceName(ContextService.class.getName()).serviceVersion(EmbeddedServer.VERSION)
+                .methodName(methodName).paramTypes(paramTypes).parameters(parameters).build();
+    }
+
+    private static MsgHeader header(MsgType msgType, int serialization) {
+        MsgHeader header = new MsgHeader();
+        header.setMsgType((byte) msgType.ordinal());
+        header.setSerialization((byte) serialization);
+        return header;
+    }
+}
@@ -0,0 +1,119 @@
+package org.peterpan.rpc.core.server;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.core.client.RpcAsyncReference;
+import org.peterpan.rpc.server.ContextServiceImpl;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 合并执行：相同的并发调用只执行一次；执行者被取消时交给跟随者接着执行，跟随者都能拿到结果
+ */
+public class SingleFlightTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testIdenticalCallsShareOneExecution() throws Exception {
+        RpcAsyncReference<ContextService> reference = reference(5000);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(reference.call(service -> service.shared("same", 300)));
+        }
+        CompletableFuture<String> other = reference.call(service -> service.shared("other", 300));
+        for (CompletableFuture<String> result : results) {
+            assertEquals("same:1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, ContextServiceImpl.executions("same"));
+        // 参数不同的调用不合并
+        assertEquals("other:1", other.get(5, TimeUnit.SECONDS));
+        // 结果不缓存，这一轮结束后的调用重新执行
+        assertEquals("same:2", reference.call(service -> service.shared("same", 0)).get(5, TimeUnit.SECONDS));
+    }
+
+    public void testFollowersAreServedWhenTheLeaderIsCancelled() throws Exception {
+        RpcAsyncReference<ContextService> impatient = reference(300);
+        CompletableFuture<String> leader = impatient.call(service -> service.shared("handoff", 1000));
+        awaitExecutions("handoff", 1);
+        List<CompletableFuture<String>> followers = followers(service -> service.shared("handoff", 1000));
+
+        assertLeaderTimedOut(leader);
+        // 执行者被中断后，由第一个跟随者接着执行，结果写给所有跟随者
+        for (CompletableFuture<String> follower : followers) {
+            assertEquals("handoff:2", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, ContextServiceImpl.executions("handoff"));
+    }
+
+    public void testFollowersAreServedWhenAnAsyncLeaderIsCancelled() throws Exception {
+        // 执行者已经返回 future 之后才取消
+        assertAsyncHandOff("handoff-async", 0);
+    }
+
+    public void testFollowersAreServedWhenAnAsyncLeaderIsCancelledBeforeReturning() throws Exception {
+        // 执行者还在方法里时就取消，返回的 future 同样要结束这一轮
+        assertAsyncHandOff("handoff-async-early", 600);
+    }
+
+    private static void assertAsyncHandOff(String key, long blockMillis) throws Exception {
+        ContextService impatient = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 300);
+        CompletableFuture<String> leader = impatient.sharedLater(key, blockMillis, 1000);
+        awaitExecutions(key, 1);
+        ContextService patient = RpcServiceUtil.getService(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(patient.sharedLater(key, blockMillis, 1000));
+        }
+
+        assertLeaderTimedOut(leader);
+        // 执行者返回的 future 被取消后由第一个跟随者接着执行，不能让跟随者一直等下去
+        for (CompletableFuture<String> follower : followers) {
+            assertEquals(key + ":2", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, ContextServiceImpl.executions(key));
+    }
+
+    private static List<CompletableFuture<String>> followers(Function<ContextService, String> invocation) throws Exception {
+        RpcAsyncReference<ContextService> patient = reference(5000);
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(patient.call(invocation));
+        }
+        return followers;
+    }
+
+    private static void assertLeaderTimedOut(CompletableFuture<String> leader) throws Exception {
+        try {
+            leader.get(5, TimeUnit.SECONDS);
+            fail("执行者应该超时");
+        } catch (ExecutionException expected) {
+            // 超时后客户端发送 CANCEL
+        }
+    }
+
+    private static void awaitExecutions(String key, int executions) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ContextServiceImpl.executions(key) < executions) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(key + " 没有开始执行");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static RpcAsyncReference<ContextService> reference(long timeout) throws Exception {
+        return RpcServiceUtil.getAsyncReference(ContextService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", timeout);
+    }
+}
@@ -0,0 +1,110 @@
+package org.peterpan.rpc.core.server.executor;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 虚拟线程执行器：每个请求一个虚拟线程，并发上限之外直接拒绝；JDK 21 以下只检查回退
+ */
+public class VirtualThreadExecutorTest extends TestCase {
+
+    private final List<Runnable> rejected = new CopyOnWriteArrayList<>();
+    private final RejectedExecutionHandler recordingHandler = (r, executor) -> rejected.add(r);
+
+    public void testExecutionModeFallsBackToPlatform() {
+        assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.toExecutionMode("virtual"));
+        assertEquals(ExecutionMode.PLATFORM, ExecutionMode.toExecutionMode("PLATFORM"));
+        assertEquals(ExecutionMode.PLATFORM, ExecutionMode.toExecutionMode("unknown"));
+        assertEquals(ExecutionMode.PLATFORM, ExecutionMode.toExecutionMode(null));
+    }
+
+    public void testCreateReturnsNullWithoutVirtualThreads() {
+        VirtualThreadExecutor executor = VirtualThreadExecutor.create("test-vt-", 4, recordingHandler);
+        assertEquals(supportsVirtualThreads(), executor != null);
+        try {
+            VirtualThreadExecutor.create("test-vt-", 0, recordingHandler);
+            fail("并发上限必须大于 0");
+        } catch (IllegalArgumentException expected) {
+            // 参数错误
+        }
+    }
+
+    public void testRunsEachTaskOnANamedVirtualThread() throws Exception {
+        VirtualThreadExecutor executor = VirtualThreadExecutor.create("test-vt-", 100, recordingHandler);
+        if (executor == null) {
+            return;
+        }
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                threads.add(Thread.currentThread());
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (Thread thread : threads) {
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            assertTrue(thread.getName(), thread.getName().startsWith("test-vt-"));
+        }
+        assertTrue(rejected.isEmpty());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    public void testRejectsBeyondMaxConcurrencyWithoutQueueing() throws Exception {
+        VirtualThreadExecutor executor = VirtualThreadExecutor.create("test-vt-", 2, recordingHandler);
+        if (executor == null) {
+            return;
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Runnable third = () -> { };
+        executor.execute(third);
+        assertEquals(1, rejected.size());
+        assertSame(third, rejected.get(0));
+
+        // 许可归还后可以继续执行
+        release.countDown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        executor.shutdown();
+        executor.execute(() -> { });
+        assertEquals("关闭后的任务交给拒绝策略", 2, rejected.size());
+    }
+
+    private static boolean supportsVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
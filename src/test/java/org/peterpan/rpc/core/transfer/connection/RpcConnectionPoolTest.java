@@ -0,0 +1,114 @@
+package org.peterpan.rpc.core.transfer.connection;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Echo.EchoService;
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.server.EmbeddedServer;
+import org.peterpan.rpc.util.RpcServiceUtil;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端连接池：每个服务提供方固定数量的长连接，多个调用复用同一条连接；断开的连接在后台重连
+ */
+public class RpcConnectionPoolTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+    }
+
+    public void testAcquireRotatesOverAFixedSetOfConnections() throws Exception {
+        ServiceMeta serviceMeta = EmbeddedServer.serviceMeta(EchoService.class);
+        int poolSize = RpcConfig.getInstance().getConnectionPoolSize();
+        Map<RpcConnection, Boolean> connections = new IdentityHashMap<>();
+        for (int i = 0; i < poolSize * 5; i++) {
+            RpcConnection connection = RpcConnectionPool.getInstance().acquire(serviceMeta);
+            assertTrue(connection.isActive());
+            connections.put(connection, Boolean.TRUE);
+        }
+        assertEquals(poolSize, connections.size());
+    }
+
+    public void testConcurrentCallsAreMultiplexedOverPooledConnections() throws Exception {
+        EchoService echoService = RpcServiceUtil.getService(EchoService.class, EmbeddedServer.VERSION, "RoundRobin", "FailFast", 5000);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String message = "message-" + i;
+                results.add(executor.submit((Callable<String>) () -> echoService.echo(message)));
+            }
+            // 响应按 requestId 交回各自的调用方，不会串
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("message-" + i, results.get(i).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ServiceMeta serviceMeta = EmbeddedServer.serviceMeta(EchoService.class);
+        int poolSize = RpcConfig.getInstance().getConnectionPoolSize();
+        Map<RpcConnection, Boolean> connections = new IdentityHashMap<>();
+        for (int i = 0; i < poolSize * 2; i++) {
+            connections.put(RpcConnectionPool.getInstance().acquire(serviceMeta), Boolean.TRUE);
+        }
+        assertEquals(poolSize, connections.size());
+    }
+
+    public void testDroppedConnectionIsReconnectedInTheBackground() throws Exception {
+        BlockingQueue<SocketChannel> accepted = new LinkedBlockingQueue<>();
+        try (ServerSocketChannel provider = ServerSocketChannel.open()) {
+            provider.bind(new InetSocketAddress("127.0.0.1", 0));
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        accepted.add(provider.accept());
+                    }
+                } catch (Exception e) {
+                    // 测试结束，关闭了监听
+                }
+            }, "test-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            ServiceMeta serviceMeta = new ServiceMeta();
+            serviceMeta.setServiceAddr("127.0.0.1");
+            serviceMeta.setServicePort(((InetSocketAddress) provider.getLocalAddress()).getPort());
+            RpcConnection connection = RpcConnectionPool.getInstance().acquire(serviceMeta);
+            SocketChannel serverSide = accepted.poll(5, TimeUnit.SECONDS);
+            assertNotNull(serverSide);
+
+            // 服务端断开，没有任何调用方触发，连接池自己重连
+            serverSide.close();
+            SocketChannel reconnected = accepted.poll(10, TimeUnit.SECONDS);
+            assertNotNull("断开的连接应该在后台重连", reconnected);
+            assertFalse(connection.isActive());
+
+            // 之后取到的都是活着的连接
+            for (int i = 0; i < RpcConfig.getInstance().getConnectionPoolSize() * 2; i++) {
+                assertTrue(RpcConnectionPool.getInstance().acquire(serviceMeta).isActive());
+            }
+            reconnected.close();
+            for (SocketChannel channel : accepted) {
+                channel.close();
+            }
+        }
+    }
+}
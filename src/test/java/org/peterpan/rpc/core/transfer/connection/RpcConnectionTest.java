@@ -0,0 +1,140 @@
+package org.peterpan.rpc.core.transfer.connection;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.IDL.Echo.EchoService;
+import org.peterpan.rpc.common.MsgType;
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.codec.RpcFrameDecoder;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+import org.peterpan.rpc.core.transfer.nio.NioChannel;
+import org.peterpan.rpc.core.transfer.nio.NioEventLoop;
+import org.peterpan.rpc.core.transfer.nio.UnixDomainSockets;
+import org.peterpan.rpc.server.EmbeddedServer;
+
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 客户端连接：同机优先 Unix domain socket，不可用时退回 TCP；空闲时发心跳，对端失联时关闭
+ */
+public class RpcConnectionTest extends TestCase {
+
+    private NioEventLoop eventLoop;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedServer.start();
+        // 心跳间隔 200ms，空闲检查每秒一次
+        eventLoop = new NioEventLoop("test-client-io", 200);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        eventLoop.shutdown();
+    }
+
+    public void testSameHostProviderIsReachedOverUnixDomainSocket() throws Exception {
+        ServiceMeta serviceMeta = EmbeddedServer.serviceMeta(EchoService.class);
+        if (!UnixDomainSockets.isSupported()) {
+            assertTrue(remoteAddress(connect(serviceMeta)) instanceof InetSocketAddress);
+            return;
+        }
+        assertNotNull("服务端应该发布 Unix domain socket 路径", serviceMeta.getUnixSocketPath());
+        RpcConnection connection = connect(serviceMeta);
+        assertTrue(connection.isActive());
+        assertEquals("java.net.UnixDomainSocketAddress", remoteAddress(connection).getClass().getName());
+        connection.shutdown();
+    }
+
+    public void testFallsBackToTcpWhenTheSocketFileIsMissing() throws Exception {
+        ServiceMeta serviceMeta = copy(EmbeddedServer.serviceMeta(EchoService.class));
+        serviceMeta.setUnixSocketPath(serviceMeta.getUnixSocketPath() + ".missing");
+        RpcConnection connection = connect(serviceMeta);
+        assertTrue(connection.isActive());
+        assertTrue(remoteAddress(connection) instanceof InetSocketAddress);
+        connection.shutdown();
+    }
+
+    public void testHeartbeatsKeepAnIdleConnectionAlive() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+        RpcConnection connection = new RpcConnection(tcp(EmbeddedServer.serviceMeta(EchoService.class)), eventLoop,
+                c -> closed.countDown());
+        // 远超 heartbeatMaxMissed 个周期，服务端一直回应心跳
+        assertFalse(closed.await(RpcConfig.getInstance().getHeartbeatMaxMissed() + 3, TimeUnit.SECONDS));
+        assertTrue(connection.isActive());
+        connection.shutdown();
+    }
+
+    public void testSilentPeerIsClosedAfterMissedHeartbeats() throws Exception {
+        try (ServerSocketChannel silentServer = ServerSocketChannel.open()) {
+            silentServer.bind(new InetSocketAddress("127.0.0.1", 0));
+            ServiceMeta serviceMeta = new ServiceMeta();
+            serviceMeta.setServiceAddr("127.0.0.1");
+            serviceMeta.setServicePort(((InetSocketAddress) silentServer.getLocalAddress()).getPort());
+            CountDownLatch closed = new CountDownLatch(1);
+            RpcConnection connection = new RpcConnection(serviceMeta, eventLoop, c -> closed.countDown());
+            try (SocketChannel peer = silentServer.accept()) {
+                // 对端只收不回：先收到心跳，之后连接被客户端关闭
+                RpcProtocol heartbeat = readFrame(peer);
+                assertEquals(MsgType.HEARTBEAT.ordinal(), heartbeat.getHeader().getMsgType());
+                heartbeat.getBody().release();
+                assertTrue("连续没有回应心跳的连接应该被关闭",
+                        closed.await(RpcConfig.getInstance().getHeartbeatMaxMissed() + 5, TimeUnit.SECONDS));
+                assertFalse(connection.isActive());
+            }
+        }
+    }
+
+    private RpcConnection connect(ServiceMeta serviceMeta) throws Exception {
+        return new RpcConnection(serviceMeta, eventLoop, connection -> { });
+    }
+
+    private static RpcProtocol readFrame(SocketChannel channel) throws Exception {
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (true) {
+            if (channel.read(buffer) < 0) {
+                fail("连接被提前关闭");
+            }
+            buffer.flip();
+            List<RpcProtocol> frames = decoder.decode(buffer);
+            buffer.clear();
+            if (!frames.isEmpty()) {
+                return frames.get(0);
+            }
+        }
+    }
+
+    private static ServiceMeta tcp(ServiceMeta serviceMeta) {
+        ServiceMeta copy = copy(serviceMeta);
+        copy.setUnixSocketPath(null);
+        return copy;
+    }
+
+    private static SocketAddress remoteAddress(RpcConnection connection) throws Exception {
+        Field field = RpcConnection.class.getDeclaredField("channel");
+        field.setAccessible(true);
+        return ((NioChannel) field.get(connection)).getRemoteAddress();
+    }
+
+    private static ServiceMeta copy(ServiceMeta serviceMeta) {
+        ServiceMeta copy = new ServiceMeta();
+        copy.setServiceName(serviceMeta.getServiceName());
+        copy.setServiceVersion(serviceMeta.getServiceVersion());
+        copy.setServiceAddr(serviceMeta.getServiceAddr());
+        copy.setServicePort(serviceMeta.getServicePort());
+        copy.setUnixSocketPath(serviceMeta.getUnixSocketPath());
+        copy.setSharedMemoryDir(serviceMeta.getSharedMemoryDir());
+        return copy;
+    }
+}
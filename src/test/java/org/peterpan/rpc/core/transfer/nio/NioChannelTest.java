@@ -0,0 +1,121 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 连接保活到空闲超时；对端半关闭后，在途请求的响应写完再关闭
+ */
+public class NioChannelTest extends TestCase {
+
+    private NioEventLoop eventLoop;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel client;
+    private final BlockingQueue<RpcProtocol> requests = new LinkedBlockingQueue<>();
+    private final CountDownLatch idle = new CountDownLatch(1);
+    private final CountDownLatch inactive = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        serverChannel.close();
+        eventLoop.shutdown();
+    }
+
+    public void testIdleTimeoutOnlyAfterReadsStop() throws Exception {
+        NioChannel channel = connect(300);
+        // 持续有数据时不算空闲
+        for (int i = 0; i < 15; i++) {
+            writeFully(ByteBuffer.wrap(TestFrames.frame(i, new byte[]{1})));
+            Thread.sleep(100);
+        }
+        assertEquals(1, idle.getCount());
+        assertTrue(channel.isActive());
+        assertTrue("停止发送后应该触发空闲", idle.await(5, TimeUnit.SECONDS));
+        assertTrue(inactive.await(5, TimeUnit.SECONDS));
+        assertFalse(channel.isActive());
+    }
+
+    public void testHalfClosedPeerStillReceivesInFlightResponses() throws Exception {
+        NioChannel channel = connect(0);
+        writeFully(ByteBuffer.wrap(TestFrames.frame(42, "request".getBytes())));
+        RpcProtocol request = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        // 客户端不再发送请求
+        client.shutdownOutput();
+        Thread.sleep(300);
+        assertTrue("还有在途请求，连接不能关闭", channel.isActive());
+
+        RpcProtocol response = TestFrames.protocol(42, "response".getBytes());
+        channel.write(response);
+        response.getBody().release();
+        channel.requestCompleted();
+
+        byte[] expected = TestFrames.frame(42, "response".getBytes());
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int n;
+        while ((n = client.read(buffer)) >= 0) {
+            received.write(buffer.array(), 0, n);
+            buffer.clear();
+        }
+        // 先收到完整的响应，再读到服务端关闭
+        assertTrue(Arrays.equals(expected, received.toByteArray()));
+        assertTrue(inactive.await(5, TimeUnit.SECONDS));
+    }
+
+    private NioChannel connect(long idleTimeoutMillis) throws Exception {
+        eventLoop = new NioEventLoop("test-io", idleTimeoutMillis);
+        client = SocketChannel.open(serverChannel.getLocalAddress());
+        return eventLoop.register(serverChannel.accept(), new ChannelHandler() {
+            @Override
+            public void channelRead(NioChannel channel, RpcProtocol msg) {
+                TestFrames.bodyOf(msg);
+                if (msg.getHeader().getRequestId() == 42) {
+                    // 交给"业务"处理，由测试写回响应
+                    channel.requestStarted();
+                }
+                requests.add(msg);
+            }
+
+            @Override
+            public void channelInactive(NioChannel channel) {
+                inactive.countDown();
+            }
+
+            @Override
+            public void channelIdle(NioChannel channel) {
+                idle.countDown();
+                channel.close();
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+}
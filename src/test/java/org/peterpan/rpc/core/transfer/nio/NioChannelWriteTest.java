@@ -0,0 +1,147 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.codec.RpcFrameDecoder;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 写合并：同一轮事件循环里的帧一起写出，多线程写入的帧不会交错，写不完的部分由 OP_WRITE 接着写
+ */
+public class NioChannelWriteTest extends TestCase {
+
+    private NioEventLoop eventLoop;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel client;
+    private NioChannel channel;
+
+    @Override
+    protected void setUp() throws Exception {
+        eventLoop = new NioEventLoop("test-io", 0);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(serverChannel.getLocalAddress());
+        channel = eventLoop.register(serverChannel.accept(), new ChannelHandler() {
+            @Override
+            public void channelRead(NioChannel channel, RpcProtocol msg) {
+                TestFrames.bodyOf(msg);
+            }
+
+            @Override
+            public void channelInactive(NioChannel channel) {
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        serverChannel.close();
+        eventLoop.shutdown();
+    }
+
+    public void testFramesWrittenInOneLoopTurnLeaveAtTheEndOfTheTurn() throws Exception {
+        CompletableFuture<Integer> readDuringTurn = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    write(i, "frame-" + i);
+                }
+                Thread.sleep(100);
+                // 本轮还没结束，一个字节都不应该写出去
+                client.configureBlocking(false);
+                readDuringTurn.complete(client.read(ByteBuffer.allocate(1024)));
+            } catch (Exception e) {
+                readDuringTurn.completeExceptionally(e);
+            }
+        });
+        assertEquals(Integer.valueOf(0), readDuringTurn.get(5, TimeUnit.SECONDS));
+        client.configureBlocking(true);
+        List<RpcProtocol> frames = readFrames(100);
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(i, frames.get(i).getHeader().getRequestId());
+            assertEquals("frame-" + i, new String(TestFrames.bodyOf(frames.get(i))));
+        }
+    }
+
+    public void testConcurrentWritersNeverInterleaveFrames() throws Exception {
+        int writers = 8;
+        int framesPerWriter = 500;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < framesPerWriter; i++) {
+                    write(writer * framesPerWriter + i, writer + ":" + i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        List<RpcProtocol> frames = readFrames(writers * framesPerWriter);
+        int[] next = new int[writers];
+        for (RpcProtocol frame : frames) {
+            String[] body = new String(TestFrames.bodyOf(frame)).split(":");
+            int writer = Integer.parseInt(body[0]);
+            // 同一个线程写的帧保持顺序
+            assertEquals(next[writer]++, Integer.parseInt(body[1]));
+            assertEquals(writer * framesPerWriter + Integer.parseInt(body[1]), frame.getHeader().getRequestId());
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    public void testBacklogLargerThanTheSocketBufferIsDrained() throws Exception {
+        byte[] body = new byte[64 * 1024];
+        Arrays.fill(body, (byte) 7);
+        // 客户端暂时不读，积压远超内核缓冲区
+        for (int i = 0; i < 200; i++) {
+            RpcProtocol msg = TestFrames.protocol(i, body);
+            channel.write(msg);
+            msg.getBody().release();
+        }
+        Thread.sleep(200);
+        List<RpcProtocol> frames = readFrames(200);
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(i, frames.get(i).getHeader().getRequestId());
+            assertTrue(Arrays.equals(body, TestFrames.bodyOf(frames.get(i))));
+        }
+        assertTrue(channel.isActive());
+    }
+
+    private void write(long requestId, String body) {
+        RpcProtocol msg = TestFrames.protocol(requestId, body.getBytes());
+        channel.write(msg);
+        msg.getBody().release();
+    }
+
+    private List<RpcProtocol> readFrames(int count) throws Exception {
+        RpcFrameDecoder decoder = new RpcFrameDecoder(1024 * 1024);
+        List<RpcProtocol> frames = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (frames.size() < count) {
+            if (client.read(buffer) < 0) {
+                fail("连接被提前关闭");
+            }
+            buffer.flip();
+            frames.addAll(decoder.decode(buffer));
+            buffer.clear();
+        }
+        assertEquals(count, frames.size());
+        return frames;
+    }
+}
@@ -0,0 +1,184 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 事件循环：多条连接共用一个读缓冲区，各自的半包互不干扰；延迟任务按到期顺序执行，等待时不空转
+ */
+public class NioEventLoopTest extends TestCase {
+
+    private NioEventLoop eventLoop;
+    private ServerSocketChannel serverChannel;
+    private final List<SocketChannel> clients = new ArrayList<>();
+    // 服务端连接 -> 解码出的消息体
+    private final Map<NioChannel, List<String>> received = new ConcurrentHashMap<>();
+    private final List<NioChannel> closed = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        eventLoop = new NioEventLoop("test-io", 0);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        serverChannel.close();
+        eventLoop.shutdown();
+    }
+
+    public void testConnectionsOnOneLoopKeepTheirOwnPartialFrames() throws Exception {
+        int connections = 8;
+        int framesPerConnection = 20;
+        List<NioChannel> channels = new ArrayList<>();
+        List<byte[]> streams = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            channels.add(connect());
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            for (int i = 0; i < framesPerConnection; i++) {
+                stream.write(TestFrames.frame(i, body(c, i)));
+            }
+            streams.add(stream.toByteArray());
+        }
+        // 每条连接每次只写几个字节，让所有连接轮流停在半包上
+        int chunk = 7;
+        for (int offset = 0; ; offset += chunk) {
+            boolean more = false;
+            for (int c = 0; c < connections; c++) {
+                byte[] stream = streams.get(c);
+                if (offset < stream.length) {
+                    more = true;
+                    writeFully(clients.get(c), ByteBuffer.wrap(stream, offset, Math.min(chunk, stream.length - offset)));
+                }
+            }
+            if (!more) {
+                break;
+            }
+            if (offset % (chunk * 16) == 0) {
+                // 给事件循环机会在半包处读取
+                Thread.sleep(1);
+            }
+        }
+        for (int c = 0; c < connections; c++) {
+            List<String> bodies = await(channels.get(c), framesPerConnection);
+            for (int i = 0; i < framesPerConnection; i++) {
+                assertEquals(new String(body(c, i), StandardCharsets.UTF_8), bodies.get(i));
+            }
+        }
+    }
+
+    public void testMalformedFrameClosesOnlyItsConnection() throws Exception {
+        NioChannel bad = connect();
+        NioChannel good = connect();
+        byte[] frame = TestFrames.frame(1, body(1, 1));
+        // 好连接先停在半包上
+        writeFully(clients.get(1), ByteBuffer.wrap(frame, 0, 10));
+        writeFully(clients.get(0), ByteBuffer.wrap(new byte[64]));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!closed.contains(bad) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(closed.contains(bad));
+        writeFully(clients.get(1), ByteBuffer.wrap(frame, 10, frame.length - 10));
+        assertEquals(new String(body(1, 1), StandardCharsets.UTF_8), await(good, 1).get(0));
+        assertFalse(closed.contains(good));
+    }
+
+    public void testSubMillisecondDelayBlocksInSelectInsteadOfSpinning() throws Exception {
+        CompletableFuture<long[]> timeouts = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            eventLoop.schedule(() -> { }, TimeUnit.MICROSECONDS.toNanos(900));
+            long subMillisecond = eventLoop.selectTimeoutMillis();
+            eventLoop.schedule(() -> { }, -1);
+            long expired = eventLoop.selectTimeoutMillis();
+            timeouts.complete(new long[]{subMillisecond, expired});
+        });
+        long[] result = timeouts.get(5, TimeUnit.SECONDS);
+        // 不足1毫秒向上取整为 select(1)，已经到期的任务才 selectNow
+        assertEquals(1, result[0]);
+        assertEquals(0, result[1]);
+    }
+
+    public void testScheduledTasksRunInDeadlineOrder() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            eventLoop.schedule(() -> {
+                order.add(3);
+                done.complete(null);
+            }, TimeUnit.MILLISECONDS.toNanos(200));
+            eventLoop.schedule(() -> order.add(2), TimeUnit.MILLISECONDS.toNanos(100));
+            eventLoop.schedule(() -> order.add(1), TimeUnit.MICROSECONDS.toNanos(500));
+        });
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(3, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), order.get(i));
+        }
+    }
+
+    private NioChannel connect() throws Exception {
+        SocketChannel client = SocketChannel.open(serverChannel.getLocalAddress());
+        clients.add(client);
+        SocketChannel accepted = serverChannel.accept();
+        NioChannel channel = eventLoop.register(accepted, new ChannelHandler() {
+            @Override
+            public void channelRead(NioChannel channel, RpcProtocol msg) {
+                received.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>())
+                        .add(new String(TestFrames.bodyOf(msg), StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void channelInactive(NioChannel channel) {
+                closed.add(channel);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        received.put(channel, new CopyOnWriteArrayList<>());
+        return channel;
+    }
+
+    private List<String> await(NioChannel channel, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.get(channel).size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        List<String> bodies = received.get(channel);
+        assertEquals(count, bodies.size());
+        return bodies;
+    }
+
+    private static byte[] body(int connection, int index) {
+        StringBuilder body = new StringBuilder("connection-" + connection + "-frame-" + index + ":");
+        for (int i = 0; i < index * 13; i++) {
+            body.append((char) ('a' + (connection + i) % 26));
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.peterpan.rpc.core.transfer.nio;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description Unix domain socket：与 TCP 共用事件循环收发帧；JDK 16 以下只检查不支持时的报错
+ */
+public class UnixDomainSocketsTest extends TestCase {
+
+    private Path dir;
+    private NioEventLoop eventLoop;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("uds-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (eventLoop != null) {
+            eventLoop.shutdown();
+        }
+        Files.deleteIfExists(dir.resolve("rpc.sock"));
+        Files.deleteIfExists(dir);
+    }
+
+    public void testUnsupportedJdkFailsWithIOException() throws Exception {
+        if (UnixDomainSockets.isSupported()) {
+            return;
+        }
+        try {
+            UnixDomainSockets.connect(dir.resolve("rpc.sock").toString());
+            fail("不支持时应该抛出 IOException，由调用方退回 TCP");
+        } catch (IOException expected) {
+            // 退回 TCP
+        }
+    }
+
+    public void testEchoesFramesThroughTheEventLoop() throws Exception {
+        if (!UnixDomainSockets.isSupported()) {
+            return;
+        }
+        String path = dir.resolve("rpc.sock").toString();
+        // 上次进程残留的 socket 文件不影响监听
+        Files.write(dir.resolve("rpc.sock"), new byte[]{1});
+        try (ServerSocketChannel server = UnixDomainSockets.bind(path);
+             SocketChannel client = UnixDomainSockets.connect(path)) {
+            eventLoop = new NioEventLoop("test-uds", 0);
+            eventLoop.register(server.accept(), new ChannelHandler() {
+                @Override
+                public void channelRead(NioChannel channel, RpcProtocol msg) {
+                    byte[] body = TestFrames.bodyOf(msg);
+                    RpcProtocol response = TestFrames.protocol(msg.getHeader().getRequestId(), body);
+                    channel.write(response);
+                    response.getBody().release();
+                }
+
+                @Override
+                public void channelInactive(NioChannel channel) {
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = 0; i < 100; i++) {
+                byte[] frame = TestFrames.frame(i, ("message-" + i).getBytes());
+                expected.write(frame);
+                ByteBuffer buffer = ByteBuffer.wrap(frame);
+                while (buffer.hasRemaining()) {
+                    client.write(buffer);
+                }
+            }
+            ByteBuffer received = ByteBuffer.allocate(expected.size());
+            while (received.hasRemaining()) {
+                if (client.read(received) < 0) {
+                    break;
+                }
+            }
+            assertTrue(Arrays.equals(expected.toByteArray(), received.array()));
+        }
+    }
+}
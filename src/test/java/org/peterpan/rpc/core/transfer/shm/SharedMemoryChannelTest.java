@@ -0,0 +1,246 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import junit.framework.TestCase;
+import org.peterpan.rpc.core.buffer.FileRegion;
+import org.peterpan.rpc.core.buffer.PooledByteBuffer;
+import org.peterpan.rpc.core.codec.RpcFrameEncoder;
+import org.peterpan.rpc.core.codec.TestFrames;
+import org.peterpan.rpc.core.protocol.RpcProtocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 共享内存通道：两个方向收发帧、比环大的帧由读线程续写、文件区域帧，以及服务端拒绝非法的文件
+ */
+public class SharedMemoryChannelTest extends TestCase {
+
+    private Path dir;
+    private SharedMemoryChannel client;
+    private SharedMemoryChannel server;
+    private final BlockingQueue<RpcProtocol> clientReceived = new LinkedBlockingQueue<>();
+    private final BlockingQueue<RpcProtocol> serverReceived = new LinkedBlockingQueue<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("rpc-shm-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    public void testFramesFlowBothWays() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        connect(4096, WaitStrategy.PARK);
+        // 映射之后删掉文件不影响通信
+        client.deleteFile();
+        assertFalse(Files.exists(dir.resolve(client.fileName())));
+
+        for (int i = 0; i < 100; i++) {
+            client.write(encode(i, ("request-" + i).getBytes()), null);
+        }
+        for (int i = 0; i < 100; i++) {
+            RpcProtocol request = serverReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertEquals(i, request.getHeader().getRequestId());
+            assertEquals("request-" + i, new String(TestFrames.bodyOf(request)));
+            server.write(encode(i, ("response-" + i).getBytes()), null);
+        }
+        for (int i = 0; i < 100; i++) {
+            RpcProtocol response = clientReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull(response);
+            assertEquals(i, response.getHeader().getRequestId());
+            assertEquals("response-" + i, new String(TestFrames.bodyOf(response)));
+        }
+        assertTrue(waitFlushed(client));
+        assertTrue(waitFlushed(server));
+    }
+
+    public void testFrameLargerThanTheRingIsFinishedByTheReaderThread() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        connect(4096, WaitStrategy.SPIN);
+        byte[] body = bytes(64 * 1024);
+        // 调用方不会阻塞在环满上，剩下的部分由本端读线程在对端腾出空间后续写
+        client.write(encode(1, body), null);
+        client.write(encode(2, "after".getBytes()), null);
+
+        RpcProtocol large = serverReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(large);
+        assertEquals(1, large.getHeader().getRequestId());
+        assertTrue(Arrays.equals(body, TestFrames.bodyOf(large)));
+        RpcProtocol small = serverReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(small);
+        assertEquals("after", new String(TestFrames.bodyOf(small)));
+        assertTrue(waitFlushed(client));
+    }
+
+    public void testFileRegionIsCopiedIntoTheRing() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        connect(4096, WaitStrategy.PARK);
+        byte[] content = bytes(20000);
+        File source = File.createTempFile("region", ".bin", dir.toFile());
+        Files.write(source.toPath(), content);
+        CountDownLatch released = new CountDownLatch(1);
+        RandomAccessFile raf = new RandomAccessFile(source, "r");
+        FileChannel fileChannel = raf.getChannel();
+        FileRegion region = new FileRegion(fileChannel, 100, content.length - 100, () -> {
+            released.countDown();
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // 测试文件
+            }
+        });
+        RpcProtocol header = TestFrames.protocol(9, new byte[0]);
+        header.getBody().release();
+        server.write(RpcFrameEncoder.encodeHeader(header.getHeader(), content.length - 100), region);
+
+        RpcProtocol frame = clientReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertEquals(9, frame.getHeader().getRequestId());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 100, content.length), TestFrames.bodyOf(frame)));
+        assertTrue("写完后释放文件区域", released.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testCloseReleasesPendingWrites() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        client = SharedMemoryChannel.create(dir, 4096, WaitStrategy.PARK);
+        // 没有对端读，第二帧只能留在队列里
+        PooledByteBuffer first = encode(1, bytes(8192));
+        PooledByteBuffer second = encode(2, bytes(100));
+        client.write(first, null);
+        client.write(second, null);
+        client.close();
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        // 关闭后再写直接释放
+        PooledByteBuffer late = encode(3, bytes(10));
+        client.write(late, null);
+        assertEquals(0, late.refCnt());
+    }
+
+    public void testOpenRejectsForeignFiles() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        assertOpenFails("../etc/passwd");
+        assertOpenFails("abc.txt");
+
+        String name = "0123abcd-0000.shm";
+        Files.write(dir.resolve(name), new byte[16]);
+        // 比文件头还短
+        assertOpenFails(name);
+        Files.write(dir.resolve(name), new byte[1024 * 1024]);
+        // 魔数不对
+        assertOpenFails(name);
+
+        client = SharedMemoryChannel.create(dir, 4096, WaitStrategy.PARK);
+        try (RandomAccessFile raf = new RandomAccessFile(dir.resolve(client.fileName()).toFile(), "rw")) {
+            // 声明的容量和文件大小对不上
+            raf.seek(8);
+            raf.writeInt(8192);
+        }
+        assertOpenFails(client.fileName());
+    }
+
+    public void testRingSizeIsRoundedUpToAPowerOfTwo() throws Exception {
+        if (!SharedMemoryChannel.isSupported()) {
+            return;
+        }
+        client = SharedMemoryChannel.create(dir, 5000, WaitStrategy.PARK);
+        // 8192 的环，文件头 128 字节，两个环各带 256 字节的环头
+        assertEquals(128 + 2 * (256 + 8192), Files.size(dir.resolve(client.fileName())));
+        server = SharedMemoryChannel.open(dir, client.fileName(), WaitStrategy.PARK);
+    }
+
+    private void connect(int ringSize, WaitStrategy waitStrategy) throws Exception {
+        client = SharedMemoryChannel.create(dir, ringSize, waitStrategy);
+        server = SharedMemoryChannel.open(dir, client.fileName(), waitStrategy);
+        client.start(listener(clientReceived));
+        server.start(listener(serverReceived));
+    }
+
+    private static SharedMemoryChannel.FrameListener listener(BlockingQueue<RpcProtocol> received) {
+        return new SharedMemoryChannel.FrameListener() {
+            @Override
+            public void frameRead(RpcProtocol frame) {
+                received.add(frame);
+            }
+
+            @Override
+            public void failed(IOException e) {
+                fail("共享内存通道出错: " + e);
+            }
+        };
+    }
+
+    private void assertOpenFails(String fileName) {
+        try {
+            server = SharedMemoryChannel.open(dir, fileName, WaitStrategy.PARK);
+            fail("不应该接受文件 " + fileName);
+        } catch (IOException expected) {
+            // 服务端拒绝升级，连接继续走 TCP
+        }
+    }
+
+    private static PooledByteBuffer encode(long requestId, byte[] body) {
+        RpcProtocol protocol = TestFrames.protocol(requestId, body);
+        try {
+            return RpcFrameEncoder.encode(protocol);
+        } finally {
+            protocol.getBody().release();
+        }
+    }
+
+    private static boolean waitFlushed(SharedMemoryChannel channel) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!channel.isFlushed()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+}
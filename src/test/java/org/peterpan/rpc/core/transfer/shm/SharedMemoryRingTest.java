@@ -0,0 +1,155 @@
+package org.peterpan.rpc.core.transfer.shm;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 共享内存环：跨越环尾的读写、写满、读完才归还空间，以及两个映射之间的单生产者单消费者传输
+ */
+public class SharedMemoryRingTest extends TestCase {
+
+    private static final int CAPACITY = 4096;
+
+    private File file;
+    private RandomAccessFile raf;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("ring", ".shm");
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(SharedMemoryRing.HEADER_SIZE + CAPACITY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        raf.close();
+        file.delete();
+    }
+
+    public void testWrapsAroundTheEndOfTheRing() throws Exception {
+        if (!SharedMemoryRing.isSupported()) {
+            return;
+        }
+        SharedMemoryRing producer = new SharedMemoryRing(map(), 0, CAPACITY);
+        SharedMemoryRing consumer = new SharedMemoryRing(map(), 0, CAPACITY);
+        byte[] first = bytes(3000, 1);
+        assertEquals(3000, producer.write(ByteBuffer.wrap(first)));
+        assertEquals(first, drain(consumer, 3000));
+        assertTrue(producer.isDrained());
+
+        // 从下标 3000 开始写，跨过环尾
+        byte[] second = bytes(3000, 7);
+        assertEquals(3000, producer.write(ByteBuffer.wrap(second)));
+        assertFalse(producer.isDrained());
+        assertEquals(second, drain(consumer, 3000));
+        assertTrue(producer.isDrained());
+    }
+
+    public void testSpaceIsReusedOnlyAfterRelease() throws Exception {
+        if (!SharedMemoryRing.isSupported()) {
+            return;
+        }
+        SharedMemoryRing producer = new SharedMemoryRing(map(), 0, CAPACITY);
+        SharedMemoryRing consumer = new SharedMemoryRing(map(), 0, CAPACITY);
+        ByteBuffer src = ByteBuffer.wrap(bytes(CAPACITY + 100, 3));
+        // 环满时只写进一部分
+        assertEquals(CAPACITY, producer.write(src));
+        assertEquals(100, src.remaining());
+        assertEquals(0, producer.write(src));
+
+        ByteBuffer dst = ByteBuffer.allocate(1000);
+        assertEquals(1000, consumer.read(dst));
+        // 读出来还没处理完，空间不能复用
+        assertEquals(0, producer.write(src));
+        consumer.release(1000);
+        assertEquals(100, producer.write(src));
+    }
+
+    public void testStreamsBetweenTwoMappings() throws Exception {
+        if (!SharedMemoryRing.isSupported()) {
+            return;
+        }
+        SharedMemoryRing producer = new SharedMemoryRing(map(), 0, CAPACITY);
+        SharedMemoryRing consumer = new SharedMemoryRing(map(), 0, CAPACITY);
+        int total = 8 * 1024 * 1024;
+        CRC32 sent = new CRC32();
+        CRC32 received = new CRC32();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                ByteBuffer dst = ByteBuffer.allocate(1500);
+                int read = 0;
+                while (read < total) {
+                    int n = consumer.read(dst);
+                    if (n == 0) {
+                        Thread.yield();
+                        continue;
+                    }
+                    received.update(dst.array(), 0, n);
+                    dst.clear();
+                    consumer.release(n);
+                    read += n;
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "test-ring-reader");
+        reader.start();
+        // 每次写的长度不同，让帧边界落在环的各个位置
+        int written = 0;
+        int seq = 0;
+        while (written < total) {
+            byte[] chunk = bytes(Math.min(1 + (seq * 131) % 2000, total - written), seq++);
+            sent.update(chunk, 0, chunk.length);
+            ByteBuffer src = ByteBuffer.wrap(chunk);
+            while (src.hasRemaining()) {
+                if (producer.write(src) == 0) {
+                    Thread.yield();
+                }
+            }
+            written += chunk.length;
+        }
+        reader.join(30000);
+        assertNull(failure.get());
+        assertFalse(reader.isAlive());
+        assertEquals(sent.getValue(), received.getValue());
+        assertTrue(producer.isDrained());
+    }
+
+    /**
+     * 每次单独映射，相当于另一个进程看到的同一块内存
+     */
+    private MappedByteBuffer map() throws Exception {
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+    }
+
+    private static byte[] drain(SharedMemoryRing consumer, int length) {
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        while (dst.hasRemaining()) {
+            int n = consumer.read(dst);
+            consumer.release(n);
+        }
+        return dst.array();
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    private static void assertEquals(byte[] expected, byte[] actual) {
+        assertTrue(java.util.Arrays.equals(expected, actual));
+    }
+}
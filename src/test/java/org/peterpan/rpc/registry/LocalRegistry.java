@@ -0,0 +1,53 @@
+package org.peterpan.rpc.registry;
+
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的进程内注册中心
+ *
+ * 测试的服务端和客户端在同一个 JVM 里，不依赖 Redis 或 Zookeeper
+ */
+public class LocalRegistry implements IRegistryService {
+
+    // 服务键 -> 服务节点
+    private static final Map<String, List<ServiceMeta>> SERVICES = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(ServiceMeta serviceMeta) {
+        SERVICES.computeIfAbsent(RpcServiceNameBuilder.buildServiceKey(serviceMeta.getServiceName(), serviceMeta.getServiceVersion()),
+                k -> new CopyOnWriteArrayList<>()).add(serviceMeta);
+    }
+
+    @Override
+    public void unRegister(ServiceMeta serviceMeta) {
+        List<ServiceMeta> serviceMetas = SERVICES.get(RpcServiceNameBuilder.buildServiceKey(serviceMeta.getServiceName(), serviceMeta.getServiceVersion()));
+        if (serviceMetas != null) {
+            serviceMetas.remove(serviceMeta);
+        }
+    }
+
+    @Override
+    public ServiceMeta discovery(String serviceName, int invokerHashCode, String loadBalancerType) {
+        List<ServiceMeta> serviceMetas = discoveries(serviceName);
+        return serviceMetas.isEmpty() ? null : serviceMetas.get(0);
+    }
+
+    @Override
+    public List<ServiceMeta> discoveries(String serviceName) {
+        List<ServiceMeta> serviceMetas = SERVICES.get(serviceName);
+        return serviceMetas == null ? new ArrayList<>() : new ArrayList<>(serviceMetas);
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
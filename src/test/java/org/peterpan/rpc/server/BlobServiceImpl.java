@@ -0,0 +1,69 @@
+package org.peterpan.rpc.server;
+
+import org.peterpan.rpc.IDL.Blob.BlobService;
+import org.peterpan.rpc.core.stream.Blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的大块数据服务实现
+ */
+public class BlobServiceImpl implements BlobService {
+
+    // 最近一次收到的参数所在的临时文件，方法返回后应该被删除
+    private static volatile Path lastReceived;
+
+    @Override
+    public Blob download(String path) {
+        try {
+            return Blob.ofFile(Paths.get(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Long checksum(Blob data) {
+        lastReceived = data.getPath();
+        try (InputStream in = data.openStream()) {
+            return crc32(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Blob roundTrip(Blob data) {
+        try {
+            return Blob.ofBytes(data.toBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Blob reject(Blob data) {
+        throw new IllegalStateException("rejected " + data.length() + " bytes");
+    }
+
+    public static Path lastReceived() {
+        return lastReceived;
+    }
+
+    public static long crc32(InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            crc.update(buffer, 0, n);
+        }
+        return crc.getValue();
+    }
+}
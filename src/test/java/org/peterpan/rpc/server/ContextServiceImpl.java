@@ -0,0 +1,151 @@
+package org.peterpan.rpc.server;
+
+import org.peterpan.rpc.IDL.Context.ContextService;
+import org.peterpan.rpc.core.context.RpcContext;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的服务实现，测试通过静态方法观察服务端的执行情况
+ */
+public class ContextServiceImpl implements ContextService {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "context-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicInteger TOUCHED = new AtomicInteger();
+    // 合并执行和缓存的方法按 key 统计实际执行的次数
+    private static final Map<String, AtomicInteger> EXECUTIONS = new ConcurrentHashMap<>();
+    // id:事件，事件为 started、onCancel、interrupted、completed、futureCancelled、recorded
+    private static final BlockingQueue<String> EVENTS = new LinkedBlockingQueue<>();
+
+    public static int touched() {
+        return TOUCHED.get();
+    }
+
+    public static BlockingQueue<String> events() {
+        return EVENTS;
+    }
+
+    public static int executions(String key) {
+        AtomicInteger executions = EXECUTIONS.get(key);
+        return executions == null ? 0 : executions.get();
+    }
+
+    @Override
+    public long remainingMillis() {
+        return RpcContext.remainingMillis();
+    }
+
+    @Override
+    public int touch() {
+        return TOUCHED.incrementAndGet();
+    }
+
+    @Override
+    public String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return "slept";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    @Override
+    public String fail(String message) {
+        throw new IllegalStateException(message);
+    }
+
+    @Override
+    public String awaitCancel(String id, long millis) {
+        EVENTS.add(id + ":started");
+        RpcContext.onCancel(() -> EVENTS.add(id + ":onCancel"));
+        try {
+            Thread.sleep(millis);
+            EVENTS.add(id + ":completed");
+            return "completed";
+        } catch (InterruptedException e) {
+            EVENTS.add(id + ":interrupted");
+            return "interrupted";
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> never(String id) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                EVENTS.add(id + ":futureCancelled");
+            }
+        });
+        EVENTS.add(id + ":started");
+        return future;
+    }
+
+    @Override
+    public void record(String id, long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        EVENTS.add(id + ":recorded");
+    }
+
+    @Override
+    public String shared(String key, long millis) {
+        int execution = EXECUTIONS.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(key + ":" + execution + " interrupted", e);
+        }
+        return key + ":" + execution;
+    }
+
+    @Override
+    public CompletableFuture<String> sharedLater(String key, long blockMillis, long millis) {
+        int execution = EXECUTIONS.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            // 调用已经取消，仍然返回 future
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        SCHEDULER.schedule(() -> future.complete(key + ":" + execution), millis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Override
+    public String cachedLookup(String key, long millis) {
+        int execution = EXECUTIONS.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return key + ":" + execution;
+    }
+
+    @Override
+    public String payload(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+}
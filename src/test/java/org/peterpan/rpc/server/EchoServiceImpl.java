@@ -0,0 +1,34 @@
+package org.peterpan.rpc.server;
+
+import org.peterpan.rpc.IDL.Echo.EchoService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的服务实现
+ */
+public class EchoServiceImpl implements EchoService {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "echo-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public String echo(String message) {
+        return message;
+    }
+
+    @Override
+    public CompletableFuture<String> echoLater(String message, long delayMillis) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        SCHEDULER.schedule(() -> future.complete(message), delayMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,73 @@
+package org.peterpan.rpc.server;
+
+import org.peterpan.rpc.common.ServiceMeta;
+import org.peterpan.rpc.config.RpcConfig;
+import org.peterpan.rpc.core.transfer.RpcServerTransfer;
+import org.peterpan.rpc.registry.LocalRegistry;
+import org.peterpan.rpc.util.redisKey.RpcServiceNameBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试 JVM 内的服务端
+ *
+ * 第一次 start 时启动，注册测试用的服务，之后所有测试共用；端口等配置来自测试的 config.properties
+ */
+public class EmbeddedServer {
+
+    public static final String VERSION = "v1";
+
+    private static boolean started = false;
+
+    private EmbeddedServer() {
+    }
+
+    public static synchronized void start() throws Exception {
+        if (started) {
+            return;
+        }
+        RpcServerTransfer rpcServerTransfer = new RpcServerTransfer();
+        rpcServerTransfer.register(new HelloServiceImpl(), VERSION);
+        rpcServerTransfer.register(new EchoServiceImpl(), VERSION);
+        rpcServerTransfer.register(new StreamServiceImpl(), VERSION);
+        rpcServerTransfer.register(new BlobServiceImpl(), VERSION);
+        rpcServerTransfer.register(new ContextServiceImpl(), VERSION);
+        Thread thread = new Thread(rpcServerTransfer::serve, "embedded-rpc-server");
+        thread.setDaemon(true);
+        thread.start();
+        awaitListening(Integer.parseInt(RpcConfig.getInstance().getPort()));
+        started = true;
+    }
+
+    /**
+     * 服务在注册中心里的节点
+     */
+    public static ServiceMeta serviceMeta(Class<?> serviceInterface) {
+        List<ServiceMeta> serviceMetas = new LocalRegistry().discoveries(
+                RpcServiceNameBuilder.buildServiceKey(serviceInterface.getName(), VERSION));
+        if (serviceMetas.isEmpty()) {
+            throw new IllegalStateException("服务没有注册: " + serviceInterface.getName());
+        }
+        return serviceMetas.get(0);
+    }
+
+    private static void awaitListening(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
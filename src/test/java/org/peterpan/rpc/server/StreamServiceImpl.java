@@ -0,0 +1,113 @@
+package org.peterpan.rpc.server;
+
+import org.peterpan.rpc.IDL.Stream.StreamService;
+import org.peterpan.rpc.core.stream.StreamObserver;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 测试用的流式服务实现
+ */
+public class StreamServiceImpl implements StreamService {
+
+    private static final AtomicInteger PRODUCED = new AtomicInteger();
+    // 服务端收到的客户端取消次数
+    private static final AtomicInteger CANCELLED = new AtomicInteger();
+
+    @Override
+    public Iterator<String> range(Integer count) {
+        PRODUCED.set(0);
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public String next() {
+                PRODUCED.incrementAndGet();
+                return String.valueOf(next++);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<String> failAfter(Integer failAt) {
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (next == failAt) {
+                    throw new IllegalStateException("failed at " + next);
+                }
+                return String.valueOf(next++);
+            }
+        };
+    }
+
+    @Override
+    public Integer produced() {
+        return PRODUCED.get();
+    }
+
+    @Override
+    public StreamObserver<String> upload(StreamObserver<Long> result) {
+        return new StreamObserver<String>() {
+            private long length;
+
+            @Override
+            public void onNext(String value) {
+                length += value.length();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                CANCELLED.incrementAndGet();
+            }
+
+            @Override
+            public void onCompleted() {
+                result.onNext(length);
+                result.onCompleted();
+            }
+        };
+    }
+
+    @Override
+    public StreamObserver<String> echo(String prefix, StreamObserver<String> out) {
+        return new StreamObserver<String>() {
+            @Override
+            public void onNext(String value) {
+                if ("fail".equals(value)) {
+                    throw new IllegalArgumentException("bad input");
+                }
+                out.onNext(prefix + value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                CANCELLED.incrementAndGet();
+            }
+
+            @Override
+            public void onCompleted() {
+                out.onCompleted();
+            }
+        };
+    }
+
+    public static int cancelled() {
+        return CANCELLED.get();
+    }
+}
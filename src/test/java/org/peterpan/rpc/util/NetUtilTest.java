@@ -0,0 +1,26 @@
+package org.peterpan.rpc.util;
+
+import junit.framework.TestCase;
+
+import java.net.InetAddress;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 判断地址是否属于本机
+ */
+public class NetUtilTest extends TestCase {
+
+    public void testLoopbackAndOwnAddressesAreLocal() throws Exception {
+        assertTrue(NetUtil.isLocalAddress("127.0.0.1"));
+        assertTrue(NetUtil.isLocalAddress("localhost"));
+        assertTrue(NetUtil.isLocalAddress(InetAddress.getLocalHost().getHostAddress()));
+    }
+
+    public void testOtherAddressesAreNotLocal() {
+        // 文档保留的 TEST-NET-3 地址，不会出现在本机网卡上
+        assertFalse(NetUtil.isLocalAddress("203.0.113.7"));
+        assertFalse(NetUtil.isLocalAddress(""));
+        assertFalse(NetUtil.isLocalAddress(null));
+    }
+}
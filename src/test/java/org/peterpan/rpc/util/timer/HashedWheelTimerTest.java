@@ -0,0 +1,106 @@
+package org.peterpan.rpc.util.timer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author PeterPan
+ * @date 2026/10/18
+ * @description 哈希时间轮：到期顺序、取消、多圈任务和定时精度
+ */
+public class HashedWheelTimerTest extends TestCase {
+
+    private HashedWheelTimer timer;
+
+    @Override
+    protected void setUp() throws Exception {
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        timer.stop();
+    }
+
+    public void testFiresInDeadlineOrderWithinTickPrecision() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] firedAt = new long[1];
+        timer.newTimeout(timeout -> {
+            order.add(3);
+            firedAt[0] = System.nanoTime();
+            latch.countDown();
+        }, 300, TimeUnit.MILLISECONDS);
+        timer.newTimeout(timeout -> {
+            order.add(1);
+            latch.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+        timer.newTimeout(timeout -> {
+            order.add(2);
+            latch.countDown();
+        }, 150, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), order.get(i));
+        }
+        // 不会早于到期时间，延后不超过几个 tick
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firedAt[0] - start);
+        assertTrue("提前执行: " + elapsedMillis + "ms", elapsedMillis >= 300);
+        assertTrue("延后太多: " + elapsedMillis + "ms", elapsedMillis < 600);
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    public void testTimeoutBeyondOneRoundWaitsForItsRound() throws Exception {
+        // 8 个槽 * 10ms，一圈 80ms
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        Timeout timeout = timer.newTimeout(t -> latch.countDown(), 250, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("多圈任务在前几圈就执行了: " + elapsedMillis + "ms", elapsedMillis >= 250);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    public void testCancelledTimeoutsNeverFire() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        List<Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            timeouts.add(timer.newTimeout(timeout -> fired.incrementAndGet(), 500 + i % 100, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 0; i < timeouts.size(); i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+            assertTrue(timeouts.get(i).isCancelled());
+            // 重复取消返回 false
+            assertFalse(timeouts.get(i).cancel());
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (timer.pendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, timer.pendingTimeouts());
+        assertEquals(5000, fired.get());
+        for (int i = 1; i < timeouts.size(); i += 2) {
+            assertTrue(timeouts.get(i).isExpired());
+        }
+    }
+
+    public void testStoppedTimerRejectsNewTimeouts() throws Exception {
+        timer.newTimeout(timeout -> { }, 10, TimeUnit.MILLISECONDS);
+        timer.stop();
+        try {
+            timer.newTimeout(timeout -> { }, 10, TimeUnit.MILLISECONDS);
+            fail("停止后不能再登记任务");
+        } catch (IllegalStateException expected) {
+            // 时间轮已停止
+        }
+    }
+}